@@ -0,0 +1,145 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetProperties;
+import com.kafka.retryconsumer.bulk.BatchItemResult;
+import com.kafka.retryconsumer.bulk.BulkDispatcher;
+import com.kafka.retryconsumer.bulk.BulkProperties;
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakers;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.commit.ManualCommitProcessor;
+import com.kafka.retryconsumer.idempotency.IdempotencyProperties;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimiters;
+import com.kafka.retryconsumer.limiter.LimiterProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopicProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import com.kafka.retryconsumer.route.RetryRoute;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.AdviceWithRouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.ToDynamicDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second through the routes {@link RetryRoute} builds for one topic with the default route settings but
+ * the bulkhead and concurrency limiter enabled, one poll of records per invocation, with and without bulk dispatch.
+ * The kafka: consumers are replaced by direct: endpoints and the rest: calls by canned replies, so only the Camel,
+ * bulkhead, concurrency limiter, circuit breaker and commit processing is measured.
+ * Without a manual commit header the commit processor returns at once. Every invocation sends the same offsets, so
+ * skipping processed records is disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CamelRouteBenchmark {
+
+    private static final int POLL_RECORDS = 50;
+    private static final String TOPIC = "retry_topic_1";
+
+    @Param({"false", "true"})
+    boolean bulk;
+
+    private DefaultCamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private List<Map<String, Object>> headers;
+
+    @Setup
+    public void setUp() throws Exception {
+        camelContext = new DefaultCamelContext();
+        RouteProperties routeProperties = new RouteProperties();
+        RouteProperties.TopicRoute topicRoute = new RouteProperties.TopicRoute();
+        topicRoute.getBulkhead().setEnabled(true);
+        routeProperties.getTopics().put(TOPIC, topicRoute);
+
+        ManualCommitProcessor manualCommitProcessor = new ManualCommitProcessor(new CommitProperties(),
+                new SimpleMeterRegistry());
+        RetryTopicProperties retryTopicProperties = new RetryTopicProperties();
+        BulkProperties bulkProperties = new BulkProperties();
+        bulkProperties.setEnabled(bulk);
+        bulkProperties.setMaxSize(POLL_RECORDS);
+        ObjectMapper objectMapper = new ObjectMapper();
+        IdempotencyProperties idempotencyProperties = new IdempotencyProperties();
+        idempotencyProperties.setEnabled(false);
+        ProcessedRecords processedRecords = new ProcessedRecords(idempotencyProperties, new SimpleMeterRegistry());
+        RetryBudget retryBudget = new RetryBudget(new RetryBudgetProperties());
+        BulkDispatcher bulkDispatcher = new BulkDispatcher(objectMapper, camelContext.createProducerTemplate(),
+                manualCommitProcessor, processedRecords, retryBudget);
+        LimiterProperties limiterProperties = new LimiterProperties();
+        limiterProperties.setEnabled(true);
+        ConcurrencyLimiters concurrencyLimiters = new ConcurrencyLimiters(limiterProperties, routeProperties,
+                new SimpleMeterRegistry());
+        RetryTopics retryTopics = new RetryTopics(retryTopicProperties, routeProperties, new CommitProperties(),
+                new SimpleMeterRegistry());
+        camelContext.addRoutes(new RetryRoute(manualCommitProcessor, retryTopics, retryTopicProperties,
+                new CircuitBreakers(routeProperties), bulkDispatcher, bulkProperties, concurrencyLimiters,
+                processedRecords, routeProperties, retryBudget));
+
+        List<BatchItemResult> results = new ArrayList<>();
+        for (int i = 0; i < POLL_RECORDS; i++) {
+            results.add(new BatchItemResult(String.valueOf(i), true, "Hello"));
+        }
+        String batchReply = objectMapper.writeValueAsString(results);
+
+        AdviceWithRouteBuilder.adviceWith(camelContext, TOPIC, route -> route.replaceFromWith("direct:" + TOPIC));
+        for (int tier = 0; tier < retryTopics.delays(TOPIC).size(); tier++) {
+            String tierRoute = TOPIC + "-retry-" + tier;
+            AdviceWithRouteBuilder.adviceWith(camelContext, tierRoute,
+                    route -> route.replaceFromWith("direct:" + tierRoute));
+        }
+        AdviceWithRouteBuilder.adviceWith(camelContext, TOPIC + "-call",
+                route -> route.weaveByToUri("rest:*").replace().setBody(route.constant("Hello")));
+        AdviceWithRouteBuilder.adviceWith(camelContext, TOPIC + "-bulk",
+                route -> route.weaveByToUri("rest:*").replace().setBody(route.constant(batchReply)));
+        AdviceWithRouteBuilder.adviceWith(camelContext, "retry-topic",
+                route -> route.weaveByType(ToDynamicDefinition.class).replace().stop());
+        camelContext.start();
+        producerTemplate = camelContext.createProducerTemplate();
+
+        headers = new ArrayList<>();
+        for (int i = 0; i < POLL_RECORDS; i++) {
+            headers.add(Map.of(
+                    KafkaConstants.TOPIC, TOPIC,
+                    KafkaConstants.PARTITION, 0,
+                    KafkaConstants.OFFSET, (long) i,
+                    KafkaConstants.LAST_RECORD_BEFORE_COMMIT, i == POLL_RECORDS - 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        camelContext.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLL_RECORDS)
+    public void poll() {
+        for (int i = 0; i < POLL_RECORDS; i++) {
+            producerTemplate.sendBodyAndHeaders("direct:" + TOPIC, "message-" + i, headers.get(i));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.kafka.retryconsumer.route.RetryRoute;
+import com.kafka.retryconsumer.route.RouteProperties;
+import com.kafka.retryconsumer.tracing.RecordTrace;
+import com.kafka.retryconsumer.tracing.TracingProperties;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record bookkeeping of the consuming routes, the {@link RecordTrace} policy for a successful record with the
+ * default sample rate, and the kafka: endpoint URI of {@link RetryRoute} built once per consuming route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteStringBenchmark {
+
+    private Exchange exchange;
+    private RoutePolicy recordTrace;
+    private RouteProperties.TopicRoute route;
+
+    @Setup
+    public void setUp() {
+        CamelContext camelContext = new DefaultCamelContext();
+        recordTrace = new RecordTrace(new TracingProperties())
+                .createRoutePolicy(camelContext, "R1", new RouteDefinition().from("kafka:retry_topic_1"));
+        route = new RouteProperties.TopicRoute();
+        exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setBody("message-42");
+        exchange.getIn().setHeader(KafkaConstants.TOPIC, "retry_topic_1");
+        exchange.getIn().setHeader(KafkaConstants.PARTITION, 3);
+        exchange.getIn().setHeader(KafkaConstants.OFFSET, 123_456L);
+        exchange.getIn().setHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT, false);
+    }
+
+    @Benchmark
+    public Exchange recordTrace() {
+        recordTrace.onExchangeDone(null, exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public String buildKafkaUrl() {
+        return RetryRoute.buildKafkaUrl("localhost:9092", "retry_topic_1", "kafkaConsumerGroup", route);
+    }
+}
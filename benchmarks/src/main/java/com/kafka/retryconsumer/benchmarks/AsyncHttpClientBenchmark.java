@@ -0,0 +1,132 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.kafka.retryconsumer.client.AsyncPocRestClient;
+import com.kafka.retryconsumer.client.HttpClientConfig;
+import com.kafka.retryconsumer.client.HttpClientProperties;
+import com.kafka.retryconsumer.processing.AsyncDispatcher;
+import com.kafka.retryconsumer.processing.AsyncProperties;
+import com.kafka.retryconsumer.processing.OrderedWorkerPool;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second through the downstream call with injected latency: the blocking {@code RestTemplate} path on
+ * 8 worker lanes, as {@code PartitionedConsumer} runs it, versus the non-blocking {@link AsyncPocRestClient} driven
+ * from the calling thread alone with 8 requests in flight per partition. Both go through a circuit breaker and retry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class AsyncHttpClientBenchmark {
+
+    private static final int PARTITIONS = 8;
+    private static final int RECORDS = 400;
+
+    @Param({"50", "200"})
+    int latencyMs;
+
+    private WireMockServer wireMock;
+    private CloseableHttpClient pooledHttpClient;
+    private RestTemplate pooledRestTemplate;
+    private AsyncPocRestClient asyncPocRestClient;
+    private OrderedWorkerPool workers;
+    private CircuitBreaker circuitBreaker;
+    private Retry retry;
+    private ConsumerRecord<String, String>[] records;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        wireMock = new WireMockServer(WireMockConfiguration.options()
+                .dynamicPort()
+                .containerThreads(PARTITIONS * 8 + 16)
+                .disableRequestJournal()
+                .usingFilesUnderDirectory(System.getProperty("wiremock.root", "..")));
+        wireMock.start();
+        wireMock.setGlobalFixedDelay(latencyMs);
+
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setBaseUrl("http://localhost:" + wireMock.port());
+        HttpClientConfig config = new HttpClientConfig();
+        pooledHttpClient = config.pooledHttpClient(properties);
+        pooledRestTemplate = config.pocRestTemplate(pooledHttpClient, properties);
+        asyncPocRestClient = new AsyncPocRestClient(properties, new SimpleMeterRegistry());
+        workers = new OrderedWorkerPool("benchmark", 8);
+        circuitBreaker = CircuitBreaker.ofDefaults("benchmark");
+        retry = Retry.ofDefaults("benchmark");
+
+        records = new ConsumerRecord[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = new ConsumerRecord<>("retry_topic_1", i % PARTITIONS, i / PARTITIONS, "key-" + i, "message-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        workers.shutdown(Duration.ofSeconds(5));
+        asyncPocRestClient.close();
+        pooledHttpClient.close();
+        wireMock.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void blockingWorkerLanes() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(RECORDS);
+        for (ConsumerRecord<String, String> record : records) {
+            workers.submit(new TopicPartition(record.topic(), record.partition()), () -> {
+                try {
+                    circuitBreaker.executeRunnable(Retry.decorateRunnable(retry, () -> pooledRestTemplate
+                            .getForObject("/sample/hello?message={message}", String.class, record.value())));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void asyncSingleThread() throws InterruptedException {
+        AsyncProperties properties = new AsyncProperties();
+        properties.setEnabled(true);
+        properties.setMaxInFlightPerPartition(8);
+        AsyncDispatcher dispatcher = new AsyncDispatcher(properties,
+                record -> asyncPocRestClient.restClient(record.value(), circuitBreaker, retry));
+        CountDownLatch done = new CountDownLatch(RECORDS);
+        for (ConsumerRecord<String, String> record : records) {
+            dispatcher.submit(new TopicPartition(record.topic(), record.partition()), record, 0,
+                    (partition, completed, attempt, failure) -> done.countDown());
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,107 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.kafka.retryconsumer.processing.HashedTimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A batch of records where every 50th fails once and needs a 1ms back-off: sleeping on the processing thread, as the
+ * back-off policy of the removed Spring Retry template did, versus parking the failures on a
+ * {@link HashedTimerWheel} and processing them when due. The second group measures scheduling on a wheel that already
+ * holds tens of thousands of timers.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelayedRetryBenchmark {
+
+    private static final int BATCH = 1_000;
+    private static final int FAIL_EVERY = 50;
+    private static final Duration BACK_OFF = Duration.ofMillis(1);
+    private static final long WORK_TOKENS = 200;
+
+    @State(Scope.Thread)
+    public static class Batch {
+        HashedTimerWheel<Integer> wheel;
+
+        @Setup
+        public void setUp() {
+            wheel = new HashedTimerWheel<>(Duration.ofNanos(100_000), 512, System.nanoTime());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PendingTimers {
+        @Param({"1000", "10000", "50000"})
+        int pending;
+        HashedTimerWheel<Integer> wheel;
+        SplittableRandom random;
+        long now;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            now = System.nanoTime();
+            random = new SplittableRandom(42);
+            wheel = new HashedTimerWheel<>(Duration.ofMillis(100), 512, now);
+            for (int i = 0; i < pending; i++) {
+                wheel.schedule(i, now + random.nextLong(TimeUnit.MINUTES.toNanos(5)));
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void sleepingBackOff(Batch batch) throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            Blackhole.consumeCPU(WORK_TOKENS);
+            if (i % FAIL_EVERY == 0) {
+                Thread.sleep(BACK_OFF.toMillis());
+                Blackhole.consumeCPU(WORK_TOKENS);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void timerWheelBackOff(Batch batch) {
+        HashedTimerWheel<Integer> wheel = batch.wheel;
+        for (int i = 0; i < BATCH; i++) {
+            Blackhole.consumeCPU(WORK_TOKENS);
+            if (i % FAIL_EVERY == 0) {
+                wheel.schedule(i, System.nanoTime() + BACK_OFF.toNanos());
+            }
+            // the poll loop expires due timers between batches of work
+            wheel.expire(System.nanoTime(), record -> Blackhole.consumeCPU(WORK_TOKENS));
+        }
+        while (!wheel.isEmpty()) {
+            LockSupport.parkNanos(Math.max(0, wheel.nanosToNextTick(System.nanoTime())));
+            wheel.expire(System.nanoTime(), record -> Blackhole.consumeCPU(WORK_TOKENS));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean scheduleAndCancel(PendingTimers timers) {
+        long deadline = timers.now + timers.random.nextLong(TimeUnit.MINUTES.toNanos(5));
+        return timers.wheel.schedule(-1, deadline).cancel();
+    }
+}
@@ -0,0 +1,76 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.kafka.retryconsumer.client.HttpClientConfig;
+import com.kafka.retryconsumer.client.HttpClientProperties;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A new {@link RestTemplate} per call, as {@code PocRestClient} did, versus the shared pooled client from
+ * {@link HttpClientConfig}. Both call the WireMock stand-in defined by {@code mappings/GET_API.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class HttpClientBenchmark {
+
+    private WireMockServer wireMock;
+    private String serviceUrl;
+    private CloseableHttpClient pooledHttpClient;
+    private RestTemplate pooledRestTemplate;
+
+    @Setup
+    public void setUp() {
+        wireMock = new WireMockServer(WireMockConfiguration.options()
+                .dynamicPort()
+                .containerThreads(32)
+                .disableRequestJournal()
+                .usingFilesUnderDirectory(System.getProperty("wiremock.root", "..")));
+        wireMock.start();
+        serviceUrl = "http://localhost:" + wireMock.port() + "/sample/hello?message=";
+
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setBaseUrl("http://localhost:" + wireMock.port());
+        HttpClientConfig config = new HttpClientConfig();
+        pooledHttpClient = config.pooledHttpClient(properties);
+        pooledRestTemplate = config.pocRestTemplate(pooledHttpClient, properties);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pooledHttpClient.close();
+        wireMock.stop();
+    }
+
+    @Benchmark
+    public String restTemplatePerCall() {
+        RestTemplate restTemplate = new RestTemplate();
+        return restTemplate.getForObject(serviceUrl + "benchmark", String.class);
+    }
+
+    @Benchmark
+    public String pooledRestTemplate() {
+        return pooledRestTemplate.getForObject("/sample/hello?message={message}", String.class, "benchmark");
+    }
+}
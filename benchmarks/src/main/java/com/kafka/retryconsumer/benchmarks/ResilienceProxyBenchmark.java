@@ -0,0 +1,165 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.client.PocRestClient;
+import com.kafka.retryconsumer.faulttolerance.ResiliencePipeline;
+import com.kafka.retryconsumer.faulttolerance.config.BulkheadInstances;
+import com.kafka.retryconsumer.faulttolerance.config.CircuitBreakerInstances;
+import com.kafka.retryconsumer.faulttolerance.config.HedgingInstances;
+import com.kafka.retryconsumer.faulttolerance.config.ResiliencePipelines;
+import com.kafka.retryconsumer.faulttolerance.config.RetryInstances;
+import com.kafka.retryconsumer.faulttolerance.config.TimeLimiterInstances;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.bulkhead.autoconfigure.BulkheadAutoConfiguration;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.autoconfigure.CircuitBreakerAutoConfiguration;
+import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.retry.autoconfigure.RetryAutoConfiguration;
+import io.github.resilience4j.timelimiter.autoconfigure.TimeLimiterAutoConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the {@code @Bulkhead}/{@code @CircuitBreaker}/{@code @Retry} annotations, resolved by the resilience4j
+ * aspects on every call with the instance name taken from the topic argument, as {@link PocRestClient} had them,
+ * versus the {@link ResiliencePipeline} of the topic decorated once at startup, with and without a time limiter, and
+ * the bare call as baseline. The {@link RestTemplate} returns at once, so only the resilience layer is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResilienceProxyBenchmark {
+
+    private static final String TOPIC = "retry_topic_1";
+    private static final String TIME_LIMITED_TOPIC = "retry_topic_2";
+    private static final String PATH = "/sample/hello?message={message}";
+
+    private ConfigurableApplicationContext applicationContext;
+    private AnnotatedClient annotatedClient;
+    private PocRestClient pipelineClient;
+    private PocRestClient plainClient;
+    private Exchange exchange;
+
+    /**
+     * The annotations {@link PocRestClient} had, in front of the same call.
+     */
+    public static class AnnotatedClient {
+
+        private final PocRestClient pocRestClient;
+
+        public AnnotatedClient(PocRestClient pocRestClient) {
+            this.pocRestClient = pocRestClient;
+        }
+
+        @Bulkhead(name = "#topic")
+        @CircuitBreaker(name = "#topic")
+        @Retry(name = "#topic")
+        public void restClient(String topic, Exchange exchange) {
+            pocRestClient.internalRestClient(PATH, exchange);
+        }
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({AopAutoConfiguration.class, CircuitBreakerAutoConfiguration.class,
+            RetryAutoConfiguration.class, BulkheadAutoConfiguration.class, TimeLimiterAutoConfiguration.class})
+    @Import({CircuitBreakerInstances.class, RetryInstances.class, BulkheadInstances.class, TimeLimiterInstances.class,
+            HedgingInstances.class, ResiliencePipelines.class, PocRestClient.class})
+    static class ProxyConfig {
+
+        @Bean
+        public RestTemplate pocRestTemplate() {
+            return new RestTemplate() {
+                @Override
+                public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+                    return null;
+                }
+            };
+        }
+
+        @Bean
+        public RetryBudget retryBudget() {
+            // every call succeeds, no retry ever asks the budget
+            return RetryBudget.unlimited();
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public AnnotatedClient annotatedClient(RestTemplate pocRestTemplate) {
+            return new AnnotatedClient(new PocRestClient(pocRestTemplate, new RouteProperties()));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        applicationContext = new SpringApplicationBuilder(ProxyConfig.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("retry-consumer.routes.topics.[" + TOPIC + "].path=" + PATH,
+                        "retry-consumer.routes.topics.[" + TIME_LIMITED_TOPIC + "].path=" + PATH,
+                        "retry-consumer.routes.topics.[" + TIME_LIMITED_TOPIC + "].time-limiter.timeout=1s")
+                .run();
+        annotatedClient = applicationContext.getBean(AnnotatedClient.class);
+        pipelineClient = applicationContext.getBean(PocRestClient.class);
+        plainClient = new PocRestClient(applicationContext.getBean(RestTemplate.class), new RouteProperties());
+        exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setBody("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public void plainCall() {
+        plainClient.internalRestClient(PATH, exchange);
+    }
+
+    @Benchmark
+    public void annotatedProxy() {
+        annotatedClient.restClient(TOPIC, exchange);
+    }
+
+    @Benchmark
+    public void precompiledPipeline() {
+        pipelineClient.restClient(TOPIC, exchange);
+    }
+
+    @Benchmark
+    public void timeLimitedPipeline() {
+        pipelineClient.restClient(TIME_LIMITED_TOPIC, exchange);
+    }
+}
@@ -0,0 +1,82 @@
+package com.kafka.retryconsumer.benchmarks;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.faulttolerance.config.CircuitBreakerInstances;
+import com.kafka.retryconsumer.faulttolerance.config.RetryInstances;
+import com.kafka.retryconsumer.processing.DelayedRetryProperties;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalBiFunction;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.vavr.control.Either;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The retry interval function of {@link RetryInstances}, which reads the circuit breaker state, versus the function it
+ * replaced, which called {@code tryAcquirePermission} on the breaker before every back-off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetryIntervalBenchmark {
+
+    @Param({"CLOSED", "OPEN"})
+    CircuitBreaker.State state;
+
+    private IntervalBiFunction<Object> stateInterval;
+    private IntervalBiFunction<Object> tryAcquirePermissionInterval;
+    private Either<Throwable, Object> failure;
+
+    @Setup
+    public void setUp() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("benchmark");
+        if (state == CircuitBreaker.State.OPEN) {
+            circuitBreaker.transitionToOpenState();
+        }
+        RouteProperties routeProperties = new RouteProperties();
+        RetryInstances retryInstances = new RetryInstances(RetryRegistry.ofDefaults(),
+                new CircuitBreakerInstances(CircuitBreakerRegistry.ofDefaults(), routeProperties), routeProperties,
+                new DelayedRetryProperties(), RetryBudget.unlimited());
+        stateInterval = retryInstances.defaultRetryConfig(circuitBreaker, new RouteProperties.RetryPolicy())
+                .getIntervalBiFunction();
+        tryAcquirePermissionInterval = (attempt, objects) -> {
+            long duration = Duration.ofSeconds(1).toMillis();
+            long cbDuration = Optional.of(circuitBreaker)
+                    .filter(cb -> !cb.tryAcquirePermission())
+                    .map(cb -> cb.getCircuitBreakerConfig()
+                            .getWaitIntervalFunctionInOpenState().apply(attempt) + 1000L)
+                    .orElse(0L);
+            return Math.max(duration, cbDuration);
+        };
+        failure = Either.left(new ResourceAccessException("benchmark"));
+    }
+
+    @Benchmark
+    public long stateInterval() {
+        return stateInterval.apply(2, failure);
+    }
+
+    @Benchmark
+    public long tryAcquirePermissionInterval() {
+        return tryAcquirePermissionInterval.apply(2, failure);
+    }
+}
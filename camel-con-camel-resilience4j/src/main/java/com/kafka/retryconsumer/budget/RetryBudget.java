@@ -0,0 +1,124 @@
+package com.kafka.retryconsumer.budget;
+
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import com.kafka.retryconsumer.warmup.WarmUp;
+import org.apache.camel.Exchange;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket shared by the retry tier routes of all topics, so that retries across topics and partitions cannot
+ * multiply the load on a downstream that is already failing. Each successful first attempt deposits
+ * {@link RetryBudgetProperties#getPercent() percent} of a token and the bucket refills at
+ * {@link RetryBudgetProperties#getMinRetriesPerSecond() a minimum rate}; each tier record takes a whole token. A tier
+ * record over budget is not sent, its tier consumer holds it back until the budget allows it, and it is counted as
+ * refused only the first time.
+ * <p>
+ * Tokens are kept in thousandths in one atomic, a deposit on the hot path is a single update.
+ */
+public class RetryBudget {
+
+  /**
+   * Exchange property of a tier record exchange whose record was refused before, so that it is not counted again.
+   */
+  public static final String HELD_BACK = "retryBudgetHeldBack";
+
+  private static final long TOKEN = 1000;
+
+  private final boolean enabled;
+  private final long deposit;
+  private final double refillPerNano;
+  private final long maxTokens;
+  private final AtomicLong tokens;
+  private final AtomicLong lastRefill;
+  private final LongAdder exhausted = new LongAdder();
+
+  public RetryBudget(RetryBudgetProperties properties) {
+    this.enabled = properties.isEnabled();
+    this.deposit = Math.round(properties.getPercent() * TOKEN / 100);
+    this.refillPerNano = properties.getMinRetriesPerSecond() * TOKEN / 1e9;
+    this.maxTokens = properties.getMaxTokens() * TOKEN;
+    // a second's worth of retries to start with
+    this.tokens = new AtomicLong(Math.min(maxTokens, Math.round(properties.getMinRetriesPerSecond() * TOKEN)));
+    this.lastRefill = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * A first attempt succeeded.
+   */
+  public void deposit() {
+    if (enabled) {
+      add(deposit);
+    }
+  }
+
+  /**
+   * Deposits for a record exchange that succeeded, if it did not come from a retry tier or the warm-up.
+   */
+  public void succeeded(Exchange exchange) {
+    if (exchange.getIn().getHeader(RetryTopics.ATTEMPT) == null && exchange.getIn().getHeader(WarmUp.HEADER) == null) {
+      deposit();
+    }
+  }
+
+  /**
+   * Takes a token for the retry of a tier record exchange, or fails it with a {@link RetryBudgetExhaustedException};
+   * other exchanges pass.
+   */
+  public void acquire(Exchange exchange) {
+    if (exchange.getIn().getHeader(RetryTopics.ATTEMPT) == null) {
+      return;
+    }
+    if (!tryAcquire(!exchange.getProperty(HELD_BACK, false, Boolean.class))) {
+      throw new RetryBudgetExhaustedException("Retry budget exhausted");
+    }
+  }
+
+  public boolean tryAcquire() {
+    return tryAcquire(true);
+  }
+
+  private boolean tryAcquire(boolean countRefusal) {
+    if (!enabled) {
+      return true;
+    }
+    refill();
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN) {
+        if (countRefusal) {
+          exhausted.increment();
+        }
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+
+  public double getTokens() {
+    return (double) tokens.get() / TOKEN;
+  }
+
+  /**
+   * Retries refused so far.
+   */
+  public long getExhausted() {
+    return exhausted.sum();
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    long last = lastRefill.get();
+    long refill = (long) ((now - last) * refillPerNano);
+    // below a thousandth of a token the time is left to accumulate
+    if (refill > 0 && lastRefill.compareAndSet(last, now)) {
+      add(refill);
+    }
+  }
+
+  private void add(long amount) {
+    tokens.accumulateAndGet(amount, (current, added) -> Math.min(maxTokens, current + added));
+  }
+}
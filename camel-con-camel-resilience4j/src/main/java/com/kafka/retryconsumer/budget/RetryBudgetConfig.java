@@ -0,0 +1,30 @@
+package com.kafka.retryconsumer.budget;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The retry budget of the process, its tokens published as the {@code retry.budget.tokens} gauge and the tier records
+ * it refused as {@code retry.budget.exhausted}, tagged like the stages of the sb2 consumer.
+ */
+@Configuration
+@EnableConfigurationProperties(RetryBudgetProperties.class)
+public class RetryBudgetConfig {
+
+  @Bean
+  public RetryBudget retryBudget(RetryBudgetProperties properties, MeterRegistry meterRegistry) {
+    RetryBudget retryBudget = new RetryBudget(properties);
+    Gauge.builder("retry.budget.tokens", retryBudget, RetryBudget::getTokens)
+        .description("Retries the budget allows right now")
+        .register(meterRegistry);
+    FunctionCounter.builder("retry.budget.exhausted", retryBudget, RetryBudget::getExhausted)
+        .description("Retries not made because the retry budget was exhausted")
+        .tag("stage", "tier")
+        .register(meterRegistry);
+    return retryBudget;
+  }
+}
@@ -0,0 +1,12 @@
+package com.kafka.retryconsumer.budget;
+
+/**
+ * No token of the {@link RetryBudget} for a tier record. Thrown before the circuit breaker, which does not count it,
+ * and not handled by the routes: the tier consumer holds the record back.
+ */
+public class RetryBudgetExhaustedException extends RuntimeException {
+
+  public RetryBudgetExhaustedException(String message) {
+    super(message);
+  }
+}
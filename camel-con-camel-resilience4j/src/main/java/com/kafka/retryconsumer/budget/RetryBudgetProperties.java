@@ -0,0 +1,30 @@
+package com.kafka.retryconsumer.budget;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.retry-budget")
+public class RetryBudgetProperties {
+
+  /**
+   * Cap the retries of all topics of the process by the first attempts that succeed.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Retries allowed per 100 successful first attempts.
+   */
+  private double percent = 20;
+
+  /**
+   * Retries allowed per second whatever succeeds, so that a topic without any success can still probe a recovering
+   * downstream.
+   */
+  private double minRetriesPerSecond = 5;
+
+  /**
+   * Retries that can be saved up, the largest burst of retries after a quiet period.
+   */
+  private int maxTokens = 100;
+}
@@ -0,0 +1,17 @@
+package com.kafka.retryconsumer.bulk;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One message of a request to the batch endpoint of the sample service.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItem {
+
+  private String id;
+  private String message;
+}
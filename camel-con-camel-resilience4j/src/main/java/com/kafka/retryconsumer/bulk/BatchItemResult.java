@@ -0,0 +1,18 @@
+package com.kafka.retryconsumer.bulk;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one {@link BatchItem}; {@code message} holds the response on success and the error otherwise.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+
+  private String id;
+  private boolean success;
+  private String message;
+}
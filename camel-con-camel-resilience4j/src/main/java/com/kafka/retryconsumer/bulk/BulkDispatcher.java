@@ -0,0 +1,154 @@
+package com.kafka.retryconsumer.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.commit.ManualCommitProcessor;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.AggregationStrategy;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the records of a partition into one call to the batch endpoint and settles every record on its own
+ * afterwards: succeeded records are committed, remembered as processed and fund the {@link RetryBudget}, failed ones go
+ * to the retry tiers like a failed single call. Records processed before are left out of the request and committed
+ * with the others.
+ * <p>
+ * Batches complete on size or with the last record of the partition in a poll, so the aggregated exchange runs on the
+ * kafka poll thread that owns the offsets. Only a batch left incomplete completes on the aggregator's timeout thread;
+ * the {@link ManualCommitProcessor} hands its offsets over to the poll thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(BulkProperties.class)
+public class BulkDispatcher implements AggregationStrategy {
+
+  /**
+   * Exchange property of the aggregated exchange holding a copy of every record exchange.
+   */
+  public static final String RECORDS = "bulkRecords";
+
+  /**
+   * Exchange property of a record exchange processed before.
+   */
+  public static final String PROCESSED = "bulkProcessed";
+
+  /**
+   * Exchange property of the aggregated exchange with the number of records sent.
+   */
+  public static final String ITEMS = "bulkItems";
+
+  private final ObjectMapper objectMapper;
+  private final ProducerTemplate producerTemplate;
+  private final ManualCommitProcessor manualCommitProcessor;
+  private final ProcessedRecords processedRecords;
+  private final RetryBudget retryBudget;
+
+  @Override
+  public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+    Exchange record = newExchange.copy();
+    if (processedRecords.processed(record)) {
+      record.setProperty(PROCESSED, true);
+      processedRecords.skipped();
+    }
+    Exchange batch = oldExchange == null ? newExchange : oldExchange;
+    if (oldExchange == null) {
+      batch.setProperty(RECORDS, new ArrayList<Exchange>());
+    }
+    records(batch).add(record);
+    return batch;
+  }
+
+  /**
+   * Replaces the aggregated exchange's message with the JSON request of its records.
+   */
+  public void request(Exchange batch) throws JsonProcessingException {
+    List<Exchange> records = records(batch);
+    List<BatchItem> items = new ArrayList<>(records.size());
+    for (int i = 0; i < records.size(); i++) {
+      if (!processed(records.get(i))) {
+        items.add(new BatchItem(String.valueOf(i), records.get(i).getIn().getBody(String.class)));
+      }
+    }
+    batch.setProperty(ITEMS, items.size());
+    batch.getIn().removeHeaders("*");
+    batch.getIn().setHeader(Exchange.CONTENT_TYPE, "application/json");
+    batch.getIn().setBody(objectMapper.writeValueAsString(items));
+  }
+
+  public boolean hasItems(Exchange batch) {
+    return batch.getProperty(ITEMS, 0, Integer.class) > 0;
+  }
+
+  public void complete(Exchange batch) throws Exception {
+    BatchItemResult[] results = objectMapper.readValue(batch.getMessage().getBody(String.class),
+        BatchItemResult[].class);
+    Map<String, BatchItemResult> byId = new HashMap<>();
+    for (BatchItemResult result : results) {
+      byId.put(result.getId(), result);
+    }
+    List<Exchange> records = records(batch);
+    int failed = 0;
+    for (int i = 0; i < records.size(); i++) {
+      BatchItemResult result = byId.get(String.valueOf(i));
+      if (processed(records.get(i))) {
+        manualCommitProcessor.process(records.get(i));
+      } else if (result != null && result.isSuccess()) {
+        processedRecords.add(processedRecords.key(records.get(i)));
+        retryBudget.deposit();
+        manualCommitProcessor.process(records.get(i));
+      } else {
+        failed++;
+        retry(records.get(i), new BatchItemFailedException(result == null ? "no result" : result.getMessage()));
+      }
+    }
+    log.info("Batch of {} records sent, {} failed, {} processed before", batch.getProperty(ITEMS), failed,
+        records.size() - batch.getProperty(ITEMS, Integer.class));
+  }
+
+  /**
+   * Sends every record of a batch whose call failed to the retry tiers, the records processed before are committed.
+   */
+  public void failAll(Exchange batch) {
+    Exception exception = batch.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+    log.info("Batch call failed: {}", String.valueOf(exception));
+    for (Exchange record : records(batch)) {
+      if (processed(record)) {
+        manualCommitProcessor.process(record);
+      } else {
+        retry(record, exception);
+      }
+    }
+  }
+
+  private void retry(Exchange record, Exception exception) {
+    record.setProperty(Exchange.EXCEPTION_CAUGHT, exception);
+    Exchange sent = producerTemplate.send(RetryTopics.ENDPOINT, record);
+    if (sent.getException() != null) {
+      log.error("Could not hand offset {} over to the retry tiers", record.getIn().getHeader(KafkaConstants.OFFSET),
+          sent.getException());
+    }
+  }
+
+  private static boolean processed(Exchange record) {
+    return record.getProperty(PROCESSED, false, Boolean.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Exchange> records(Exchange batch) {
+    return batch.getProperty(RECORDS, List.class);
+  }
+}
@@ -0,0 +1,27 @@
+package com.kafka.retryconsumer.bulk;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.bulk")
+public class BulkProperties {
+
+  /**
+   * Opt-in: one call to the batch endpoint per partition and poll instead of one call per record.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Records per bulk call; smaller batches are sent with the last record of a partition in a poll.
+   */
+  private int maxSize = 50;
+
+  /**
+   * How long a batch whose poll never delivered its last record, e.g. because the consumer stopped mid-poll, waits
+   * before it is sent anyway.
+   */
+  private Duration completionTimeout = Duration.ofSeconds(5);
+}
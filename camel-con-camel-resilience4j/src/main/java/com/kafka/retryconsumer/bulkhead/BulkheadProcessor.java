@@ -0,0 +1,68 @@
+package com.kafka.retryconsumer.bulkhead;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import lombok.RequiredArgsConstructor;
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.Processor;
+import org.apache.camel.support.SynchronizationAdapter;
+
+/**
+ * Takes a permit of the bulkhead of a topic for the exchange, to be returned by {@link #release} right after the call.
+ * A full bulkhead throws {@link io.github.resilience4j.bulkhead.BulkheadFullException} before the circuit breaker,
+ * which does not count it; the record goes to the retry tiers. An exchange that never reaches {@link #release} returns
+ * its permit when it is done. Disabled, exchanges pass untouched.
+ * <p>
+ * The bulkhead of the circuitBreaker() EIP is no use here: Camel 3.1 builds a new one for every exchange.
+ */
+@RequiredArgsConstructor
+public class BulkheadProcessor implements Processor {
+
+  /**
+   * Exchange property of the bulkhead whose permit the exchange holds, until it is returned.
+   */
+  public static final String PERMIT = "bulkheadPermit";
+
+  private final Bulkhead bulkhead;
+  private final boolean enabled;
+
+  public static BulkheadProcessor of(String name, RouteProperties.BulkheadPolicy policy) {
+    return new BulkheadProcessor(Bulkhead.of(name, BulkheadConfig.custom()
+        .maxConcurrentCalls(policy.getMaxConcurrentCalls())
+        .maxWaitDuration(policy.getMaxWait())
+        .writableStackTraceEnabled(false)
+        .build()), policy.isEnabled());
+  }
+
+  public Bulkhead getBulkhead() {
+    return bulkhead;
+  }
+
+  @Override
+  public void process(Exchange exchange) {
+    if (!enabled) {
+      return;
+    }
+    bulkhead.acquirePermission();
+    exchange.setProperty(PERMIT, bulkhead);
+    exchange.adapt(ExtendedExchange.class).addOnCompletion(new SynchronizationAdapter() {
+      @Override
+      public void onDone(Exchange exchange) {
+        release(exchange);
+      }
+    });
+  }
+
+  /**
+   * Returns the permit the exchange holds, if any, so that it does not cover what the route does after the call, e.g.
+   * writing the record to a retry tier.
+   */
+  public static void release(Exchange exchange) {
+    Bulkhead bulkhead = (Bulkhead) exchange.removeProperty(PERMIT);
+    if (bulkhead != null) {
+      bulkhead.onComplete();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.kafka.retryconsumer.circuitbreaker;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Route;
+import org.apache.camel.support.RoutePolicySupport;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stops the kafka: consumers of its routes while the circuit breaker is open and starts them again once it is half
+ * open, so records stay on the broker instead of failing fast into the retry tiers.
+ * <p>
+ * The Camel 3.1 kafka consumer cannot be suspended and its poll thread offers no hook to pause partitions, so the
+ * consumer is stopped and started, which costs a rebalance. Transitions are handled on a thread of the policy: the
+ * breaker usually opens on the poll thread, which must not wait for its own consumer to stop.
+ */
+@Slf4j
+public class CircuitBreakerRoutePolicy extends RoutePolicySupport {
+
+  private final CircuitBreaker circuitBreaker;
+  private final List<Route> routes = new CopyOnWriteArrayList<>();
+  private ExecutorService executor;
+
+  public CircuitBreakerRoutePolicy(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+    circuitBreaker.getEventPublisher().onStateTransition(event -> onState(event.getStateTransition().getToState()));
+  }
+
+  @Override
+  public void onInit(Route route) {
+    super.onInit(route);
+    routes.add(route);
+  }
+
+  @Override
+  public void onRemove(Route route) {
+    routes.remove(route);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+    executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, circuitBreaker.getName() + "-policy"));
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdownNow();
+    super.doStop();
+  }
+
+  private void onState(CircuitBreaker.State state) {
+    if (!isRunAllowed() || executor == null) {
+      return;
+    }
+    boolean stop = state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+    executor.execute(() -> routes.forEach(route -> {
+      try {
+        if (stop) {
+          log.info("{} circuit breaker {}, stopping consumer of route {}", circuitBreaker.getName(), state,
+              route.getId());
+          stopConsumer(route.getConsumer());
+        } else {
+          log.info("{} circuit breaker {}, starting consumer of route {}", circuitBreaker.getName(), state,
+              route.getId());
+          startConsumer(route.getConsumer());
+        }
+      } catch (Exception e) {
+        handleException(e);
+      }
+    }));
+  }
+}
@@ -0,0 +1,69 @@
+package com.kafka.retryconsumer.circuitbreaker;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One circuit breaker per topic of {@link RouteProperties}, named after the topic, shared by the circuitBreaker() EIP
+ * ({@code circuitBreakerRef}, see {@link #ref}) and the {@link CircuitBreakerRoutePolicy} of the topic's consuming
+ * routes, so that both see the same state.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
+public class CircuitBreakers {
+
+  private final Map<String, CircuitBreaker> circuitBreakers = new LinkedHashMap<>();
+  private final Map<String, CircuitBreakerRoutePolicy> routePolicies = new LinkedHashMap<>();
+
+  public CircuitBreakers(RouteProperties properties) {
+    properties.getTopics().forEach((topic, route) -> {
+      CircuitBreaker circuitBreaker = circuitBreaker(topic, route.getCircuitBreaker());
+      circuitBreakers.put(topic, circuitBreaker);
+      routePolicies.put(topic, new CircuitBreakerRoutePolicy(circuitBreaker));
+    });
+  }
+
+  public static CircuitBreaker circuitBreaker(String name, RouteProperties.CircuitBreakerPolicy policy) {
+    CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+        .failureRateThreshold(policy.getFailureRateThreshold())
+        .slidingWindowSize(policy.getSlidingWindowSize())
+        .minimumNumberOfCalls(policy.getMinimumNumberOfCalls())
+        .writableStackTraceEnabled(false)
+        .waitDurationInOpenState(policy.getWaitDurationInOpenState())
+        // the kafka: consumers are stopped while open, no call would move the breaker to half open
+        .automaticTransitionFromOpenToHalfOpenEnabled(true)
+        .build();
+    CircuitBreaker circuitBreaker = CircuitBreaker.of(name, config);
+    circuitBreaker.getEventPublisher().onStateTransition(event ->
+        log.info("{} circuit breaker: {}", event.getCircuitBreakerName(), event.getStateTransition()));
+    return circuitBreaker;
+  }
+
+  /**
+   * Name the circuit breaker of {@code topic} is bound under in the Camel registry.
+   */
+  public static String ref(String topic) {
+    return topic + "-circuit-breaker";
+  }
+
+  public CircuitBreaker forTopic(String topic) {
+    return circuitBreakers.get(topic);
+  }
+
+  public CircuitBreakerRoutePolicy routePolicy(String topic) {
+    return routePolicies.get(topic);
+  }
+
+  public Collection<CircuitBreaker> all() {
+    return circuitBreakers.values();
+  }
+}
@@ -0,0 +1,174 @@
+package com.kafka.retryconsumer.commit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.DefaultKafkaManualCommit;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Replaces the per-batch {@code KafkaManualCommit.commitSync()} of the kafka: consumer. Every processed record stages
+ * its offset with the {@link OffsetCommitCoordinator} of the consumer it came from, which commits asynchronously on a
+ * size or time trigger.
+ * <p>
+ * Runs on the Camel kafka poll thread. Camel 3.1 keeps its own rebalance listener to itself, so the first record of a
+ * consumer re-subscribes it to the same topics with a listener that flushes synchronously on revoke. Camel's listener
+ * only maintains the offset repository, which is not used with manual commits. Camel unsubscribes on shutdown, so the
+ * same listener also covers the final flush. Records are processed on the poll thread, so a revoke never finds any in
+ * flight, and with the cooperative assignor only the partitions that move are revoked. A consumer stopped and started
+ * again by a route policy comes back as a new {@link KafkaConsumer} on a new poll thread; coordinators of dead poll
+ * threads are dropped when a new one registers. The Kafka client metrics of each registered consumer, lag included, are
+ * bound to the meter registry for as long as its registration lives.
+ * <p>
+ * Records alone would only trigger a flush when the next one comes, so the consumers of a {@link PollHookKafkaEndpoint}
+ * also call {@link #flushIfDue()} before every poll: the interval holds while a consumer sits idle.
+ * <p>
+ * A record can also complete on another thread, e.g. in a batch completed by the aggregator's timeout. Its offset is
+ * then queued and staged by the poll thread with the next record or poll, unless the partition moved in the meantime.
+ * Such a consumer must be registered on its poll thread before, see {@link #register(Exchange)}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(CommitProperties.class)
+public class ManualCommitProcessor implements Processor {
+
+  private final CommitProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Map<KafkaConsumer<?, ?>, Registration> registrations = new ConcurrentHashMap<>();
+  // the registration of the consumer last registered on the calling poll thread
+  private final ThreadLocal<Registration> pollThreadRegistration = new ThreadLocal<>();
+
+  @Override
+  public void process(Exchange exchange) {
+    DefaultKafkaManualCommit record = manualCommit(exchange);
+    if (record == null) {
+      return;
+    }
+    Registration registration = registrations.get(record.getConsumer());
+    if (registration != null && registration.pollThread != Thread.currentThread()) {
+      registration.completedElsewhere.add(record);
+      return;
+    }
+    if (registration == null) {
+      registration = register(record);
+    }
+    registration.stageCompletedElsewhere();
+    registration.stage(record);
+    registration.coordinator.maybeFlush();
+  }
+
+  /**
+   * Registers the consumer of a record exchange unless it is already; must run on its poll thread.
+   */
+  public void register(Exchange exchange) {
+    DefaultKafkaManualCommit record = manualCommit(exchange);
+    if (record != null && !registrations.containsKey(record.getConsumer())) {
+      register(record);
+    }
+  }
+
+  /**
+   * Flushes the offsets staged on the calling poll thread once the size or time trigger is due, does nothing on any
+   * other thread. Never throws, a failed flush is retried with the next one.
+   */
+  public void flushIfDue() {
+    Registration registration = pollThreadRegistration.get();
+    if (registration == null) {
+      return;
+    }
+    try {
+      registration.stageCompletedElsewhere();
+      registration.coordinator.maybeFlush();
+    } catch (RuntimeException e) {
+      log.warn("Could not flush offsets ({})", registration.coordinator.getStats(), e);
+    }
+  }
+
+  private static DefaultKafkaManualCommit manualCommit(Exchange exchange) {
+    Object manual = exchange.getIn().getHeader(KafkaConstants.MANUAL_COMMIT);
+    return manual instanceof DefaultKafkaManualCommit ? (DefaultKafkaManualCommit) manual : null;
+  }
+
+  private Registration register(DefaultKafkaManualCommit record) {
+    registrations.values().removeIf(Registration::closeIfStale);
+    KafkaClientMetrics clientMetrics = new KafkaClientMetrics(record.getConsumer());
+    clientMetrics.bindTo(meterRegistry);
+    Registration registration = new Registration(record.getConsumer(),
+        register(record.getConsumer(), record.getTopicName()), Thread.currentThread(), clientMetrics);
+    registrations.put(record.getConsumer(), registration);
+    pollThreadRegistration.set(registration);
+    return registration;
+  }
+
+  private OffsetCommitCoordinator register(KafkaConsumer<?, ?> consumer, String topicName) {
+    OffsetCommitCoordinator coordinator = new OffsetCommitCoordinator(consumer, properties, meterRegistry);
+    consumer.subscribe(Arrays.asList(topicName.split(",")), new ConsumerRebalanceListener() {
+      @Override
+      public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        log.info("Partitions revoked: {}, flushing offsets ({})", partitions, coordinator.getStats());
+        coordinator.flushSync();
+        coordinator.forget(partitions);
+      }
+
+      // already owned by another consumer, their offsets cannot be committed any more
+      @Override
+      public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        log.warn("Partitions lost: {}", partitions);
+        coordinator.forget(partitions);
+      }
+
+      @Override
+      public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        log.info("Partitions assigned: {}", partitions);
+      }
+    });
+    return coordinator;
+  }
+
+  @RequiredArgsConstructor
+  private static class Registration {
+    private final KafkaConsumer<?, ?> consumer;
+    private final OffsetCommitCoordinator coordinator;
+    private final Thread pollThread;
+    private final KafkaClientMetrics clientMetrics;
+    private final Queue<DefaultKafkaManualCommit> completedElsewhere = new ConcurrentLinkedQueue<>();
+
+    void stage(DefaultKafkaManualCommit record) {
+      coordinator.stage(record.getPartition(), new OffsetAndMetadata(record.getRecordOffset() + 1));
+    }
+
+    void stageCompletedElsewhere() {
+      DefaultKafkaManualCommit record;
+      while ((record = completedElsewhere.poll()) != null) {
+        if (consumer.assignment().contains(record.getPartition())) {
+          stage(record);
+        }
+      }
+    }
+
+    boolean closeIfStale() {
+      if (pollThread.isAlive()) {
+        return false;
+      }
+      clientMetrics.close();
+      return true;
+    }
+  }
+}
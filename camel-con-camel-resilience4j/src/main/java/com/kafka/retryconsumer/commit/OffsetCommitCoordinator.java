@@ -0,0 +1,120 @@
+package com.kafka.retryconsumer.commit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the next offset to commit per partition and commits them asynchronously in one request once enough
+ * records completed or the interval elapsed. Rebalance and shutdown flush synchronously. An offset staged after a
+ * higher one of the same partition is ignored, so the commit never goes backwards.
+ * <p>
+ * Not thread-safe: every method must be called from the poll thread that owns the consumer, which is also the thread
+ * the async commit callbacks run on.
+ */
+@Slf4j
+public class OffsetCommitCoordinator {
+
+  private final Consumer<?, ?> consumer;
+  private final CommitProperties properties;
+  private final CommitStats stats;
+  private final Map<TopicPartition, OffsetAndMetadata> pending = new HashMap<>();
+  private final Map<TopicPartition, Long> lastStaged = new HashMap<>();
+  private int pendingRecords;
+  private long lastFlushNanos = System.nanoTime();
+
+  public OffsetCommitCoordinator(Consumer<?, ?> consumer, CommitProperties properties, MeterRegistry meterRegistry) {
+    this.consumer = consumer;
+    this.properties = properties;
+    this.stats = new CommitStats(meterRegistry);
+  }
+
+  public void stage(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    offsets.forEach(this::stage);
+  }
+
+  public void stage(TopicPartition partition, OffsetAndMetadata offset) {
+    Long previous = lastStaged.get(partition);
+    if (previous != null && offset.offset() <= previous) {
+      return;
+    }
+    lastStaged.put(partition, offset.offset());
+    pendingRecords += previous == null ? 1 : (int) (offset.offset() - previous);
+    pending.put(partition, offset);
+  }
+
+  public void maybeFlush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    if (pendingRecords >= properties.getBatchSize()
+        || System.nanoTime() - lastFlushNanos >= properties.getInterval().toNanos()) {
+      flushAsync();
+    }
+  }
+
+  public void flushSync() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    int records = pendingRecords;
+    Map<TopicPartition, OffsetAndMetadata> batch = drain();
+    long start = System.nanoTime();
+    consumer.commitSync(batch);
+    completed(batch, records, start);
+  }
+
+  /**
+   * Drops the bookkeeping of partitions this consumer no longer owns; call after {@link #flushSync()}.
+   */
+  public void forget(Collection<TopicPartition> partitions) {
+    partitions.forEach(partition -> {
+      pending.remove(partition);
+      lastStaged.remove(partition);
+    });
+  }
+
+  public CommitStats getStats() {
+    return stats;
+  }
+
+  private void flushAsync() {
+    int records = pendingRecords;
+    Map<TopicPartition, OffsetAndMetadata> batch = drain();
+    long start = System.nanoTime();
+    consumer.commitAsync(batch, (offsets, exception) -> {
+      if (exception == null) {
+        completed(offsets, records, start);
+        return;
+      }
+      log.warn("Async commit of {} failed, retrying with the next flush", offsets, exception);
+      // only put back offsets that no newer stage superseded, otherwise the commit could go backwards
+      offsets.forEach((partition, offset) -> {
+        if (Long.valueOf(offset.offset()).equals(lastStaged.get(partition))) {
+          pending.putIfAbsent(partition, offset);
+        }
+      });
+    });
+  }
+
+  private Map<TopicPartition, OffsetAndMetadata> drain() {
+    Map<TopicPartition, OffsetAndMetadata> batch = new HashMap<>(pending);
+    pending.clear();
+    pendingRecords = 0;
+    lastFlushNanos = System.nanoTime();
+    return batch;
+  }
+
+  private void completed(Map<TopicPartition, OffsetAndMetadata> offsets, int records, long startNanos) {
+    long latency = System.nanoTime() - startNanos;
+    stats.record(latency, records);
+    log.debug("Committed {} records in {}ms: {}", records, TimeUnit.NANOSECONDS.toMillis(latency), offsets);
+  }
+}
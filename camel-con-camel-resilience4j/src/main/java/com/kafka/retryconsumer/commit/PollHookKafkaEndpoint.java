@@ -0,0 +1,37 @@
+package com.kafka.retryconsumer.commit;
+
+import org.apache.camel.Consumer;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConsumer;
+import org.apache.camel.component.kafka.KafkaEndpoint;
+
+/**
+ * kafka: endpoint whose consumer runs a hook on its poll thread before every poll, empty polls included, which the
+ * Camel 3.1 consumer does not offer: its fetch loop asks the consumer whether it may still run before each poll, and
+ * this consumer runs the hook first. Takes over the configuration of an endpoint the kafka component resolved from the
+ * same URI.
+ */
+public class PollHookKafkaEndpoint extends KafkaEndpoint {
+
+  private final Runnable beforePoll;
+
+  public PollHookKafkaEndpoint(KafkaEndpoint configured, Runnable beforePoll) {
+    super(configured.getEndpointUri(), configured.getComponent());
+    setCamelContext(configured.getCamelContext());
+    setConfiguration(configured.getConfiguration());
+    this.beforePoll = beforePoll;
+  }
+
+  @Override
+  public Consumer createConsumer(Processor processor) throws Exception {
+    KafkaConsumer consumer = new KafkaConsumer(this, processor) {
+      @Override
+      public boolean isRunAllowed() {
+        beforePoll.run();
+        return super.isRunAllowed();
+      }
+    };
+    configureConsumer(consumer);
+    return consumer;
+  }
+}
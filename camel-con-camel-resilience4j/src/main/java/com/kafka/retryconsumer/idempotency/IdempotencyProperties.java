@@ -0,0 +1,58 @@
+package com.kafka.retryconsumer.idempotency;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.idempotency")
+public class IdempotencyProperties {
+
+  public enum Key {
+    /**
+     * Topic, partition and offset: skips records fetched again after a rebalance or restart.
+     */
+    OFFSET,
+    /**
+     * The record key: also skips a record produced twice. Only for topics whose keys are unique per message, e.g. a
+     * message id: with a partition key, such as a customer id, every later record of the same key is skipped.
+     */
+    RECORD_KEY,
+    /**
+     * The value of {@link #header}: also skips a record produced twice.
+     */
+    HEADER
+  }
+
+  /**
+   * Skip records whose processing succeeded before instead of calling the sample service again. Off by default, it
+   * costs a lookup per record and, with {@link Key#OFFSET}, only pays off when records are fetched again.
+   */
+  private boolean enabled = false;
+
+  /**
+   * What identifies a record; records without a record key or header fall back to their offset.
+   */
+  private Key key = Key.OFFSET;
+
+  /**
+   * Record header with the business key for {@link Key#HEADER}.
+   */
+  private String header = "message-id";
+
+  /**
+   * Processed records remembered, the oldest are forgotten first.
+   */
+  private int maxSize = 100_000;
+
+  /**
+   * How long a processed record is remembered.
+   */
+  private Duration ttl = Duration.ofHours(1);
+
+  /**
+   * File keeping the processed records across restarts, none if empty.
+   */
+  private String storeFile;
+}
@@ -0,0 +1,142 @@
+package com.kafka.retryconsumer.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Message;
+import org.apache.camel.Predicate;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.ExpressionAdapter;
+import org.apache.camel.support.service.ServiceSupport;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Records whose processing succeeded before, so that records fetched again after a rebalance or a restart do not call
+ * the sample service again; only the last record of a poll commits, so a crash mid-poll replays all of it. As the
+ * repository of an idempotent consumer with {@code eager(false)} a key is only added once its exchange completed
+ * without failure; failures handled by the route's error handler count as failed too. Disabled, no record is ever
+ * found processed.
+ */
+@Component
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class ProcessedRecords extends ServiceSupport implements IdempotentRepository {
+
+  private final IdempotencyProperties properties;
+  private final ProcessedRecordCache cache;
+  private final Counter skipped;
+
+  public ProcessedRecords(IdempotencyProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.cache = properties.isEnabled() ? new ProcessedRecordCache(properties.getMaxSize(), properties.getTtl(),
+        StringUtils.hasText(properties.getStoreFile()) ? Paths.get(properties.getStoreFile()) : null) : null;
+    this.skipped = Counter.builder("idempotency.skipped")
+        .description("Records skipped because their processing succeeded before")
+        .register(meterRegistry);
+  }
+
+  /**
+   * The key of a record exchange.
+   */
+  public Expression key() {
+    return new ExpressionAdapter() {
+      @Override
+      public Object evaluate(Exchange exchange) {
+        return key(exchange);
+      }
+    };
+  }
+
+  /**
+   * Whether a record exchange was processed before, for routes settling records outside an idempotent consumer.
+   */
+  public Predicate processed() {
+    return this::processed;
+  }
+
+  public boolean processed(Exchange exchange) {
+    return cache != null && contains(key(exchange));
+  }
+
+  public String key(Exchange exchange) {
+    Message in = exchange.getIn();
+    String key = null;
+    switch (properties.getKey()) {
+      case RECORD_KEY:
+        key = in.getHeader(KafkaConstants.KEY, String.class);
+        break;
+      case HEADER:
+        key = in.getHeader(properties.getHeader(), String.class);
+        break;
+      default:
+        break;
+    }
+    return key != null ? key : in.getHeader(KafkaConstants.TOPIC) + "-" + in.getHeader(KafkaConstants.PARTITION)
+        + "@" + in.getHeader(KafkaConstants.OFFSET);
+  }
+
+  @Override
+  public boolean add(String key) {
+    return cache == null || cache.add(key);
+  }
+
+  @Override
+  public boolean contains(String key) {
+    return cache != null && cache.contains(key);
+  }
+
+  /**
+   * Counts a record exchange the idempotent consumer did not let through, once it is past it.
+   */
+  public void countSkipped(Exchange exchange) {
+    if (exchange.getProperty(Exchange.DUPLICATE_MESSAGE, false, Boolean.class)) {
+      skipped.increment();
+    }
+  }
+
+  /**
+   * Counts a record left out of a call because it was processed before.
+   */
+  public void skipped() {
+    skipped.increment();
+  }
+
+  @Override
+  public boolean remove(String key) {
+    return cache != null && cache.remove(key);
+  }
+
+  @Override
+  public boolean confirm(String key) {
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  @Override
+  protected void doStart() {
+  }
+
+  @Override
+  protected void doStop() {
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (cache != null) {
+      cache.close();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.kafka.retryconsumer.limiter;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Additive-increase/multiplicative-decrease limit on the calls in flight to one downstream service. A call taking a
+ * permit while at least half of the limit is in use raises the limit by {@code 1/limit}, about one per round trip.
+ * A failed call, or recent latency above {@link LimiterProperties#getLatencyTolerance() tolerance} times the
+ * long-term latency, multiplies it by the {@link LimiterProperties#getBackoffRatio() backoff ratio}, at most once per
+ * recent round trip so that one slow burst does not collapse the limit. Both latencies are exponentially weighted
+ * averages, the long-term one follows a lasting change slowly and becomes the new normal.
+ * <p>
+ * Callers over the limit wait for a permit up to {@link LimiterProperties#getMaxWait()}, which slows the consuming
+ * threads down instead of queueing requests at the service.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double RECENT_WEIGHT = 0.2;
+  private static final double LONG_TERM_WEIGHT = 0.01;
+
+  private final String name;
+  private final LimiterProperties properties;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private double limit;
+  private int inFlight;
+  private double recentRttNanos;
+  private double longTermRttNanos;
+  private long noDecreaseBefore;
+
+  public AdaptiveConcurrencyLimiter(String name, LimiterProperties properties) {
+    this.name = name;
+    this.properties = properties;
+    this.limit = initialLimit();
+    this.noDecreaseBefore = System.nanoTime();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Duration getMaxWait() {
+    return properties.getMaxWait();
+  }
+
+  /**
+   * Waits for a permit and returns the start time to {@link #release} it with.
+   *
+   * @throws LimitExceededException no permit within the maximum wait
+   */
+  public long acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      long remaining = properties.getMaxWait().toNanos();
+      while (inFlight >= (int) limit) {
+        if (remaining <= 0) {
+          throw new LimitExceededException(name + ": " + inFlight + " calls in flight, limit " + (int) limit);
+        }
+        remaining = released.awaitNanos(remaining);
+      }
+      inFlight++;
+    } finally {
+      lock.unlock();
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Returns the permit of a call started at {@code startNanos}; {@code dropped} if it failed or timed out.
+   */
+  public void release(long startNanos, boolean dropped) {
+    long now = System.nanoTime();
+    long rtt = now - startNanos;
+    lock.lock();
+    try {
+      boolean utilized = inFlight * 2 >= limit;
+      inFlight--;
+      if (dropped) {
+        decrease(now);
+      } else {
+        recentRttNanos = recentRttNanos == 0 ? rtt : recentRttNanos + (rtt - recentRttNanos) * RECENT_WEIGHT;
+        longTermRttNanos = longTermRttNanos == 0
+            ? rtt : longTermRttNanos + (rtt - longTermRttNanos) * LONG_TERM_WEIGHT;
+        if (recentRttNanos > longTermRttNanos * properties.getLatencyTolerance()) {
+          decrease(now);
+        } else if (utilized) {
+          limit = Math.min(properties.getMaxLimit(), limit + 1 / limit);
+        }
+      }
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Back to the initial limit, forgetting the latencies seen so far, e.g. those of a stub.
+   */
+  public void reset() {
+    lock.lock();
+    try {
+      limit = initialLimit();
+      recentRttNanos = 0;
+      longTermRttNanos = 0;
+      noDecreaseBefore = System.nanoTime();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private double initialLimit() {
+    return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), properties.getInitialLimit()));
+  }
+
+  private void decrease(long now) {
+    if (now - noDecreaseBefore < 0) {
+      return;
+    }
+    limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+    noDecreaseBefore = now + (long) recentRttNanos;
+  }
+
+  @Override
+  public String toString() {
+    return name + " limit " + getLimit() + ", " + getInFlight() + " in flight, recent latency "
+        + TimeUnit.NANOSECONDS.toMillis((long) recentRttNanos) + "ms";
+  }
+}
@@ -0,0 +1,67 @@
+package com.kafka.retryconsumer.limiter;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.Processor;
+import org.apache.camel.support.SynchronizationAdapter;
+
+import java.time.Duration;
+
+/**
+ * Takes a permit of an {@link AdaptiveConcurrencyLimiter} for the exchange, to be returned by {@link #release} right
+ * after the call, as dropped if it failed or an exception was handled on the way. Used in a route in front of the
+ * circuit breaker of the downstream call, in place of a fixed throttle. Disabled, exchanges pass untouched.
+ * <p>
+ * An exchange that never reaches {@link #release} returns its permit when it is done.
+ */
+@RequiredArgsConstructor
+public class ConcurrencyLimitProcessor implements Processor {
+
+  /**
+   * Exchange property of the permit taken, until it is returned.
+   */
+  public static final String PERMIT = "concurrencyLimitPermit";
+
+  private final AdaptiveConcurrencyLimiter limiter;
+  private final boolean enabled;
+
+  /**
+   * Longest an exchange waits here for a permit.
+   */
+  public Duration maxWait() {
+    return enabled ? limiter.getMaxWait() : Duration.ZERO;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    if (!enabled) {
+      return;
+    }
+    exchange.setProperty(PERMIT, new Permit(limiter, limiter.acquire()));
+    exchange.adapt(ExtendedExchange.class).addOnCompletion(new SynchronizationAdapter() {
+      @Override
+      public void onDone(Exchange exchange) {
+        release(exchange);
+      }
+    });
+  }
+
+  /**
+   * Returns the permit the exchange holds, if any, so that neither the permit nor the latency sampled cover what the
+   * route does after the call, e.g. writing the record to a retry tier.
+   */
+  public static void release(Exchange exchange) {
+    Permit permit = (Permit) exchange.removeProperty(PERMIT);
+    if (permit != null) {
+      permit.limiter.release(permit.start,
+          exchange.isFailed() || exchange.getProperty(Exchange.EXCEPTION_CAUGHT) != null);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Permit {
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long start;
+  }
+}
@@ -0,0 +1,54 @@
+package com.kafka.retryconsumer.limiter;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One adaptive limiter per topic of {@link RouteProperties}, named after the topic like its bulkhead and circuit
+ * breaker, so that a slow endpoint of one topic does not shrink the limit of the others. The limit and calls in flight
+ * of each are published as the {@code concurrency.limit} and {@code concurrency.in.flight} gauges tagged with the
+ * topic.
+ */
+@Component
+@EnableConfigurationProperties({LimiterProperties.class, RouteProperties.class})
+public class ConcurrencyLimiters {
+
+  private final Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+  private final Map<String, ConcurrencyLimitProcessor> processors = new LinkedHashMap<>();
+
+  public ConcurrencyLimiters(LimiterProperties properties, RouteProperties routeProperties,
+      MeterRegistry meterRegistry) {
+    routeProperties.getTopics().keySet().forEach(topic -> {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(topic, properties);
+      Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+          .description("Current limit of the calls in flight")
+          .tag("name", topic)
+          .register(meterRegistry);
+      Gauge.builder("concurrency.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+          .description("Calls in flight under the limiter")
+          .tag("name", topic)
+          .register(meterRegistry);
+      limiters.put(topic, limiter);
+      processors.put(topic, new ConcurrencyLimitProcessor(limiter, properties.isEnabled()));
+    });
+  }
+
+  public AdaptiveConcurrencyLimiter forTopic(String topic) {
+    return limiters.get(topic);
+  }
+
+  public ConcurrencyLimitProcessor processor(String topic) {
+    return processors.get(topic);
+  }
+
+  public Collection<AdaptiveConcurrencyLimiter> all() {
+    return limiters.values();
+  }
+}
@@ -0,0 +1,12 @@
+package com.kafka.retryconsumer.limiter;
+
+/**
+ * No permit of an {@link AdaptiveConcurrencyLimiter} within its wait time. Thrown before the circuit breaker, which
+ * does not count it; the record goes to the retry tiers.
+ */
+public class LimitExceededException extends RuntimeException {
+
+  public LimitExceededException(String message) {
+    super(message);
+  }
+}
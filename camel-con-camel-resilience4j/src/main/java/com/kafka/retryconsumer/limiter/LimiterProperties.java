@@ -0,0 +1,41 @@
+package com.kafka.retryconsumer.limiter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.limiter")
+public class LimiterProperties {
+
+  /**
+   * Limit the requests in flight to the endpoints of each topic adaptively. Off by default: the records of a topic are
+   * called on the threads of its consumers, one at a time each, so with {@code consumers-count: 1} no more than the
+   * consumer and its retry tiers are in flight and the limit has nothing to shape. Worth it with more consumers.
+   */
+  private boolean enabled = false;
+
+  private int initialLimit = 4;
+  private int minLimit = 1;
+
+  /**
+   * Upper bound of the limit, no point going beyond the connections per route of the http component.
+   */
+  private int maxLimit = 20;
+
+  /**
+   * Factor the limit is multiplied with on a failed call or rising latency.
+   */
+  private double backoffRatio = 0.9;
+
+  /**
+   * Recent latency above this multiple of the long-term latency counts as the service falling behind.
+   */
+  private double latencyTolerance = 2.0;
+
+  /**
+   * How long a caller waits for a permit before the call fails with a {@link LimitExceededException}.
+   */
+  private Duration maxWait = Duration.ofSeconds(5);
+}
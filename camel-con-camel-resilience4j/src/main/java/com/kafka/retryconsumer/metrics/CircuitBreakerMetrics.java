@@ -0,0 +1,57 @@
+package com.kafka.retryconsumer.metrics;
+
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakers;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * State and call gauges of the {@link CircuitBreakers}, under the names
+ * resilience4j's own Micrometer binding uses. That binding is not available for the resilience4j version Camel brings.
+ */
+@Component
+@RequiredArgsConstructor
+public class CircuitBreakerMetrics implements MeterBinder {
+
+  private final CircuitBreakers circuitBreakers;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (CircuitBreaker circuitBreaker : circuitBreakers.all()) {
+      String name = circuitBreaker.getName();
+      for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+        Gauge.builder("resilience4j.circuitbreaker.state", circuitBreaker, cb -> cb.getState() == state ? 1 : 0)
+            .description("The states of the circuit breaker")
+            .tag("name", name)
+            .tag("state", state.name().toLowerCase())
+            .register(registry);
+      }
+      Gauge.builder("resilience4j.circuitbreaker.failure.rate", circuitBreaker, cb -> cb.getMetrics().getFailureRate())
+          .description("The failure rate of the circuit breaker")
+          .tag("name", name)
+          .register(registry);
+      Gauge.builder("resilience4j.circuitbreaker.buffered.calls", circuitBreaker,
+          cb -> cb.getMetrics().getNumberOfSuccessfulCalls())
+          .description("The number of buffered successful calls stored in the ring buffer")
+          .tag("name", name)
+          .tag("kind", "successful")
+          .register(registry);
+      Gauge.builder("resilience4j.circuitbreaker.buffered.calls", circuitBreaker,
+          cb -> cb.getMetrics().getNumberOfFailedCalls())
+          .description("The number of buffered failed calls stored in the ring buffer")
+          .tag("name", name)
+          .tag("kind", "failed")
+          .register(registry);
+      FunctionCounter.builder("resilience4j.circuitbreaker.not.permitted.calls", circuitBreaker,
+          cb -> cb.getMetrics().getNumberOfNotPermittedCalls())
+          .description("Total number of not permitted calls")
+          .tag("name", name)
+          .tag("kind", "not_permitted")
+          .register(registry);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.kafka.retryconsumer.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.rest.RestEndpoint;
+import org.apache.camel.http.common.HttpOperationFailedException;
+import org.apache.camel.spi.CamelEvent;
+import org.apache.camel.spi.CamelEvent.ExchangeSentEvent;
+import org.apache.camel.support.EventNotifierSupport;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the calls to {@code rest:} endpoints as {@code http.client.requests}, with the tags Spring Boot gives
+ * {@code RestTemplate} requests and {@code clientName=camel-rest}, so both consumer applications report downstream
+ * latency the same way. Picked up by Camel as event notifier from the registry. Timers are looked up once per endpoint
+ * and status, not per call.
+ */
+@Component
+public class RestCallMetrics extends EventNotifierSupport {
+
+  private final MeterRegistry meterRegistry;
+  // by status, 0 without a response
+  private final Map<RestEndpoint, Map<Integer, Timer>> timers = new ConcurrentHashMap<>();
+
+  public RestCallMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    setIgnoreCamelContextEvents(true);
+    setIgnoreRouteEvents(true);
+    setIgnoreServiceEvents(true);
+    setIgnoreExchangeCreatedEvent(true);
+    setIgnoreExchangeCompletedEvent(true);
+    setIgnoreExchangeFailedEvents(true);
+    setIgnoreExchangeRedeliveryEvents(true);
+    setIgnoreExchangeSendingEvents(true);
+    setIgnoreStepEvents(true);
+  }
+
+  @Override
+  public boolean isEnabled(CamelEvent event) {
+    return event instanceof ExchangeSentEvent && ((ExchangeSentEvent) event).getEndpoint() instanceof RestEndpoint;
+  }
+
+  @Override
+  public void notify(CamelEvent event) {
+    ExchangeSentEvent sent = (ExchangeSentEvent) event;
+    RestEndpoint endpoint = (RestEndpoint) sent.getEndpoint();
+    timers.computeIfAbsent(endpoint, e -> new ConcurrentHashMap<>())
+        .computeIfAbsent(status(sent.getExchange()), status -> timer(endpoint, status))
+        .record(sent.getTimeTaken(), TimeUnit.MILLISECONDS);
+  }
+
+  private Timer timer(RestEndpoint endpoint, int status) {
+    String outcome = status == 0 ? "UNKNOWN"
+        : status >= 500 ? "SERVER_ERROR"
+        : status >= 400 ? "CLIENT_ERROR"
+        : status >= 300 ? "REDIRECTION"
+        : "SUCCESS";
+    return Timer.builder("http.client.requests")
+        .tag("method", endpoint.getMethod().toUpperCase())
+        .tag("uri", endpoint.getPath() + (endpoint.getUriTemplate() == null ? "" : "/" + endpoint.getUriTemplate()))
+        .tag("status", status == 0 ? "CLIENT_ERROR" : String.valueOf(status))
+        .tag("clientName", "camel-rest")
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private static int status(Exchange exchange) {
+    HttpOperationFailedException failure = exchange.getException(HttpOperationFailedException.class);
+    if (failure != null) {
+      return failure.getStatusCode();
+    }
+    if (exchange.getException() != null) {
+      return 0;
+    }
+    Integer status = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+    return status == null ? 0 : status;
+  }
+}
@@ -0,0 +1,67 @@
+package com.kafka.retryconsumer.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.NamedNode;
+import org.apache.camel.Route;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.spi.RoutePolicyFactory;
+import org.apache.camel.support.RoutePolicySupport;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every exchange through every route as {@code camel.route.processing}, tagged with the route id, the kafka
+ * partition the exchange came from and its outcome. Picked up by Camel as route policy factory from the registry. A
+ * route called from another one (a {@code direct:} route) is timed on its own as well, the start time is kept per
+ * route in an exchange property.
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteMetrics implements RoutePolicyFactory {
+
+  private static final String START_PROPERTY = "routeMetricsStart-";
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+  @Override
+  public RoutePolicy createRoutePolicy(CamelContext camelContext, String routeId, NamedNode route) {
+    String startProperty = START_PROPERTY + routeId;
+    return new RoutePolicySupport() {
+      @Override
+      public void onExchangeBegin(Route route, Exchange exchange) {
+        exchange.setProperty(startProperty, System.nanoTime());
+      }
+
+      @Override
+      public void onExchangeDone(Route route, Exchange exchange) {
+        Long start = exchange.getProperty(startProperty, Long.class);
+        if (start == null) {
+          return;
+        }
+        exchange.removeProperty(startProperty);
+        Object partition = exchange.getIn().getHeader(KafkaConstants.PARTITION);
+        timer(routeId, partition == null ? "none" : partition.toString(), exchange.isFailed() ? "failure" : "success")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    };
+  }
+
+  private Timer timer(String routeId, String partition, String outcome) {
+    return timers.computeIfAbsent(routeId + '/' + partition + '/' + outcome, key ->
+        Timer.builder("camel.route.processing")
+            .tag("route", routeId)
+            .tag("partition", partition)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+  }
+}
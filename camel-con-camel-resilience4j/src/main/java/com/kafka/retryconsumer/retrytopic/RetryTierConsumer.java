@@ -0,0 +1,215 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetExhaustedException;
+import com.kafka.retryconsumer.commit.OffsetCommitCoordinator;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.support.DefaultConsumer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poll loop of one retry tier topic, in place of a kafka: consumer: the Camel 3.1 one offers no hook to pause and
+ * resume partitions from its poll thread. Every record of a tier waits the same delay, so the due times of a partition
+ * only grow: once the head of a partition is not due yet, the rest of its batch is held back and the partition is
+ * paused until the head is due. The thread never waits longer than the poll timeout, so the consumer keeps its group
+ * membership whatever the tier delay is.
+ * <p>
+ * Due records go through the route one at a time on the poll thread, which hands failures to the next tier itself, and
+ * their offsets are committed through an {@link OffsetCommitCoordinator}. An exchange that fails anyway, e.g. because
+ * the next tier could not be written to, leaves its record uncommitted at the head of its partition, to be sent again
+ * after the {@link RetryTopicProperties#getHandOffBackOff() hand-off back-off}. A record the {@link RetryBudget}
+ * refuses is held back the same way, for a poll timeout at a time, and marked as {@link RetryBudget#HELD_BACK held
+ * back} when it is sent again. Stopping the consumer, as the circuit breaker route policy does, closes the Kafka
+ * consumer; starting it again joins the group anew.
+ */
+@Slf4j
+public class RetryTierConsumer extends DefaultConsumer implements ConsumerRebalanceListener {
+
+  private final RetryTierEndpoint endpoint;
+  private final Map<TopicPartition, Deque<ConsumerRecord<String, String>>> waiting = new HashMap<>();
+  // partitions whose head record failed, until when it waits
+  private final Map<TopicPartition, Long> backedOff = new HashMap<>();
+  // partitions whose head record the retry budget refused, the offset of that record
+  private final Map<TopicPartition, Long> heldForBudget = new HashMap<>();
+  private Consumer<String, String> consumer;
+  private OffsetCommitCoordinator commits;
+  private KafkaClientMetrics clientMetrics;
+  private Thread pollThread;
+  private volatile boolean running;
+
+  public RetryTierConsumer(RetryTierEndpoint endpoint, Processor processor) {
+    super(endpoint, processor);
+    this.endpoint = endpoint;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+    consumer = endpoint.createKafkaConsumer();
+    commits = new OffsetCommitCoordinator(consumer, endpoint.getCommitProperties(), endpoint.getMeterRegistry());
+    clientMetrics = new KafkaClientMetrics(consumer);
+    clientMetrics.bindTo(endpoint.getMeterRegistry());
+    running = true;
+    pollThread = new Thread(this::run, "retry-tier-" + endpoint.getTopic());
+    pollThread.start();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    running = false;
+    consumer.wakeup();
+    pollThread.join();
+    clientMetrics.close();
+    super.doStop();
+  }
+
+  @Override
+  public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    log.info("Partitions revoked: {}, flushing offsets ({})", partitions, commits.getStats());
+    commits.flushSync();
+    commits.forget(partitions);
+    // held back records were not committed, the next owner polls them again
+    partitions.forEach(waiting::remove);
+    partitions.forEach(backedOff::remove);
+    partitions.forEach(heldForBudget::remove);
+  }
+
+  @Override
+  public void onPartitionsLost(Collection<TopicPartition> partitions) {
+    log.warn("Partitions lost: {}", partitions);
+    commits.forget(partitions);
+    partitions.forEach(waiting::remove);
+    partitions.forEach(backedOff::remove);
+    partitions.forEach(heldForBudget::remove);
+  }
+
+  @Override
+  public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    log.info("Partitions assigned: {}", partitions);
+  }
+
+  private void run() {
+    try {
+      consumer.subscribe(List.of(endpoint.getTopic()), this);
+      while (running) {
+        ConsumerRecords<String, String> records = consumer.poll(nextPollTimeout());
+        long now = System.currentTimeMillis();
+        for (TopicPartition partition : records.partitions()) {
+          List<ConsumerRecord<String, String>> polled = records.records(partition);
+          polled.forEach(record -> endpoint.getBackoff()
+              .record(Math.max(0, RetryTopics.dueAt(record) - now), TimeUnit.MILLISECONDS));
+          waiting.computeIfAbsent(partition, p -> new ArrayDeque<>()).addAll(polled);
+        }
+        processDue();
+        commits.maybeFlush();
+      }
+    } catch (WakeupException e) {
+      if (running) {
+        getExceptionHandler().handleException("Retry tier consumer of " + endpoint.getTopic() + " woken up", e);
+      }
+    } catch (RuntimeException e) {
+      getExceptionHandler().handleException("Retry tier consumer of " + endpoint.getTopic() + " failed", e);
+    } finally {
+      try {
+        commits.flushSync();
+      } finally {
+        consumer.close();
+        waiting.clear();
+        backedOff.clear();
+        heldForBudget.clear();
+      }
+      log.info("Retry tier consumer of {} stopped, {}", endpoint.getTopic(), commits.getStats());
+    }
+  }
+
+  private void processDue() {
+    Iterator<Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>>> it = waiting.entrySet().iterator();
+    while (it.hasNext() && running) {
+      Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>> entry = it.next();
+      TopicPartition partition = entry.getKey();
+      Deque<ConsumerRecord<String, String>> queue = entry.getValue();
+      while (!queue.isEmpty() && dueAt(partition) <= System.currentTimeMillis() && send(partition, queue)) {
+        queue.pollFirst();
+      }
+      boolean paused = consumer.paused().contains(partition);
+      if (queue.isEmpty()) {
+        it.remove();
+        if (paused) {
+          consumer.resume(List.of(partition));
+        }
+      } else if (!paused) {
+        log.debug("{} records of {} held back, {}ms to due", queue.size(), partition,
+            dueAt(partition) - System.currentTimeMillis());
+        consumer.pause(List.of(partition));
+      }
+    }
+  }
+
+  /**
+   * Sends the head record of the partition through the route and returns whether its offset was staged.
+   */
+  private boolean send(TopicPartition partition, Deque<ConsumerRecord<String, String>> queue) {
+    ConsumerRecord<String, String> record = queue.peekFirst();
+    Exchange exchange = endpoint.createExchange(record);
+    if (Long.valueOf(record.offset()).equals(heldForBudget.get(partition))) {
+      exchange.setProperty(RetryBudget.HELD_BACK, true);
+    }
+    try {
+      getProcessor().process(exchange);
+    } catch (Exception e) {
+      exchange.setException(e);
+    }
+    if (exchange.getException(RetryBudgetExhaustedException.class) != null) {
+      log.debug("Retry budget exhausted, {} offset {} held back for {}", partition, record.offset(),
+          endpoint.getPollTimeout());
+      heldForBudget.put(partition, record.offset());
+      backedOff.put(partition, System.currentTimeMillis() + endpoint.getPollTimeout().toMillis());
+      return false;
+    }
+    heldForBudget.remove(partition);
+    if (exchange.getException() != null) {
+      log.error("Could not hand over {} offset {}, it stays uncommitted and is sent again in {}", partition,
+          record.offset(), endpoint.getHandOffBackOff(), exchange.getException());
+      backedOff.put(partition, System.currentTimeMillis() + endpoint.getHandOffBackOff().toMillis());
+      return false;
+    }
+    backedOff.remove(partition);
+    commits.stage(partition, new OffsetAndMetadata(record.offset() + 1));
+    return true;
+  }
+
+  /**
+   * When the head record of the partition is due, or is to be sent again after failing.
+   */
+  private long dueAt(TopicPartition partition) {
+    return Math.max(RetryTopics.dueAt(waiting.get(partition).peekFirst()), backedOff.getOrDefault(partition, 0L));
+  }
+
+  private Duration nextPollTimeout() {
+    long now = System.currentTimeMillis();
+    long timeout = endpoint.getPollTimeout().toMillis();
+    for (TopicPartition partition : waiting.keySet()) {
+      timeout = Math.min(timeout, Math.max(0, dueAt(partition) - now));
+    }
+    return Duration.ofMillis(timeout);
+  }
+}
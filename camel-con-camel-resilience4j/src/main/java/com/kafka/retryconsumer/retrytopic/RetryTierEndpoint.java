@@ -0,0 +1,89 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.commit.CommitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Consumer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.support.DefaultEndpoint;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Endpoint of the {@link RetryTierConsumer} of one tier topic, {@code retry-tier:<tier topic>}. Built by
+ * {@link RetryTopics#tierEndpoint}, not resolved from its URI, and consume only. Its exchanges carry the same headers
+ * as those of a kafka: consumer, the record headers as bytes.
+ */
+@Getter
+public class RetryTierEndpoint extends DefaultEndpoint {
+
+  public static final String SCHEME = "retry-tier:";
+
+  private final String topic;
+  private final Properties kafkaProperties;
+  private final Duration pollTimeout;
+  private final Duration handOffBackOff;
+  private final CommitProperties commitProperties;
+  private final MeterRegistry meterRegistry;
+  private final Timer backoff;
+
+  public RetryTierEndpoint(CamelContext camelContext, String topic, Properties kafkaProperties, Duration pollTimeout,
+      Duration handOffBackOff, CommitProperties commitProperties, MeterRegistry meterRegistry) {
+    super(SCHEME + topic, null);
+    setCamelContext(camelContext);
+    this.topic = topic;
+    this.kafkaProperties = kafkaProperties;
+    this.pollTimeout = pollTimeout;
+    this.handOffBackOff = handOffBackOff;
+    this.commitProperties = commitProperties;
+    this.meterRegistry = meterRegistry;
+    this.backoff = Timer.builder("retry.backoff").tag("topic", topic).register(meterRegistry);
+  }
+
+  @Override
+  public Producer createProducer() {
+    throw new UnsupportedOperationException(SCHEME + " endpoints only consume");
+  }
+
+  @Override
+  public Consumer createConsumer(Processor processor) throws Exception {
+    RetryTierConsumer consumer = new RetryTierConsumer(this, processor);
+    configureConsumer(consumer);
+    return consumer;
+  }
+
+  /**
+   * A new Kafka consumer for every start of the {@link RetryTierConsumer}.
+   */
+  protected org.apache.kafka.clients.consumer.Consumer<String, String> createKafkaConsumer() {
+    return new KafkaConsumer<>(kafkaProperties, new StringDeserializer(), new StringDeserializer());
+  }
+
+  Exchange createExchange(ConsumerRecord<String, String> record) {
+    Exchange exchange = createExchange();
+    Message in = exchange.getIn();
+    in.setHeader(KafkaConstants.TOPIC, record.topic());
+    in.setHeader(KafkaConstants.PARTITION, record.partition());
+    in.setHeader(KafkaConstants.OFFSET, record.offset());
+    in.setHeader(KafkaConstants.TIMESTAMP, record.timestamp());
+    if (record.key() != null) {
+      in.setHeader(KafkaConstants.KEY, record.key());
+    }
+    for (Header header : record.headers()) {
+      in.setHeader(header.key(), header.value());
+    }
+    in.setBody(record.value());
+    return exchange;
+  }
+}
@@ -0,0 +1,51 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.retry-topics")
+public class RetryTopicProperties {
+
+  /**
+   * Delay of each retry tier, unless the route of the topic has its own; a record that fails in the last tier goes to
+   * the dead-letter topic.
+   */
+  private List<Duration> delays = List.of(Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(5));
+  private String groupIdSuffix = "-retry";
+  private String dltSuffix = "-dlt";
+
+  /**
+   * Wait before a tier record whose exchange failed, e.g. because the next tier could not be written to, is sent
+   * again. It stays uncommitted and its partition paused meanwhile.
+   */
+  private Duration handOffBackOff = Duration.ofSeconds(1);
+
+  /**
+   * Topic of the tier with the given delay for records of {@code topic}, e.g. {@code retry_topic_1-retry-30s}.
+   */
+  public String tierTopic(String topic, Duration delay) {
+    return topic + "-retry-" + format(delay);
+  }
+
+  public String dltTopic(String topic) {
+    return topic + dltSuffix;
+  }
+
+  private static String format(Duration delay) {
+    long seconds = delay.toSeconds();
+    if (seconds == 0) {
+      return delay.toMillis() + "ms";
+    }
+    if (seconds % 3600 == 0) {
+      return seconds / 3600 + "h";
+    }
+    if (seconds % 60 == 0) {
+      return seconds / 60 + "m";
+    }
+    return seconds + "s";
+  }
+}
@@ -0,0 +1,132 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Moves failed records through the delay tiers of {@link RetryTopicProperties}. The retry state travels in record
+ * headers as strings, the kafka: producer copies exchange headers to the record and the consumer copies them back as
+ * bytes. Every hand-over is counted as {@code retry.attempts} by original and target topic. The tiers are consumed by
+ * {@link RetryTierConsumer}s, which record the delay a tier record still has to wait as {@code retry.backoff}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties({RetryTopicProperties.class, CommitProperties.class})
+public class RetryTopics {
+
+  /**
+   * Number of failed attempts so far, absent on the original topic.
+   */
+  public static final String ATTEMPT = "retry-attempt";
+
+  /**
+   * Epoch millis before which the record must not be processed again.
+   */
+  public static final String DUE_AT = "retry-due-at";
+  public static final String ORIGINAL_TOPIC = "retry-original-topic";
+  public static final String EXCEPTION = "retry-exception";
+
+  /**
+   * Endpoint that sends a failed record exchange to its next tier and commits its offset.
+   */
+  public static final String ENDPOINT = "direct:retry-topic";
+
+  /**
+   * Exchange property holding the topic {@link #nextTopic} picked.
+   */
+  public static final String TARGET_TOPIC = "retryTargetTopic";
+
+  // the tier consumers wait for due records in poll, not longer than this
+  private static final Duration TIER_POLL_TIMEOUT = Duration.ofSeconds(1);
+
+  private final RetryTopicProperties properties;
+  private final RouteProperties routeProperties;
+  private final CommitProperties commitProperties;
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Delay of each retry tier of {@code topic}, those of its route or else the default ones.
+   */
+  public List<Duration> delays(String topic) {
+    RouteProperties.TopicRoute route = routeProperties.getTopics().get(topic);
+    return route == null || route.getRetryDelays().isEmpty() ? properties.getDelays() : route.getRetryDelays();
+  }
+
+  /**
+   * Sets the retry headers of the failed exchange and the topic it has to be sent to.
+   */
+  public void nextTopic(Exchange exchange) {
+    Message in = exchange.getIn();
+    String attemptHeader = in.getHeader(ATTEMPT, String.class);
+    int attempt = attemptHeader == null ? 1 : Integer.parseInt(attemptHeader) + 1;
+    String originalTopic = in.getHeader(ORIGINAL_TOPIC, String.class);
+    if (originalTopic == null) {
+      originalTopic = in.getHeader(KafkaConstants.TOPIC, String.class);
+    }
+    Exception exception = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+
+    in.setHeader(ATTEMPT, String.valueOf(attempt));
+    in.setHeader(ORIGINAL_TOPIC, originalTopic);
+    in.setHeader(EXCEPTION, String.valueOf(exception));
+    List<Duration> delays = delays(originalTopic);
+    String target;
+    if (attempt <= delays.size()) {
+      Duration delay = delays.get(attempt - 1);
+      target = properties.tierTopic(originalTopic, delay);
+      long dueAt = System.currentTimeMillis() + delay.toMillis();
+      in.setHeader(DUE_AT, String.valueOf(dueAt));
+    } else {
+      target = properties.dltTopic(originalTopic);
+      in.removeHeader(DUE_AT);
+    }
+    exchange.setProperty(TARGET_TOPIC, target);
+    meterRegistry.counter("retry.attempts", "topic", originalTopic, "target", target).increment();
+    log.info("Attempt {} of {}-{} offset {} failed, sending to {}", attempt, in.getHeader(KafkaConstants.TOPIC),
+        in.getHeader(KafkaConstants.PARTITION), in.getHeader(KafkaConstants.OFFSET), target);
+  }
+
+  /**
+   * Endpoint consuming the tier of {@code topic} with the given delay, in the retry group of the consumers of the
+   * topic.
+   */
+  public RetryTierEndpoint tierEndpoint(CamelContext camelContext, String topic, Duration delay,
+      Duration maxPollInterval) {
+    RouteProperties.TopicRoute route = routeProperties.getTopics().get(topic);
+    Properties kafkaProperties = new Properties();
+    kafkaProperties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, routeProperties.getBrokers());
+    kafkaProperties.put(ConsumerConfig.GROUP_ID_CONFIG, routeProperties.getGroupId() + properties.getGroupIdSuffix());
+    kafkaProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, route.getMaxPollRecords());
+    kafkaProperties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, (int) maxPollInterval.toMillis());
+    kafkaProperties.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, route.getPartitionAssignor());
+    kafkaProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    kafkaProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    return new RetryTierEndpoint(camelContext, properties.tierTopic(topic, delay), kafkaProperties, TIER_POLL_TIMEOUT,
+        properties.getHandOffBackOff(), commitProperties, meterRegistry);
+  }
+
+  /**
+   * Epoch millis at which the record of a tier topic is due, 0 without the header.
+   */
+  public static long dueAt(ConsumerRecord<?, ?> record) {
+    Header dueAt = record.headers().lastHeader(DUE_AT);
+    return dueAt == null ? 0L : Long.parseLong(new String(dueAt.value(), StandardCharsets.UTF_8));
+  }
+}
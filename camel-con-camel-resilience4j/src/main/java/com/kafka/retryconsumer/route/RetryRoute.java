@@ -1,131 +1,257 @@
 package com.kafka.retryconsumer.route;
 
-import org.apache.camel.Exchange;
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetExhaustedException;
+import com.kafka.retryconsumer.bulk.BulkDispatcher;
+import com.kafka.retryconsumer.bulk.BulkProperties;
+import com.kafka.retryconsumer.bulkhead.BulkheadProcessor;
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakerRoutePolicy;
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakers;
+import com.kafka.retryconsumer.commit.ManualCommitProcessor;
+import com.kafka.retryconsumer.commit.PollHookKafkaEndpoint;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimitProcessor;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimiters;
+import com.kafka.retryconsumer.retrytopic.RetryTopicProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import com.kafka.retryconsumer.warmup.WarmUp;
+import com.kafka.retryconsumer.warmup.WarmUpProperties;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.kafka.KafkaConstants;
-import org.apache.camel.component.kafka.KafkaManualCommit;
+import org.apache.camel.component.kafka.KafkaEndpoint;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Builds the routes of every topic of {@link RouteProperties}: its kafka: consumer and retry tier consumers, stopped
+ * while the circuit breaker of the topic is open, and the routes calling its endpoints behind its own bulkhead,
+ * concurrency limiter and circuit breaker, {@code direct:<topic>-call} for single records and
+ * {@code direct:<topic>-bulk} for batches. With the {@link WarmUp} enabled the kafka: routes are left stopped, the
+ * warm-up starts them once done.
+ */
 @Component
 public class RetryRoute extends RouteBuilder {
 
+  // Kafka's default max.poll.interval.ms
+  private static final Duration MIN_POLL_INTERVAL = Duration.ofMinutes(5);
+
+  private final ManualCommitProcessor manualCommitProcessor;
+  private final RetryTopics retryTopics;
+  private final RetryTopicProperties retryTopicProperties;
+  private final CircuitBreakers circuitBreakers;
+  private final BulkDispatcher bulkDispatcher;
+  private final BulkProperties bulkProperties;
+  private final ConcurrencyLimiters concurrencyLimiters;
+  private final ProcessedRecords processedRecords;
+  private final RouteProperties routeProperties;
+  private final RetryBudget retryBudget;
+  private final WarmUpProperties warmUpProperties;
+  private final List<String> consumerRouteIds = new ArrayList<>();
+
+  public RetryRoute(ManualCommitProcessor manualCommitProcessor, RetryTopics retryTopics,
+      RetryTopicProperties retryTopicProperties, CircuitBreakers circuitBreakers, BulkDispatcher bulkDispatcher,
+      BulkProperties bulkProperties, ConcurrencyLimiters concurrencyLimiters, ProcessedRecords processedRecords,
+      RouteProperties routeProperties, RetryBudget retryBudget) {
+    this(manualCommitProcessor, retryTopics, retryTopicProperties, circuitBreakers, bulkDispatcher, bulkProperties,
+        concurrencyLimiters, processedRecords, routeProperties, retryBudget, new WarmUpProperties());
+  }
+
+  @Autowired
+  public RetryRoute(ManualCommitProcessor manualCommitProcessor, RetryTopics retryTopics,
+      RetryTopicProperties retryTopicProperties, CircuitBreakers circuitBreakers, BulkDispatcher bulkDispatcher,
+      BulkProperties bulkProperties, ConcurrencyLimiters concurrencyLimiters, ProcessedRecords processedRecords,
+      RouteProperties routeProperties, RetryBudget retryBudget, WarmUpProperties warmUpProperties) {
+    this.manualCommitProcessor = manualCommitProcessor;
+    this.retryTopics = retryTopics;
+    this.retryTopicProperties = retryTopicProperties;
+    this.circuitBreakers = circuitBreakers;
+    this.bulkDispatcher = bulkDispatcher;
+    this.bulkProperties = bulkProperties;
+    this.concurrencyLimiters = concurrencyLimiters;
+    this.processedRecords = processedRecords;
+    this.routeProperties = routeProperties;
+    this.retryBudget = retryBudget;
+    this.warmUpProperties = warmUpProperties;
+  }
+
+  /**
+   * Ids of the kafka: routes of all topics and retry tiers.
+   */
+  public List<String> getConsumerRouteIds() {
+    return consumerRouteIds;
+  }
+
   @Override
   public void configure() {
 
     restConfiguration().host("localhost").port("9080");
 
-    String topicUrl1 = buildKafkaUrl("retry_topic_1");
-    String topicUrl2 = buildKafkaUrl("retry_topic_2");
-    log.info("Kafka consumer URL 1 is : {}", topicUrl1);
-    log.info("Kafka consumer URL 2 is : {}", topicUrl2);
     log.info("Start time is {}", LocalDateTime.now());
 
+    // Failed records are not redelivered on the consumer thread: the original message goes to the next retry tier
+    // (or the dead-letter topic) and its offset is committed, so the partition keeps flowing. Warm-up records fail to
+    // the warm-up, they are not records of any topic.
     onException(Exception.class)
-        .log("Exception message is ${exception.message}")
-        .maximumRedeliveries(2) // -1 for infinite retries.
-        .redeliveryDelay(100)
-        .useExponentialBackOff()
-        .backOffMultiplier(2)
-        .maximumRedeliveryDelay(
-            1024) // To limit the maximum duration between retries so that exponential backoff does not go out of limits.
-        //.useCollisionAvoidance() // random trigger
-        .log("BEFORE exception commit")
-        //.process(this::doManualCommit)
+        .onWhen(header(WarmUp.HEADER).isNull())
+        .useOriginalMessage()
         .handled(true)
+        .process(ConcurrencyLimitProcessor::release)
+        .process(BulkheadProcessor::release)
+        .log("Exception message is ${exception.message}")
+        .to(RetryTopics.ENDPOINT)
     ;
 
-    from(topicUrl1)
-        .routeId("R1")
-        .throttle(100).timePeriodMillis(10000) //Default 1000 ms
-        .process(this::dumpKafkaDetails)
-        .log("before rest call 1")
+    // A tier record over the retry budget stays where it is: the exception goes back to its tier consumer, which
+    // holds the record back on its paused partition.
+    onException(RetryBudgetExhaustedException.class)
+        .handled(false)
+        .logExhausted(false);
+
+    if (warmUpProperties.isEnabled()) {
+      // the sample service as seen by warm-up records
+      interceptSendToEndpoint("rest:*")
+          .when(header(WarmUp.HEADER).isNotNull())
+          .skipSendToOriginalEndpoint()
+          .setBody(constant("[]"));
+    }
+
+    from(RetryTopics.ENDPOINT)
+        .routeId("retry-topic")
+        .process(retryTopics::nextTopic)
+        .toD("kafka:${exchangeProperty." + RetryTopics.TARGET_TOPIC + "}?brokers=" + routeProperties.getBrokers())
+        .process(manualCommitProcessor);
+
+    routeProperties.getTopics().forEach(this::topicRoutes);
+  }
+
+  private void topicRoutes(String topic, RouteProperties.TopicRoute route) {
+    String callEndpoint = "direct:" + topic + "-call";
+    String bulkEndpoint = "direct:" + topic + "-bulk";
+    CircuitBreakerRoutePolicy circuitBreakerRoutePolicy = circuitBreakers.routePolicy(topic);
+    getContext().getRegistry().bind(CircuitBreakers.ref(topic), circuitBreakers.forTopic(topic));
+    BulkheadProcessor bulkhead = BulkheadProcessor.of(topic, route.getBulkhead());
+    ConcurrencyLimitProcessor limit = concurrencyLimiters.processor(topic);
+    int timeout = (int) route.getCircuitBreaker().getTimeout().toMillis();
+
+    String topicUrl = buildKafkaUrl(routeProperties.getBrokers(), topic, routeProperties.getGroupId(), route)
+        + "&maxPollIntervalMs=" + maxPollInterval(topic, route).toMillis();
+    log.info("Kafka consumer URL of {} is : {}", topic, topicUrl);
+
+    // The consumers of the topic are stopped while its circuit breaker is open. The calls to the sample service
+    // are not throttled at a fixed rate, the adaptive limiter in front of them, when enabled, follows its latency and
+    // errors; its permit is returned right after the call. Before every poll its consumers commit the offsets staged
+    // on their poll thread once the commit interval elapsed, so an idle partition does not hold them back.
+    consumerRouteIds.add(topic);
+    from(new PollHookKafkaEndpoint(getContext().getEndpoint(topicUrl, KafkaEndpoint.class),
+        manualCommitProcessor::flushIfDue))
+        .routeId(topic)
+        .autoStartup(!warmUpProperties.isEnabled())
+        .routePolicy(circuitBreakerRoutePolicy)
+        .to(bulkProperties.isEnabled() ? bulkEndpoint : callEndpoint);
+
+    // Camel 3.1 gives no hook to pause and resume partitions from the poll thread of a kafka: consumer, so the tiers
+    // are consumed by a poll loop of our own that pauses the partitions whose head is not due yet, or over the retry
+    // budget.
+    List<Duration> delays = retryTopics.delays(topic);
+    for (int tier = 0; tier < delays.size(); tier++) {
+      String routeId = topic + "-retry-" + tier;
+      consumerRouteIds.add(routeId);
+      from(retryTopics.tierEndpoint(getContext(), topic, delays.get(tier), maxPollInterval(topic, route)))
+          .routeId(routeId)
+          .autoStartup(!warmUpProperties.isEnabled())
+          .routePolicy(circuitBreakerRoutePolicy)
+          .to(callEndpoint);
+    }
+
+    // A record that succeeded before skips the call but is committed again, its offset may not have been. First
+    // attempts that succeed fund the retry budget, tier records that are not skipped take from it.
+    from(callEndpoint)
+        .routeId(topic + "-call")
+        .log("before rest call")
+        .idempotentConsumer(processedRecords.key(), processedRecords).eager(false)
+        .process(retryBudget::acquire)
+        .process(bulkhead)
+        .process(limit)
         .circuitBreaker()
         .inheritErrorHandler(true)
-        .resilience4jConfiguration().slidingWindowSize(10)
-        .writableStackTraceEnabled(false).timeoutEnabled(true).timeoutDuration(1000)
-        .minimumNumberOfCalls(5).waitDurationInOpenState(20).end()
+        .resilience4jConfiguration().circuitBreakerRef(CircuitBreakers.ref(topic))
+        .timeoutEnabled(true).timeoutDuration(timeout).end()
         //.delay(1000)
-        .to("rest:get:/sample/hello")
+        .setHeader("message", body())
+        .to(route.getEndpoint())
         //.onFallback().log("FALLBACK") // This will not push for retry and instead will continue to next step in pipeline
         .endCircuitBreaker()
-        .process(this::doManualCommit)
+        .process(ConcurrencyLimitProcessor::release)
+        .process(BulkheadProcessor::release)
+        .process(retryBudget::succeeded)
+        .end()
+        .process(processedRecords::countSkipped)
+        .process(manualCommitProcessor) // stages the offset, commits are coalesced and asynchronous
         .log("end");
 
-    /*from(topicUrl2)
-        .routeId("R2")
-        .process(exchange -> {
-          LOGGER.info(this.dumpKafkaDetails(exchange));
-        })
-        .log("before rest call 2")
+    // One POST per batch instead of one GET per record. Tier traffic is small and stays on single calls. Records that
+    // succeeded before stay in the batch to be committed in order, but are not sent; a batch of only those is not.
+    // A batch that misses the last record of its poll completes on the timeout, off the poll thread, which is why
+    // the consumer registers for commits before.
+    from(bulkEndpoint)
+        .routeId(topic + "-bulk")
+        .process(manualCommitProcessor::register)
+        .aggregate(header(KafkaConstants.PARTITION), bulkDispatcher)
+        .completionSize(bulkProperties.getMaxSize())
+        .completionPredicate(header(KafkaConstants.LAST_RECORD_BEFORE_COMMIT).isEqualTo(true))
+        .completionTimeout(bulkProperties.getCompletionTimeout().toMillis())
+        .eagerCheckCompletion()
+        .process(bulkDispatcher::request)
+        .doTry()
+        .filter(bulkDispatcher::hasItems)
+        .process(bulkhead)
+        .process(limit)
         .circuitBreaker()
-        .inheritErrorHandler(true)
-            .resilience4jConfiguration().slidingWindowSize(10)
-            .writableStackTraceEnabled(false).timeoutEnabled(true).timeoutDuration(1000)
-            .minimumNumberOfCalls(5).waitDurationInOpenState(20).end()
-        .to("http://localhost:8000/not-found")
-        .endCircuitBreaker()
-        .process(this::doManualCommit)
-        .log("end");*/
+        .resilience4jConfiguration().circuitBreakerRef(CircuitBreakers.ref(topic))
+        .timeoutEnabled(true).timeoutDuration(timeout).end()
+        .to(route.getBatchEndpoint())
+        .end()
+        .process(ConcurrencyLimitProcessor::release)
+        .process(BulkheadProcessor::release)
+        .end()
+        .process(bulkDispatcher::complete)
+        .endDoTry()
+        .doCatch(Exception.class)
+        .process(ConcurrencyLimitProcessor::release)
+        .process(BulkheadProcessor::release)
+        .process(bulkDispatcher::failAll)
+        .end()
+        .end();
   }
 
-  /*
-  This will force a synchronous commit which will block until the commit is acknowledge on Kafka, or if it fails an exception is thrown.
-  You can use an asynchronous commit as well by configuring the KafkaManualCommitFactory with the DefaultKafkaManualAsyncCommitFactory implementation.
-
-  The commit will then be done in the next consumer loop using the kafka asynchronous commit api.
-  Be aware that records from a partition must be processed and committed by a unique thread.
-  If not, this could lead with non consistent behaviors. This is mostly useful with aggregation’s completion timeout strategies.
-
-  If you want to use a custom implementation of KafkaManualCommit then you can configure a custom KafkaManualCommitFactory
-  on the KafkaComponent that creates instances of your custom implementation.
+  /**
+   * Camel 3.1 reads max.poll.records once, when it creates the consumer; a different size means a new consumer and a
+   * rebalance, so polls are not resized at runtime here. Records are processed on the poll thread, so the poll interval
+   * is sized for the slowest poll instead: every record waiting out the bulkhead and the limiter and timing out, twice
+   * over. Never below the Kafka default.
    */
-  private void doManualCommit(Exchange exchange) {
-    Boolean lastOne = exchange.getIn()
-        .getHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT, Boolean.class);
-
-    if (lastOne != null && lastOne) {
-      KafkaManualCommit manual =
-          exchange.getIn().getHeader(KafkaConstants.MANUAL_COMMIT, KafkaManualCommit.class);
-      if (manual != null) {
-        log.info("manually committing the offset for batch");
-        manual.commitSync();
-        log.info("End time is {} ", LocalDateTime.now());
-      }
-    } else {
-      log.info("NOT time to commit the offset yet");
-    }
-  }
-
-  private void dumpKafkaDetails(Exchange exchange) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("\r\n");
-    sb.append("\r\n");
-    sb.append("Message Received: ").append(exchange.getIn().getBody());
-    sb.append("\r\n");
-    sb.append("From topic: ")
-        .append(exchange.getIn().getHeader(KafkaConstants.TOPIC));
-    sb.append("\r\n");
-    sb.append("From partition: ")
-        .append(exchange.getIn().getHeader(KafkaConstants.PARTITION));
-    sb.append("\r\n");
-    sb.append("Offset: ").append(exchange.getIn().getHeader(KafkaConstants.OFFSET));
-    sb.append("\r\n");
-    sb.append("Is last record ?: ")
-        .append(exchange.getIn().getHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT));
-    sb.append("\r\n");
-
-    log.info(sb.toString());
+  private Duration maxPollInterval(String topic, RouteProperties.TopicRoute route) {
+    Duration perRecord = (route.getBulkhead().isEnabled() ? route.getBulkhead().getMaxWait() : Duration.ZERO)
+        .plus(concurrencyLimiters.processor(topic).maxWait())
+        .plus(route.getCircuitBreaker().getTimeout());
+    Duration slowestPoll = perRecord.multipliedBy(2L * route.getMaxPollRecords());
+    return slowestPoll.compareTo(MIN_POLL_INTERVAL) > 0 ? slowestPoll : MIN_POLL_INTERVAL;
   }
 
-  private String buildKafkaUrl(String topicName) {
+  public static String buildKafkaUrl(String brokers, String topicName, String groupId,
+      RouteProperties.TopicRoute route) {
     StringBuilder sb = new StringBuilder("kafka:");
     sb.append(topicName)
-        .append("?brokers=").append("localhost:9092")
-        .append("&groupId=").append("kafkaConsumerGroup")
-        .append("&maxPollRecords=").append(10) // Default is 500
-        .append("&consumersCount=").append(1)
+        .append("?brokers=").append(brokers)
+        .append("&groupId=").append(groupId)
+        .append("&maxPollRecords=").append(route.getMaxPollRecords()) // Default is 500
+        .append("&consumersCount=").append(route.getConsumersCount())
+        .append("&partitionAssignor=").append(route.getPartitionAssignor())
         .append("&autoOffsetReset=").append("earliest")
         .append("&autoCommitEnable=").append(false)
         .append("&allowManualCommit=").append(true)
@@ -0,0 +1,91 @@
+package com.kafka.retryconsumer.route;
+
+import lombok.Data;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.routes")
+public class RouteProperties {
+
+  private String brokers = "localhost:9092";
+  private String groupId = "kafkaConsumerGroup";
+
+  /**
+   * Route of every topic consumed, by topic. Each topic gets its own consumer, routes, circuit breaker and bulkhead,
+   * all named after the topic.
+   */
+  private Map<String, TopicRoute> topics = new LinkedHashMap<>();
+
+  @Data
+  public static class TopicRoute {
+
+    private int maxPollRecords = 10;
+    private int consumersCount = 1;
+
+    /**
+     * With the cooperative sticky assignor a rebalance only revokes the partitions that move to another consumer, the
+     * others keep being processed. A running group moves off an eager assignor in two rolling restarts, the first
+     * listing both.
+     */
+    private String partitionAssignor = CooperativeStickyAssignor.class.getName();
+
+    /**
+     * Endpoint of the single call, the {@code message} header holds the record value.
+     */
+    private String endpoint = "rest:get:/sample/hello?queryParameters=message={message}";
+    private String batchEndpoint = "rest:post:/sample/hello/batch";
+
+    /**
+     * Delay of each retry tier of this topic, {@code retry-consumer.retry-topics.delays} if empty.
+     */
+    private List<Duration> retryDelays = new ArrayList<>();
+
+    private CircuitBreakerPolicy circuitBreaker = new CircuitBreakerPolicy();
+    private BulkheadPolicy bulkhead = new BulkheadPolicy();
+  }
+
+  @Data
+  public static class CircuitBreakerPolicy {
+
+    /**
+     * Failure rate in percent above which the breaker opens; the consumers of the topic are stopped while it is open.
+     */
+    private float failureRateThreshold = 50;
+    private Duration waitDurationInOpenState = Duration.ofSeconds(20);
+    private int minimumNumberOfCalls = 5;
+    private int slidingWindowSize = 10;
+
+    /**
+     * Time limit of a call, a timeout counts as failure.
+     */
+    private Duration timeout = Duration.ofSeconds(1);
+  }
+
+  @Data
+  public static class BulkheadPolicy {
+
+    /**
+     * Bound the calls of this topic in flight. Off by default: the records of a topic are called on the threads of its
+     * consumers, one at a time each, so with {@code consumers-count: 1} no more than the consumer and its retry tiers
+     * are in flight. Worth it with more consumers.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Calls of this topic in flight at once, so a slow downstream cannot take the threads of the others.
+     */
+    private int maxConcurrentCalls = 10;
+
+    /**
+     * How long a record waits for a free slot before it goes to the retry tiers.
+     */
+    private Duration maxWait = Duration.ZERO;
+  }
+}
@@ -0,0 +1,169 @@
+package com.kafka.retryconsumer.tracing;
+
+import com.kafka.retryconsumer.retrytopic.RetryTierEndpoint;
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.NamedNode;
+import org.apache.camel.Route;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.spi.RoutePolicyFactory;
+import org.apache.camel.support.RoutePolicySupport;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent record events of the routes consuming from {@code kafka:} and the retry tiers in a ring of preallocated
+ * slots, read through the {@link RecordTraceEndpoint}. Every failure, an exchange handed to the retry tiers included,
+ * is traced with its exception and value, successes only at the {@link TracingProperties#getSampleRate() sample rate};
+ * a success left out costs a random number and nothing is allocated for it. Latency is taken from the exchange
+ * creation time, in milliseconds, so that no start time has to be kept per exchange. Disabled, no route gets the
+ * policy.
+ * <p>
+ * Writers claim slots from a shared sequence and do not lock. A writer marks its slot as being written, or drops its
+ * event if a writer the ring lapped still holds the slot, and publishes the event's sequence with release semantics
+ * once the fields are written. A reader loads the sequence with acquire semantics before copying the fields and again
+ * after a load fence, and keeps the copy only if both are the same published sequence. A dump may miss the odd event
+ * under load, but a copy torn by a concurrent writer is never returned.
+ */
+@Component
+@EnableConfigurationProperties(TracingProperties.class)
+public class RecordTrace implements RoutePolicyFactory {
+
+  private static final long NEVER_WRITTEN = -2;
+  private static final long WRITING = -1;
+  private static final VarHandle SEQUENCE;
+
+  static {
+    try {
+      SEQUENCE = MethodHandles.lookup().findVarHandle(Slot.class, "sequence", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final TracingProperties properties;
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLong sequence = new AtomicLong();
+  private final RoutePolicy policy = new RoutePolicySupport() {
+    @Override
+    public void onExchangeDone(Route route, Exchange exchange) {
+      record(exchange);
+    }
+  };
+
+  public RecordTrace(TracingProperties properties) {
+    this.properties = properties;
+    int capacity = properties.getCapacity() <= 1 ? 1 : Integer.highestOneBit(properties.getCapacity() - 1) << 1;
+    this.slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+    }
+    this.mask = capacity - 1;
+  }
+
+  @Override
+  public RoutePolicy createRoutePolicy(CamelContext camelContext, String routeId, NamedNode route) {
+    if (!isEnabled() || !(route instanceof RouteDefinition)) {
+      return null;
+    }
+    String uri = ((RouteDefinition) route).getInput().getEndpointUri();
+    return uri != null && (uri.startsWith("kafka:") || uri.startsWith(RetryTierEndpoint.SCHEME)) ? policy : null;
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public double getSampleRate() {
+    return properties.getSampleRate();
+  }
+
+  public long getRecorded() {
+    return sequence.get();
+  }
+
+  void record(Exchange exchange) {
+    Exception failure = exchange.getException();
+    if (failure == null) {
+      failure = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+    }
+    if (failure == null && ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate()) {
+      return;
+    }
+    Message in = exchange.getIn();
+    long claimed = sequence.getAndIncrement();
+    Slot slot = slots[(int) claimed & mask];
+    long previous = (long) SEQUENCE.getAcquire(slot);
+    if (previous == WRITING || !SEQUENCE.compareAndSet(slot, previous, WRITING)) {
+      return;
+    }
+    slot.timeMillis = System.currentTimeMillis();
+    slot.topic = in.getHeader(KafkaConstants.TOPIC, String.class);
+    slot.partition = in.getHeader(KafkaConstants.PARTITION, -1, Integer.class);
+    slot.offset = in.getHeader(KafkaConstants.OFFSET, -1L, Long.class);
+    String attempt = in.getHeader(RetryTopics.ATTEMPT, String.class);
+    slot.attempt = attempt == null ? 1 : Integer.parseInt(attempt) + 1;
+    slot.latencyMillis = slot.timeMillis - exchange.getCreated();
+    if (failure == null) {
+      slot.exception = null;
+      slot.value = null;
+    } else {
+      slot.exception = failure.toString();
+      String value = in.getBody(String.class);
+      slot.value = value == null || value.length() <= properties.getValueLimit()
+          ? value : value.substring(0, properties.getValueLimit());
+    }
+    SEQUENCE.setRelease(slot, claimed);
+  }
+
+  /**
+   * The events still in the ring, newest first.
+   */
+  public List<TraceEvent> events() {
+    List<TraceEvent> events = new ArrayList<>(slots.length);
+    for (Slot slot : slots) {
+      long before = (long) SEQUENCE.getAcquire(slot);
+      if (before < 0) {
+        continue;
+      }
+      TraceEvent event = new TraceEvent(before, Instant.ofEpochMilli(slot.timeMillis), slot.topic,
+          slot.partition, slot.offset, slot.attempt,
+          slot.exception == null ? TraceEvent.Outcome.SUCCESS : TraceEvent.Outcome.FAILURE,
+          TimeUnit.MILLISECONDS.toMicros(slot.latencyMillis), slot.exception, slot.value);
+      VarHandle.loadLoadFence();
+      if ((long) SEQUENCE.getAcquire(slot) == before) {
+        events.add(event);
+      }
+    }
+    events.sort(Comparator.comparingLong(TraceEvent::getSequence).reversed());
+    return events;
+  }
+
+  private static class Slot {
+    // NEVER_WRITTEN, WRITING or the sequence of the event held, only accessed through SEQUENCE
+    private long sequence = NEVER_WRITTEN;
+    private long timeMillis;
+    private String topic;
+    private int partition;
+    private long offset;
+    private int attempt;
+    private long latencyMillis;
+    private String exception;
+    private String value;
+  }
+}
@@ -0,0 +1,29 @@
+package com.kafka.retryconsumer.tracing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.tracing")
+public class TracingProperties {
+
+  /**
+   * Keep recent record events for the {@code recordtrace} actuator endpoint. Off, no route is traced.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Share of successful records traced, failures are always traced.
+   */
+  private double sampleRate = 0.01;
+
+  /**
+   * Events kept, rounded up to a power of two; older events are overwritten.
+   */
+  private int capacity = 1024;
+
+  /**
+   * Characters of the record value kept with a failure.
+   */
+  private int valueLimit = 1024;
+}
@@ -0,0 +1,189 @@
+package com.kafka.retryconsumer.warmup;
+
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakers;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.limiter.AdaptiveConcurrencyLimiter;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimiters;
+import com.kafka.retryconsumer.route.RetryRoute;
+import com.kafka.retryconsumer.route.RouteProperties;
+import com.kafka.retryconsumer.startup.StartupPhases;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.spring.boot.CamelContextConfiguration;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs once the Camel context is up, before the kafka: routes of {@link RetryRoute} start, so the first records do not
+ * pay for cold connections, class loading and the JIT. With {@link WarmUpProperties#isEnabled() warm-up} enabled it
+ * <ol>
+ * <li>sends requests to the single call endpoint of every topic, all at once so the pool keeps as many connections,
+ * and fails the startup if one fails and {@link WarmUpProperties#isFailOnError() it should};</li>
+ * <li>sends synthetic records marked with the {@link #HEADER} through the {@code direct:<topic>-call} routes, where the
+ * rest: endpoints are stubbed for them, then forgets them: their keys in the {@link ProcessedRecords}, the state of the
+ * circuit breakers and the latencies of the concurrency limiters. They neither fund the retry budget nor go to the
+ * retry topics when they fail;</li>
+ * <li>starts the kafka: routes, unless it is a {@link WarmUpProperties#isExit() training run}.</li>
+ * </ol>
+ * The bulk routes aggregate by partition and are not warmed up. The startup is timed by phase either way: the boot of
+ * the JVM, the application and Camel contexts (and the routes if not warmed up), the warm-up phases and the start of
+ * the consumers, logged and kept as gauges by {@link StartupPhases}.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties({WarmUpProperties.class, RouteProperties.class})
+public class WarmUp implements CamelContextConfiguration {
+
+  /**
+   * Header of the synthetic records of the warm-up.
+   */
+  public static final String HEADER = "retry-consumer-warm-up";
+
+  private static final String MESSAGE = "warm-up";
+
+  private final WarmUpProperties properties;
+  private final RouteProperties routeProperties;
+  private final RetryRoute retryRoute;
+  private final ProcessedRecords processedRecords;
+  private final CircuitBreakers circuitBreakers;
+  private final ConcurrencyLimiters concurrencyLimiters;
+  private final ConfigurableApplicationContext applicationContext;
+  private final StartupPhases phases;
+
+  public WarmUp(WarmUpProperties properties, RouteProperties routeProperties, RetryRoute retryRoute,
+      ProcessedRecords processedRecords, CircuitBreakers circuitBreakers,
+      ConcurrencyLimiters concurrencyLimiters, MeterRegistry meterRegistry,
+      ConfigurableApplicationContext applicationContext) {
+    this.properties = properties;
+    this.routeProperties = routeProperties;
+    this.retryRoute = retryRoute;
+    this.processedRecords = processedRecords;
+    this.circuitBreakers = circuitBreakers;
+    this.concurrencyLimiters = concurrencyLimiters;
+    this.applicationContext = applicationContext;
+    this.phases = new StartupPhases(meterRegistry);
+  }
+
+  @Override
+  public void beforeApplicationStart(CamelContext camelContext) {
+  }
+
+  @Override
+  public void afterApplicationStart(CamelContext camelContext) {
+    phases.booted();
+    if (!properties.isEnabled()) {
+      log.info("Startup: {}", phases.report());
+      return;
+    }
+    ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+    try {
+      openConnections(producerTemplate);
+      phases.end("connections");
+      runRoutes(producerTemplate);
+      phases.end("routes");
+    } finally {
+      producerTemplate.stop();
+    }
+    if (properties.isExit()) {
+      log.info("Warm-up done, exiting without starting the consumers. Startup: {}", phases.report());
+      // not on this thread, the context is still starting
+      new Thread(() -> System.exit(SpringApplication.exit(applicationContext)), "warm-up-exit").start();
+      return;
+    }
+    for (String routeId : retryRoute.getConsumerRouteIds()) {
+      try {
+        camelContext.getRouteController().startRoute(routeId);
+      } catch (Exception e) {
+        throw RuntimeCamelException.wrapRuntimeCamelException(e);
+      }
+    }
+    phases.end("consumers");
+    log.info("Startup: {}", phases.report());
+  }
+
+  private void openConnections(ProducerTemplate producerTemplate) {
+    ExecutorService executor = Executors.newFixedThreadPool(properties.getConnections());
+    try {
+      List<Future<Exchange>> calls = new ArrayList<>();
+      routeProperties.getTopics().forEach((topic, route) -> {
+        CyclicBarrier together = new CyclicBarrier(properties.getConnections());
+        for (int i = 0; i < properties.getConnections(); i++) {
+          calls.add(executor.submit(() -> {
+            together.await(10, TimeUnit.SECONDS);
+            return producerTemplate.send(route.getEndpoint(),
+                exchange -> exchange.getIn().setHeader("message", MESSAGE));
+          }));
+        }
+      });
+      int failed = 0;
+      for (Future<Exchange> call : calls) {
+        Throwable exception;
+        try {
+          exception = call.get().getException();
+        } catch (ExecutionException e) {
+          exception = e.getCause();
+        }
+        if (exception == null) {
+          continue;
+        }
+        failed++;
+        if (properties.isFailOnError()) {
+          throw new IllegalStateException("Warm-up could not reach the sample service", exception);
+        }
+        log.warn("Warm-up call to the sample service failed: {}", exception.toString());
+      }
+      log.info("Warm-up opened {} of {} connections to the sample service", calls.size() - failed, calls.size());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during warm-up", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void runRoutes(ProducerTemplate producerTemplate) {
+    List<String> keys = new ArrayList<>();
+    int failed = 0;
+    try {
+      for (String topic : routeProperties.getTopics().keySet()) {
+        for (int i = 0; i < properties.getExchanges(); i++) {
+          long offset = i;
+          Exchange exchange = producerTemplate.send("direct:" + topic + "-call", ex -> {
+            ex.getIn().setBody(MESSAGE);
+            ex.getIn().setHeader(HEADER, true);
+            ex.getIn().setHeader(KafkaConstants.TOPIC, topic);
+            ex.getIn().setHeader(KafkaConstants.OFFSET, offset);
+            keys.add(processedRecords.key(ex));
+          });
+          if (exchange.getException() != null) {
+            failed++;
+            log.debug("Warm-up record of {} failed", topic, exchange.getException());
+          }
+        }
+      }
+    } finally {
+      keys.forEach(processedRecords::remove);
+      circuitBreakers.all().forEach(CircuitBreaker::reset);
+      concurrencyLimiters.all().forEach(AdaptiveConcurrencyLimiter::reset);
+    }
+    log.info("Warm-up sent {} records through the routes of {} topics, {} failed",
+        properties.getExchanges() * routeProperties.getTopics().size(), routeProperties.getTopics().size(), failed);
+  }
+}
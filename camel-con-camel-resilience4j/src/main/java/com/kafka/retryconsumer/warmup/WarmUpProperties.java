@@ -0,0 +1,43 @@
+package com.kafka.retryconsumer.warmup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.warm-up")
+public class WarmUpProperties {
+
+  /**
+   * Warm up the connections and routes before the kafka: consumers start; they are then not started with the context.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Requests sent at once to the single call endpoint of every topic, so the pool keeps as many connections open; at
+   * least one.
+   */
+  private int connections = 4;
+
+  /**
+   * Synthetic records sent through the call route of every topic, answered by a stub instead of the sample service.
+   */
+  private int exchanges = 100;
+
+  /**
+   * Fail the startup when the sample service cannot be reached, instead of logging it.
+   */
+  private boolean failOnError = false;
+
+  /**
+   * Exit after the warm-up without starting the consumers: a training run, e.g. to write a class data sharing archive
+   * with {@code -XX:ArchiveClassesAtExit}.
+   */
+  private boolean exit = false;
+
+  public void setConnections(int connections) {
+    if (connections < 1) {
+      throw new IllegalArgumentException("retry-consumer.warm-up.connections must be at least 1: " + connections);
+    }
+    this.connections = connections;
+  }
+}
@@ -0,0 +1,52 @@
+package com.kafka.retryconsumer.bulkhead;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadProcessorTest {
+
+	private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+	@Test
+	void permitIsReturnedRightAfterTheCallAndOnlyOnce() {
+		BulkheadProcessor processor = BulkheadProcessor.of("retry_topic_1", policy(true));
+		Exchange first = new DefaultExchange(camelContext);
+		Exchange second = new DefaultExchange(camelContext);
+
+		processor.process(first);
+		assertThatThrownBy(() -> processor.process(second)).isInstanceOf(BulkheadFullException.class);
+
+		BulkheadProcessor.release(first);
+		first.adapt(ExtendedExchange.class).handoverCompletions().forEach(done -> done.onComplete(first));
+		processor.process(second);
+		assertThat(processor.getBulkhead().getMetrics().getAvailableConcurrentCalls()).isZero();
+
+		second.adapt(ExtendedExchange.class).handoverCompletions().forEach(done -> done.onFailure(second));
+		assertThat(processor.getBulkhead().getMetrics().getAvailableConcurrentCalls()).isEqualTo(1);
+	}
+
+	@Test
+	void disabledBulkheadTakesNoPermit() {
+		BulkheadProcessor processor = BulkheadProcessor.of("retry_topic_1", policy(false));
+
+		processor.process(new DefaultExchange(camelContext));
+		processor.process(new DefaultExchange(camelContext));
+
+		assertThat(processor.getBulkhead().getMetrics().getAvailableConcurrentCalls()).isEqualTo(1);
+	}
+
+	private RouteProperties.BulkheadPolicy policy(boolean enabled) {
+		RouteProperties.BulkheadPolicy policy = new RouteProperties.BulkheadPolicy();
+		policy.setEnabled(enabled);
+		policy.setMaxConcurrentCalls(1);
+		return policy;
+	}
+}
@@ -0,0 +1,124 @@
+package com.kafka.retryconsumer.commit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.consumer.RetriableCommitFailedException;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffsetCommitCoordinatorTest {
+
+	private final TopicPartition first = new TopicPartition("retry_topic_1", 0);
+	private final TopicPartition second = new TopicPartition("retry_topic_1", 1);
+	private final CommitProperties properties = new CommitProperties();
+	private boolean failCommits;
+	private final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+		@Override
+		public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets,
+				OffsetCommitCallback callback) {
+			if (failCommits) {
+				callback.onComplete(offsets, new RetriableCommitFailedException("coordinator moved"));
+			} else {
+				super.commitAsync(offsets, callback);
+			}
+		}
+	};
+
+	@Test
+	void flushesOnceTheBatchIsFull() {
+		properties.setBatchSize(3);
+		properties.setInterval(Duration.ofHours(1));
+		OffsetCommitCoordinator coordinator = coordinator();
+
+		coordinator.stage(first, new OffsetAndMetadata(1));
+		coordinator.stage(second, new OffsetAndMetadata(1));
+		coordinator.maybeFlush();
+		assertThat(committed(first)).isZero();
+
+		coordinator.stage(first, new OffsetAndMetadata(2));
+		coordinator.maybeFlush();
+		assertThat(committed(first)).isEqualTo(2);
+		assertThat(committed(second)).isEqualTo(1);
+		assertThat(coordinator.getStats().toString()).startsWith("1 commits, 3.0 records/commit");
+	}
+
+	@Test
+	void flushesOnceTheIntervalElapsedWithoutNewRecords() throws Exception {
+		properties.setInterval(Duration.ofMillis(20));
+		OffsetCommitCoordinator coordinator = coordinator();
+
+		coordinator.stage(first, new OffsetAndMetadata(1));
+		coordinator.maybeFlush();
+		Thread.sleep(30);
+		assertThat(committed(first)).isZero();
+
+		coordinator.maybeFlush();
+		assertThat(committed(first)).isEqualTo(1);
+	}
+
+	@Test
+	void putsBackAFailedCommitUnlessANewerOffsetWasStaged() {
+		properties.setBatchSize(1);
+		OffsetCommitCoordinator coordinator = coordinator();
+
+		failCommits = true;
+		coordinator.stage(first, new OffsetAndMetadata(1));
+		coordinator.maybeFlush();
+		coordinator.stage(second, new OffsetAndMetadata(1));
+		coordinator.maybeFlush();
+		coordinator.stage(second, new OffsetAndMetadata(2));
+		failCommits = false;
+		coordinator.flushSync();
+
+		assertThat(committed(first)).isEqualTo(1);
+		assertThat(committed(second)).isEqualTo(2);
+	}
+
+	@Test
+	void ignoresAnOffsetStagedAfterAHigherOne() {
+		properties.setInterval(Duration.ofHours(1));
+		OffsetCommitCoordinator coordinator = coordinator();
+
+		coordinator.stage(first, new OffsetAndMetadata(20));
+		coordinator.stage(first, new OffsetAndMetadata(10));
+		coordinator.flushSync();
+		coordinator.stage(first, new OffsetAndMetadata(15));
+		coordinator.flushSync();
+
+		assertThat(committed(first)).isEqualTo(20);
+	}
+
+	@Test
+	void forgetsRevokedPartitionsAfterFlushingThem() {
+		properties.setInterval(Duration.ofHours(1));
+		OffsetCommitCoordinator coordinator = coordinator();
+
+		coordinator.stage(first, new OffsetAndMetadata(5));
+		coordinator.stage(second, new OffsetAndMetadata(3));
+		coordinator.forget(List.of(second));
+		coordinator.flushSync();
+
+		assertThat(committed(first)).isEqualTo(5);
+		assertThat(committed(second)).isZero();
+	}
+
+	private OffsetCommitCoordinator coordinator() {
+		consumer.assign(List.of(first, second));
+		return new OffsetCommitCoordinator(consumer, properties, new SimpleMeterRegistry());
+	}
+
+	private long committed(TopicPartition partition) {
+		OffsetAndMetadata offset = consumer.committed(Set.of(partition)).get(partition);
+		return offset == null ? 0 : offset.offset();
+	}
+}
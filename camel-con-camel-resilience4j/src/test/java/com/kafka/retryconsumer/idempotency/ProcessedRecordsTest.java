@@ -0,0 +1,167 @@
+package com.kafka.retryconsumer.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessedRecordsTest {
+
+	private final IdempotencyProperties properties = new IdempotencyProperties();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+	@BeforeEach
+	void enable() {
+		properties.setEnabled(true);
+	}
+
+	@AfterEach
+	void stopCamel() {
+		camelContext.stop();
+	}
+
+	@Test
+	void skipsRecordsThatSucceededBeforeAndCountsOnlyThose() throws Exception {
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, meterRegistry);
+		List<Long> called = new ArrayList<>();
+		camelContext.addRoutes(new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:call")
+						.idempotentConsumer(processedRecords.key(), processedRecords).eager(false)
+						.process(exchange -> {
+							called.add(exchange.getIn().getHeader(KafkaConstants.OFFSET, Long.class));
+							if ("fail".equals(exchange.getIn().getBody())) {
+								throw new IllegalStateException("down");
+							}
+						})
+						.end()
+						.process(processedRecords::countSkipped);
+			}
+		});
+		camelContext.start();
+		ProducerTemplate producer = camelContext.createProducerTemplate();
+
+		producer.send("direct:call", exchange -> record(exchange, 0, "ok"));
+		producer.send("direct:call", exchange -> record(exchange, 1, "fail"));
+		assertThat(skipped()).isZero();
+		producer.send("direct:call", exchange -> record(exchange, 0, "ok"));
+		producer.send("direct:call", exchange -> record(exchange, 1, "ok"));
+
+		assertThat(called).containsExactly(0L, 1L, 1L);
+		assertThat(skipped()).isEqualTo(1);
+		assertThat(processedRecords.processed(record(new DefaultExchange(camelContext), 1, "ok"))).isTrue();
+		assertThat(skipped()).isEqualTo(1);
+	}
+
+	@Test
+	void keysByHeaderFallingBackToTheOffset() {
+		properties.setKey(IdempotencyProperties.Key.HEADER);
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, meterRegistry);
+		Exchange withHeader = record(new DefaultExchange(camelContext), 7, "a");
+		withHeader.getIn().setHeader(properties.getHeader(), "order-42".getBytes());
+
+		assertThat(processedRecords.key(withHeader)).isEqualTo("order-42");
+		assertThat(processedRecords.key(record(new DefaultExchange(camelContext), 7, "a")))
+				.isEqualTo("retry_topic_1-0@7");
+	}
+
+	@Test
+	void disabledFindsNothingProcessed() {
+		properties.setEnabled(false);
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, meterRegistry);
+
+		processedRecords.add("retry_topic_1-0@7");
+
+		assertThat(processedRecords.contains("retry_topic_1-0@7")).isFalse();
+	}
+
+	@Test
+	void forgetsExpiredAndOldestKeys() {
+		AtomicLong now = new AtomicLong();
+		ProcessedRecordCache cache = new ProcessedRecordCache(2, Duration.ofMillis(100), null, now::get);
+
+		cache.add("a");
+		now.set(50);
+		cache.add("b");
+		now.set(70);
+		cache.add("c");
+		assertThat(cache.contains("a")).isFalse();
+		assertThat(cache.contains("b")).isTrue();
+
+		now.set(160);
+		assertThat(cache.contains("b")).isFalse();
+		assertThat(cache.contains("c")).isTrue();
+	}
+
+	@Test
+	void keepsLiveKeysAcrossRestarts(@TempDir Path dir) throws Exception {
+		AtomicLong now = new AtomicLong();
+		Path store = dir.resolve("processed.bin");
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(3, Duration.ofMillis(100), store, now::get)) {
+			for (int i = 0; i < 10; i++) {
+				now.set(i * 10);
+				cache.add("key-" + i);
+			}
+			cache.remove("key-8");
+		}
+
+		now.set(100);
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(3, Duration.ofMillis(100), store, now::get)) {
+			assertThat(cache.size()).isEqualTo(2);
+			assertThat(cache.contains("key-7")).isTrue();
+			assertThat(cache.contains("key-8")).isFalse();
+			assertThat(cache.contains("key-9")).isTrue();
+		}
+	}
+
+	@Test
+	void flushesTheStoreInBatches(@TempDir Path dir) throws Exception {
+		AtomicLong now = new AtomicLong();
+		Path store = dir.resolve("processed.bin");
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(1000, Duration.ofHours(1), store, now::get)) {
+			for (int i = 0; i < 99; i++) {
+				cache.add("key-" + i);
+			}
+			assertThat(Files.size(store)).isZero();
+			cache.add("key-99");
+			long flushed = Files.size(store);
+			assertThat(flushed).isPositive();
+
+			cache.add("key-100");
+			assertThat(Files.size(store)).isEqualTo(flushed);
+			now.set(1000);
+			cache.add("key-101");
+			assertThat(Files.size(store)).isGreaterThan(flushed);
+		}
+	}
+
+	private double skipped() {
+		return meterRegistry.get("idempotency.skipped").counter().count();
+	}
+
+	private static Exchange record(Exchange exchange, long offset, String value) {
+		exchange.getIn().setHeaders(Map.of(KafkaConstants.TOPIC, "retry_topic_1", KafkaConstants.PARTITION, 0,
+				KafkaConstants.OFFSET, offset));
+		exchange.getIn().setBody(value);
+		return exchange;
+	}
+}
@@ -0,0 +1,52 @@
+package com.kafka.retryconsumer.limiter;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitProcessorTest {
+
+	private final LimiterProperties properties = new LimiterProperties();
+	private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("retry_topic_1", properties);
+	private final ConcurrencyLimitProcessor processor = new ConcurrencyLimitProcessor(limiter, true);
+
+	@Test
+	void permitIsReturnedRightAfterTheCallAndOnlyOnce() throws Exception {
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+
+		processor.process(exchange);
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+
+		ConcurrencyLimitProcessor.release(exchange);
+		assertThat(limiter.getInFlight()).isZero();
+
+		exchange.adapt(ExtendedExchange.class).handoverCompletions().forEach(done -> done.onComplete(exchange));
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void exchangeThatNeverReachesTheReleaseReturnsItsPermitWhenDone() throws Exception {
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+
+		processor.process(exchange);
+		exchange.setException(new IllegalStateException("sample service unavailable"));
+		exchange.adapt(ExtendedExchange.class).handoverCompletions().forEach(done -> done.onFailure(exchange));
+
+		assertThat(limiter.getInFlight()).isZero();
+		assertThat(exchange.getProperty(ConcurrencyLimitProcessor.PERMIT)).isNull();
+	}
+
+	@Test
+	void disabledProcessorTakesNoPermit() throws Exception {
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+
+		new ConcurrencyLimitProcessor(limiter, false).process(exchange);
+
+		assertThat(limiter.getInFlight()).isZero();
+		assertThat(exchange.getProperty(ConcurrencyLimitProcessor.PERMIT)).isNull();
+	}
+}
@@ -0,0 +1,170 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetExhaustedException;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryTierConsumerTest {
+
+	private static final String TOPIC = "retry_topic_1-retry-5s";
+	private static final long DELAY_MS = 300;
+
+	private final TopicPartition slow = new TopicPartition(TOPIC, 0);
+	private final TopicPartition due = new TopicPartition(TOPIC, 1);
+	private final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+	private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+	@AfterEach
+	void stopCamel() {
+		camelContext.stop();
+	}
+
+	@Test
+	void pausesPartitionsUntilTheirHeadIsDueWithoutBlockingOthers() throws Exception {
+		long start = System.currentTimeMillis();
+		consumer.updateBeginningOffsets(Map.of(slow, 0L, due, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(slow, due));
+			for (int offset = 0; offset < 3; offset++) {
+				consumer.addRecord(record(slow, offset, start + DELAY_MS));
+				consumer.addRecord(record(due, offset, start));
+			}
+		});
+		Queue<String> processed = new ConcurrentLinkedQueue<>();
+		startRoute(exchange -> processed.add(exchange.getIn().getHeader(KafkaConstants.PARTITION) + "@"
+				+ exchange.getIn().getHeader(KafkaConstants.OFFSET) + "+" + (System.currentTimeMillis() - start)));
+
+		boolean pausedWhileWaiting = false;
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (committed(slow) < 3 && System.currentTimeMillis() < deadline) {
+			pausedWhileWaiting |= consumer.paused().contains(slow);
+			Thread.sleep(5);
+		}
+
+		assertThat(committed(slow)).isEqualTo(3);
+		assertThat(committed(due)).isEqualTo(3);
+		assertThat(pausedWhileWaiting).isTrue();
+		assertThat(consumer.paused()).isEmpty();
+		assertThat(processed).hasSize(6);
+		processed.forEach(entry -> {
+			long elapsed = Long.parseLong(entry.substring(entry.indexOf('+') + 1));
+			if (entry.startsWith(slow.partition() + "@")) {
+				assertThat(elapsed).isGreaterThanOrEqualTo(DELAY_MS);
+			} else {
+				assertThat(elapsed).isLessThan(DELAY_MS);
+			}
+		});
+	}
+
+	@Test
+	void failedExchangeLeavesItsRecordUncommittedUntilItIsSentAgain() throws Exception {
+		consumer.updateBeginningOffsets(Map.of(due, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(due));
+			for (int offset = 0; offset < 3; offset++) {
+				consumer.addRecord(record(due, offset, 0));
+			}
+		});
+		AtomicInteger attempts = new AtomicInteger();
+		startRoute(exchange -> {
+			if (exchange.getIn().getHeader(KafkaConstants.OFFSET, Long.class) == 1 && attempts.incrementAndGet() < 3) {
+				throw new IllegalStateException("next tier unavailable");
+			}
+		});
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (attempts.get() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Thread.sleep(30);
+		long whileFailing = committed(due);
+		while (committed(due) < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertThat(whileFailing).isEqualTo(1);
+		assertThat(committed(due)).isEqualTo(3);
+		assertThat(attempts).hasValue(3);
+	}
+
+	@Test
+	void holdsARecordTheBudgetRefusedBackAndMarksItWhenSentAgain() throws Exception {
+		consumer.updateBeginningOffsets(Map.of(due, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(due));
+			consumer.addRecord(record(due, 0, 0));
+		});
+		Queue<Boolean> heldBack = new ConcurrentLinkedQueue<>();
+		startRoute(exchange -> {
+			heldBack.add(exchange.getProperty(RetryBudget.HELD_BACK, false, Boolean.class));
+			if (heldBack.size() < 3) {
+				throw new RetryBudgetExhaustedException("Retry budget exhausted");
+			}
+		});
+
+		boolean pausedWhileHeld = false;
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (committed(due) < 1 && System.currentTimeMillis() < deadline) {
+			pausedWhileHeld |= consumer.paused().contains(due);
+			Thread.sleep(5);
+		}
+
+		assertThat(committed(due)).isEqualTo(1);
+		assertThat(pausedWhileHeld).isTrue();
+		assertThat(heldBack).containsExactly(false, true, true);
+	}
+
+	private void startRoute(org.apache.camel.Processor processor) throws Exception {
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		RetryTierEndpoint endpoint = new RetryTierEndpoint(camelContext, TOPIC, new Properties(), Duration.ofMillis(50),
+				Duration.ofMillis(100), commitProperties, new SimpleMeterRegistry()) {
+			@Override
+			protected Consumer<String, String> createKafkaConsumer() {
+				return consumer;
+			}
+		};
+		camelContext.addRoutes(new RouteBuilder() {
+			@Override
+			public void configure() {
+				from(endpoint).process(processor);
+			}
+		});
+		camelContext.start();
+	}
+
+	private long committed(TopicPartition partition) {
+		OffsetAndMetadata offset = consumer.committed(Set.of(partition)).get(partition);
+		return offset == null ? 0 : offset.offset();
+	}
+
+	private ConsumerRecord<String, String> record(TopicPartition partition, long offset, long dueAt) {
+		ConsumerRecord<String, String> record = new ConsumerRecord<>(TOPIC, partition.partition(), offset,
+				"key-" + offset, "message-" + offset);
+		record.headers().add(RetryTopics.DUE_AT, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+		return record;
+	}
+}
@@ -0,0 +1,122 @@
+package com.kafka.retryconsumer.tracing;
+
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordTraceTest {
+
+	private final TracingProperties properties = new TracingProperties();
+	private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+	@Test
+	void keepsOnlyTheNewestEventsNewestFirst() {
+		properties.setSampleRate(1.0);
+		properties.setCapacity(3); // rounded up to 4
+		RecordTrace trace = new RecordTrace(properties);
+
+		for (long offset = 0; offset < 6; offset++) {
+			trace.record(exchange("retry_topic_1", 0, offset, "value-" + offset));
+		}
+
+		List<TraceEvent> events = trace.events();
+		assertThat(events).extracting(TraceEvent::getOffset).containsExactly(5L, 4L, 3L, 2L);
+		assertThat(events).allSatisfy(event -> {
+			assertThat(event.getOutcome()).isEqualTo(TraceEvent.Outcome.SUCCESS);
+			assertThat(event.getAttempt()).isEqualTo(1);
+			assertThat(event.getValue()).isNull();
+		});
+	}
+
+	@Test
+	void tracesEveryFailureWithDetailWhateverTheSampleRate() {
+		properties.setSampleRate(0.0);
+		properties.setValueLimit(5);
+		RecordTrace trace = new RecordTrace(properties);
+		Exchange handled = exchange("retry_topic_1", 0, 1, "value-1");
+		handled.setProperty(Exchange.EXCEPTION_CAUGHT, new IllegalStateException("down"));
+		handled.getIn().setHeader(RetryTopics.ATTEMPT, "1");
+
+		trace.record(handled);
+		trace.record(exchange("retry_topic_1", 0, 2, "value-2"));
+
+		assertThat(trace.events()).singleElement().satisfies(event -> {
+			assertThat(event.getOffset()).isEqualTo(1);
+			assertThat(event.getAttempt()).isEqualTo(2);
+			assertThat(event.getOutcome()).isEqualTo(TraceEvent.Outcome.FAILURE);
+			assertThat(event.getException()).isEqualTo("java.lang.IllegalStateException: down");
+			assertThat(event.getValue()).isEqualTo("value");
+		});
+	}
+
+	@Test
+	void tracesOnlyTheRoutesConsumingRecords() {
+		RecordTrace trace = new RecordTrace(properties);
+
+		assertThat(trace.createRoutePolicy(camelContext, "retry_topic_1",
+				new RouteDefinition().from("kafka:retry_topic_1?brokers=localhost:9092"))).isNotNull();
+		assertThat(trace.createRoutePolicy(camelContext, "retry_topic_1-call",
+				new RouteDefinition().from("direct:retry_topic_1-call"))).isNull();
+		properties.setEnabled(false);
+		assertThat(trace.createRoutePolicy(camelContext, "retry_topic_1",
+				new RouteDefinition().from("kafka:retry_topic_1?brokers=localhost:9092"))).isNull();
+	}
+
+	@Test
+	void neverReturnsAnEventMixedFromTwoRecords() throws Exception {
+		properties.setCapacity(4);
+		RecordTrace trace = new RecordTrace(properties);
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<>();
+		for (int partition = 0; partition < 4; partition++) {
+			int writer = partition;
+			writers.add(new Thread(() -> {
+				Exception failure = new IllegalStateException("down");
+				for (long offset = 0; running.get(); offset++) {
+					Exchange exchange = exchange("retry_topic_" + writer, writer, offset,
+							"value-" + writer + "-" + offset);
+					exchange.setException(failure);
+					trace.record(exchange);
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+
+		int read = 0;
+		long deadline = System.currentTimeMillis() + 200;
+		try {
+			while (System.currentTimeMillis() < deadline) {
+				for (TraceEvent event : trace.events()) {
+					assertThat(event.getTopic()).isEqualTo("retry_topic_" + event.getPartition());
+					assertThat(event.getValue()).isEqualTo("value-" + event.getPartition() + "-" + event.getOffset());
+					read++;
+				}
+			}
+		} finally {
+			running.set(false);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		}
+		assertThat(read).isPositive();
+	}
+
+	private Exchange exchange(String topic, int partition, long offset, String value) {
+		Exchange exchange = new DefaultExchange(camelContext);
+		exchange.getIn().setHeader(KafkaConstants.TOPIC, topic);
+		exchange.getIn().setHeader(KafkaConstants.PARTITION, partition);
+		exchange.getIn().setHeader(KafkaConstants.OFFSET, offset);
+		exchange.getIn().setBody(value);
+		return exchange;
+	}
+}
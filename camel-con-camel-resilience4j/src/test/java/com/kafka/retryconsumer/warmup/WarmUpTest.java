@@ -0,0 +1,121 @@
+package com.kafka.retryconsumer.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetProperties;
+import com.kafka.retryconsumer.bulk.BulkDispatcher;
+import com.kafka.retryconsumer.bulk.BulkProperties;
+import com.kafka.retryconsumer.circuitbreaker.CircuitBreakers;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.commit.ManualCommitProcessor;
+import com.kafka.retryconsumer.idempotency.IdempotencyProperties;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimiters;
+import com.kafka.retryconsumer.limiter.LimiterProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopicProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopics;
+import com.kafka.retryconsumer.route.RetryRoute;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.ServiceStatus;
+import org.apache.camel.builder.AdviceWithRouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WarmUpTest {
+
+	private static final String TOPIC = "retry_topic_1";
+	private static final int EXCHANGES = 3;
+
+	private final DefaultCamelContext camelContext = new DefaultCamelContext();
+	private final WarmUpProperties properties = new WarmUpProperties();
+	private final RouteProperties routeProperties = new RouteProperties();
+	private final Queue<String> forgotten = new ConcurrentLinkedQueue<>();
+	private final ProcessedRecords processedRecords = new ProcessedRecords(idempotency(), new SimpleMeterRegistry()) {
+		@Override
+		public boolean remove(String key) {
+			// only records that completed were confirmed
+			if (contains(key)) {
+				forgotten.add(key);
+			}
+			return super.remove(key);
+		}
+	};
+	private RetryRoute retryRoute;
+
+	@AfterEach
+	void stopCamel() {
+		camelContext.stop();
+	}
+
+	@Test
+	void leavesTheConsumersStoppedUntilTheWarmUpStartsThem() throws Exception {
+		WarmUp warmUp = startCamel();
+
+		assertThat(retryRoute.getConsumerRouteIds()).isNotEmpty().allSatisfy(routeId ->
+				assertThat(camelContext.getRouteController().getRouteStatus(routeId)).isEqualTo(ServiceStatus.Stopped));
+
+		warmUp.afterApplicationStart(camelContext);
+
+		assertThat(retryRoute.getConsumerRouteIds()).allSatisfy(routeId ->
+				assertThat(camelContext.getRouteController().getRouteStatus(routeId)).isEqualTo(ServiceStatus.Started));
+	}
+
+	@Test
+	void answersWarmUpRecordsWithTheStubAndForgetsTheirKeys() throws Exception {
+		WarmUp warmUp = startCamel();
+
+		warmUp.afterApplicationStart(camelContext);
+
+		assertThat(forgotten).containsExactly(TOPIC + "-null@0", TOPIC + "-null@1", TOPIC + "-null@2");
+		assertThat(forgotten).noneMatch(processedRecords::contains);
+	}
+
+	@Test
+	void needsAtLeastOneConnection() {
+		assertThatThrownBy(() -> properties.setConnections(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private WarmUp startCamel() throws Exception {
+		properties.setEnabled(true);
+		properties.setConnections(1);
+		properties.setExchanges(EXCHANGES);
+		routeProperties.getTopics().put(TOPIC, new RouteProperties.TopicRoute());
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ManualCommitProcessor manualCommitProcessor = new ManualCommitProcessor(new CommitProperties(), meterRegistry);
+		RetryTopicProperties retryTopicProperties = new RetryTopicProperties();
+		RetryBudget retryBudget = new RetryBudget(new RetryBudgetProperties());
+		BulkDispatcher bulkDispatcher = new BulkDispatcher(new ObjectMapper(), camelContext.createProducerTemplate(),
+				manualCommitProcessor, processedRecords, retryBudget);
+		ConcurrencyLimiters concurrencyLimiters = new ConcurrencyLimiters(new LimiterProperties(), routeProperties,
+				meterRegistry);
+		CircuitBreakers circuitBreakers = new CircuitBreakers(routeProperties);
+		RetryTopics retryTopics = new RetryTopics(retryTopicProperties, routeProperties, new CommitProperties(),
+				meterRegistry);
+		retryRoute = new RetryRoute(manualCommitProcessor, retryTopics, retryTopicProperties, circuitBreakers,
+				bulkDispatcher, new BulkProperties(), concurrencyLimiters, processedRecords, routeProperties, retryBudget,
+				properties);
+		camelContext.addRoutes(retryRoute);
+		// no broker: the consumers read from direct: endpoints
+		for (String routeId : retryRoute.getConsumerRouteIds()) {
+			AdviceWithRouteBuilder.adviceWith(camelContext, routeId,
+					route -> route.replaceFromWith("direct:" + routeId));
+		}
+		camelContext.start();
+		return new WarmUp(properties, routeProperties, retryRoute, processedRecords, circuitBreakers,
+				concurrencyLimiters, meterRegistry, null);
+	}
+
+	private static IdempotencyProperties idempotency() {
+		IdempotencyProperties properties = new IdempotencyProperties();
+		properties.setEnabled(true);
+		return properties;
+	}
+}
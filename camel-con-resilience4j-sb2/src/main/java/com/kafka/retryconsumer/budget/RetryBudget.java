@@ -0,0 +1,166 @@
+package com.kafka.retryconsumer.budget;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by every retry of the process, so that retries across topics, partitions and retry stages cannot
+ * multiply the load on a downstream that is already failing. Each successful first attempt deposits
+ * {@link RetryBudgetProperties#getPercent() percent} of a token and the bucket refills at
+ * {@link RetryBudgetProperties#getMinRetriesPerSecond() a minimum rate}; each retry takes a whole token. A retry over
+ * budget is not made, the record is deferred to the next stage instead, as the {@link Stage} describes.
+ * <p>
+ * Tokens are kept in thousandths in one atomic, a deposit on the hot path is a single update.
+ */
+public class RetryBudget {
+
+    private static final long TOKEN = 1000;
+
+    /**
+     * Where a retry is made, and what becomes of the record over budget.
+     */
+    public enum Stage {
+        /**
+         * Another call of the in-process retry; the record fails and goes to the delayed retries or retry topics.
+         */
+        CALL,
+        /**
+         * An in-memory delayed retry; the record goes to the retry topics.
+         */
+        DELAYED,
+        /**
+         * A record of a retry tier topic; it is held back on its partition.
+         */
+        TIER,
+        /**
+         * A replay from the retry journal; the record stays due in the journal.
+         */
+        JOURNAL,
+        /**
+         * A hedge of a slow call, taken from the hedging budget; the call waits for its first attempt alone.
+         */
+        HEDGE
+    }
+
+    private final boolean enabled;
+    private final long deposit;
+    private final double refillPerNano;
+    private final long maxTokens;
+    private final LongSupplier nanoClock;
+    private final AtomicLong tokens;
+    private final AtomicLong lastRefill;
+    private final Map<Stage, LongAdder> exhausted = new EnumMap<>(Stage.class);
+
+    public RetryBudget(RetryBudgetProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RetryBudget(RetryBudgetProperties properties, LongSupplier nanoClock) {
+        this.enabled = properties.isEnabled();
+        this.deposit = Math.round(properties.getPercent() * TOKEN / 100);
+        this.refillPerNano = properties.getMinRetriesPerSecond() * TOKEN / 1e9;
+        this.maxTokens = properties.getMaxTokens() * TOKEN;
+        this.nanoClock = nanoClock;
+        // a second's worth of retries to start with
+        this.tokens = new AtomicLong(Math.min(maxTokens, Math.round(properties.getMinRetriesPerSecond() * TOKEN)));
+        this.lastRefill = new AtomicLong(nanoClock.getAsLong());
+        for (Stage stage : Stage.values()) {
+            exhausted.put(stage, new LongAdder());
+        }
+    }
+
+    public static RetryBudget unlimited() {
+        RetryBudgetProperties properties = new RetryBudgetProperties();
+        properties.setEnabled(false);
+        return new RetryBudget(properties);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A first attempt succeeded.
+     */
+    public void deposit() {
+        if (enabled) {
+            add(deposit);
+        }
+    }
+
+    /**
+     * Takes a token for a retry at {@code stage}; {@code false} if there is none and the retry must not be made.
+     */
+    public boolean tryAcquire(Stage stage) {
+        return tryAcquire(stage, false);
+    }
+
+    /**
+     * Takes a token for a retry at {@code stage}; a retry {@code refusedBefore} is not counted as refused again.
+     */
+    public boolean tryAcquire(Stage stage, boolean refusedBefore) {
+        if (!enabled) {
+            return true;
+        }
+        refill();
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                if (!refusedBefore) {
+                    exhausted.get(stage).increment();
+                }
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * Returns the token of a retry that was not made after all.
+     */
+    public void refund() {
+        if (enabled) {
+            add(TOKEN);
+        }
+    }
+
+    /**
+     * Whether a retry would be refused now, without taking a token.
+     */
+    public boolean isExhausted() {
+        if (!enabled) {
+            return false;
+        }
+        refill();
+        return tokens.get() < TOKEN;
+    }
+
+    public double getTokens() {
+        return (double) tokens.get() / TOKEN;
+    }
+
+    /**
+     * Retries refused at {@code stage} so far.
+     */
+    public long getExhausted(Stage stage) {
+        return exhausted.get(stage).sum();
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long last = lastRefill.get();
+        long refill = (long) ((now - last) * refillPerNano);
+        // below a thousandth of a token the time is left to accumulate
+        if (refill > 0 && lastRefill.compareAndSet(last, now)) {
+            add(refill);
+        }
+    }
+
+    private void add(long amount) {
+        tokens.accumulateAndGet(amount, (current, added) -> Math.min(maxTokens, current + added));
+    }
+}
@@ -0,0 +1,36 @@
+package com.kafka.retryconsumer.budget;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The retry budget of the process, its tokens published as the {@code retry.budget.tokens} gauge and the retries it
+ * refused as {@code retry.budget.exhausted} by stage. Hedges have a budget of their own, see
+ * {@link com.kafka.retryconsumer.faulttolerance.config.HedgingInstances}.
+ */
+@Configuration
+@EnableConfigurationProperties(RetryBudgetProperties.class)
+public class RetryBudgetConfig {
+
+    @Bean
+    public RetryBudget retryBudget(RetryBudgetProperties properties, MeterRegistry meterRegistry) {
+        RetryBudget retryBudget = new RetryBudget(properties);
+        Gauge.builder("retry.budget.tokens", retryBudget, RetryBudget::getTokens)
+                .description("Retries the budget allows right now")
+                .register(meterRegistry);
+        for (RetryBudget.Stage stage : RetryBudget.Stage.values()) {
+            if (stage == RetryBudget.Stage.HEDGE) {
+                continue;
+            }
+            FunctionCounter.builder("retry.budget.exhausted", retryBudget, budget -> budget.getExhausted(stage))
+                    .description("Retries not made because the retry budget was exhausted")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        return retryBudget;
+    }
+}
@@ -0,0 +1,139 @@
+package com.kafka.retryconsumer.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link PocRestClient} on the JDK {@link HttpClient}: a call returns at once and
+ * completes on the client's threads, so one caller can keep many requests in flight. The circuit breaker and retry are
+ * applied as {@link CompletionStage} decorators instead of the blocking annotations, retries wait on a scheduler
+ * rather than a thread. Failures are mapped to the {@link org.springframework.web.client.RestClientException}s
+ * {@code RestTemplate} throws, so the resilience4j instances record and retry the same exceptions on both paths.
+ * Every request is timed as {@code http.client.requests} with the tags Spring Boot gives the {@code RestTemplate}
+ * requests, plus {@code clientName=async}.
+ */
+@Slf4j
+@Component
+public class AsyncPocRestClient {
+
+    private static final String SERVICE_PATH = "/sample/hello?message=";
+    private static final String URI_TEMPLATE = "/sample/hello?message={message}";
+
+    private final HttpClientProperties properties;
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    // by status, 0 without a response
+    private final Map<Integer, Timer> timers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "async-rest-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public AsyncPocRestClient(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this(properties, HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .build(), meterRegistry);
+    }
+
+    public AsyncPocRestClient(HttpClientProperties properties, HttpClient httpClient, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Sends {@code message} to the sample service; {@code circuitBreaker} and {@code retry} may be {@code null}.
+     */
+    public CompletionStage<String> restClient(String message, CircuitBreaker circuitBreaker, Retry retry) {
+        Supplier<CompletionStage<String>> call = () -> send(message);
+        if (circuitBreaker != null) {
+            call = CircuitBreaker.decorateCompletionStage(circuitBreaker, call);
+        }
+        if (retry != null) {
+            call = Retry.decorateCompletionStage(retry, retryScheduler, call);
+        }
+        return call.get();
+    }
+
+    private CompletionStage<String> send(String message) {
+        URI uri = URI.create(properties.getBaseUrl() + SERVICE_PATH
+                + URLEncoder.encode(String.valueOf(message), StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(properties.getReadTimeout())
+                .GET()
+                .build();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+            timer(response).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                result.completeExceptionally(cause instanceof IOException
+                        ? new ResourceAccessException("I/O error on GET request for " + uri + ": "
+                        + cause.getMessage(), (IOException) cause)
+                        : cause);
+            } else if (response.statusCode() >= 400) {
+                result.completeExceptionally(new RestClientResponseException(
+                        response.statusCode() + " on GET request for " + uri, response.statusCode(), "",
+                        HttpHeaders.EMPTY, response.body().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+            } else {
+                result.complete(response.body());
+            }
+        });
+        return result;
+    }
+
+    private Timer timer(HttpResponse<?> response) {
+        return timers.computeIfAbsent(response == null ? 0 : response.statusCode(), this::newTimer);
+    }
+
+    private Timer newTimer(int status) {
+        String outcome = status == 0 ? "UNKNOWN"
+                : status >= 500 ? "SERVER_ERROR"
+                : status >= 400 ? "CLIENT_ERROR"
+                : status >= 300 ? "REDIRECTION"
+                : "SUCCESS";
+        return Timer.builder("http.client.requests")
+                .tag("method", "GET")
+                .tag("uri", URI_TEMPLATE)
+                .tag("status", status == 0 ? "CLIENT_ERROR" : String.valueOf(status))
+                .tag("clientName", "async")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package com.kafka.retryconsumer.client;
+
+/**
+ * A single item the batch endpoint rejected while the rest of the batch went through.
+ */
+public class BatchItemFailedException extends RuntimeException {
+
+    public BatchItemFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,79 @@
+package com.kafka.retryconsumer.client;
+
+import com.kafka.retryconsumer.limiter.AdaptiveConcurrencyLimiter;
+import com.kafka.retryconsumer.limiter.ConcurrencyLimitInterceptor;
+import com.kafka.retryconsumer.limiter.LimiterProperties;
+import com.kafka.retryconsumer.warmup.WarmUpProperties;
+import com.kafka.retryconsumer.warmup.WarmUpStub;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.web.client.MetricsRestTemplateCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled, keep-alive HTTP client shared by every {@link PocRestClient} call instead of a new
+ * {@link RestTemplate} (and TCP connection) per record.
+ */
+@Configuration
+@EnableConfigurationProperties({HttpClientProperties.class, WarmUpProperties.class})
+public class HttpClientConfig {
+
+    @Bean
+    public CloseableHttpClient pooledHttpClient(HttpClientProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+                .setSocketTimeout((int) properties.getReadTimeout().toMillis())
+                .setConnectionRequestTimeout((int) properties.getConnectionRequestTimeout().toMillis())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getMaxIdleTime().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Built by hand rather than from the {@code RestTemplateBuilder}, so the customizer timing every request as
+     * {@code http.client.requests} is applied here. Requests wait for a permit of the sample service limiter. While
+     * the warm-up runs its routes, the {@link WarmUpStub} answers requests before they are limited or timed.
+     */
+    @Bean
+    public RestTemplate pocRestTemplate(CloseableHttpClient pooledHttpClient, HttpClientProperties properties,
+                                        ObjectProvider<MetricsRestTemplateCustomizer> metricsCustomizer,
+                                        AdaptiveConcurrencyLimiter sampleServiceLimiter,
+                                        LimiterProperties limiterProperties, WarmUpStub warmUpStub,
+                                        WarmUpProperties warmUpProperties) {
+        RestTemplate restTemplate = pocRestTemplate(pooledHttpClient, properties);
+        metricsCustomizer.ifAvailable(customizer -> customizer.customize(restTemplate));
+        if (limiterProperties.isEnabled()) {
+            // outermost, so http.client.requests times the call and not the wait for a permit
+            restTemplate.getInterceptors().add(0, new ConcurrencyLimitInterceptor(sampleServiceLimiter));
+        }
+        if (warmUpProperties.isEnabled()) {
+            restTemplate.getInterceptors().add(0, warmUpStub);
+        }
+        return restTemplate;
+    }
+
+    public RestTemplate pocRestTemplate(CloseableHttpClient pooledHttpClient, HttpClientProperties properties) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(pooledHttpClient));
+        restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory(properties.getBaseUrl()));
+        return restTemplate;
+    }
+}
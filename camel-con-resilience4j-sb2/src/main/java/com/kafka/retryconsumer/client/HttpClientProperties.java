@@ -0,0 +1,27 @@
+package com.kafka.retryconsumer.client;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.http")
+public class HttpClientProperties {
+
+    private String baseUrl = "http://localhost:9080";
+    private int maxConnectionsTotal = 100;
+    private int maxConnectionsPerRoute = 20;
+    private Duration connectTimeout = Duration.ofSeconds(1);
+    private Duration readTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long a caller waits for a free pooled connection before failing.
+     */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Pooled connections unused for longer than this are closed by a background evictor.
+     */
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+}
@@ -1,37 +1,75 @@
 package com.kafka.retryconsumer.client;
 
-import com.kafka.retryconsumer.faulttolerance.config.CircuitBreakerInstances;
-import com.kafka.retryconsumer.faulttolerance.config.RetryInstances;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import com.kafka.retryconsumer.faulttolerance.ResiliencePipeline;
+import com.kafka.retryconsumer.faulttolerance.config.ResiliencePipelines;
+import com.kafka.retryconsumer.route.RouteProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+/**
+ * Calls the sample service for the route of a topic, through the {@link ResiliencePipeline} of the topic (see
+ * {@link ResiliencePipelines}). The single and bulk calls of every topic are decorated once when the client is
+ * created, a call only looks up its topic. Single calls are GETs and may be hedged, bulk calls are not.
+ */
 @Service
 @Slf4j
 public class PocRestClient {
 
-    private static final String SERVICE_URL = "http://localhost:9080/sample/hello?message=";
+    private final RestTemplate pocRestTemplate;
+    private final Map<String, Consumer<Exchange>> calls = new HashMap<>();
+    private final Map<String, Consumer<Exchange>> bulkCalls = new HashMap<>();
 
-    @CircuitBreaker(name = CircuitBreakerInstances.CIRCUIT_BREAKER_INSTANCE_TOPIC_1)
-    @Retry(name = RetryInstances.RETRY_INSTANCE_TOPIC_1)
-    public void restClient1(Exchange exchange) {
-        internalRestClient(exchange);
+    public PocRestClient(RestTemplate pocRestTemplate, RouteProperties routeProperties) {
+        this(pocRestTemplate, routeProperties, Map.of());
     }
 
-    @CircuitBreaker(name = CircuitBreakerInstances.CIRCUIT_BREAKER_INSTANCE_TOPIC_2)
-    @Retry(name = RetryInstances.RETRY_INSTANCE_TOPIC_2)
-    public void restClient2(Exchange exchange) {
-        internalRestClient(exchange);
+    @Autowired
+    public PocRestClient(RestTemplate pocRestTemplate, RouteProperties routeProperties,
+                         ResiliencePipelines resiliencePipelines) {
+        this(pocRestTemplate, routeProperties, resiliencePipelines.byTopic());
     }
 
-    public void internalRestClient(Exchange exchange) {
-        log.info("Request to {} at :{}", SERVICE_URL + exchange.getIn().getBody().toString(), LocalDateTime.now());
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getForObject(SERVICE_URL + exchange.getIn().getBody().toString(), String.class);
+    public PocRestClient(RestTemplate pocRestTemplate, RouteProperties routeProperties,
+                         Map<String, ResiliencePipeline> pipelines) {
+        this.pocRestTemplate = pocRestTemplate;
+        routeProperties.getTopics().forEach((topic, route) -> {
+            ResiliencePipeline pipeline = pipelines.getOrDefault(topic, ResiliencePipeline.NONE);
+            calls.put(topic, pipeline.decorateIdempotent(exchange -> internalRestClient(route.getPath(), exchange)));
+            bulkCalls.put(topic, pipeline.decorate(exchange -> internalBulkRestClient(route.getBatchPath(), exchange)));
+        });
+    }
+
+    public void restClient(String topic, Exchange exchange) {
+        calls.get(topic).accept(exchange);
+    }
+
+    /**
+     * Sends the {@link BatchItem}s in the body with one request and replaces them with the {@link BatchItemResult}s.
+     * Only a failing request counts for the circuit breaker and the retry, failed items do not.
+     */
+    public void bulkRestClient(String topic, Exchange exchange) {
+        bulkCalls.get(topic).accept(exchange);
+    }
+
+    public void internalBulkRestClient(String path, Exchange exchange) {
+        List<?> items = exchange.getIn().getBody(List.class);
+        log.info("Request to {} with {} messages at :{}", path, items.size(), LocalDateTime.now());
+        BatchItemResult[] results = pocRestTemplate.postForObject(path, items, BatchItemResult[].class);
+        exchange.getIn().setBody(results == null ? List.of() : List.of(results));
+    }
+
+    public void internalRestClient(String path, Exchange exchange) {
+        String message = exchange.getIn().getBody(String.class);
+        log.info("Request to {} with message {} at :{}", path, message, LocalDateTime.now());
+        pocRestTemplate.getForObject(path, String.class, message);
     }
 }
@@ -0,0 +1,21 @@
+package com.kafka.retryconsumer.commit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.commit")
+public class CommitProperties {
+
+    /**
+     * Completed records after which the staged offsets are committed.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Maximum time staged offsets wait for a commit.
+     */
+    private Duration interval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,51 @@
+package com.kafka.retryconsumer.commit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running totals of commit round trips and how many records each of them covered, also published as the
+ * {@code kafka.commit.latency} timer and the {@code kafka.commit.records} summary to the given meter registry.
+ */
+public class CommitStats {
+
+    private final Timer latency;
+    private final DistributionSummary batchSize;
+    private long commits;
+    private long records;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    public CommitStats(MeterRegistry meterRegistry) {
+        this.latency = Timer.builder("kafka.commit.latency")
+                .description("Round trip of an offset commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("kafka.commit.records")
+                .description("Records covered by an offset commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public synchronized void record(long latencyNanos, int batchRecords) {
+        commits++;
+        records += batchRecords;
+        totalLatencyNanos += latencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        batchSize.record(batchRecords);
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (commits == 0) {
+            return "no commits";
+        }
+        return String.format("%d commits, %.1f records/commit, avg %dms, max %dms", commits,
+                (double) records / commits, TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / commits),
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos));
+    }
+}
@@ -0,0 +1,103 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the calls of one topic on the shared executor, each holding a slot of the topic's bulkhead. The slot is taken
+ * on the caller's thread before the call is submitted and given back when the call ends, or when it is cancelled
+ * before it started, so a topic never has more calls on the executor than its bulkhead allows and a call waiting for
+ * a slot waits on its own thread, not on one of the executor's. Without a bulkhead calls are submitted as they are.
+ */
+class BulkheadedExecutor {
+
+    private final ExecutorService executor;
+    private final Bulkhead bulkhead;
+
+    /**
+     * @param bulkhead the bulkhead of the calls, may be {@code null}
+     */
+    BulkheadedExecutor(ExecutorService executor, Bulkhead bulkhead) {
+        this.executor = executor;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Submits {@code call} once it has a slot, waiting for one at most the bulkhead's maximum wait.
+     *
+     * @throws io.github.resilience4j.bulkhead.BulkheadFullException if no slot frees up in time
+     */
+    Future<?> submit(Runnable call) {
+        if (bulkhead != null) {
+            bulkhead.acquirePermission();
+        }
+        return submitAcquired(call);
+    }
+
+    /**
+     * Takes a slot for a call to {@link #submitAcquired submit}, without waiting; whether there was one.
+     */
+    boolean tryAcquire() {
+        return bulkhead == null || bulkhead.tryAcquirePermission();
+    }
+
+    /**
+     * Gives back a slot taken by {@link #tryAcquire} for a call that is not submitted after all.
+     */
+    void release() {
+        if (bulkhead != null) {
+            bulkhead.releasePermission();
+        }
+    }
+
+    /**
+     * Submits {@code call} holding the slot already taken for it.
+     */
+    Future<?> submitAcquired(Runnable call) {
+        if (bulkhead == null) {
+            return executor.submit(call);
+        }
+        SlotTask task = new SlotTask(call);
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * A call holding a slot, given back exactly once: when the call ends, or when the task is cancelled before it ran.
+     */
+    private class SlotTask extends FutureTask<Void> {
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        SlotTask(Runnable call) {
+            super(call, null);
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                try {
+                    super.run();
+                } finally {
+                    bulkhead.onComplete();
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() && started.compareAndSet(false, true)) {
+                bulkhead.releasePermission();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Hedged calls of one topic: a call still running after the {@link LatencyPercentile percentile} of the recent
+ * latencies, or the minimum delay if longer, is sent a second time and whichever attempt succeeds first completes it.
+ * Only idempotent calls may be hedged. Both attempts run on the executor and the caller waits for the first to succeed,
+ * or for both to fail. The loser is cancelled, a request already sent runs on until it answers or times out.
+ * <p>
+ * A hedge takes a token of the hedging budget, shared by all topics, which every successful call feeds, and is only
+ * sent while the circuit breaker is closed and the bulkhead of the topic has a free slot. The circuit breaker and the
+ * retry sit outside: the attempts of a hedged call count as one call for them, never as two failures. With a time
+ * limiter the caller waits at most its timeout for the attempts, a timeout fails as it does without hedging.
+ */
+public class Hedging {
+
+    private final String name;
+    private final LatencyPercentile latency;
+    private final long minDelayNanos;
+    private final RetryBudget budget;
+    private final CircuitBreaker circuitBreaker;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder won = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+
+    /**
+     * @param circuitBreaker the breaker of the calls, may be {@code null}
+     */
+    public Hedging(String name, LatencyPercentile latency, Duration minDelay, RetryBudget budget,
+                   CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.latency = latency;
+        this.minDelayNanos = minDelay.toNanos();
+        this.budget = budget;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Hedges {@code call} on {@code executor}, waiting at most the timeout of {@code timeLimiter} if there is one.
+     */
+    public <T> Consumer<T> decorate(Consumer<T> call, TimeLimiter timeLimiter, ExecutorService executor) {
+        return decorate(call, timeLimiter, new BulkheadedExecutor(executor, null));
+    }
+
+    /**
+     * Hedges {@code call}, every attempt holding a slot of the bulkhead of {@code executor}.
+     */
+    <T> Consumer<T> decorate(Consumer<T> call, TimeLimiter timeLimiter, BulkheadedExecutor executor) {
+        long timeoutNanos = timeLimiter == null ? Long.MAX_VALUE
+                : timeLimiter.getTimeLimiterConfig().getTimeoutDuration().toNanos();
+        return argument -> {
+            try {
+                hedged(call, argument, timeoutNanos, executor);
+                if (timeLimiter != null) {
+                    timeLimiter.onSuccess();
+                }
+            } catch (TimeoutException e) {
+                timeLimiter.onError(e);
+                throw new ResourceAccessException(e.getMessage());
+            } catch (RuntimeException e) {
+                if (timeLimiter != null) {
+                    timeLimiter.onError(e);
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * The delay after which a call is hedged, {@link Long#MAX_VALUE} until enough latencies are recorded.
+     */
+    public long getDelayNanos() {
+        long percentile = latency.getNanos();
+        return percentile == Long.MAX_VALUE ? percentile : Math.max(minDelayNanos, percentile);
+    }
+
+    /**
+     * Forgets the latencies recorded so far, calls are not hedged until enough are recorded again.
+     */
+    public void reset() {
+        latency.reset();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Hedges that succeeded before the attempt they were sent for.
+     */
+    public long getWon() {
+        return won.sum();
+    }
+
+    /**
+     * Hedges due but not sent, over budget, with the circuit breaker not closed or the bulkhead full.
+     */
+    public long getRefused() {
+        return refused.sum();
+    }
+
+    private <T> void hedged(Consumer<T> call, T argument, long timeoutNanos, BulkheadedExecutor executor)
+            throws TimeoutException {
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        Future<?> first = executor.submit(() -> attempt(call, argument, false, result, running));
+        Future<?> hedge = null;
+        try {
+            long delayNanos = getDelayNanos();
+            if (delayNanos < timeoutNanos) {
+                if (await(result, delayNanos)) {
+                    succeeded(result);
+                    return;
+                }
+                if (mayHedge(executor)) {
+                    // nothing is sent once both attempts have failed
+                    if (running.getAndUpdate(attempts -> attempts == 0 ? 0 : attempts + 1) > 0) {
+                        sent.increment();
+                        hedge = executor.submitAcquired(() -> attempt(call, argument, true, result, running));
+                    } else {
+                        executor.release();
+                    }
+                }
+            }
+            long remaining = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : timeoutNanos - (System.nanoTime() - start);
+            if (!await(result, remaining)) {
+                throw TimeLimiter.createdTimeoutExceptionWithName(name, null);
+            }
+            succeeded(result);
+        } finally {
+            first.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Whether a hedge may be sent, holding a token of the budget and a slot of the bulkhead if so.
+     */
+    private boolean mayHedge(BulkheadedExecutor executor) {
+        boolean closed = circuitBreaker == null || circuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+        if (closed && budget.tryAcquire(RetryBudget.Stage.HEDGE)) {
+            if (executor.tryAcquire()) {
+                return true;
+            }
+            budget.refund();
+        }
+        refused.increment();
+        return false;
+    }
+
+    /**
+     * Counts a call that succeeded on the caller's thread, so that the counts are up to date once the call returns.
+     */
+    private void succeeded(CompletableFuture<Boolean> result) {
+        budget.deposit();
+        if (result.join()) {
+            won.increment();
+        }
+    }
+
+    private <T> void attempt(Consumer<T> call, T argument, boolean hedge, CompletableFuture<Boolean> result,
+                             AtomicInteger running) {
+        long start = System.nanoTime();
+        try {
+            call.accept(argument);
+            latency.record(System.nanoTime() - start);
+            result.complete(hedge);
+        } catch (RuntimeException | Error e) {
+            // the call fails with the last attempt to fail
+            if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Whether the call completed within {@code nanos}; rethrows its failure.
+     */
+    private static boolean await(CompletableFuture<Boolean> result, long nanos) {
+        try {
+            if (nanos == Long.MAX_VALUE) {
+                result.get();
+            } else {
+                result.get(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+            }
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted waiting for a hedged call");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A percentile of the latencies of the last {@value #SAMPLES} calls. The samples are kept in a ring and the percentile
+ * is recomputed every {@value #RECOMPUTE_EVERY} calls by the thread recording the last of them, reading it costs a
+ * volatile read. Until {@value #MIN_SAMPLES} calls are recorded there is no percentile yet.
+ */
+public class LatencyPercentile {
+
+    static final int SAMPLES = 1024;
+    static final int RECOMPUTE_EVERY = 64;
+    static final int MIN_SAMPLES = 128;
+
+    private final double percentile;
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long nanos = Long.MAX_VALUE;
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public LatencyPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be above 0 and at most 100: " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    public void record(long latencyNanos) {
+        long count = recorded.incrementAndGet();
+        samples.set((int) ((count - 1) % SAMPLES), latencyNanos);
+        if (count >= MIN_SAMPLES && count % RECOMPUTE_EVERY == 0) {
+            recompute((int) Math.min(count, SAMPLES));
+        }
+    }
+
+    /**
+     * Forgets the recorded latencies, there is no percentile until enough calls are recorded again.
+     */
+    public void reset() {
+        recorded.set(0);
+        nanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * The percentile in nanoseconds, {@link Long#MAX_VALUE} while there are too few samples.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    private void recompute(int count) {
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        nanos = sorted[Math.max(0, rank - 1)];
+    }
+}
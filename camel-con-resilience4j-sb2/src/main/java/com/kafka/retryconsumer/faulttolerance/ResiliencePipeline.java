@@ -0,0 +1,129 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The fault tolerance of one topic as a chain of decorators, from the call outwards: bulkhead, time limiter, circuit
+ * breaker, retry, the order the resilience4j aspects apply the annotations in. A call is decorated once and the
+ * decorated call is kept, nothing is resolved per record. Any stage may be {@code null} and is left out.
+ * <p>
+ * The time limiter runs the call on the executor and waits for it at most its timeout. A timeout fails the call with a
+ * {@link ResourceAccessException}, as a read timeout of the {@code RestTemplate} would, so the circuit breaker records
+ * it and the retry retries it. A call on the executor takes its slot of the bulkhead on the caller's thread before it
+ * is submitted, waiting for it before the timeout starts, and holds it until it really ends, timed out or not: the
+ * bulkhead bounds the threads of the executor the topic takes.
+ * <p>
+ * Idempotent calls are {@link Hedging hedged} in place of the time limiter, which then bounds the wait for the
+ * attempts; every attempt takes a slot of the bulkhead, a hedge is only sent if one is free.
+ */
+public class ResiliencePipeline {
+
+    public static final ResiliencePipeline NONE = new ResiliencePipeline(null, null, null, null, null);
+
+    private final Bulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+    private final Hedging hedging;
+    private final BulkheadedExecutor executor;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+
+    public ResiliencePipeline(Bulkhead bulkhead, CircuitBreaker circuitBreaker, Retry retry) {
+        this(bulkhead, null, null, circuitBreaker, retry);
+    }
+
+    public ResiliencePipeline(Bulkhead bulkhead, TimeLimiter timeLimiter, ExecutorService executor,
+                              CircuitBreaker circuitBreaker, Retry retry) {
+        this(bulkhead, timeLimiter, null, executor, circuitBreaker, retry);
+    }
+
+    public ResiliencePipeline(Bulkhead bulkhead, TimeLimiter timeLimiter, Hedging hedging, ExecutorService executor,
+                              CircuitBreaker circuitBreaker, Retry retry) {
+        if ((timeLimiter != null || hedging != null) && executor == null) {
+            throw new IllegalArgumentException("A time limiter or hedging needs an executor");
+        }
+        this.bulkhead = bulkhead;
+        this.timeLimiter = timeLimiter;
+        this.hedging = hedging;
+        this.executor = executor == null ? null : new BulkheadedExecutor(executor, bulkhead);
+        this.circuitBreaker = circuitBreaker;
+        this.retry = retry;
+    }
+
+    public <T> Consumer<T> decorate(Consumer<T> call) {
+        return decorate(call, false);
+    }
+
+    /**
+     * Like {@link #decorate}, hedged if the pipeline hedges: {@code call} must be safe to make twice.
+     */
+    public <T> Consumer<T> decorateIdempotent(Consumer<T> call) {
+        return decorate(call, true);
+    }
+
+    /**
+     * Closes the circuit breaker and forgets the latencies of the hedged calls, e.g. after calls to a stub.
+     */
+    public void reset() {
+        if (circuitBreaker != null) {
+            circuitBreaker.reset();
+        }
+        if (hedging != null) {
+            hedging.reset();
+        }
+    }
+
+    private <T> Consumer<T> decorate(Consumer<T> call, boolean idempotent) {
+        Consumer<T> decorated = call;
+        boolean hedged = hedging != null && idempotent;
+        // calls on the executor take their slot before they are submitted
+        if (bulkhead != null && !hedged && timeLimiter == null) {
+            decorated = Bulkhead.decorateConsumer(bulkhead, decorated);
+        }
+        if (hedged) {
+            decorated = hedging.decorate(decorated, timeLimiter, executor);
+        } else if (timeLimiter != null) {
+            decorated = timeLimited(decorated);
+        }
+        if (circuitBreaker != null) {
+            decorated = CircuitBreaker.decorateConsumer(circuitBreaker, decorated);
+        }
+        if (retry != null) {
+            Function<T, Void> retried = Retry.decorateFunction(retry, asFunction(decorated));
+            decorated = retried::apply;
+        }
+        return decorated;
+    }
+
+    private <T> Consumer<T> timeLimited(Consumer<T> call) {
+        return argument -> {
+            try {
+                timeLimiter.executeFutureSupplier(() -> executor.submit(() -> call.accept(argument)));
+            } catch (TimeoutException e) {
+                throw new ResourceAccessException(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("Interrupted waiting for " + timeLimiter.getName());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static <T> Function<T, Void> asFunction(Consumer<T> call) {
+        return argument -> {
+            call.accept(argument);
+            return null;
+        };
+    }
+}
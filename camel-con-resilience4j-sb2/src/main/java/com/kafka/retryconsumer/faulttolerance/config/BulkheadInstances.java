@@ -0,0 +1,38 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One semaphore bulkhead per topic of {@link RouteProperties}, registered under the topic name. The topics share one
+ * connection pool to the sample service, the bulkhead keeps a slow topic from holding all of it.
+ */
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
+public class BulkheadInstances {
+
+    private final Map<String, Bulkhead> bulkheads = new TreeMap<>();
+
+    public BulkheadInstances(BulkheadRegistry bulkheadRegistry, RouteProperties routeProperties) {
+        routeProperties.getTopics().forEach((topic, route) ->
+                bulkheads.put(topic, bulkheadRegistry.bulkhead(topic, bulkheadConfig(route.getBulkhead()))));
+    }
+
+    public static BulkheadConfig bulkheadConfig(RouteProperties.BulkheadPolicy policy) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(policy.getMaxConcurrentCalls())
+                .maxWaitDuration(policy.getMaxWait())
+                .build();
+    }
+
+    public Bulkhead forTopic(String topic) {
+        return bulkheads.get(topic);
+    }
+}
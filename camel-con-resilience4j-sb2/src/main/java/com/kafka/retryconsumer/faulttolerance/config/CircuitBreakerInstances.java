@@ -1,52 +1,56 @@
 package com.kafka.retryconsumer.faulttolerance.config;
 
+import com.kafka.retryconsumer.route.RouteProperties;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 
-import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
 
-@Configuration
-@AllArgsConstructor
+/**
+ * One circuit breaker per topic of {@link RouteProperties}, registered under the topic name before the routes run, so
+ * that the {@link ResiliencePipelines} and the flow control of the consumers find the same instance.
+ */
 @Slf4j
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
 public class CircuitBreakerInstances {
 
-    public static final String CIRCUIT_BREAKER_INSTANCE_TOPIC_1 = "circuit-breaker-instance-topic1";
-    public static final String CIRCUIT_BREAKER_INSTANCE_TOPIC_2 = "circuit-breaker-instance-topic2";
+    private final Map<String, CircuitBreaker> circuitBreakers = new TreeMap<>();
 
-    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    public CircuitBreakerInstances(CircuitBreakerRegistry circuitBreakerRegistry, RouteProperties routeProperties) {
+        routeProperties.getTopics().forEach((topic, route) -> {
+            var cb = circuitBreakerRegistry.circuitBreaker(topic, circuitBreakerConfig(route.getCircuitBreaker()));
+            cb.getEventPublisher().onStateTransition(event ->
+                    log.info("{} circuit breaker: {}", event.getCircuitBreakerName(), event.getStateTransition()));
+            circuitBreakers.put(topic, cb);
+        });
+    }
 
-    @Bean
-    public CircuitBreakerConfig defaultCircuitBreakerConfig() {
+    public static CircuitBreakerConfig circuitBreakerConfig(RouteProperties.CircuitBreakerPolicy policy) {
         return CircuitBreakerConfig
                 .custom()
-                .failureRateThreshold(60)
-                .waitDurationInOpenState(Duration.ofSeconds(10))
-                .minimumNumberOfCalls(5)
+                .failureRateThreshold(policy.getFailureRateThreshold())
+                .waitDurationInOpenState(policy.getWaitDurationInOpenState())
+                // the consumers are paused while open, no call would move the breaker to half open
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .minimumNumberOfCalls(policy.getMinimumNumberOfCalls())
                 .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
-                .slidingWindowSize(10)
+                .slidingWindowSize(policy.getSlidingWindowSize())
                 .recordExceptions(RestClientException.class)
                 .build();
     }
 
-    @Bean
-    public CircuitBreaker circuitBreakerInstanceTopic1(CircuitBreakerConfig defaultCircuitBreakerConfig) {
-        var cb = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_INSTANCE_TOPIC_1, defaultCircuitBreakerConfig);
-        cb.getEventPublisher().onStateTransition(event ->
-                log.info("{} circuit breaker: {}", event.getCircuitBreakerName(), event.getStateTransition()));
-        return cb;
+    public CircuitBreaker forTopic(String topic) {
+        return circuitBreakers.get(topic);
     }
 
-    @Bean
-    public CircuitBreaker circuitBreakerInstanceTopic2(CircuitBreakerConfig defaultCircuitBreakerConfig) {
-        var cb = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_INSTANCE_TOPIC_2, defaultCircuitBreakerConfig);
-        cb.getEventPublisher().onStateTransition(event ->
-                log.info("{} circuit breaker: {}", event.getCircuitBreakerName(), event.getStateTransition()));
-        return cb;
+    public Map<String, CircuitBreaker> byTopic() {
+        return circuitBreakers;
     }
 }
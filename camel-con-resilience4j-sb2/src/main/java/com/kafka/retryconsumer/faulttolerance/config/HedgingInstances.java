@@ -0,0 +1,70 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.faulttolerance.Hedging;
+import com.kafka.retryconsumer.faulttolerance.LatencyPercentile;
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The {@link Hedging} of every topic of {@link RouteProperties} with hedging enabled, on one budget for all of them.
+ * Published as the {@code hedging.requests} counters by topic and outcome ({@code sent}, {@code won} when the hedge
+ * answered first, {@code refused} over budget or with the circuit breaker not closed), the {@code hedging.delay} gauge
+ * by topic and the {@code hedging.budget.tokens} gauge.
+ */
+@Component
+@EnableConfigurationProperties({HedgingProperties.class, RouteProperties.class})
+public class HedgingInstances {
+
+    private final Map<String, Hedging> hedgings = new TreeMap<>();
+
+    public HedgingInstances(HedgingProperties properties, CircuitBreakerInstances circuitBreakerInstances,
+                            RouteProperties routeProperties, MeterRegistry meterRegistry) {
+        RetryBudget budget = new RetryBudget(properties.budget());
+        Gauge.builder("hedging.budget.tokens", budget, RetryBudget::getTokens)
+                .description("Hedges the budget allows right now")
+                .register(meterRegistry);
+        routeProperties.getTopics().forEach((topic, route) -> {
+            RouteProperties.HedgingPolicy policy = route.getHedging();
+            if (policy.isEnabled()) {
+                Hedging hedging = new Hedging(topic, new LatencyPercentile(policy.getPercentile()),
+                        policy.getMinDelay(), budget, circuitBreakerInstances.forTopic(topic));
+                hedgings.put(topic, hedging);
+                register(meterRegistry, topic, "sent", hedging, Hedging::getSent);
+                register(meterRegistry, topic, "won", hedging, Hedging::getWon);
+                register(meterRegistry, topic, "refused", hedging, Hedging::getRefused);
+                TimeGauge.builder("hedging.delay", hedging, TimeUnit.NANOSECONDS,
+                                h -> h.getDelayNanos() == Long.MAX_VALUE ? Double.NaN : h.getDelayNanos())
+                        .description("Latency after which a call is hedged, none until enough calls are timed")
+                        .tag("topic", topic)
+                        .register(meterRegistry);
+            }
+        });
+    }
+
+    /**
+     * The hedging of {@code topic}, {@code null} if it does not hedge.
+     */
+    public Hedging forTopic(String topic) {
+        return hedgings.get(topic);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String topic, String outcome, Hedging hedging,
+                                 ToDoubleFunction<Hedging> count) {
+        FunctionCounter.builder("hedging.requests", hedging, count)
+                .description("Hedged requests by outcome")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
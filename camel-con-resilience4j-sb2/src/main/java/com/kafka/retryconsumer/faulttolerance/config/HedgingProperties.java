@@ -0,0 +1,37 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import com.kafka.retryconsumer.budget.RetryBudgetProperties;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The budget of the hedges of all topics; which topics hedge is set per topic in
+ * {@link com.kafka.retryconsumer.route.RouteProperties.HedgingPolicy}.
+ */
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.hedging")
+public class HedgingProperties {
+
+    /**
+     * Hedges allowed per 100 successful calls.
+     */
+    private double percent = 5;
+
+    /**
+     * Hedges allowed per second whatever succeeds.
+     */
+    private double minHedgesPerSecond = 1;
+
+    /**
+     * Hedges that can be saved up.
+     */
+    private int maxTokens = 10;
+
+    public RetryBudgetProperties budget() {
+        RetryBudgetProperties budget = new RetryBudgetProperties();
+        budget.setPercent(percent);
+        budget.setMinRetriesPerSecond(minHedgesPerSecond);
+        budget.setMaxTokens(maxTokens);
+        return budget;
+    }
+}
@@ -0,0 +1,57 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import com.kafka.retryconsumer.faulttolerance.ResiliencePipeline;
+import com.kafka.retryconsumer.route.RouteProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link ResiliencePipeline} of every topic of {@link RouteProperties}, put together once at startup from the
+ * bulkhead, time limiter, hedging, circuit breaker and retry registered under the topic name. Calls with a time limit
+ * and hedged calls run on one shared pool. A call takes its slot of the topic's bulkhead before it is submitted and
+ * holds it until it ends, so a topic with a bulkhead never has more threads of the pool than its maximum concurrent
+ * calls, timed out calls included; the calls of a topic without one are not bounded.
+ */
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
+public class ResiliencePipelines {
+
+    private final Map<String, ResiliencePipeline> pipelines = new TreeMap<>();
+    private final ExecutorService executor;
+
+    public ResiliencePipelines(BulkheadInstances bulkheadInstances, TimeLimiterInstances timeLimiterInstances,
+                               HedgingInstances hedgingInstances, CircuitBreakerInstances circuitBreakerInstances,
+                               RetryInstances retryInstances, RouteProperties routeProperties) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "resilient-call-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        routeProperties.getTopics().forEach((topic, route) -> {
+            pipelines.put(topic, new ResiliencePipeline(bulkheadInstances.forTopic(topic),
+                    timeLimiterInstances.forTopic(topic), hedgingInstances.forTopic(topic), executor,
+                    circuitBreakerInstances.forTopic(topic), retryInstances.forTopic(topic)));
+        });
+    }
+
+    public ResiliencePipeline forTopic(String topic) {
+        return pipelines.get(topic);
+    }
+
+    public Map<String, ResiliencePipeline> byTopic() {
+        return pipelines;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+}
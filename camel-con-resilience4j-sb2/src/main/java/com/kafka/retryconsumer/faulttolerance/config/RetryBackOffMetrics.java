@@ -0,0 +1,45 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Adds what the resilience4j call metrics leave out for the {@link RetryInstances}: every retry attempt
+ * ({@code resilience4j.retry.attempts}) and the back-off waited before it ({@code resilience4j.retry.backoff}). The
+ * calls, circuit-breaker states and failure rates come with resilience4j's own auto-configured metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class RetryBackOffMetrics {
+
+    private final RetryRegistry retryRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void bind() {
+        retryRegistry.getAllRetries().forEach(this::bind);
+        retryRegistry.getEventPublisher().onEntryAdded(event -> bind(event.getAddedEntry()));
+    }
+
+    private void bind(Retry retry) {
+        Counter attempts = Counter.builder("resilience4j.retry.attempts")
+                .description("Retry attempts, the first call not counted")
+                .tag("name", retry.getName())
+                .register(meterRegistry);
+        Timer backOff = Timer.builder("resilience4j.retry.backoff")
+                .description("Time waited before a retry attempt")
+                .tag("name", retry.getName())
+                .register(meterRegistry);
+        retry.getEventPublisher().onRetry(event -> {
+            attempts.increment();
+            backOff.record(event.getWaitInterval());
+        });
+    }
+}
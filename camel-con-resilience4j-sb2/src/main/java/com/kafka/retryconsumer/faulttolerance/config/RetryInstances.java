@@ -1,71 +1,83 @@
 package com.kafka.retryconsumer.faulttolerance.config;
 
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.processing.DelayedRetryProperties;
+import com.kafka.retryconsumer.route.RouteProperties;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.retry.RetryRegistry;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 
-import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
-@Configuration
-@AllArgsConstructor
+/**
+ * One retry per topic of {@link RouteProperties}, registered under the topic name like its circuit breaker. Every
+ * retry takes a token of the shared {@link RetryBudget}; over budget the call fails at once.
+ */
+@Component
+@EnableConfigurationProperties({DelayedRetryProperties.class, RouteProperties.class})
 @Slf4j
 public class RetryInstances {
 
-    public static final String RETRY_INSTANCE_TOPIC_1 = "retry-instance-topic1";
-    public static final String RETRY_INSTANCE_TOPIC_2 = "retry-instance-topic2";
-    private final RetryRegistry retryRegistry;
-    private final CircuitBreaker circuitBreakerInstanceTopic1;
-    private final CircuitBreaker circuitBreakerInstanceTopic2;
+    private final DelayedRetryProperties delayedRetryProperties;
+    private final RetryBudget retryBudget;
+    private final Map<String, Retry> retries = new TreeMap<>();
 
-    public RetryConfig defaultRetryConfig(CircuitBreaker circuitBreaker) {
+    public RetryInstances(RetryRegistry retryRegistry, CircuitBreakerInstances circuitBreakerInstances,
+                          RouteProperties routeProperties, DelayedRetryProperties delayedRetryProperties,
+                          RetryBudget retryBudget) {
+        this.delayedRetryProperties = delayedRetryProperties;
+        this.retryBudget = retryBudget;
+        routeProperties.getTopics().forEach((topic, route) -> {
+            Retry retry = retryRegistry.retry(topic,
+                    defaultRetryConfig(circuitBreakerInstances.forTopic(topic), route.getRetry()));
+            if (retry.getRetryConfig().getMaxAttempts() > 1) {
+                // retries exhausted: the exception predicate took a token for an attempt that is not made
+                retry.getEventPublisher().onError(event -> retryBudget.refund());
+            }
+            retries.put(topic, retry);
+        });
+    }
+
+    /**
+     * Short in-process retries for transient errors only. Longer back-offs, including waiting for an open circuit
+     * breaker, are left to the retry topics so the consuming thread never sleeps for seconds. With delayed retries
+     * enabled the timer wheel takes over the back-off entirely and only a single attempt is made here. The exception
+     * predicate runs before every further attempt and takes its token from the budget.
+     */
+    public RetryConfig defaultRetryConfig(CircuitBreaker circuitBreaker, RouteProperties.RetryPolicy policy) {
+        long backOffMillis = policy.getBackOff().toMillis();
+        int maxAttempts = delayedRetryProperties.isEnabled() ? 1 : policy.getMaxAttempts();
         return RetryConfig
                 .custom()
-                .maxAttempts(3)
+                .maxAttempts(maxAttempts)
                 .failAfterMaxAttempts(false)
-                .retryExceptions(RestClientException.class,
-                        CallNotPermittedException.class)
+                .retryOnException(e -> e instanceof RestClientException
+                        && (maxAttempts == 1 || retryBudget.tryAcquire(RetryBudget.Stage.CALL)))
+                .ignoreExceptions(CallNotPermittedException.class)
                 .intervalBiFunction(
                         (attempt, objects) -> {
-                            long duration = Duration.ofSeconds(1).toMillis();
-                            long cbDuration = Optional.ofNullable(circuitBreaker)
-                                    .filter(cb -> !cb.tryAcquirePermission())
-                                    .map(cb -> cb.getCircuitBreakerConfig()
-                                            .getWaitIntervalFunctionInOpenState().apply(attempt) + 1000L)
-                                    .orElse(0L);
-                            final var maxDuration = Math.max(duration, cbDuration);
-                            log.info("retry back-off: {}, {}ms", attempt, maxDuration);
-                            return maxDuration;
+                            long duration = backOffMillis * attempt;
+                            boolean cbOpen = Optional.ofNullable(circuitBreaker)
+                                    .map(cb -> cb.getState() == CircuitBreaker.State.OPEN)
+                                    .orElse(false);
+                            // the next attempt is rejected anyway and goes to the retry topics
+                            final var backOff = cbOpen ? 0L : duration;
+                            log.info("retry back-off: {}, {}ms", attempt, backOff);
+                            return backOff;
                         }
                 )
                 .build();
     }
 
-    /*@Bean
-    public RetryTemplate retryInstanceTopicUsingTemplate() {
-        return RetryTemplate.builder()
-                .maxAttempts(10)
-                .customBackoff(new FixedBackOffPolicyWithCb(Duration.ofSeconds(1),
-                        circuitBreakerInstanceTopic1))
-                .build();
-    }*/
-
-    @Bean
-    public Retry retryInstanceTopic1() {
-        RetryConfig retryConfig = defaultRetryConfig(circuitBreakerInstanceTopic1);
-        return retryRegistry.retry(RETRY_INSTANCE_TOPIC_1, retryConfig);
-    }
-
-    @Bean
-    public Retry retryInstanceTopic2() {
-        RetryConfig retryConfig = defaultRetryConfig(circuitBreakerInstanceTopic2);
-        return retryRegistry.retry(RETRY_INSTANCE_TOPIC_2, retryConfig);
+    public Retry forTopic(String topic) {
+        return retries.get(topic);
     }
 }
@@ -0,0 +1,45 @@
+package com.kafka.retryconsumer.faulttolerance.config;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A time limiter for every topic of {@link RouteProperties} with a timeout, registered under the topic name. Topics
+ * without one have none.
+ */
+@Component
+@EnableConfigurationProperties(RouteProperties.class)
+public class TimeLimiterInstances {
+
+    private final Map<String, TimeLimiter> timeLimiters = new TreeMap<>();
+
+    public TimeLimiterInstances(TimeLimiterRegistry timeLimiterRegistry, RouteProperties routeProperties) {
+        routeProperties.getTopics().forEach((topic, route) -> {
+            if (route.getTimeLimiter().getTimeout() != null) {
+                timeLimiters.put(topic,
+                        timeLimiterRegistry.timeLimiter(topic, timeLimiterConfig(route.getTimeLimiter())));
+            }
+        });
+    }
+
+    public static TimeLimiterConfig timeLimiterConfig(RouteProperties.TimeLimiterPolicy policy) {
+        return TimeLimiterConfig.custom()
+                .timeoutDuration(policy.getTimeout())
+                .cancelRunningFuture(true)
+                .build();
+    }
+
+    /**
+     * The time limiter of {@code topic}, {@code null} if it has no timeout.
+     */
+    public TimeLimiter forTopic(String topic) {
+        return timeLimiters.get(topic);
+    }
+}
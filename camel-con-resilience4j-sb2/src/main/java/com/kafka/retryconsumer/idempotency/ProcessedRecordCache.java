@@ -0,0 +1,194 @@
+package com.kafka.retryconsumer.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Keys of processed records, each remembered for a time to live and at most {@code maxSize} of them, the oldest
+ * forgotten first. All keys live as long, so insertion order is expiry order and both bounds evict from the head.
+ * <p>
+ * With a store file every added key is appended to it as its expiry time and key, and the keys still alive are read
+ * back on start. The file is rewritten with the live keys only once it holds twice as many entries as the cache can.
+ * Appends are buffered and flushed every {@value #FLUSH_EVERY} keys, with the first key added
+ * {@value #FLUSH_INTERVAL_MILLIS}ms after the last flush, and on close; a crash loses the keys not flushed yet, whose
+ * records are processed again as without a store. Failing to append only loses the key after a restart, so it is
+ * logged and the cache carries on in memory.
+ */
+@Slf4j
+public class ProcessedRecordCache implements Closeable {
+
+    private static final int FLUSH_EVERY = 100;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Path storeFile;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Long> expiries = new LinkedHashMap<>();
+    private DataOutputStream store;
+    private int stored;
+    private int unflushed;
+    private long lastFlush;
+
+    public ProcessedRecordCache(int maxSize, Duration ttl, Path storeFile) {
+        this(maxSize, ttl, storeFile, System::currentTimeMillis);
+    }
+
+    ProcessedRecordCache(int maxSize, Duration ttl, Path storeFile, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.storeFile = storeFile;
+        this.clock = clock;
+        if (storeFile != null) {
+            try {
+                load();
+                rewrite();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open processed record store " + storeFile, e);
+            }
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        Long expiry = expiries.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry <= clock.getAsLong()) {
+            expiries.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers {@code key}, returns {@code false} if it was known already.
+     */
+    public synchronized boolean add(String key) {
+        long now = clock.getAsLong();
+        Long previous = expiries.remove(key);
+        long expiry = now + ttlMillis;
+        expiries.put(key, expiry);
+        evict(now);
+        append(key, expiry, now);
+        return previous == null || previous <= now;
+    }
+
+    public synchronized boolean remove(String key) {
+        if (expiries.remove(key) == null) {
+            return false;
+        }
+        append(key, 0L, clock.getAsLong());
+        return true;
+    }
+
+    public synchronized void clear() {
+        expiries.clear();
+        if (store != null) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                log.error("Could not clear processed record store {}", storeFile, e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return expiries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Long>> oldest = expiries.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            if (expiries.size() <= maxSize && entry.getValue() > now) {
+                return;
+            }
+            oldest.remove();
+        }
+    }
+
+    private void append(String key, long expiry, long now) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.writeLong(expiry);
+            store.writeUTF(key);
+            if (++stored > 2 * maxSize) {
+                rewrite();
+            } else if (++unflushed >= FLUSH_EVERY || now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                store.flush();
+                unflushed = 0;
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            log.error("Could not store processed record {} in {}", key, storeFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(storeFile)) {
+            return;
+        }
+        long now = clock.getAsLong();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storeFile)))) {
+            while (true) {
+                long expiry = in.readLong();
+                String key = in.readUTF();
+                expiries.remove(key);
+                if (expiry > now) {
+                    expiries.put(key, expiry);
+                }
+            }
+        } catch (EOFException e) {
+            // end of the store, or a record cut short by a crash
+        }
+        evict(now);
+        log.info("Loaded {} processed records from {}", expiries.size(), storeFile);
+    }
+
+    private void rewrite() throws IOException {
+        close();
+        Path parent = storeFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path compacted = Files.createTempFile(parent, storeFile.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+            for (Map.Entry<String, Long> entry : expiries.entrySet()) {
+                out.writeLong(entry.getValue());
+                out.writeUTF(entry.getKey());
+            }
+        }
+        Files.move(compacted, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        store = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(storeFile,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        stored = expiries.size();
+        unflushed = 0;
+        lastFlush = clock.getAsLong();
+    }
+}
@@ -0,0 +1,140 @@
+package com.kafka.retryconsumer.idempotency;
+
+import com.kafka.retryconsumer.processing.AsyncRecordProcessor;
+import com.kafka.retryconsumer.processing.KafkaBatchProcessor;
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Skips records whose processing succeeded before, so that records fetched again after a rebalance or a restart do
+ * not call the sample service again. A record is remembered once its processor returns, or its stage completes,
+ * without failure; a skipped record counts as processed and is committed like any other. Disabled, the processors are
+ * not wrapped at all.
+ */
+@Component
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class ProcessedRecords {
+
+    private final IdempotencyProperties properties;
+    private final ProcessedRecordCache cache;
+    private final Counter skipped;
+
+    public ProcessedRecords(IdempotencyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = properties.isEnabled() ? new ProcessedRecordCache(properties.getMaxSize(), properties.getTtl(),
+                StringUtils.hasText(properties.getStoreFile()) ? Paths.get(properties.getStoreFile()) : null) : null;
+        this.skipped = Counter.builder("idempotency.skipped")
+                .description("Records skipped because their processing succeeded before")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public KafkaRecordProcessor skipProcessed(KafkaRecordProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return (record, lastInBatch) -> {
+            String key = key(record);
+            if (cache.contains(key)) {
+                skipped.increment();
+                return;
+            }
+            processor.process(record, lastInBatch);
+            cache.add(key);
+        };
+    }
+
+    /**
+     * Leaves the records processed before out of the batch and remembers the records that did not fail.
+     */
+    public KafkaBatchProcessor skipProcessed(KafkaBatchProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return batch -> {
+            List<ConsumerRecord<String, String>> unprocessed = new ArrayList<>(batch.size());
+            List<String> keys = new ArrayList<>(batch.size());
+            for (ConsumerRecord<String, String> record : batch) {
+                String key = key(record);
+                if (cache.contains(key)) {
+                    skipped.increment();
+                } else {
+                    unprocessed.add(record);
+                    keys.add(key);
+                }
+            }
+            if (unprocessed.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<ConsumerRecord<String, String>, Exception> failures = processor.process(unprocessed);
+            for (int i = 0; i < unprocessed.size(); i++) {
+                if (!failures.containsKey(unprocessed.get(i))) {
+                    cache.add(keys.get(i));
+                }
+            }
+            return failures;
+        };
+    }
+
+    public AsyncRecordProcessor skipProcessed(AsyncRecordProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return record -> {
+            String key = key(record);
+            if (cache.contains(key)) {
+                skipped.increment();
+                return CompletableFuture.completedFuture(null);
+            }
+            return processor.process(record).thenApply(result -> {
+                cache.add(key);
+                return result;
+            });
+        };
+    }
+
+    String key(ConsumerRecord<String, String> record) {
+        switch (properties.getKey()) {
+            case RECORD_KEY:
+                if (record.key() != null) {
+                    return record.key();
+                }
+                break;
+            case HEADER:
+                Header header = record.headers().lastHeader(properties.getHeader());
+                if (header != null && header.value() != null) {
+                    return new String(header.value(), StandardCharsets.UTF_8);
+                }
+                break;
+            default:
+                break;
+        }
+        return record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.kafka.retryconsumer.journal;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only file of failed records, memory-mapped so that journaling a record is a copy into the page cache. Each
+ * entry is its length, a status, the attempts so far and the time it is due again, followed by the record: topic,
+ * partition, offset, key, value, headers and the exception it first failed with. The length is written last, a crash
+ * halfway through an append leaves a zero length and the entry is not read back. Status, attempts and due time are
+ * updated in place.
+ * <p>
+ * Entries that are done stay in the file until it is full, then it is compacted: the pending entries are copied to a
+ * new file that replaces the old one.
+ */
+@Slf4j
+public class JournalFile implements Closeable {
+
+    private static final byte PENDING = 0;
+    private static final byte DONE = 1;
+    private static final int STATUS = 4;
+    private static final int ATTEMPT = 5;
+    private static final int DUE_AT = 9;
+    private static final int RECORD = 17;
+
+    private final Path path;
+    private final int capacity;
+    private final boolean force;
+    private final Set<Entry> pending = new LinkedHashSet<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public JournalFile(Path path, int capacity, boolean force) throws IOException {
+        this.path = path;
+        this.capacity = capacity;
+        this.force = force;
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        map(path);
+        load();
+    }
+
+    /**
+     * Journals {@code record}, compacting the file first if it is full.
+     */
+    public synchronized Entry append(ConsumerRecord<String, String> record, String exception, int attempt,
+                                     long dueAt) throws IOException {
+        try {
+            return write(buffer, record, exception, attempt, dueAt);
+        } catch (BufferOverflowException e) {
+            compact();
+        }
+        try {
+            return write(buffer, record, exception, attempt, dueAt);
+        } catch (BufferOverflowException e) {
+            throw new IOException("Retry journal " + path + " full with " + pending.size() + " pending records");
+        }
+    }
+
+    /**
+     * Pending entries due at {@code now}, oldest first.
+     */
+    public synchronized List<Entry> due(long now) {
+        List<Entry> due = new ArrayList<>();
+        for (Entry entry : pending) {
+            if (entry.dueAt <= now) {
+                due.add(entry);
+            }
+        }
+        return due;
+    }
+
+    public synchronized ConsumerRecord<String, String> read(Entry entry) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(entry.position + RECORD);
+        String topic = readString(in);
+        int partition = in.getInt();
+        long offset = in.getLong();
+        String key = readString(in);
+        String value = readString(in);
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(topic, partition, offset, key, value);
+        for (int count = in.getInt(); count > 0; count--) {
+            record.headers().add(readString(in), readBytes(in));
+        }
+        return record;
+    }
+
+    public synchronized void done(Entry entry) {
+        if (pending.remove(entry)) {
+            buffer.put(entry.position + STATUS, DONE);
+            force();
+        }
+    }
+
+    public synchronized void retryAt(Entry entry, int attempt, long dueAt) {
+        if (pending.contains(entry)) {
+            entry.attempt = attempt;
+            entry.dueAt = dueAt;
+            buffer.putInt(entry.position + ATTEMPT, attempt);
+            buffer.putLong(entry.position + DUE_AT, dueAt);
+            force();
+        }
+    }
+
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    public synchronized int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Rewrites the file with the pending entries only. The entries keep their positions in the old file until the new
+     * one has replaced it, a compaction that fails leaves the journal as it was.
+     */
+    public synchronized void compact() throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Map<Entry, Integer> positions = new HashMap<>();
+        FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer out;
+        try {
+            out = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            for (Entry entry : pending) {
+                int length = buffer.getInt(entry.position);
+                ByteBuffer source = buffer.duplicate();
+                source.position(entry.position).limit(entry.position + 4 + length);
+                positions.put(entry, out.position());
+                out.put(source);
+            }
+            out.force();
+            // the mapping follows the file to its new name
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            target.close();
+            throw e;
+        }
+        int before = buffer.position();
+        channel.close();
+        channel = target;
+        buffer = out;
+        positions.forEach((entry, position) -> entry.position = position);
+        log.info("Compacted retry journal {} from {} to {} bytes, {} records pending", path, before,
+                buffer.position(), pending.size());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private Entry write(MappedByteBuffer out, ConsumerRecord<String, String> record, String exception, int attempt,
+                        long dueAt) {
+        int start = out.position();
+        try {
+            out.position(start + STATUS);
+            out.put(PENDING);
+            out.putInt(attempt);
+            out.putLong(dueAt);
+            writeString(out, record.topic());
+            out.putInt(record.partition());
+            out.putLong(record.offset());
+            writeString(out, record.key());
+            writeString(out, record.value());
+            Header[] headers = record.headers().toArray();
+            out.putInt(headers.length);
+            for (Header header : headers) {
+                writeString(out, header.key());
+                writeBytes(out, header.value());
+            }
+            writeString(out, exception);
+            // the next length stays zero until that entry is complete
+            out.putInt(0);
+            out.position(out.position() - 4);
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            throw e;
+        }
+        out.putInt(start, out.position() - start - 4);
+        force();
+        Entry entry = new Entry(start, attempt, dueAt);
+        pending.add(entry);
+        return entry;
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void load() {
+        pending.clear();
+        int position = 0;
+        try {
+            while (position + RECORD <= capacity) {
+                int length = buffer.getInt(position);
+                if (length <= 0) {
+                    break;
+                }
+                if (buffer.get(position + STATUS) == PENDING) {
+                    pending.add(new Entry(position, buffer.getInt(position + ATTEMPT),
+                            buffer.getLong(position + DUE_AT)));
+                }
+                position += 4 + length;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            log.warn("Retry journal {} cut short at {}", path, position);
+        }
+        buffer.position(Math.min(position, capacity));
+        if (!pending.isEmpty()) {
+            log.info("Retry journal {} has {} records pending", path, pending.size());
+        }
+    }
+
+    private void force() {
+        if (force) {
+            buffer.force();
+        }
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(value.length);
+            out.put(value);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A pending record, its position moves when the file is compacted.
+     */
+    @Getter
+    public static class Entry {
+        private int position;
+        private int attempt;
+        private long dueAt;
+
+        Entry(int position, int attempt, long dueAt) {
+            this.position = position;
+            this.attempt = attempt;
+            this.dueAt = dueAt;
+        }
+    }
+}
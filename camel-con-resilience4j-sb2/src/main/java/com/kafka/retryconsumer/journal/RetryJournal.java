@@ -0,0 +1,172 @@
+package com.kafka.retryconsumer.journal;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.processing.FlowControl;
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import com.kafka.retryconsumer.processing.RecordRecoverer;
+import com.kafka.retryconsumer.retrytopic.RetryHeaders;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes over records that failed for good and replays them from a local {@link JournalFile}, instead of a round trip
+ * through the retry topics. A record is journaled before its offset is committed, so it survives a restart; the
+ * replay worker sends due records through the same processor again, but none of a topic whose circuit breaker is
+ * open or while the {@link RetryBudget} is exhausted, and dead-letters a record once every replay failed. Disabled, no
+ * file is opened.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(RetryJournalProperties.class)
+public class RetryJournal {
+
+    private final RetryJournalProperties properties;
+    private final RetryBudget retryBudget;
+    private final JournalFile file;
+    private Thread replayThread;
+    private volatile boolean running;
+
+    public RetryJournal(RetryJournalProperties properties, MeterRegistry meterRegistry, RetryBudget retryBudget) {
+        this.properties = properties;
+        this.retryBudget = retryBudget;
+        if (!properties.isEnabled()) {
+            this.file = null;
+            return;
+        }
+        try {
+            this.file = new JournalFile(Paths.get(properties.getFile()), properties.getCapacity(),
+                    properties.isForce());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open retry journal " + properties.getFile(), e);
+        }
+        Gauge.builder("retry.journal.pending", file, JournalFile::pending)
+                .description("Records in the retry journal waiting for a replay")
+                .register(meterRegistry);
+        Gauge.builder("retry.journal.size", file, JournalFile::size)
+                .description("Bytes of the retry journal in use")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Journals a failed record of the consumers; throwing leaves the record uncommitted, as any
+     * {@link RecordRecoverer}.
+     */
+    public void journal(ConsumerRecord<String, String> record, Exception exception) throws IOException {
+        int attempt = RetryHeaders.attempt(record) + 1;
+        file.append(record, exception.toString(), attempt, dueAt(attempt));
+        log.info("Attempt {} of {}-{} offset {} failed with {}, journaled", attempt, record.topic(), record.partition(),
+                record.offset(), exception.toString());
+    }
+
+    /**
+     * Starts the replay worker, records of topics without a flow control are always replayed.
+     */
+    public void start(KafkaRecordProcessor processor, Map<String, FlowControl> flowControls,
+                      RecordRecoverer deadLetter) {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        replayThread = new Thread(() -> {
+            while (running) {
+                try {
+                    replay(processor, flowControls, deadLetter);
+                    Thread.sleep(properties.getReplayInterval().toMillis());
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Retry journal replay failed", e);
+                }
+            }
+        }, "retry-journal-replay");
+        replayThread.start();
+    }
+
+    public void stop() throws InterruptedException, IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        running = false;
+        if (replayThread != null) {
+            replayThread.interrupt();
+            replayThread.join();
+        }
+        file.close();
+    }
+
+    void replay(KafkaRecordProcessor processor, Map<String, FlowControl> flowControls, RecordRecoverer deadLetter)
+            throws InterruptedException {
+        List<JournalFile.Entry> due = file.due(System.currentTimeMillis());
+        for (JournalFile.Entry entry : due) {
+            if (!running) {
+                return;
+            }
+            ConsumerRecord<String, String> record = file.read(entry);
+            FlowControl flow = flowControls.get(RetryHeaders.originalTopic(record));
+            if (flow != null && flow.isStopped()) {
+                continue;
+            }
+            if (!retryBudget.tryAcquire(RetryBudget.Stage.JOURNAL)) {
+                // the rest stays due until the next round
+                return;
+            }
+            setAttempt(record.headers(), entry.getAttempt());
+            try {
+                processor.process(record, false);
+                file.done(entry);
+                log.info("Replayed {}-{} offset {} from the retry journal", record.topic(), record.partition(),
+                        record.offset());
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failed(entry, record, e, deadLetter);
+            }
+        }
+    }
+
+    private void failed(JournalFile.Entry entry, ConsumerRecord<String, String> record, Exception exception,
+                        RecordRecoverer deadLetter) {
+        int attempt = entry.getAttempt() + 1;
+        if (attempt <= properties.getDelays().size()) {
+            file.retryAt(entry, attempt, dueAt(attempt));
+            return;
+        }
+        try {
+            deadLetter.recover(record, exception);
+            file.done(entry);
+        } catch (Exception e) {
+            // kept, and tried again after the last delay
+            log.error("Could not dead-letter {}-{} offset {} from the retry journal", record.topic(),
+                    record.partition(), record.offset(), e);
+            file.retryAt(entry, entry.getAttempt(), dueAt(attempt));
+        }
+    }
+
+    private long dueAt(int attempt) {
+        List<Duration> delays = properties.getDelays();
+        return System.currentTimeMillis() + delays.get(Math.min(attempt, delays.size()) - 1).toMillis();
+    }
+
+    private static void setAttempt(Headers headers, int attempt) {
+        headers.remove(RetryHeaders.ATTEMPT);
+        headers.add(RetryHeaders.ATTEMPT, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+    }
+}
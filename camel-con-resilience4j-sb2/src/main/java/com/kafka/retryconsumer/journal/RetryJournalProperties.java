@@ -0,0 +1,41 @@
+package com.kafka.retryconsumer.journal;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.journal")
+public class RetryJournalProperties {
+
+    /**
+     * Keep records that failed for good in a local journal and replay them from there, instead of the retry topics.
+     */
+    private boolean enabled = false;
+
+    private String file = "target/retry-journal.bin";
+
+    /**
+     * Size of the memory-mapped file. Once full it is compacted to the records still pending, a record that does not
+     * fit even then fails to be journaled.
+     */
+    private int capacity = 64 * 1024 * 1024;
+
+    /**
+     * Force every write to disk. Without, a journaled record survives a crash of the application but not of the
+     * machine.
+     */
+    private boolean force = false;
+
+    /**
+     * Back-off before each replay; a record still failing after the last one goes to the dead-letter topic.
+     */
+    private List<Duration> delays = List.of(Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+    /**
+     * How often the replay worker looks for due records.
+     */
+    private Duration replayInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,41 @@
+package com.kafka.retryconsumer.limiter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Puts every request of a {@code RestTemplate} under an {@link AdaptiveConcurrencyLimiter}. Sits below the circuit
+ * breaker and retry of the {@link com.kafka.retryconsumer.faulttolerance.ResiliencePipeline}, so each attempt takes
+ * its own permit. Server errors and I/O failures count as dropped calls, client errors do not.
+ */
+@RequiredArgsConstructor
+public class ConcurrencyLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        long start;
+        try {
+            start = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a permit of " + limiter.getName());
+        }
+        boolean dropped = true;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            dropped = response.getStatusCode().is5xxServerError();
+            return response;
+        } finally {
+            limiter.release(start, dropped);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.kafka.retryconsumer.limiter;
+
+/**
+ * No permit of an {@link AdaptiveConcurrencyLimiter} within its wait time. Not a
+ * {@link org.springframework.web.client.RestClientException}, so neither the circuit breaker nor the in-process retry
+ * count it; the record goes to the retry topics.
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,32 @@
+package com.kafka.retryconsumer.limiter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The limiter of the calls to the sample service, its limit and calls in flight published as the
+ * {@code concurrency.limit} and {@code concurrency.in.flight} gauges.
+ */
+@Configuration
+@EnableConfigurationProperties(LimiterProperties.class)
+public class LimiterConfig {
+
+    public static final String SAMPLE_SERVICE = "sample-service";
+
+    @Bean
+    public AdaptiveConcurrencyLimiter sampleServiceLimiter(LimiterProperties properties, MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(SAMPLE_SERVICE, properties);
+        Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current limit of the calls in flight")
+                .tag("name", SAMPLE_SERVICE)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Calls in flight under the limiter")
+                .tag("name", SAMPLE_SERVICE)
+                .register(meterRegistry);
+        return limiter;
+    }
+}
@@ -0,0 +1,80 @@
+package com.kafka.retryconsumer.processing;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of records a consumer takes per poll, sized by a moving average of the processing time per record: as many
+ * as its threads get through within a time budget, between a minimum and a maximum. Small while the downstream is slow
+ * or failing, so a poll never outlasts its budget, and up to the maximum while it is fast, so a healthy downstream is
+ * not held up by round trips. Starts at the minimum until the first record was timed.
+ */
+public class AdaptivePollSizer {
+
+    // weight of a new sample, the average follows a change in latency within a few dozen records
+    private static final double WEIGHT = 0.1;
+
+    private final boolean enabled;
+    private final int minRecords;
+    private final int maxRecords;
+    private final Duration pollBudget;
+    private final AtomicLong recordNanos = new AtomicLong();
+    private volatile int records;
+
+    public AdaptivePollSizer(PollSizingProperties properties, int minRecords) {
+        this.enabled = properties.isEnabled();
+        this.minRecords = Math.max(1, Math.min(minRecords, properties.getMaxRecords()));
+        this.maxRecords = properties.getMaxRecords();
+        this.pollBudget = properties.pollBudget();
+        this.records = this.minRecords;
+    }
+
+    public static AdaptivePollSizer disabled() {
+        PollSizingProperties properties = new PollSizingProperties();
+        properties.setEnabled(false);
+        return new AdaptivePollSizer(properties, Integer.MAX_VALUE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called by the threads processing the records; a batch counts as {@code records} records of equal cost.
+     */
+    public void processed(int records, long nanos) {
+        long sample = nanos / Math.max(1, records);
+        recordNanos.accumulateAndGet(sample, (average, next) ->
+                average == 0 ? Math.max(1, next) : Math.max(1, average + Math.round((next - average) * WEIGHT)));
+    }
+
+    /**
+     * Records {@code threads} threads process within {@code budget}, at the current average.
+     */
+    public int size(Duration budget, int threads) {
+        long perRecord = recordNanos.get();
+        if (perRecord > 0) {
+            double fit = (double) budget.toNanos() * Math.max(1, threads) / perRecord;
+            records = (int) Math.max(minRecords, Math.min(maxRecords, fit));
+        }
+        return records;
+    }
+
+    /**
+     * Records processed on the poll thread within {@link PollSizingProperties#pollBudget()}.
+     */
+    public int pollSize() {
+        return size(pollBudget, 1);
+    }
+
+    /**
+     * The size last handed out.
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    public long getRecordNanos() {
+        return recordNanos.get();
+    }
+}
@@ -0,0 +1,175 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the records of a {@link PartitionedConsumer} to an {@link AsyncRecordProcessor} with at most
+ * {@link AsyncProperties#getMaxInFlightPerPartition()} of them in flight per partition; the rest wait in a backlog of
+ * their partition and are started by the completions. No thread is held while a record is in flight.
+ * <p>
+ * Completions run on whichever thread completes the call, often the HTTP client's, so they must not block. Only one
+ * thread at a time drains a lane; a call that completes right away while the lane is drained is picked up by the
+ * same loop instead of draining again further down the stack.
+ */
+public class AsyncDispatcher {
+
+    @FunctionalInterface
+    public interface Completion {
+        void completed(TopicPartition partition, ConsumerRecord<String, String> record, int attempt, Exception failure);
+    }
+
+    private final AsyncProperties properties;
+    private final AsyncRecordProcessor processor;
+    private final Map<TopicPartition, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    public AsyncDispatcher(AsyncProperties properties, AsyncRecordProcessor processor) {
+        this.properties = properties;
+        this.processor = processor;
+    }
+
+    public static AsyncDispatcher disabled() {
+        return new AsyncDispatcher(new AsyncProperties(), record ->
+                CompletableFuture.failedFuture(new IllegalStateException("asynchronous dispatch is disabled")));
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public void submit(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                       Completion completion) {
+        Lane lane = lanes.computeIfAbsent(partition, p -> new Lane());
+        outstanding.incrementAndGet();
+        lane.backlog.add(new Pending(partition, record, attempt, completion));
+        drain(lane);
+    }
+
+    /**
+     * Removes the records of revoked partitions that were not started yet and returns them.
+     */
+    public List<ConsumerRecord<String, String>> drop(Collection<TopicPartition> partitions) {
+        List<ConsumerRecord<String, String>> dropped = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            Lane lane = lanes.get(partition);
+            Pending pending;
+            while (lane != null && (pending = lane.backlog.poll()) != null) {
+                dropped.add(pending.record);
+                done();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Waits until every submitted record completed; returns {@code false} if some did not within the timeout.
+     */
+    public synchronized boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long remaining;
+        while (outstanding.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        return outstanding.get() == 0;
+    }
+
+    private void drain(Lane lane) {
+        if (lane.draining.getAndIncrement() != 0) {
+            // the thread draining the lane goes round once more
+            return;
+        }
+        do {
+            startAll(lane);
+        } while (lane.draining.decrementAndGet() != 0);
+    }
+
+    private void startAll(Lane lane) {
+        while (!lane.backlog.isEmpty()) {
+            int inFlight = lane.inFlight.get();
+            if (inFlight >= properties.getMaxInFlightPerPartition()) {
+                return;
+            }
+            if (!lane.inFlight.compareAndSet(inFlight, inFlight + 1)) {
+                continue;
+            }
+            Pending pending = lane.backlog.poll();
+            if (pending == null) {
+                lane.inFlight.decrementAndGet();
+                continue;
+            }
+            start(lane, pending);
+        }
+    }
+
+    private void start(Lane lane, Pending pending) {
+        CompletionStage<?> stage;
+        try {
+            stage = processor.process(pending.record);
+        } catch (Exception e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, failure) -> {
+            lane.inFlight.decrementAndGet();
+            try {
+                pending.completion.completed(pending.partition, pending.record, pending.attempt, unwrap(failure));
+            } finally {
+                done();
+                drain(lane);
+            }
+        });
+    }
+
+    private void done() {
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private static Exception unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure == null || failure instanceof Exception) {
+            return (Exception) failure;
+        }
+        return new CompletionException(failure);
+    }
+
+    private static final class Lane {
+        private final Queue<Pending> backlog = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // drain requests since the lane was last drained, non-zero while a thread drains it
+        private final AtomicInteger draining = new AtomicInteger();
+    }
+
+    private static final class Pending {
+        private final TopicPartition partition;
+        private final ConsumerRecord<String, String> record;
+        private final int attempt;
+        private final Completion completion;
+
+        private Pending(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                        Completion completion) {
+            this.partition = partition;
+            this.record = record;
+            this.attempt = attempt;
+            this.completion = completion;
+        }
+    }
+}
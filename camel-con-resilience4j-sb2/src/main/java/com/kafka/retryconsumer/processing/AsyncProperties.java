@@ -0,0 +1,19 @@
+package com.kafka.retryconsumer.processing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.async")
+public class AsyncProperties {
+
+    /**
+     * Call the sample service without blocking from the poll thread instead of through the worker lanes and routes.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Requests in flight per partition; records of a partition may complete out of order above 1.
+     */
+    private int maxInFlightPerPartition = 16;
+}
@@ -0,0 +1,14 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.concurrent.CompletionStage;
+
+@FunctionalInterface
+public interface AsyncRecordProcessor {
+
+    /**
+     * Starts processing without blocking, the record is done when the returned stage completes.
+     */
+    CompletionStage<?> process(ConsumerRecord<String, String> record);
+}
@@ -0,0 +1,111 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Groups the records of a {@link PartitionedConsumer} by worker lane into batches for a {@link KafkaBatchProcessor}.
+ * A batch is handed out once it holds {@link BulkProperties#getMaxSize()} records or its first record waited
+ * {@link BulkProperties#getLinger()}. Batching by lane keeps the order the lanes guarantee. Poll thread only.
+ */
+public class BulkDispatcher {
+
+    private final BulkProperties properties;
+    private final KafkaBatchProcessor processor;
+    private final Map<Integer, Batch> batches = new HashMap<>();
+
+    public BulkDispatcher(BulkProperties properties, KafkaBatchProcessor processor) {
+        this.properties = properties;
+        this.processor = processor;
+    }
+
+    public static BulkDispatcher disabled() {
+        return new BulkDispatcher(new BulkProperties(), records -> {
+            throw new IllegalStateException("bulk dispatch is disabled");
+        });
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Adds the record to the batch of its lane and returns that batch if it is full now, {@code null} otherwise.
+     */
+    public List<ConsumerRecord<String, String>> add(int lane, ConsumerRecord<String, String> record) {
+        Batch batch = batches.computeIfAbsent(lane, l -> new Batch(System.nanoTime()));
+        batch.records.add(record);
+        if (batch.records.size() < properties.getMaxSize()) {
+            return null;
+        }
+        batches.remove(lane);
+        return batch.records;
+    }
+
+    /**
+     * Hands the batches that waited long enough to {@code flush}, all of them if {@code all} is set.
+     */
+    public void expire(boolean all, BiConsumer<Integer, List<ConsumerRecord<String, String>>> flush) {
+        long deadline = System.nanoTime() - properties.getLinger().toNanos();
+        Iterator<Map.Entry<Integer, Batch>> it = batches.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Batch> entry = it.next();
+            if (all || entry.getValue().firstNanos <= deadline) {
+                it.remove();
+                flush.accept(entry.getKey(), entry.getValue().records);
+            }
+        }
+    }
+
+    /**
+     * Removes the records of revoked partitions that were not sent yet and returns them.
+     */
+    public List<ConsumerRecord<String, String>> drop(Collection<TopicPartition> partitions) {
+        List<ConsumerRecord<String, String>> dropped = new ArrayList<>();
+        batches.values().forEach(batch -> batch.records.removeIf(record -> {
+            boolean revoked = partitions.contains(new TopicPartition(record.topic(), record.partition()));
+            if (revoked) {
+                dropped.add(record);
+            }
+            return revoked;
+        }));
+        batches.values().removeIf(batch -> batch.records.isEmpty());
+        return dropped;
+    }
+
+    public Map<ConsumerRecord<String, String>, Exception> process(List<ConsumerRecord<String, String>> records)
+            throws Exception {
+        return processor.process(records);
+    }
+
+    /**
+     * Shortens the poll timeout so that a lingering batch is sent on time.
+     */
+    public Duration pollTimeout(Duration pollTimeout) {
+        long now = System.nanoTime();
+        long timeout = pollTimeout.toNanos();
+        for (Batch batch : batches.values()) {
+            timeout = Math.min(timeout, batch.firstNanos + properties.getLinger().toNanos() - now);
+        }
+        return Duration.ofMillis(Math.max(0, TimeUnit.NANOSECONDS.toMillis(timeout)));
+    }
+
+    private static final class Batch {
+        private final long firstNanos;
+        private final List<ConsumerRecord<String, String>> records = new ArrayList<>();
+
+        private Batch(long firstNanos) {
+            this.firstNanos = firstNanos;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.kafka.retryconsumer.processing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.bulk")
+public class BulkProperties {
+
+    /**
+     * Opt-in: one call to the batch endpoint per batch instead of one call per record.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Records per bulk call; a worker lane's batch is sent once it is full.
+     */
+    private int maxSize = 50;
+
+    /**
+     * How long the first record of a batch waits for more, across polls, before the batch is sent anyway.
+     */
+    private Duration linger = Duration.ofMillis(20);
+}
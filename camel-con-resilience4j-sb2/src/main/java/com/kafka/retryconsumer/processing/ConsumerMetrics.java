@@ -0,0 +1,122 @@
+package com.kafka.retryconsumer.processing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing latency per topic and partition of the consumers the {@link PartitionedConsumerLauncher} starts, and the
+ * Kafka client metrics of their consumers, which include the lag per partition ({@code kafka.consumer.fetch.manager.
+ * records.lag}). Timers are looked up once per partition and outcome, not per record.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConsumerMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TopicPartition, Timers> records = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Timers> batches = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Timers> asyncRecords = new ConcurrentHashMap<>();
+    private final List<KafkaClientMetrics> clientMetrics = new CopyOnWriteArrayList<>();
+
+    public KafkaRecordProcessor timed(KafkaRecordProcessor processor) {
+        return (record, lastInBatch) -> {
+            Timers timers = timers(records, "consumer.record.processing", record);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                processor.process(record, lastInBatch);
+                success = true;
+            } finally {
+                timers.record(success, System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Times a bulk call; records the batch failed as a whole count as failure, failed items do not.
+     */
+    public KafkaBatchProcessor timed(KafkaBatchProcessor processor) {
+        return batch -> {
+            Timers timers = timers(batches, "consumer.batch.processing", batch.get(0));
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                Map<ConsumerRecord<String, String>, Exception> failures = processor.process(batch);
+                success = true;
+                return failures;
+            } finally {
+                timers.record(success, System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Times an asynchronous call from submission to completion.
+     */
+    public AsyncRecordProcessor timed(AsyncRecordProcessor processor) {
+        return record -> {
+            Timers timers = timers(asyncRecords, "consumer.record.processing", record);
+            long start = System.nanoTime();
+            return processor.process(record).whenComplete((result, failure) ->
+                    timers.record(failure == null, System.nanoTime() - start));
+        };
+    }
+
+    public void bind(Consumer<?, ?> consumer) {
+        KafkaClientMetrics metrics = new KafkaClientMetrics(consumer);
+        metrics.bindTo(meterRegistry);
+        clientMetrics.add(metrics);
+    }
+
+    /**
+     * Publishes the records a consumer currently takes per poll as {@code consumer.poll.records}.
+     */
+    public void bind(String consumer, AdaptivePollSizer sizer) {
+        Gauge.builder("consumer.poll.records", sizer, AdaptivePollSizer::getRecords)
+                .description("Records taken per poll, sized by the processing time per record")
+                .tag("consumer", consumer)
+                .register(meterRegistry);
+    }
+
+    public void close() {
+        clientMetrics.forEach(KafkaClientMetrics::close);
+        clientMetrics.clear();
+    }
+
+    private Timers timers(Map<TopicPartition, Timers> cache, String name, ConsumerRecord<?, ?> record) {
+        return cache.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), partition ->
+                new Timers(timer(name, partition, "success"), timer(name, partition, "failure")));
+    }
+
+    private Timer timer(String name, TopicPartition partition, String outcome) {
+        return Timer.builder(name)
+                .tag("topic", partition.topic())
+                .tag("partition", String.valueOf(partition.partition()))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @RequiredArgsConstructor
+    private static class Timers {
+        private final Timer success;
+        private final Timer failure;
+
+        void record(boolean succeeded, long nanos) {
+            (succeeded ? success : failure).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.kafka.retryconsumer.processing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.delayed-retry")
+public class DelayedRetryProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Back-off before each in-memory retry; a record still failing after the last one goes to the retry topics.
+     */
+    private List<Duration> delays = List.of(Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(15));
+
+    /**
+     * Resolution of the timer wheel, retries fire up to one tick late.
+     */
+    private Duration tick = Duration.ofMillis(100);
+
+    /**
+     * Back-off before a record that could not be handed over (to the retry topics, the journal or the dead-letter
+     * topic) is handed over again. It stays uncommitted and its partition paused meanwhile, with delayed retries
+     * disabled too. The retry tier consumers back off as long.
+     */
+    private Duration handOffBackOff = Duration.ofSeconds(1);
+    private int wheelSize = 512;
+
+    /**
+     * Cap of retries waiting in memory per topic.
+     */
+    private int maxPending = 10_000;
+    private Overflow overflow = Overflow.PAUSE;
+
+    public enum Overflow {
+        /**
+         * Send records failing above the cap straight to the dead-letter topic.
+         */
+        DEAD_LETTER,
+        /**
+         * Stop polling until the pending retries drop below the cap. Records already in flight may still fail and
+         * wait, so memory is bounded by {@code maxPending + maxInFlight}.
+         */
+        PAUSE
+    }
+}
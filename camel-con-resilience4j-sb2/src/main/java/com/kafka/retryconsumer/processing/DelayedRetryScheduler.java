@@ -0,0 +1,205 @@
+package com.kafka.retryconsumer.processing;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps failed records of one {@link PartitionedConsumer} in memory until their back-off elapsed, on a
+ * {@link HashedTimerWheel}. Workers hand failures over with {@link #offer}, everything else runs on the poll thread,
+ * which re-dispatches due records and keeps the partitions with waiting records paused. Every delayed retry takes a
+ * token of the {@link RetryBudget}, which the first attempts that succeed fill.
+ */
+@Slf4j
+public class DelayedRetryScheduler {
+
+    private final DelayedRetryProperties properties;
+    private final RecordRecoverer deadLetter;
+    private final RetryBudget retryBudget;
+    private final HashedTimerWheel<PendingRetry> wheel;
+    private final Queue<PendingRetry> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<TopicPartition, Map<Long, HashedTimerWheel.Timeout<PendingRetry>>> waiting = new HashMap<>();
+
+    public DelayedRetryScheduler(DelayedRetryProperties properties, RecordRecoverer deadLetter) {
+        this(properties, deadLetter, RetryBudget.unlimited());
+    }
+
+    public DelayedRetryScheduler(DelayedRetryProperties properties, RecordRecoverer deadLetter,
+                                 RetryBudget retryBudget) {
+        this.properties = properties;
+        this.deadLetter = deadLetter;
+        this.retryBudget = retryBudget;
+        this.wheel = new HashedTimerWheel<>(properties.getTick(), properties.getWheelSize(), System.nanoTime());
+    }
+
+    public static DelayedRetryScheduler disabled() {
+        return new DelayedRetryScheduler(new DelayedRetryProperties(), (record, exception) -> {
+            throw exception;
+        });
+    }
+
+    /**
+     * Called by a worker when processing failed. Records above the cap are dead-lettered right away with
+     * {@link DelayedRetryProperties.Overflow#DEAD_LETTER}; if the record has no in-memory retry left or the retry
+     * budget is exhausted the caller recovers it.
+     */
+    public Offer offer(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                       Exception exception) throws Exception {
+        if (!properties.isEnabled() || attempt >= properties.getDelays().size()) {
+            return Offer.NOT_RETRIED;
+        }
+        if (properties.getOverflow() == DelayedRetryProperties.Overflow.DEAD_LETTER
+                && pending.get() >= properties.getMaxPending()) {
+            log.warn("{} retries pending, dead-lettering {} offset {}", pending.get(), partition, record.offset());
+            deadLetter.recover(record, exception);
+            return Offer.HANDED_OVER;
+        }
+        if (!retryBudget.tryAcquire(RetryBudget.Stage.DELAYED)) {
+            log.debug("Retry budget exhausted, not retrying {} offset {} in memory", partition, record.offset());
+            return Offer.NOT_RETRIED;
+        }
+        long dueNanos = System.nanoTime() + properties.getDelays().get(attempt).toNanos();
+        pending.incrementAndGet();
+        inbox.add(new PendingRetry(partition, record, attempt + 1, dueNanos, null));
+        log.debug("Retry {} of {} offset {} in {}", attempt + 1, partition, record.offset(),
+                properties.getDelays().get(attempt));
+        return Offer.SCHEDULED;
+    }
+
+    /**
+     * Called by a worker when a record could not be handed over after its last attempt: it waits
+     * {@link DelayedRetryProperties#getHandOffBackOff()} with its partition paused, to be handed over again. Neither
+     * capped nor budgeted, the record is not sent to the service again.
+     */
+    public void handOffLater(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                             Exception exception) {
+        pending.incrementAndGet();
+        inbox.add(new PendingRetry(partition, record, attempt,
+                System.nanoTime() + properties.getHandOffBackOff().toNanos(), exception));
+    }
+
+    /**
+     * Called by a worker when processing succeeded, the first attempt of a record funds the retry budget.
+     */
+    public void succeeded(int attempt) {
+        if (attempt == 0) {
+            retryBudget.deposit();
+        }
+    }
+
+    /**
+     * Moves the retries handed over by the workers onto the wheel and hands the due ones to {@code redispatch}.
+     */
+    public void expire(Consumer<PendingRetry> redispatch) {
+        PendingRetry retry;
+        while ((retry = inbox.poll()) != null) {
+            waiting.computeIfAbsent(retry.getPartition(), p -> new HashMap<>())
+                    .put(retry.getRecord().offset(), wheel.schedule(retry, retry.getDueNanos()));
+        }
+        wheel.expire(System.nanoTime(), due -> {
+            Map<Long, HashedTimerWheel.Timeout<PendingRetry>> timeouts = waiting.get(due.getPartition());
+            timeouts.remove(due.getRecord().offset());
+            if (timeouts.isEmpty()) {
+                waiting.remove(due.getPartition());
+            }
+            pending.decrementAndGet();
+            redispatch.accept(due);
+        });
+    }
+
+    /**
+     * Drops the waiting retries of revoked partitions and returns them. Failures still on their way from the workers
+     * are scheduled as usual, the caller has to check the assignment when they are due.
+     */
+    public Collection<PendingRetry> cancel(Collection<TopicPartition> partitions) {
+        List<PendingRetry> cancelled = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            Map<Long, HashedTimerWheel.Timeout<PendingRetry>> timeouts = waiting.remove(partition);
+            if (timeouts != null) {
+                timeouts.values().forEach(timeout -> {
+                    timeout.cancel();
+                    cancelled.add(timeout.task());
+                });
+            }
+        }
+        pending.addAndGet(-cancelled.size());
+        return cancelled;
+    }
+
+    public Set<TopicPartition> waitingPartitions() {
+        return waiting.keySet();
+    }
+
+    /**
+     * Whether polling has to stop because of {@link DelayedRetryProperties.Overflow#PAUSE}.
+     */
+    public boolean isFull() {
+        return properties.getOverflow() == DelayedRetryProperties.Overflow.PAUSE
+                && pending.get() >= properties.getMaxPending();
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Shortens the poll timeout so that waiting retries fire on time.
+     */
+    public Duration pollTimeout(Duration pollTimeout) {
+        if (wheel.isEmpty() && inbox.isEmpty()) {
+            return pollTimeout;
+        }
+        long toNextTick = TimeUnit.NANOSECONDS.toMillis(wheel.nanosToNextTick(System.nanoTime()));
+        return Duration.ofMillis(Math.max(0, Math.min(pollTimeout.toMillis(), toNextTick)));
+    }
+
+    /**
+     * What became of a failed record {@link #offer offered} for a retry.
+     */
+    public enum Offer {
+        /**
+         * The record waits for its retry, its offset is not completed yet.
+         */
+        SCHEDULED,
+        /**
+         * The record was dead-lettered because too many retries are pending, its offset can be completed.
+         */
+        HANDED_OVER,
+        /**
+         * The record is not retried in memory, the caller has to recover it.
+         */
+        NOT_RETRIED
+    }
+
+    @Value
+    public static class PendingRetry {
+        TopicPartition partition;
+        ConsumerRecord<String, String> record;
+        int attempt;
+        long dueNanos;
+        /**
+         * The failure of the record if it is waiting to be handed over again, {@code null} for a retry.
+         */
+        Exception handOffFailure;
+
+        public boolean isHandOff() {
+            return handOffFailure != null;
+        }
+    }
+}
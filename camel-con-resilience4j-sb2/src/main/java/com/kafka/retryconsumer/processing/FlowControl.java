@@ -0,0 +1,77 @@
+package com.kafka.retryconsumer.processing;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lets a circuit breaker drive the poll loops of a topic: nothing is polled while it is open, a trickle while it is
+ * half open and everything again once it closed. Transitions arrive on whichever thread changed the breaker state,
+ * the poll loops only read the current {@link Flow} and pause or resume their partitions themselves.
+ */
+@Slf4j
+public class FlowControl {
+
+    public enum Flow {
+        FULL, TRICKLE, STOPPED
+    }
+
+    private final String name;
+    private final int trickle;
+    private volatile Flow flow = Flow.FULL;
+
+    private FlowControl(String name, int trickle) {
+        this.name = name;
+        this.trickle = trickle;
+    }
+
+    public static FlowControl uncontrolled() {
+        return new FlowControl("uncontrolled", Integer.MAX_VALUE);
+    }
+
+    /**
+     * Follows the state of {@code circuitBreaker}. The breaker needs
+     * {@code automaticTransitionFromOpenToHalfOpenEnabled}, nothing calls it while the consumers are paused.
+     */
+    public static FlowControl of(CircuitBreaker circuitBreaker) {
+        var control = new FlowControl(circuitBreaker.getName(),
+                circuitBreaker.getCircuitBreakerConfig().getPermittedNumberOfCallsInHalfOpenState());
+        control.onState(circuitBreaker.getState());
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> control.onState(event.getStateTransition().getToState()));
+        return control;
+    }
+
+    public Flow flow() {
+        return flow;
+    }
+
+    public boolean isStopped() {
+        return flow == Flow.STOPPED;
+    }
+
+    /**
+     * Records allowed in flight while half open, the number of calls the breaker permits in that state.
+     */
+    public int trickle() {
+        return trickle;
+    }
+
+    void onState(CircuitBreaker.State state) {
+        Flow next;
+        switch (state) {
+            case OPEN:
+            case FORCED_OPEN:
+                next = Flow.STOPPED;
+                break;
+            case HALF_OPEN:
+                next = Flow.TRICKLE;
+                break;
+            default:
+                next = Flow.FULL;
+        }
+        if (next != flow) {
+            log.info("{} circuit breaker {}, consumption {}", name, state, next);
+            flow = next;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.kafka.retryconsumer.processing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: timers are hashed by deadline tick into a fixed ring of buckets, each a doubly linked list, so
+ * scheduling and cancelling are O(1) whatever the number of pending timers. A timer further away than one rotation
+ * carries the number of rotations it still has to wait.
+ * <p>
+ * The wheel has no thread of its own, the owner advances it with {@link #expire}; timers fire at the first tick at or
+ * after their deadline. Not thread-safe.
+ */
+public class HashedTimerWheel<T> {
+
+    private final long tickNanos;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private long tick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(Duration tickDuration, int wheelSize, long nowNanos) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        int buckets = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickDuration.toNanos();
+        this.buckets = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.startNanos = nowNanos;
+    }
+
+    public Timeout<T> schedule(T task, long deadlineNanos) {
+        long deadlineTick = Math.max(ceilTicks(deadlineNanos - startNanos), tick);
+        Timeout<T> timeout = new Timeout<>(this, task, deadlineNanos, (deadlineTick - tick) / buckets.length,
+                (int) (deadlineTick & mask));
+        Timeout<T> head = buckets[timeout.bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Processes every tick up to {@code nowNanos} and hands the tasks of expired timers to {@code action}, which may
+     * schedule new timers. Returns the number of expired timers.
+     */
+    public int expire(long nowNanos, Consumer<T> action) {
+        long nowTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+        int expired = 0;
+        List<T> due = new ArrayList<>();
+        while (tick <= nowTick) {
+            int bucket = (int) (tick & mask);
+            Timeout<T> timeout = buckets[bucket];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    unlink(timeout);
+                    due.add(timeout.task);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            tick++;
+            // run the tasks once the tick is done, a timer they schedule for now lands on the next tick
+            due.forEach(action);
+            expired += due.size();
+            due.clear();
+        }
+        return expired;
+    }
+
+    /**
+     * Time until the next tick is due, negative when {@link #expire} is behind.
+     */
+    public long nanosToNextTick(long nowNanos) {
+        return startNanos + tick * tickNanos - nowNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private long ceilTicks(long nanos) {
+        return nanos <= 0 ? 0 : (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.wheel = null;
+        size--;
+    }
+
+    public static final class Timeout<T> {
+        private HashedTimerWheel<T> wheel;
+        private final T task;
+        private final long deadlineNanos;
+        private final int bucket;
+        private long remainingRounds;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(HashedTimerWheel<T> wheel, T task, long deadlineNanos, long remainingRounds, int bucket) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.remainingRounds = remainingRounds;
+            this.bucket = bucket;
+        }
+
+        public T task() {
+            return task;
+        }
+
+        public long deadlineNanos() {
+            return deadlineNanos;
+        }
+
+        /**
+         * Removes the timer unless it already expired or was cancelled; returns whether it did.
+         */
+        public boolean cancel() {
+            if (wheel == null) {
+                return false;
+            }
+            wheel.unlink(this);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.List;
+import java.util.Map;
+
+@FunctionalInterface
+public interface KafkaBatchProcessor {
+
+    /**
+     * Processes the records with one call and returns the failure of every record that failed, nothing if all of them
+     * succeeded. Throwing fails the whole batch.
+     */
+    Map<ConsumerRecord<String, String>, Exception> process(List<ConsumerRecord<String, String>> records)
+            throws Exception;
+}
@@ -0,0 +1,9 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+@FunctionalInterface
+public interface KafkaRecordProcessor {
+
+    void process(ConsumerRecord<String, String> record, boolean lastInBatch) throws Exception;
+}
@@ -0,0 +1,153 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks dispatched and completed offsets per partition. Workers may finish out of order, only the highest
+ * contiguous completed offset of a partition is ever handed out for commit. An abandoned record no longer counts as
+ * in flight but is never committed, the next owner of the partition processes it again.
+ */
+public class OffsetTracker {
+
+    private static final long DRAIN_CHECK_MILLIS = 5;
+
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public void dispatched(TopicPartition partition, long offset) {
+        if (partitions.computeIfAbsent(partition, tp -> new PartitionOffsets()).dispatched(offset)) {
+            inFlight.incrementAndGet();
+        }
+    }
+
+    public void completed(TopicPartition partition, long offset) {
+        PartitionOffsets offsets = partitions.get(partition);
+        if (offsets != null && offsets.settle(offset, State.COMPLETED)) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public void abandoned(TopicPartition partition, long offset) {
+        PartitionOffsets offsets = partitions.get(partition);
+        if (offsets != null && offsets.settle(offset, State.ABANDONED)) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the next offset to commit for every partition whose contiguous completed range moved since the last call.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committable() {
+        Map<TopicPartition, OffsetAndMetadata> ready = new HashMap<>();
+        partitions.forEach((partition, offsets) -> {
+            long next = offsets.advance();
+            if (next >= 0) {
+                ready.put(partition, new OffsetAndMetadata(next));
+            }
+        });
+        return ready;
+    }
+
+    /**
+     * Stops tracking revoked partitions, their records still in flight are abandoned and later completions ignored.
+     */
+    public void remove(Collection<TopicPartition> revoked) {
+        for (TopicPartition partition : revoked) {
+            PartitionOffsets offsets = partitions.remove(partition);
+            if (offsets != null) {
+                inFlight.addAndGet(-offsets.abandonAll());
+            }
+        }
+    }
+
+    public boolean isTracked(TopicPartition partition) {
+        return partitions.containsKey(partition);
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int inFlight(Collection<TopicPartition> partitions) {
+        int count = 0;
+        for (TopicPartition partition : partitions) {
+            PartitionOffsets offsets = this.partitions.get(partition);
+            if (offsets != null) {
+                count += offsets.outstanding();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits until no record of {@code partitions} is in flight; returns {@code false} if some still were after the
+     * timeout.
+     */
+    public boolean awaitSettled(Collection<TopicPartition> partitions, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight(partitions) > 0) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            Thread.sleep(DRAIN_CHECK_MILLIS);
+        }
+        return true;
+    }
+
+    private enum State {
+        DISPATCHED, COMPLETED, ABANDONED
+    }
+
+    private static final class PartitionOffsets {
+        // ordered so that the head is always the oldest outstanding record
+        private final NavigableMap<Long, State> pending = new TreeMap<>();
+        private int outstanding;
+
+        synchronized boolean dispatched(long offset) {
+            if (pending.putIfAbsent(offset, State.DISPATCHED) != null) {
+                return false;
+            }
+            outstanding++;
+            return true;
+        }
+
+        synchronized boolean settle(long offset, State state) {
+            if (!pending.replace(offset, State.DISPATCHED, state)) {
+                return false;
+            }
+            outstanding--;
+            return true;
+        }
+
+        synchronized int abandonAll() {
+            int abandoned = outstanding;
+            outstanding = 0;
+            pending.clear();
+            return abandoned;
+        }
+
+        synchronized int outstanding() {
+            return outstanding;
+        }
+
+        synchronized long advance() {
+            long next = -1;
+            Map.Entry<Long, State> head;
+            while ((head = pending.firstEntry()) != null && head.getValue() == State.COMPLETED) {
+                next = head.getKey() + 1;
+                pending.pollFirstEntry();
+            }
+            return next;
+        }
+    }
+}
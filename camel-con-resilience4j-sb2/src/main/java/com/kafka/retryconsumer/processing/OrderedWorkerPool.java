@@ -0,0 +1,59 @@
+package com.kafka.retryconsumer.processing;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded lanes. Tasks submitted with the same ordering key run one after another on the same
+ * lane, tasks with different keys run in parallel.
+ */
+public class OrderedWorkerPool {
+
+    private final ExecutorService[] lanes;
+
+    public OrderedWorkerPool(String name, int workers) {
+        this.lanes = new ExecutorService[Math.max(1, workers)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = name + "-worker-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void submit(Object orderingKey, Runnable task) {
+        execute(laneOf(orderingKey), task);
+    }
+
+    public int laneOf(Object orderingKey) {
+        return Math.floorMod(orderingKey.hashCode(), lanes.length);
+    }
+
+    public void execute(int lane, Runnable task) {
+        lanes[lane].execute(task);
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    /**
+     * Lets queued tasks finish and returns {@code false} if they did not within the timeout.
+     */
+    public boolean shutdown(Duration timeout) throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
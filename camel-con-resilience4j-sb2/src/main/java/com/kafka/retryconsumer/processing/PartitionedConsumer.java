@@ -0,0 +1,500 @@
+package com.kafka.retryconsumer.processing;
+
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.commit.OffsetCommitCoordinator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the poll loop of one topic. Records are fanned out to an {@link OrderedWorkerPool} keyed by partition (or
+ * record key), completions are collected by an {@link OffsetTracker} and handed to an
+ * {@link OffsetCommitCoordinator} on the poll thread, which is the only thread allowed to touch the {@link Consumer}.
+ * <p>
+ * Failed records wait in the {@link DelayedRetryScheduler} with their partition paused and are dispatched again when
+ * due; once out of in-memory retries they go to the {@link RecordRecoverer}, and are handed over again, uncommitted,
+ * until it takes them. The {@link FlowControl} of the topic's
+ * circuit breaker pauses the whole assignment while the breaker is open and lets a single partition trickle while it
+ * is half open. With a {@link BulkDispatcher} the records of a lane are sent in batches and only the failed records of
+ * a batch are retried. With an {@link AsyncDispatcher} the poll thread starts non-blocking calls itself, bounded per
+ * partition, and the completions settle the offsets; the worker lanes only take the failures, so that retrying and
+ * recovering them never blocks the threads completing the calls. With an {@link AdaptivePollSizer}
+ * polled records are held back, their partitions paused, until the lanes have room for them.
+ */
+@Slf4j
+public class PartitionedConsumer implements Runnable, ConsumerRebalanceListener {
+
+    private final String topic;
+    private final Consumer<String, String> consumer;
+    private final ProcessingProperties properties;
+    private final KafkaRecordProcessor processor;
+    private final RecordRecoverer recoverer;
+    private final DelayedRetryScheduler retries;
+    private final FlowControl flow;
+    private final BulkDispatcher bulk;
+    private final AsyncDispatcher async;
+    private final OrderedWorkerPool workers;
+    private final OffsetTracker offsets = new OffsetTracker();
+    private final OffsetCommitCoordinator commits;
+    private final AdaptivePollSizer sizer;
+    // records polled but not dispatched yet, their partitions stay paused until they are
+    private final Map<TopicPartition, Deque<ConsumerRecord<String, String>>> held = new LinkedHashMap<>();
+    // partitions being drained, their records are no longer started or retried
+    private final Set<TopicPartition> revoking = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+    private boolean backPressured;
+
+    /**
+     * Built with {@link #builder()}; topic, consumer, properties, commit properties and processor are required, the
+     * other collaborators default to those of {@link PartitionedConsumerBuilder}.
+     *
+     * @param processor     processes single records, and retries when {@code bulk} is enabled; unused when
+     *                      {@code async} is enabled, which takes precedence over {@code bulk}
+     * @param sizer         bounds the records dispatched to the worker lanes; asynchronous dispatch is bounded by
+     *                      {@link ProcessingProperties#getMaxInFlight()} alone
+     * @param meterRegistry where the commit latency and size are published
+     */
+    @Builder
+    private PartitionedConsumer(String topic, Consumer<String, String> consumer, ProcessingProperties properties,
+                                CommitProperties commitProperties, KafkaRecordProcessor processor,
+                                RecordRecoverer recoverer, DelayedRetryScheduler retries, FlowControl flow,
+                                BulkDispatcher bulk, AsyncDispatcher async, AdaptivePollSizer sizer,
+                                MeterRegistry meterRegistry) {
+        this.topic = topic;
+        this.consumer = consumer;
+        this.properties = properties;
+        this.processor = processor;
+        this.recoverer = recoverer;
+        this.retries = retries;
+        this.flow = flow;
+        this.bulk = bulk;
+        this.async = async;
+        this.sizer = sizer;
+        this.workers = new OrderedWorkerPool(topic, properties.getWorkers());
+        this.commits = new OffsetCommitCoordinator(consumer, commitProperties, meterRegistry);
+    }
+
+    @Override
+    public void run() {
+        try {
+            consumer.subscribe(List.of(topic), this);
+            while (running) {
+                boolean stopped = flow.isStopped();
+                ConsumerRecords<String, String> records = consumer.poll(stopped ? properties.getPollTimeout()
+                        : bulk.pollTimeout(retries.pollTimeout(heldPollTimeout())));
+                for (TopicPartition partition : records.partitions()) {
+                    held.computeIfAbsent(partition, p -> new ArrayDeque<>()).addAll(records.records(partition));
+                }
+                dispatchHeld();
+                if (!stopped) {
+                    // due retries would only be rejected by the open breaker, they wait on the wheel meanwhile
+                    retries.expire(this::redispatch);
+                    bulk.expire(false, this::submitBatch);
+                }
+                applyBackPressure();
+                commits.stage(offsets.committable());
+                commits.maybeFlush();
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                throw e;
+            }
+        } finally {
+            bulk.expire(true, this::submitBatch);
+            shutdownWorkers();
+            commits.stage(offsets.committable());
+            commits.flushSync();
+            consumer.close();
+            log.info("Consumer for topic {} stopped with {} retries pending, {}", topic, retries.pending(),
+                    commits.getStats());
+        }
+    }
+
+    public void stop() {
+        running = false;
+        consumer.wakeup();
+    }
+
+    /**
+     * Drains the revoked partitions before giving them up: records not started yet (waiting retries, buffered
+     * batches, queued lanes) are abandoned, records already running get
+     * {@link ProcessingProperties#getRevokeDrainTimeout()} to finish, and the completed offsets are committed so the
+     * next owner starts right after them. Records that fail meanwhile are not retried here, the next owner processes
+     * them again. With the cooperative assignor only the partitions that move are revoked, the others keep processing.
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        log.info("Partitions revoked: {}", partitions);
+        revoking.addAll(partitions);
+        try {
+            abandonPending(partitions);
+            if (!offsets.awaitSettled(partitions, properties.getRevokeDrainTimeout())) {
+                log.warn("{} records of {} still in flight after {}, abandoning them", offsets.inFlight(partitions),
+                        partitions, properties.getRevokeDrainTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            commits.stage(offsets.committable());
+            commits.flushSync();
+            commits.forget(partitions);
+            offsets.remove(partitions);
+            revoking.removeAll(partitions);
+        }
+    }
+
+    /**
+     * The partitions are already owned by another member, nothing of them can be committed any more.
+     */
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        log.warn("Partitions lost: {}", partitions);
+        abandonPending(partitions);
+        commits.forget(partitions);
+        offsets.remove(partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        log.info("Partitions assigned: {}", partitions);
+        if (flow.isStopped()) {
+            // paused before the first fetch, poll assigns and fetches in the same call
+            consumer.pause(partitions);
+        }
+    }
+
+    private void abandonPending(Collection<TopicPartition> partitions) {
+        // never dispatched, so never tracked
+        held.keySet().removeAll(partitions);
+        retries.cancel(partitions)
+                .forEach(retry -> offsets.abandoned(retry.getPartition(), retry.getRecord().offset()));
+        bulk.drop(partitions).forEach(record -> offsets.abandoned(partitionOf(record), record.offset()));
+        async.drop(partitions).forEach(record -> offsets.abandoned(partitionOf(record), record.offset()));
+    }
+
+    /**
+     * Dispatches held records up to the in-flight limit, a fair share per partition; all of them without a
+     * {@link AdaptivePollSizer}.
+     */
+    private void dispatchHeld() {
+        int capacity = isSized() ? inFlightLimit() - (offsets.inFlight() - retries.pending()) : Integer.MAX_VALUE;
+        int share = Math.max(1, capacity / Math.max(1, held.size()));
+        Iterator<Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>>> it = held.entrySet().iterator();
+        while (it.hasNext() && capacity > 0) {
+            Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>> entry = it.next();
+            Deque<ConsumerRecord<String, String>> queue = entry.getValue();
+            for (int i = 0; i < share && capacity > 0 && !queue.isEmpty(); i++, capacity--) {
+                dispatch(entry.getKey(), queue.pollFirst(), queue.isEmpty());
+            }
+            if (queue.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean isSized() {
+        return sizer.isEnabled() && !async.isEnabled();
+    }
+
+    /**
+     * Records in flight before polling pauses. Sized, no more than the lanes get through within
+     * {@link ProcessingProperties#getRevokeDrainTimeout()}, so a rebalance finds little queued to abandon.
+     */
+    private int inFlightLimit() {
+        if (!isSized()) {
+            return properties.getMaxInFlight();
+        }
+        return Math.min(properties.getMaxInFlight(), sizer.size(properties.getRevokeDrainTimeout(), workers.size()));
+    }
+
+    /**
+     * Held records wait for completions, which come about a record's processing time apart.
+     */
+    private Duration heldPollTimeout() {
+        if (held.isEmpty() || sizer.getRecordNanos() == 0) {
+            return properties.getPollTimeout();
+        }
+        long nanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), sizer.getRecordNanos() / workers.size());
+        return Duration.ofNanos(Math.min(nanos, properties.getPollTimeout().toNanos()));
+    }
+
+    private void dispatch(TopicPartition partition, ConsumerRecord<String, String> record, boolean lastInBatch) {
+        offsets.dispatched(partition, record.offset());
+        if (async.isEnabled()) {
+            async.submit(partition, record, 0, this::asyncCompleted);
+            return;
+        }
+        if (!bulk.isEnabled()) {
+            workers.submit(orderingKey(partition, record), () -> process(partition, record, lastInBatch, 0));
+            return;
+        }
+        int lane = workers.laneOf(orderingKey(partition, record));
+        List<ConsumerRecord<String, String>> batch = bulk.add(lane, record);
+        if (batch != null) {
+            submitBatch(lane, batch);
+        }
+    }
+
+    private void submitBatch(int lane, List<ConsumerRecord<String, String>> batch) {
+        workers.execute(lane, () -> processBatch(batch));
+    }
+
+    private void redispatch(DelayedRetryScheduler.PendingRetry retry) {
+        TopicPartition partition = retry.getPartition();
+        ConsumerRecord<String, String> record = retry.getRecord();
+        if (!consumer.assignment().contains(partition)) {
+            offsets.completed(partition, record.offset());
+            return;
+        }
+        if (retry.isHandOff()) {
+            workers.submit(orderingKey(partition, record), () -> handOffAgain(retry));
+            return;
+        }
+        if (async.isEnabled()) {
+            async.submit(partition, record, retry.getAttempt(), this::asyncCompleted);
+            return;
+        }
+        workers.submit(orderingKey(partition, record), () -> process(partition, record, false, retry.getAttempt()));
+    }
+
+    private void process(TopicPartition partition, ConsumerRecord<String, String> record, boolean lastInBatch,
+                         int attempt) {
+        if (!isOwned(partition)) {
+            offsets.abandoned(partition, record.offset());
+            return;
+        }
+        boolean completed = true;
+        long start = System.nanoTime();
+        try {
+            processor.process(record, lastInBatch);
+            retries.succeeded(attempt);
+        } catch (Exception e) {
+            completed = !retryLater(partition, record, attempt, e);
+        } finally {
+            sizer.processed(1, System.nanoTime() - start);
+            if (completed) {
+                offsets.completed(partition, record.offset());
+            }
+        }
+    }
+
+    private void asyncCompleted(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                                Exception failure) {
+        if (failure == null) {
+            retries.succeeded(attempt);
+            offsets.completed(partition, record.offset());
+            return;
+        }
+        // the recoverer publishes synchronously, off the thread that completed the call
+        workers.submit(orderingKey(partition, record), () -> {
+            if (!retryLater(partition, record, attempt, failure)) {
+                offsets.completed(partition, record.offset());
+            }
+        });
+    }
+
+    private void processBatch(List<ConsumerRecord<String, String>> queued) {
+        List<ConsumerRecord<String, String>> batch = new ArrayList<>(queued.size());
+        for (ConsumerRecord<String, String> record : queued) {
+            if (isOwned(partitionOf(record))) {
+                batch.add(record);
+            } else {
+                offsets.abandoned(partitionOf(record), record.offset());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<ConsumerRecord<String, String>, Exception> failures;
+        long start = System.nanoTime();
+        try {
+            failures = bulk.process(batch);
+        } catch (Exception e) {
+            failures = new IdentityHashMap<>();
+            for (ConsumerRecord<String, String> record : batch) {
+                failures.put(record, e);
+            }
+        }
+        sizer.processed(batch.size(), System.nanoTime() - start);
+        for (ConsumerRecord<String, String> record : batch) {
+            TopicPartition partition = partitionOf(record);
+            Exception failure = failures.get(record);
+            if (failure == null) {
+                retries.succeeded(0);
+            }
+            if (failure == null || !retryLater(partition, record, 0, failure)) {
+                offsets.completed(partition, record.offset());
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the record is not completed yet: it waits for a retry or to be handed over again, or its
+     * partition is being revoked and it is left to the next owner.
+     */
+    private boolean retryLater(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                               Exception exception) {
+        if (revoking.contains(partition)) {
+            offsets.abandoned(partition, record.offset());
+            return true;
+        }
+        try {
+            switch (retries.offer(partition, record, attempt, exception)) {
+                case SCHEDULED:
+                    return true;
+                case HANDED_OVER:
+                    return false;
+                default:
+                    recoverer.recover(record, exception);
+                    return false;
+            }
+        } catch (Exception e) {
+            handOffLater(partition, record, attempt, exception, e);
+            return true;
+        }
+    }
+
+    private void handOffAgain(DelayedRetryScheduler.PendingRetry retry) {
+        TopicPartition partition = retry.getPartition();
+        ConsumerRecord<String, String> record = retry.getRecord();
+        if (!isOwned(partition)) {
+            offsets.abandoned(partition, record.offset());
+            return;
+        }
+        try {
+            recoverer.recover(record, retry.getHandOffFailure());
+            offsets.completed(partition, record.offset());
+        } catch (Exception e) {
+            handOffLater(partition, record, retry.getAttempt(), retry.getHandOffFailure(), e);
+        }
+    }
+
+    private void handOffLater(TopicPartition partition, ConsumerRecord<String, String> record, int attempt,
+                              Exception exception, Exception handOffFailure) {
+        log.error("Could not hand over {} offset {}, it stays uncommitted and is handed over again", partition,
+                record.offset(), handOffFailure);
+        retries.handOffLater(partition, record, attempt, exception);
+    }
+
+    private boolean isOwned(TopicPartition partition) {
+        return !revoking.contains(partition) && offsets.isTracked(partition);
+    }
+
+    private static TopicPartition partitionOf(ConsumerRecord<String, String> record) {
+        return new TopicPartition(record.topic(), record.partition());
+    }
+
+    private Object orderingKey(TopicPartition partition, ConsumerRecord<String, String> record) {
+        if (properties.getOrdering() == ProcessingProperties.Ordering.KEY && record.key() != null) {
+            return record.key();
+        }
+        return partition;
+    }
+
+    private void applyBackPressure() {
+        // records waiting for a retry are accounted for by the scheduler, not as in flight
+        int inFlight = offsets.inFlight() - retries.pending();
+        FlowControl.Flow current = flow.flow();
+        int maxInFlight = current == FlowControl.Flow.TRICKLE
+                ? Math.min(inFlightLimit(), flow.trickle())
+                : inFlightLimit();
+        if (!backPressured && inFlight >= maxInFlight) {
+            log.debug("{} records in flight for {}, pausing {}", inFlight, topic, consumer.assignment());
+            backPressured = true;
+        } else if (backPressured && inFlight <= maxInFlight / 2) {
+            backPressured = false;
+        }
+
+        Set<TopicPartition> assignment = consumer.assignment();
+        Set<TopicPartition> paused = consumer.paused();
+        Set<TopicPartition> target;
+        if (backPressured || retries.isFull() || current == FlowControl.Flow.STOPPED) {
+            target = assignment;
+        } else {
+            target = current == FlowControl.Flow.TRICKLE
+                    ? trickleTarget(assignment) : new HashSet<>(retries.waitingPartitions());
+            target.addAll(held.keySet());
+        }
+        List<TopicPartition> pause = target.stream()
+                .filter(partition -> assignment.contains(partition) && !paused.contains(partition))
+                .collect(Collectors.toList());
+        List<TopicPartition> resume = paused.stream()
+                .filter(partition -> !target.contains(partition))
+                .collect(Collectors.toList());
+        if (!pause.isEmpty()) {
+            consumer.pause(pause);
+        }
+        if (!resume.isEmpty()) {
+            consumer.resume(resume);
+        }
+    }
+
+    /**
+     * Everything but one partition without waiting retries, so the half-open breaker sees a trickle of fresh records.
+     */
+    private Set<TopicPartition> trickleTarget(Set<TopicPartition> assignment) {
+        Set<TopicPartition> waiting = retries.waitingPartitions();
+        Set<TopicPartition> target = new HashSet<>(assignment);
+        assignment.stream()
+                .filter(partition -> !waiting.contains(partition))
+                .min(Comparator.comparingInt(TopicPartition::partition))
+                .ifPresent(target::remove);
+        return target;
+    }
+
+    private void shutdownWorkers() {
+        try {
+            // failed calls are settled on the worker lanes, which have to take them until the last call completed
+            if (!async.awaitIdle(properties.getShutdownTimeout())
+                    || !workers.shutdown(properties.getShutdownTimeout())) {
+                log.warn("{} records of topic {} still in flight after {}", offsets.inFlight(), topic,
+                        properties.getShutdownTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Without further settings records are processed once and a failure is rethrown by the recoverer: no delayed
+     * retries, flow control, bulk or asynchronous dispatch, poll sizing, and commit metrics nobody reads.
+     */
+    public static class PartitionedConsumerBuilder {
+        private RecordRecoverer recoverer = (record, exception) -> {
+            throw exception;
+        };
+        private DelayedRetryScheduler retries = DelayedRetryScheduler.disabled();
+        private FlowControl flow = FlowControl.uncontrolled();
+        private BulkDispatcher bulk = BulkDispatcher.disabled();
+        private AsyncDispatcher async = AsyncDispatcher.disabled();
+        private AdaptivePollSizer sizer = AdaptivePollSizer.disabled();
+        private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    }
+}
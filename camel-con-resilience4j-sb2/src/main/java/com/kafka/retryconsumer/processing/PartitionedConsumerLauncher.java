@@ -0,0 +1,280 @@
+package com.kafka.retryconsumer.processing;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.client.AsyncPocRestClient;
+import com.kafka.retryconsumer.client.BatchItem;
+import com.kafka.retryconsumer.client.BatchItemFailedException;
+import com.kafka.retryconsumer.client.BatchItemResult;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.faulttolerance.config.CircuitBreakerInstances;
+import com.kafka.retryconsumer.idempotency.ProcessedRecords;
+import com.kafka.retryconsumer.journal.RetryJournal;
+import com.kafka.retryconsumer.retrytopic.RetryHeaders;
+import com.kafka.retryconsumer.retrytopic.RetryTierConsumer;
+import com.kafka.retryconsumer.retrytopic.RetryTopicProperties;
+import com.kafka.retryconsumer.retrytopic.RetryTopicPublisher;
+import com.kafka.retryconsumer.route.RouteProperties;
+import com.kafka.retryconsumer.tracing.RecordTrace;
+import com.kafka.retryconsumer.warmup.WarmUp;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.spring.boot.CamelContextConfiguration;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Starts one {@link PartitionedConsumer} per topic of {@link RouteProperties} and one {@link RetryTierConsumer} per
+ * retry tier once the Camel routes are up, and hands every record to the {@code direct:<topic>} route of its original
+ * topic in {@link com.kafka.retryconsumer.route.RetryRoute}. Records failing the route wait in memory if
+ * {@link DelayedRetryProperties delayed retries} are enabled and are then passed on to the {@link RetryTopicPublisher}
+ * instead of being retried on the consuming thread. A topic stops being polled, on all tiers, while its circuit breaker
+ * is open. Retries at every stage share one {@link RetryBudget}.
+ * With {@link BulkProperties bulk dispatch} the main topics send batches to {@code direct:<topic>-bulk}, retries stay
+ * single records. With {@link AsyncProperties asynchronous dispatch} the records of the main topics skip the routes and
+ * go to the {@link AsyncPocRestClient}. The consumers only start once the {@link WarmUp} is done.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties({ProcessingProperties.class, CommitProperties.class, RetryTopicProperties.class,
+        DelayedRetryProperties.class, BulkProperties.class, AsyncProperties.class, RouteProperties.class,
+        PollSizingProperties.class})
+public class PartitionedConsumerLauncher implements CamelContextConfiguration {
+
+    private final ProcessingProperties properties;
+    private final RouteProperties routeProperties;
+    private final CommitProperties commitProperties;
+    private final DelayedRetryProperties delayedRetryProperties;
+    private final BulkProperties bulkProperties;
+    private final AsyncProperties asyncProperties;
+    private final PollSizingProperties pollSizingProperties;
+    private final AsyncPocRestClient asyncPocRestClient;
+    private final RetryTopicProperties retryTopicProperties;
+    private final RetryTopicPublisher retryTopicPublisher;
+    private final ProducerTemplate producerTemplate;
+    private final CircuitBreakerInstances circuitBreakerInstances;
+    private final RetryRegistry retryRegistry;
+    private final ConsumerMetrics consumerMetrics;
+    private final RecordTrace recordTrace;
+    private final ProcessedRecords processedRecords;
+    private final RetryJournal retryJournal;
+    private final RetryBudget retryBudget;
+    private final WarmUp warmUp;
+    private final MeterRegistry meterRegistry;
+    private final List<PartitionedConsumer> consumers = new ArrayList<>();
+    private final List<RetryTierConsumer> tierConsumers = new ArrayList<>();
+    private final List<Thread> pollThreads = new ArrayList<>();
+
+    @Override
+    public void beforeApplicationStart(CamelContext camelContext) {
+    }
+
+    @Override
+    public void afterApplicationStart(CamelContext camelContext) {
+        if (!warmUp.run()) {
+            return;
+        }
+        Map<String, FlowControl> flowControls = flowControls();
+        routeProperties.getTopics().forEach((topic, route) -> {
+            ProcessingProperties topicProperties = properties.forTopic(route);
+            var kafkaConsumer = new KafkaConsumer<>(consumerProperties(topicProperties, topicProperties.getGroupId()),
+                    new StringDeserializer(), new StringDeserializer());
+            consumerMetrics.bind(kafkaConsumer);
+            var sizer = new AdaptivePollSizer(pollSizingProperties, topicProperties.getMaxPollRecords());
+            consumerMetrics.bind(topic, sizer);
+            var retries = new DelayedRetryScheduler(delayedRetryProperties, this::deadLetter, retryBudget);
+            var consumer = PartitionedConsumer.builder()
+                    .topic(topic)
+                    .consumer(kafkaConsumer)
+                    .properties(topicProperties)
+                    .commitProperties(commitProperties)
+                    .processor(recordProcessor())
+                    .recoverer(this::recover)
+                    .retries(retries)
+                    .flow(flowControls.getOrDefault(topic, FlowControl.uncontrolled()))
+                    .bulk(new BulkDispatcher(bulkProperties, batchProcessor()))
+                    .async(new AsyncDispatcher(asyncProperties, asyncProcessor(topic)))
+                    .sizer(sizer)
+                    .meterRegistry(meterRegistry)
+                    .build();
+            consumers.add(consumer);
+            start(consumer, "kafka-poll-" + topic);
+            if (asyncProperties.isEnabled()) {
+                log.info("Started consumer for topic {} with {} asynchronous calls per partition", topic,
+                        asyncProperties.getMaxInFlightPerPartition());
+            } else {
+                log.info("Started consumer for topic {} with {} workers ordered by {}", topic,
+                        topicProperties.getWorkers(), topicProperties.getOrdering());
+            }
+        });
+        retryJournal.start(recordProcessor(), flowControls, this::deadLetter);
+        if (retryTopicProperties.isEnabled()) {
+            startTierConsumers(flowControls);
+        }
+        warmUp.consumersStarted();
+    }
+
+    private void startTierConsumers(Map<String, FlowControl> flowControls) {
+        String groupId = properties.getGroupId() + retryTopicProperties.getGroupIdSuffix();
+        for (int tier = 0; tier < retryTopicProperties.tiers(); tier++) {
+            List<String> tierTopics = retryTopicProperties.tierTopics(routeProperties.getTopics().keySet(), tier);
+            Map<String, FlowControl> tierFlowControls = new HashMap<>();
+            for (String topic : flowControls.keySet()) {
+                tierFlowControls.put(retryTopicProperties.tierTopic(topic, tier), flowControls.get(topic));
+            }
+            var kafkaConsumer = new KafkaConsumer<>(consumerProperties(properties, groupId),
+                    new StringDeserializer(), new StringDeserializer());
+            consumerMetrics.bind(kafkaConsumer);
+            var sizer = new AdaptivePollSizer(pollSizingProperties, properties.getMaxPollRecords());
+            consumerMetrics.bind("retry-" + tier, sizer);
+            var consumer = RetryTierConsumer.builder()
+                    .topics(tierTopics)
+                    .consumer(kafkaConsumer)
+                    .pollTimeout(properties.getPollTimeout())
+                    .commitProperties(commitProperties)
+                    .processor(recordProcessor())
+                    .recoverer(this::recover)
+                    .flowControls(tierFlowControls)
+                    .retryBudget(retryBudget)
+                    .sizer(sizer)
+                    .handOffBackOff(delayedRetryProperties.getHandOffBackOff())
+                    .meterRegistry(meterRegistry)
+                    .build();
+            tierConsumers.add(consumer);
+            start(consumer, "kafka-retry-" + tier);
+            log.info("Started retry consumer for {} delayed by {}", tierTopics,
+                    retryTopicProperties.getDelays().get(tier));
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ContextClosedEvent.class)
+    public void stop() throws InterruptedException, IOException {
+        // drain the workers before Camel stops the direct routes they are still sending to
+        consumers.forEach(PartitionedConsumer::stop);
+        tierConsumers.forEach(RetryTierConsumer::stop);
+        for (Thread pollThread : pollThreads) {
+            pollThread.join(properties.getShutdownTimeout().toMillis() * 2);
+        }
+        retryJournal.stop();
+        consumerMetrics.close();
+    }
+
+    private Properties consumerProperties(ProcessingProperties properties, String groupId) {
+        Properties consumerProperties = properties.consumerProperties(groupId);
+        pollSizingProperties.apply(consumerProperties);
+        return consumerProperties;
+    }
+
+    private Map<String, FlowControl> flowControls() {
+        Map<String, FlowControl> flowControls = new HashMap<>();
+        circuitBreakerInstances.byTopic().forEach((topic, circuitBreaker) ->
+                flowControls.put(topic, FlowControl.of(circuitBreaker)));
+        return flowControls;
+    }
+
+    private void start(Runnable consumer, String threadName) {
+        var pollThread = new Thread(consumer, threadName);
+        pollThreads.add(pollThread);
+        pollThread.start();
+    }
+
+    private KafkaRecordProcessor recordProcessor() {
+        return processedRecords.skipProcessed(consumerMetrics.timed(recordTrace.traced(this::process)));
+    }
+
+    private KafkaBatchProcessor batchProcessor() {
+        return processedRecords.skipProcessed(consumerMetrics.timed(recordTrace.traced(this::processBatch)));
+    }
+
+    private void process(ConsumerRecord<String, String> record, boolean lastInBatch) throws Exception {
+        Exchange exchange = producerTemplate.send("direct:" + RetryHeaders.originalTopic(record), ex -> {
+            Message in = ex.getIn();
+            in.setBody(record.value());
+            in.setHeader(KafkaConstants.TOPIC, record.topic());
+            in.setHeader(KafkaConstants.PARTITION, record.partition());
+            in.setHeader(KafkaConstants.OFFSET, record.offset());
+            in.setHeader(KafkaConstants.KEY, record.key());
+            in.setHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT, lastInBatch);
+        });
+        if (exchange.getException() != null) {
+            throw exchange.getException();
+        }
+    }
+
+    private AsyncRecordProcessor asyncProcessor(String topic) {
+        CircuitBreaker circuitBreaker = circuitBreakerInstances.forTopic(topic);
+        Retry retry = retryRegistry.find(topic).orElse(null);
+        AsyncRecordProcessor processor = record -> asyncPocRestClient.restClient(record.value(), circuitBreaker, retry);
+        return processedRecords.skipProcessed(consumerMetrics.timed(recordTrace.traced(processor)));
+    }
+
+    private Map<ConsumerRecord<String, String>, Exception> processBatch(List<ConsumerRecord<String, String>> records)
+            throws Exception {
+        Map<String, ConsumerRecord<String, String>> byId = new HashMap<>();
+        List<BatchItem> items = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            String id = record.partition() + "-" + record.offset();
+            byId.put(id, record);
+            items.add(new BatchItem(id, record.value()));
+        }
+        Exchange exchange = producerTemplate.send("direct:" + records.get(0).topic() + "-bulk",
+                ex -> ex.getIn().setBody(items));
+        if (exchange.getException() != null) {
+            throw exchange.getException();
+        }
+        Map<ConsumerRecord<String, String>, Exception> failures = new IdentityHashMap<>();
+        for (Object result : exchange.getMessage().getBody(List.class)) {
+            BatchItemResult itemResult = (BatchItemResult) result;
+            ConsumerRecord<String, String> record = byId.remove(itemResult.getId());
+            if (record != null && !itemResult.isSuccess()) {
+                failures.put(record, new BatchItemFailedException(itemResult.getMessage()));
+            }
+        }
+        // an item without a result did not make it either
+        byId.values().forEach(record -> failures.put(record, new BatchItemFailedException("no result")));
+        return failures;
+    }
+
+    private void recover(ConsumerRecord<String, String> record, Exception exception) throws Exception {
+        if (retryJournal.isEnabled()) {
+            retryJournal.journal(record, exception);
+            return;
+        }
+        if (!retryTopicProperties.isEnabled()) {
+            throw exception;
+        }
+        retryTopicPublisher.publish(record, exception);
+    }
+
+    private void deadLetter(ConsumerRecord<String, String> record, Exception exception) throws Exception {
+        if (!retryTopicProperties.isEnabled()) {
+            throw exception;
+        }
+        retryTopicPublisher.deadLetter(record, exception);
+    }
+}
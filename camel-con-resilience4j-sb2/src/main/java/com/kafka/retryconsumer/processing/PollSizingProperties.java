@@ -0,0 +1,49 @@
+package com.kafka.retryconsumer.processing;
+
+import lombok.Data;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Properties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.poll-sizing")
+public class PollSizingProperties {
+
+    /**
+     * Size the records taken per poll by the measured processing time; {@code max-poll-records} of
+     * retry-consumer.processing, or of a route, is the smallest size then.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Largest number of records taken per poll, the consumers' {@code max.poll.records} while sizing is enabled.
+     */
+    private int maxRecords = 200;
+
+    /**
+     * The consumers' {@code max.poll.interval.ms}.
+     */
+    private Duration maxPollInterval = Duration.ofMinutes(5);
+
+    /**
+     * Share of {@link #maxPollInterval} left free; a retry tier, which processes on its poll thread, takes no more
+     * records per poll than it processes in the rest.
+     */
+    private double headroom = 0.8;
+
+    /**
+     * Processing time the records of one poll of a retry tier may take.
+     */
+    public Duration pollBudget() {
+        return Duration.ofNanos(Math.round(maxPollInterval.toNanos() * (1 - headroom)));
+    }
+
+    public void apply(Properties consumerProperties) {
+        consumerProperties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, (int) maxPollInterval.toMillis());
+        if (enabled) {
+            consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxRecords);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kafka.retryconsumer.processing;
+
+import com.kafka.retryconsumer.route.RouteProperties;
+import lombok.Data;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.processing")
+public class ProcessingProperties {
+
+    private String brokers = "localhost:9092";
+    private String groupId = "kafkaConsumerGroup";
+    private int maxPollRecords = 5; // Default is 500
+    private Duration pollTimeout = Duration.ofMillis(500);
+    private String autoOffsetReset = "earliest";
+
+    /**
+     * Number of single-threaded worker lanes; records with the same ordering key always land on the same lane.
+     */
+    private int workers = 8;
+
+    /**
+     * Upper bound of dispatched but not yet completed records per topic, polling is paused above it.
+     */
+    private int maxInFlight = 100;
+    private Ordering ordering = Ordering.PARTITION;
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Assignors in order of preference. With the cooperative sticky assignor a rebalance only revokes the partitions
+     * that move to another member, the rest keep being processed. Moving a running group off an eager assignor takes
+     * two rolling restarts: first list both, then only the cooperative one.
+     */
+    private List<String> partitionAssignmentStrategy = List.of(CooperativeStickyAssignor.class.getName());
+
+    /**
+     * How long records of revoked partitions already running may take to finish before their completed offsets are
+     * committed; whatever is still running then is left to the next owner. Must stay well below
+     * {@code max.poll.interval.ms}, the rebalance waits for it.
+     */
+    private Duration revokeDrainTimeout = Duration.ofSeconds(5);
+
+    public enum Ordering {
+        PARTITION, KEY
+    }
+
+    /**
+     * A copy with the consumer settings {@code route} overrides.
+     */
+    public ProcessingProperties forTopic(RouteProperties.TopicRoute route) {
+        ProcessingProperties properties = new ProcessingProperties();
+        BeanUtils.copyProperties(this, properties);
+        if (route.getMaxPollRecords() != null) {
+            properties.setMaxPollRecords(route.getMaxPollRecords());
+        }
+        if (route.getWorkers() != null) {
+            properties.setWorkers(route.getWorkers());
+        }
+        return properties;
+    }
+
+    public Properties consumerProperties() {
+        return consumerProperties(groupId);
+    }
+
+    public Properties consumerProperties(String groupId) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, partitionAssignmentStrategy);
+        return props;
+    }
+}
@@ -0,0 +1,14 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Takes over a record that failed processing for good, e.g. by sending it to a retry or dead-letter topic. Throwing
+ * leaves the record uncommitted, its partition paused, until it is handed over again after
+ * {@link DelayedRetryProperties#getHandOffBackOff()}; its offset is only committed once the recoverer returns.
+ */
+@FunctionalInterface
+public interface RecordRecoverer {
+
+    void recover(ConsumerRecord<String, String> record, Exception exception) throws Exception;
+}
@@ -0,0 +1,58 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka record headers carrying the retry state of a record through the tier topics. Values are UTF-8 strings so they
+ * stay readable with the console consumer.
+ */
+public final class RetryHeaders {
+
+    /**
+     * Number of failed attempts so far, absent on the original topic.
+     */
+    public static final String ATTEMPT = "retry-attempt";
+
+    /**
+     * Epoch millis before which the record must not be processed again.
+     */
+    public static final String DUE_AT = "retry-due-at";
+    public static final String ORIGINAL_TOPIC = "retry-original-topic";
+    public static final String EXCEPTION = "retry-exception";
+
+    private RetryHeaders() {
+    }
+
+    public static int attempt(ConsumerRecord<?, ?> record) {
+        String attempt = value(record.headers(), ATTEMPT);
+        return attempt == null ? 0 : Integer.parseInt(attempt);
+    }
+
+    public static long dueAt(ConsumerRecord<?, ?> record) {
+        String dueAt = value(record.headers(), DUE_AT);
+        return dueAt == null ? 0L : Long.parseLong(dueAt);
+    }
+
+    public static String originalTopic(ConsumerRecord<?, ?> record) {
+        String topic = value(record.headers(), ORIGINAL_TOPIC);
+        return topic == null ? record.topic() : topic;
+    }
+
+    static boolean isRetryHeader(Header header) {
+        return header.key().startsWith("retry-");
+    }
+
+    static void set(Headers headers, String key, Object value) {
+        headers.remove(key);
+        headers.add(key, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String value(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
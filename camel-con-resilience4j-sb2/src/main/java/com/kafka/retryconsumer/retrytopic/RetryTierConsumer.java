@@ -0,0 +1,292 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import com.kafka.retryconsumer.commit.OffsetCommitCoordinator;
+import com.kafka.retryconsumer.processing.AdaptivePollSizer;
+import com.kafka.retryconsumer.processing.FlowControl;
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import com.kafka.retryconsumer.processing.RecordRecoverer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Poll loop of one retry tier. Every record of a tier waits the same delay, so the due times of a partition only grow:
+ * once the head of a partition is not due yet, the rest of its batch is held back and the partition is paused until
+ * the head is due. The thread never sleeps longer than the poll timeout, so the consumer stays well within
+ * {@code max.poll.interval.ms} whatever the tier delay is.
+ * <p>
+ * Records are processed on the poll thread; tier traffic is the failed fraction of the main topics. While the circuit
+ * breaker of the original topic is open its partitions stay paused, while it is half open only a trickle of due records
+ * is processed per poll. Every record processed takes a token of the {@link RetryBudget}; once it is exhausted due
+ * records are held back like records not due yet, and a held back record counts as refused only once. With an
+ * {@link AdaptivePollSizer} no more due records are processed per poll than fit in the share of
+ * {@code max.poll.interval.ms} it is given, the rest are held back as well.
+ * <p>
+ * A record is committed once processed or handed over to the {@link RecordRecoverer}. If the recoverer throws, the
+ * record stays at the head of its partition, uncommitted, and is handed over again after the hand-off back-off.
+ */
+@Slf4j
+public class RetryTierConsumer implements Runnable, ConsumerRebalanceListener {
+
+    private static final FlowControl UNCONTROLLED = FlowControl.uncontrolled();
+
+    private final List<String> topics;
+    private final Consumer<String, String> consumer;
+    private final Duration pollTimeout;
+    private final KafkaRecordProcessor processor;
+    private final RecordRecoverer recoverer;
+    private final Map<String, FlowControl> flowControls;
+    private final RetryBudget retryBudget;
+    private final AdaptivePollSizer sizer;
+    private final Duration handOffBackOff;
+    private final OffsetCommitCoordinator commits;
+    private final Map<TopicPartition, Deque<ConsumerRecord<String, String>>> waiting = new HashMap<>();
+    // partitions whose head record could not be handed over to the recoverer
+    private final Map<TopicPartition, FailedHandOff> failedHandOffs = new HashMap<>();
+    // partitions whose head record the retry budget refused, the offset of that record
+    private final Map<TopicPartition, Long> heldForBudget = new HashMap<>();
+    private volatile boolean running = true;
+
+    /**
+     * Built with {@link #builder()}; topics, consumer, poll timeout, commit properties and processor are required,
+     * the other collaborators default to those of {@link RetryTierConsumerBuilder}.
+     *
+     * @param flowControls   flow control by tier topic, topics without one are not throttled
+     * @param sizer          bounds the due records processed per poll, so that they fit in the poll interval
+     * @param handOffBackOff wait before a record the recoverer threw on is handed over again
+     * @param meterRegistry  where the commit latency and size are published
+     */
+    @Builder
+    private RetryTierConsumer(List<String> topics, Consumer<String, String> consumer, Duration pollTimeout,
+                              CommitProperties commitProperties, KafkaRecordProcessor processor,
+                              RecordRecoverer recoverer, Map<String, FlowControl> flowControls,
+                              RetryBudget retryBudget, AdaptivePollSizer sizer, Duration handOffBackOff,
+                              MeterRegistry meterRegistry) {
+        this.topics = topics;
+        this.consumer = consumer;
+        this.pollTimeout = pollTimeout;
+        this.processor = processor;
+        this.recoverer = recoverer;
+        this.flowControls = flowControls;
+        this.retryBudget = retryBudget;
+        this.sizer = sizer;
+        this.handOffBackOff = handOffBackOff;
+        this.commits = new OffsetCommitCoordinator(consumer, commitProperties, meterRegistry);
+    }
+
+    @Override
+    public void run() {
+        try {
+            consumer.subscribe(topics, this);
+            while (running) {
+                ConsumerRecords<String, String> records = consumer.poll(nextPollTimeout());
+                for (TopicPartition partition : records.partitions()) {
+                    waiting.computeIfAbsent(partition, p -> new ArrayDeque<>()).addAll(records.records(partition));
+                }
+                processDue();
+                commits.maybeFlush();
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                throw e;
+            }
+        } finally {
+            commits.flushSync();
+            consumer.close();
+            log.info("Retry consumer for {} stopped, {}", topics, commits.getStats());
+        }
+    }
+
+    public void stop() {
+        running = false;
+        consumer.wakeup();
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        log.info("Partitions revoked: {}", partitions);
+        commits.flushSync();
+        commits.forget(partitions);
+        // held back records were not committed, the next owner polls them again
+        partitions.forEach(waiting::remove);
+        partitions.forEach(failedHandOffs::remove);
+        partitions.forEach(heldForBudget::remove);
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        log.warn("Partitions lost: {}", partitions);
+        commits.forget(partitions);
+        partitions.forEach(waiting::remove);
+        partitions.forEach(failedHandOffs::remove);
+        partitions.forEach(heldForBudget::remove);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        log.info("Partitions assigned: {}", partitions);
+    }
+
+    private void processDue() {
+        long now = System.currentTimeMillis();
+        int size = sizer.isEnabled() ? sizer.pollSize() : Integer.MAX_VALUE;
+        Iterator<Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>>> it = waiting.entrySet().iterator();
+        while (it.hasNext() && running) {
+            Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>> entry = it.next();
+            TopicPartition partition = entry.getKey();
+            Deque<ConsumerRecord<String, String>> queue = entry.getValue();
+            FlowControl.Flow flow = flow(partition).flow();
+            int budget = flow == FlowControl.Flow.STOPPED ? 0
+                    : flow == FlowControl.Flow.TRICKLE ? flow(partition).trickle() : Integer.MAX_VALUE;
+            if (failedHandOffs.containsKey(partition) && !handOverAgain(partition, queue, now)) {
+                budget = 0;
+            }
+            while (budget-- > 0 && size > 0 && !queue.isEmpty() && RetryHeaders.dueAt(queue.peekFirst()) <= now
+                    && acquire(partition, queue.peekFirst())) {
+                size--;
+                if (!process(partition, queue, now)) {
+                    break;
+                }
+            }
+            boolean paused = consumer.paused().contains(partition);
+            if (queue.isEmpty()) {
+                it.remove();
+                if (paused) {
+                    consumer.resume(List.of(partition));
+                }
+            } else if (!paused) {
+                log.debug("{} records of {} held back, {}ms to due, consumption {}", queue.size(), partition,
+                        RetryHeaders.dueAt(queue.peekFirst()) - now, flow);
+                consumer.pause(List.of(partition));
+            }
+        }
+    }
+
+    /**
+     * Takes a budget token for the head record of the partition and returns whether it may be processed.
+     */
+    private boolean acquire(TopicPartition partition, ConsumerRecord<String, String> record) {
+        boolean refusedBefore = Long.valueOf(record.offset()).equals(heldForBudget.get(partition));
+        if (retryBudget.tryAcquire(RetryBudget.Stage.TIER, refusedBefore)) {
+            heldForBudget.remove(partition);
+            return true;
+        }
+        heldForBudget.put(partition, record.offset());
+        return false;
+    }
+
+    /**
+     * Processes the head of the queue and returns whether it was taken off, i.e. processed or handed over.
+     */
+    private boolean process(TopicPartition partition, Deque<ConsumerRecord<String, String>> queue, long now) {
+        ConsumerRecord<String, String> record = queue.peekFirst();
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            processor.process(record, queue.size() == 1);
+        } catch (Exception e) {
+            failure = e;
+        }
+        sizer.processed(1, System.nanoTime() - start);
+        if (failure != null && !recover(partition, record, failure, now)) {
+            return false;
+        }
+        completed(partition, queue);
+        return true;
+    }
+
+    /**
+     * Hands the head of the queue over again once its back-off is over, without processing it again, and returns
+     * whether it was taken.
+     */
+    private boolean handOverAgain(TopicPartition partition, Deque<ConsumerRecord<String, String>> queue, long now) {
+        FailedHandOff failed = failedHandOffs.get(partition);
+        if (failed.getRetryAt() > now || !recover(partition, queue.peekFirst(), failed.getException(), now)) {
+            return false;
+        }
+        failedHandOffs.remove(partition);
+        completed(partition, queue);
+        return true;
+    }
+
+    private boolean recover(TopicPartition partition, ConsumerRecord<String, String> record, Exception exception,
+                            long now) {
+        try {
+            recoverer.recover(record, exception);
+            return true;
+        } catch (Exception e) {
+            log.error("Could not hand over {} offset {}, it stays uncommitted and is handed over again in {}",
+                    partition, record.offset(), handOffBackOff, e);
+            failedHandOffs.put(partition, new FailedHandOff(exception, now + handOffBackOff.toMillis()));
+            return false;
+        }
+    }
+
+    private void completed(TopicPartition partition, Deque<ConsumerRecord<String, String>> queue) {
+        ConsumerRecord<String, String> record = queue.pollFirst();
+        commits.stage(partition, new OffsetAndMetadata(record.offset() + 1));
+    }
+
+    private Duration nextPollTimeout() {
+        long now = System.currentTimeMillis();
+        long timeout = pollTimeout.toMillis();
+        if (retryBudget.isExhausted()) {
+            // due records wait for the budget to refill, not polled for in a tight loop
+            return pollTimeout;
+        }
+        for (Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>> entry : waiting.entrySet()) {
+            FailedHandOff failed = failedHandOffs.get(entry.getKey());
+            if (failed != null) {
+                timeout = Math.min(timeout, Math.max(0, failed.getRetryAt() - now));
+            } else if (!flow(entry.getKey()).isStopped()) {
+                timeout = Math.min(timeout, Math.max(0, RetryHeaders.dueAt(entry.getValue().peekFirst()) - now));
+            }
+        }
+        return Duration.ofMillis(timeout);
+    }
+
+    private FlowControl flow(TopicPartition partition) {
+        return flowControls.getOrDefault(partition.topic(), UNCONTROLLED);
+    }
+
+    @Value
+    private static class FailedHandOff {
+        Exception exception;
+        long retryAt;
+    }
+
+    /**
+     * Without further settings a failure is rethrown by the recoverer, and handed over again a second later; no
+     * topic is throttled, the retry budget is unlimited, polls are not sized and nobody reads the commit metrics.
+     */
+    public static class RetryTierConsumerBuilder {
+        private RecordRecoverer recoverer = (record, exception) -> {
+            throw exception;
+        };
+        private Map<String, FlowControl> flowControls = Map.of();
+        private RetryBudget retryBudget = RetryBudget.unlimited();
+        private AdaptivePollSizer sizer = AdaptivePollSizer.disabled();
+        private Duration handOffBackOff = Duration.ofSeconds(1);
+        private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    }
+}
@@ -0,0 +1,56 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.retry-topics")
+public class RetryTopicProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Delay of each retry tier, a record that fails in the last tier goes to the dead-letter topic.
+     */
+    private List<Duration> delays = List.of(Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(5));
+    private String groupIdSuffix = "-retry";
+    private String dltSuffix = "-dlt";
+
+    public int tiers() {
+        return delays.size();
+    }
+
+    /**
+     * Topic of the given tier for records of {@code topic}, e.g. {@code retry_topic_1-retry-30s}.
+     */
+    public String tierTopic(String topic, int tier) {
+        return topic + "-retry-" + format(delays.get(tier));
+    }
+
+    public List<String> tierTopics(Collection<String> topics, int tier) {
+        return topics.stream().map(topic -> tierTopic(topic, tier)).collect(Collectors.toList());
+    }
+
+    public String dltTopic(String topic) {
+        return topic + dltSuffix;
+    }
+
+    private static String format(Duration delay) {
+        long seconds = delay.toSeconds();
+        if (seconds == 0) {
+            return delay.toMillis() + "ms";
+        }
+        if (seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+}
@@ -0,0 +1,96 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.processing.ProcessingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Properties;
+
+/**
+ * Republishes a failed record to the next retry tier, or to the dead-letter topic once every tier has been tried.
+ * The send is acknowledged before {@link #publish} returns, so the offset of the failed record is only committed once
+ * its copy is safely in the next topic.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(RetryTopicProperties.class)
+public class RetryTopicPublisher {
+
+    private final RetryTopicProperties properties;
+    private final Producer<String, String> producer;
+
+    @Autowired
+    public RetryTopicPublisher(RetryTopicProperties properties, ProcessingProperties processingProperties) {
+        this(properties, new KafkaProducer<>(producerProperties(processingProperties),
+                new StringSerializer(), new StringSerializer()));
+    }
+
+    public RetryTopicPublisher(RetryTopicProperties properties, Producer<String, String> producer) {
+        this.properties = properties;
+        this.producer = producer;
+    }
+
+    public void publish(ConsumerRecord<String, String> record, Exception exception) throws Exception {
+        int attempt = RetryHeaders.attempt(record) + 1;
+        send(record, exception, attempt, attempt <= properties.tiers());
+    }
+
+    /**
+     * Sends the record straight to the dead-letter topic, skipping the remaining tiers.
+     */
+    public void deadLetter(ConsumerRecord<String, String> record, Exception exception) throws Exception {
+        send(record, exception, RetryHeaders.attempt(record) + 1, false);
+    }
+
+    private void send(ConsumerRecord<String, String> record, Exception exception, int attempt, boolean toTier)
+            throws Exception {
+        String originalTopic = RetryHeaders.originalTopic(record);
+
+        var headers = new RecordHeaders();
+        record.headers().forEach(header -> {
+            if (!RetryHeaders.isRetryHeader(header)) {
+                headers.add(header);
+            }
+        });
+        RetryHeaders.set(headers, RetryHeaders.ATTEMPT, attempt);
+        RetryHeaders.set(headers, RetryHeaders.ORIGINAL_TOPIC, originalTopic);
+        RetryHeaders.set(headers, RetryHeaders.EXCEPTION,
+                exception.getClass().getName() + ": " + exception.getMessage());
+
+        String target;
+        if (toTier) {
+            target = properties.tierTopic(originalTopic, attempt - 1);
+            long dueAt = System.currentTimeMillis() + properties.getDelays().get(attempt - 1).toMillis();
+            RetryHeaders.set(headers, RetryHeaders.DUE_AT, dueAt);
+        } else {
+            target = properties.dltTopic(originalTopic);
+        }
+
+        producer.send(new ProducerRecord<>(target, null, record.key(), record.value(), headers)).get();
+        log.info("Attempt {} of {}-{} offset {} failed with {}, sent to {}", attempt, record.topic(),
+                record.partition(), record.offset(), exception.toString(), target);
+    }
+
+    @PreDestroy
+    public void close() {
+        producer.close();
+    }
+
+    private static Properties producerProperties(ProcessingProperties processingProperties) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, processingProperties.getBrokers());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return props;
+    }
+}
@@ -4,108 +4,43 @@ package com.kafka.retryconsumer.route;
 import com.kafka.retryconsumer.client.PocRestClient;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.component.kafka.KafkaConstants;
-import org.apache.camel.component.kafka.KafkaManualCommit;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-
 @Slf4j
 @AllArgsConstructor
 @Component
+@EnableConfigurationProperties(RouteProperties.class)
 public class RetryRoute extends RouteBuilder {
     private final PocRestClient pocRestClient;
+    private final RouteProperties routeProperties;
     //private final RetryTemplate retryInstanceTopic1;
 
+    /**
+     * Records are polled and committed by {@link com.kafka.retryconsumer.processing.PartitionedConsumer}, which sends
+     * each one to {@code direct:<topic>} from a worker lane. Retry tier records come back to the route of their
+     * original topic. Exceptions are not handled here: the launcher hands the failed record to the next retry tier and
+     * its offset is committed like any other. With bulk dispatch a worker lane sends a batch of records to
+     * {@code direct:<topic>-bulk} instead; the body is a list of {@link com.kafka.retryconsumer.client.BatchItem}s and
+     * comes back as their results. Record details are kept by the {@link com.kafka.retryconsumer.tracing.RecordTrace}
+     * instead of being logged. Both routes are generated for every topic of {@link RouteProperties}.
+     */
     @Override
     public void configure() {
 
-        String topicUrl1 = buildKafkaUrl("retry_topic_1");
-        String topicUrl2 = buildKafkaUrl("retry_topic_2");
-        log.info("Kafka consumer URL 1 is : {}", topicUrl1);
-        log.info("Kafka consumer URL 2 is : {}", topicUrl2);
-
-        from(topicUrl1)
-                .routeId("R1")
-                .process(exchange -> log.info(this.dumpKafkaDetails(exchange)))
-                .log("before rest call 1")
-                .doTry()
-                .process(pocRestClient::restClient1)
-                .doCatch(Exception.class)
-                .log("Committing offset as data sent to retry service")
-                .process(this::doManualCommit)
-                .end()
-                .log("end");
-
-        /*from(topicUrl2)
-                .routeId("R2")
-                .process(exchange -> log.info(this.dumpKafkaDetails(exchange)))
-                .log("before rest call 2")
-                .doTry()
-                .process(pocRestClient::restClient2)
-                .doCatch(Exception.class)
-                .log("error topic producer goes here...")
-                .end()
-                .process(this::doManualCommit)
-                .log("end");*/
-    }
-
-    private void doManualCommit(Exchange exchange) {
-        /*Boolean lastOne = exchange.getIn()
-                .getHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT, Boolean.class);*/
-
-        //if (lastOne != null && lastOne) {
-            KafkaManualCommit manual =
-                    exchange.getIn().getHeader(KafkaConstants.MANUAL_COMMIT, KafkaManualCommit.class);
-            if (manual != null) {
-                log.info("manually committing the offset for batch");
-                manual.commitSync();
-                log.info("End time is {} ", LocalDateTime.now());
-            }
-        /*} else {
-            log.info("NOT time to commit the offset yet");
-        }*/
-    }
-
-    private String dumpKafkaDetails(Exchange exchange) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("\r\n");
-        sb.append("\r\n");
-        sb.append("Message Received: ").append(exchange.getIn().getBody());
-        sb.append("\r\n");
-        sb.append("From topic: ")
-                .append(exchange.getIn().getHeader(KafkaConstants.TOPIC));
-        sb.append("\r\n");
-        sb.append("From partition: ")
-                .append(exchange.getIn().getHeader(KafkaConstants.PARTITION));
-        sb.append("\r\n");
-        sb.append("Offset: ").append(exchange.getIn().getHeader(KafkaConstants.OFFSET));
-        sb.append("\r\n");
-        sb.append("Is last record ?: ")
-                .append(exchange.getIn().getHeader(KafkaConstants.LAST_RECORD_BEFORE_COMMIT));
-        sb.append("\r\n");
-
-        return sb.toString();
-    }
-
-    private String buildKafkaUrl(String topicName) {
-        StringBuilder sb = new StringBuilder("kafka:");
-        sb.append(topicName)
-        .append("?brokers=").append("localhost:9092")
-        .append("&groupId=").append("kafkaConsumerGroup")
-        .append("&maxPollRecords=").append(5) // Default is 500
-        .append("&consumersCount=").append(1)
-        .append("&autoOffsetReset=").append("earliest")
-        .append("&autoCommitEnable=").append(false)
-        .append("&allowManualCommit=").append(true)
-        .append("&breakOnFirstError=").append(false);
-        // commitTimeoutMs - https://camel.apache.org/components/3.15.x/kafka-component.html#_endpoint_query_option_commitTimeoutMs
-        // heartbeatIntervalMs - https://camel.apache.org/components/3.15.x/kafka-component.html#_component_option_heartbeatIntervalMs
-        // maxPollIntervalMs - https://camel.apache.org/components/3.15.x/kafka-component.html#_endpoint_query_option_maxPollIntervalMs
-        // sessionTimeoutMs - https://camel.apache.org/components/3.15.x/kafka-component.html#_endpoint_query_option_sessionTimeoutMs
-
-        return sb.toString();
+        routeProperties.getTopics().forEach((topic, route) -> {
+            from("direct:" + topic)
+                    .routeId(topic)
+                    .log("before rest call " + topic)
+                    .process(exchange -> pocRestClient.restClient(topic, exchange))
+                    .log("end");
+
+            from("direct:" + topic + "-bulk")
+                    .routeId(topic + "-bulk")
+                    .log("before bulk rest call " + topic)
+                    .process(exchange -> pocRestClient.bulkRestClient(topic, exchange))
+                    .log("end");
+        });
     }
 }
@@ -0,0 +1,116 @@
+package com.kafka.retryconsumer.route;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.routes")
+public class RouteProperties {
+
+    /**
+     * Route of every topic consumed, by topic. Each topic gets its own consumer, routes, circuit breaker, retry and
+     * bulkhead, all named after the topic.
+     */
+    private Map<String, TopicRoute> topics = new LinkedHashMap<>();
+
+    @Data
+    public static class TopicRoute {
+
+        /**
+         * Path of the single call, {@code {message}} is replaced by the record value.
+         */
+        private String path = "/sample/hello?message={message}";
+        private String batchPath = "/sample/hello/batch";
+
+        /**
+         * Overrides {@code retry-consumer.processing.max-poll-records} for this topic.
+         */
+        private Integer maxPollRecords;
+
+        /**
+         * Overrides {@code retry-consumer.processing.workers} for this topic.
+         */
+        private Integer workers;
+
+        private CircuitBreakerPolicy circuitBreaker = new CircuitBreakerPolicy();
+        private RetryPolicy retry = new RetryPolicy();
+        private BulkheadPolicy bulkhead = new BulkheadPolicy();
+        private TimeLimiterPolicy timeLimiter = new TimeLimiterPolicy();
+        private HedgingPolicy hedging = new HedgingPolicy();
+    }
+
+    @Data
+    public static class CircuitBreakerPolicy {
+
+        /**
+         * Failure rate in percent above which the breaker opens; the topic is not polled while it is open.
+         */
+        private float failureRateThreshold = 60;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int minimumNumberOfCalls = 5;
+        private int slidingWindowSize = 10;
+    }
+
+    @Data
+    public static class RetryPolicy {
+
+        /**
+         * Calls made in process, the first included, before the record goes to the retry topics.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Back-off before the second call, growing linearly with every further attempt.
+         */
+        private Duration backOff = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class BulkheadPolicy {
+
+        /**
+         * Calls of this topic in flight at once, so a slow downstream cannot take the connections of the others.
+         */
+        private int maxConcurrentCalls = 10;
+
+        /**
+         * How long a call waits for a free slot before it fails and the record goes to the retry topics.
+         */
+        private Duration maxWait = Duration.ZERO;
+    }
+
+    @Data
+    public static class TimeLimiterPolicy {
+
+        /**
+         * Longest a call may take, its wait for the bulkhead included, before it fails as a timeout the circuit
+         * breaker records. Unset by default: the read timeout of the HTTP client bounds a call already, and a time
+         * limit hands every call to another thread.
+         */
+        private Duration timeout;
+    }
+
+    @Data
+    public static class HedgingPolicy {
+
+        /**
+         * Send a slow single call a second time and take whichever answers first. The calls of {@link #path} must be
+         * idempotent; batch calls are never hedged.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Percentile of the recent latencies after which a call is hedged.
+         */
+        private double percentile = 95;
+
+        /**
+         * A call is never hedged sooner, so a fast downstream is not sent hedges for small variations.
+         */
+        private Duration minDelay = Duration.ofMillis(20);
+    }
+}
@@ -0,0 +1,189 @@
+package com.kafka.retryconsumer.tracing;
+
+import com.kafka.retryconsumer.processing.AsyncRecordProcessor;
+import com.kafka.retryconsumer.processing.KafkaBatchProcessor;
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import com.kafka.retryconsumer.retrytopic.RetryHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent record events in a ring of preallocated slots, read through the {@link RecordTraceEndpoint}. Every failure
+ * is traced with its exception and value, successes only at the {@link TracingProperties#getSampleRate() sample
+ * rate}; a success left out costs a random number and nothing is allocated for it. Disabled, the processors are not
+ * wrapped at all.
+ * <p>
+ * Writers claim slots from a shared sequence and do not lock. A writer marks its slot as being written, or drops its
+ * event if a writer the ring lapped still holds the slot, and publishes the event's sequence with release semantics
+ * once the fields are written. A reader loads the sequence with acquire semantics before copying the fields and again
+ * after a load fence, and keeps the copy only if both are the same published sequence. A dump may miss the odd event
+ * under load, but a copy torn by a concurrent writer is never returned.
+ */
+@Component
+@EnableConfigurationProperties(TracingProperties.class)
+public class RecordTrace {
+
+    private static final long NEVER_WRITTEN = -2;
+    private static final long WRITING = -1;
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(Slot.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final TracingProperties properties;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RecordTrace(TracingProperties properties) {
+        this.properties = properties;
+        int capacity = properties.getCapacity() <= 1 ? 1 : Integer.highestOneBit(properties.getCapacity() - 1) << 1;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public double getSampleRate() {
+        return properties.getSampleRate();
+    }
+
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    public KafkaRecordProcessor traced(KafkaRecordProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return (record, lastInBatch) -> {
+            long start = System.nanoTime();
+            try {
+                processor.process(record, lastInBatch);
+            } catch (Exception e) {
+                record(record, start, e);
+                throw e;
+            }
+            record(record, start, null);
+        };
+    }
+
+    /**
+     * Traces each record of a batch, a batch failed as a whole as failure of every record.
+     */
+    public KafkaBatchProcessor traced(KafkaBatchProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return batch -> {
+            long start = System.nanoTime();
+            Map<ConsumerRecord<String, String>, Exception> failures;
+            try {
+                failures = processor.process(batch);
+            } catch (Exception e) {
+                batch.forEach(record -> record(record, start, e));
+                throw e;
+            }
+            for (ConsumerRecord<String, String> record : batch) {
+                record(record, start, failures.get(record));
+            }
+            return failures;
+        };
+    }
+
+    public AsyncRecordProcessor traced(AsyncRecordProcessor processor) {
+        if (!isEnabled()) {
+            return processor;
+        }
+        return record -> {
+            long start = System.nanoTime();
+            return processor.process(record).whenComplete((result, failure) -> record(record, start, failure));
+        };
+    }
+
+    void record(ConsumerRecord<String, String> record, long startNanos, Throwable failure) {
+        if (failure == null && ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate()) {
+            return;
+        }
+        long claimed = sequence.getAndIncrement();
+        Slot slot = slots[(int) claimed & mask];
+        long previous = (long) SEQUENCE.getAcquire(slot);
+        if (previous == WRITING || !SEQUENCE.compareAndSet(slot, previous, WRITING)) {
+            return;
+        }
+        slot.timeMillis = System.currentTimeMillis();
+        slot.topic = record.topic();
+        slot.partition = record.partition();
+        slot.offset = record.offset();
+        slot.attempt = RetryHeaders.attempt(record) + 1;
+        slot.latencyNanos = System.nanoTime() - startNanos;
+        if (failure == null) {
+            slot.exception = null;
+            slot.value = null;
+        } else {
+            slot.exception = failure.toString();
+            String value = record.value();
+            slot.value = value == null || value.length() <= properties.getValueLimit()
+                    ? value : value.substring(0, properties.getValueLimit());
+        }
+        SEQUENCE.setRelease(slot, claimed);
+    }
+
+    /**
+     * The events still in the ring, newest first.
+     */
+    public List<TraceEvent> events() {
+        List<TraceEvent> events = new ArrayList<>(slots.length);
+        for (Slot slot : slots) {
+            long before = (long) SEQUENCE.getAcquire(slot);
+            if (before < 0) {
+                continue;
+            }
+            TraceEvent event = new TraceEvent(before, Instant.ofEpochMilli(slot.timeMillis), slot.topic,
+                    slot.partition, slot.offset, slot.attempt,
+                    slot.exception == null ? TraceEvent.Outcome.SUCCESS : TraceEvent.Outcome.FAILURE,
+                    TimeUnit.NANOSECONDS.toMicros(slot.latencyNanos), slot.exception, slot.value);
+            VarHandle.loadLoadFence();
+            if ((long) SEQUENCE.getAcquire(slot) == before) {
+                events.add(event);
+            }
+        }
+        events.sort(Comparator.comparingLong(TraceEvent::getSequence).reversed());
+        return events;
+    }
+
+    private static class Slot {
+        // NEVER_WRITTEN, WRITING or the sequence of the event held, only accessed through SEQUENCE
+        private long sequence = NEVER_WRITTEN;
+        private long timeMillis;
+        private String topic;
+        private int partition;
+        private long offset;
+        private int attempt;
+        private long latencyNanos;
+        private String exception;
+        private String value;
+    }
+}
@@ -0,0 +1,40 @@
+package com.kafka.retryconsumer.tracing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@code /actuator/recordtrace}: the events of the {@link RecordTrace}, newest first, optionally only those with the
+ * given {@code outcome}.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "recordtrace")
+public class RecordTraceEndpoint {
+
+    private final RecordTrace recordTrace;
+
+    @ReadOperation
+    public Report trace(@Nullable TraceEvent.Outcome outcome) {
+        List<TraceEvent> events = recordTrace.events();
+        if (outcome != null) {
+            events = events.stream().filter(event -> event.getOutcome() == outcome).collect(Collectors.toList());
+        }
+        return new Report(recordTrace.isEnabled(), recordTrace.getSampleRate(), recordTrace.getRecorded(), events);
+    }
+
+    @Value
+    public static class Report {
+        boolean enabled;
+        double sampleRate;
+        long recorded;
+        List<TraceEvent> events;
+    }
+}
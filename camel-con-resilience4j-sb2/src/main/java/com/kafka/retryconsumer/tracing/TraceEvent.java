@@ -0,0 +1,27 @@
+package com.kafka.retryconsumer.tracing;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Copy of one {@link RecordTrace} slot. {@code exception} and {@code value} are only kept for failures.
+ */
+@Value
+public class TraceEvent {
+
+    public enum Outcome {
+        SUCCESS, FAILURE
+    }
+
+    long sequence;
+    Instant time;
+    String topic;
+    int partition;
+    long offset;
+    int attempt;
+    Outcome outcome;
+    long latencyMicros;
+    String exception;
+    String value;
+}
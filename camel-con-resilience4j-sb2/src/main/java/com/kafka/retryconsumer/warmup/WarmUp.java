@@ -0,0 +1,167 @@
+package com.kafka.retryconsumer.warmup;
+
+import com.kafka.retryconsumer.client.BatchItem;
+import com.kafka.retryconsumer.faulttolerance.ResiliencePipeline;
+import com.kafka.retryconsumer.faulttolerance.config.ResiliencePipelines;
+import com.kafka.retryconsumer.route.RouteProperties;
+import com.kafka.retryconsumer.startup.StartupPhases;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.ProducerTemplate;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs before the consumers join their groups, so the first records do not pay for cold connections, class loading and
+ * the JIT. With {@link WarmUpProperties#isEnabled() warm-up} enabled it
+ * <ol>
+ * <li>opens connections to the sample service on the path of every topic, all at once so the pool keeps as many, and
+ * fails the startup if one cannot be opened and {@link WarmUpProperties#isFailOnError() it should};</li>
+ * <li>sends synthetic exchanges through the {@code direct:<topic>} and {@code direct:<topic>-bulk} routes, answered by
+ * the {@link WarmUpStub}, then closes the circuit breakers and forgets the hedging latencies the stub left behind.</li>
+ * </ol>
+ * The startup is timed by phase either way: the boot of the JVM and the application context, the warm-up phases and
+ * the start of the consumers, logged and kept as gauges by {@link StartupPhases}.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties({WarmUpProperties.class, RouteProperties.class})
+public class WarmUp {
+
+    private static final String MESSAGE = "warm-up";
+    private static final int BATCH_SIZE = 10;
+
+    private final WarmUpProperties properties;
+    private final RouteProperties routeProperties;
+    private final RestTemplate pocRestTemplate;
+    private final WarmUpStub stub;
+    private final ResiliencePipelines resiliencePipelines;
+    private final ProducerTemplate producerTemplate;
+    private final ConfigurableApplicationContext applicationContext;
+    private final StartupPhases phases;
+
+    public WarmUp(WarmUpProperties properties, RouteProperties routeProperties, RestTemplate pocRestTemplate,
+                  WarmUpStub stub, ResiliencePipelines resiliencePipelines, ProducerTemplate producerTemplate,
+                  MeterRegistry meterRegistry, ConfigurableApplicationContext applicationContext) {
+        this.properties = properties;
+        this.routeProperties = routeProperties;
+        this.pocRestTemplate = pocRestTemplate;
+        this.stub = stub;
+        this.resiliencePipelines = resiliencePipelines;
+        this.producerTemplate = producerTemplate;
+        this.applicationContext = applicationContext;
+        this.phases = new StartupPhases(meterRegistry);
+    }
+
+    /**
+     * Warms up if enabled, called once the routes are up and before the consumers are started.
+     *
+     * @return whether to start the consumers, not after a {@link WarmUpProperties#isExit() training run}
+     */
+    public boolean run() {
+        phases.booted();
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        openConnections();
+        phases.end("connections");
+        runRoutes();
+        phases.end("routes");
+        if (!properties.isExit()) {
+            return true;
+        }
+        log.info("Warm-up done, exiting without starting the consumers. Startup: {}", phases.report());
+        // not on this thread, the context is still starting
+        new Thread(() -> System.exit(SpringApplication.exit(applicationContext)), "warm-up-exit").start();
+        return false;
+    }
+
+    /**
+     * Called once the consumers are started, logs the startup phases.
+     */
+    public void consumersStarted() {
+        phases.end("consumers");
+        log.info("Startup: {}", phases.report());
+    }
+
+    private void openConnections() {
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getConnections());
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            routeProperties.getTopics().forEach((topic, route) -> {
+                CyclicBarrier together = new CyclicBarrier(properties.getConnections());
+                for (int i = 0; i < properties.getConnections(); i++) {
+                    calls.add(executor.submit(() -> {
+                        together.await(10, TimeUnit.SECONDS);
+                        return pocRestTemplate.getForObject(route.getPath(), String.class, MESSAGE);
+                    }));
+                }
+            });
+            int failed = 0;
+            for (Future<?> call : calls) {
+                try {
+                    call.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    if (properties.isFailOnError()) {
+                        throw new IllegalStateException("Warm-up could not reach the sample service", e.getCause());
+                    }
+                    log.warn("Warm-up call to the sample service failed: {}", e.getCause().toString());
+                }
+            }
+            log.info("Warm-up opened {} of {} connections to the sample service", calls.size() - failed,
+                    calls.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during warm-up", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runRoutes() {
+        List<BatchItem> batch = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new BatchItem(MESSAGE + "-" + i, MESSAGE));
+        }
+        stub.activate();
+        int failed = 0;
+        try {
+            for (String topic : routeProperties.getTopics().keySet()) {
+                for (int i = 0; i < properties.getExchanges(); i++) {
+                    failed += send("direct:" + topic, MESSAGE);
+                    failed += send("direct:" + topic + "-bulk", new ArrayList<>(batch));
+                }
+            }
+        } finally {
+            stub.deactivate();
+            resiliencePipelines.byTopic().values().forEach(ResiliencePipeline::reset);
+        }
+        log.info("Warm-up sent {} exchanges through the routes of {} topics, {} failed",
+                2 * properties.getExchanges() * routeProperties.getTopics().size(), routeProperties.getTopics().size(),
+                failed);
+    }
+
+    private int send(String endpoint, Object body) {
+        try {
+            producerTemplate.sendBody(endpoint, body);
+            return 0;
+        } catch (CamelExecutionException e) {
+            log.debug("Warm-up exchange to {} failed", endpoint, e);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.kafka.retryconsumer.warmup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "retry-consumer.warm-up")
+public class WarmUpProperties {
+
+    /**
+     * Warm up the connections and routes before the consumers join their groups.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Connections to the sample service opened at once for the path of every topic, and left in the pool; at least one.
+     */
+    private int connections = 4;
+
+    /**
+     * Synthetic exchanges sent through each route of every topic, answered by a stub instead of the sample service.
+     * Batches on the bulk routes have ten items.
+     */
+    private int exchanges = 100;
+
+    /**
+     * Fail the startup when a connection to the sample service cannot be opened, instead of logging it.
+     */
+    private boolean failOnError = false;
+
+    /**
+     * Exit after the warm-up without starting the consumers: a training run, e.g. to write a class data sharing
+     * archive with {@code -XX:ArchiveClassesAtExit}.
+     */
+    private boolean exit = false;
+
+    public void setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("retry-consumer.warm-up.connections must be at least 1: " + connections);
+        }
+        this.connections = connections;
+    }
+}
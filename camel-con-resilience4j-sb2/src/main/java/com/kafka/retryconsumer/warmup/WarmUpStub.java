@@ -0,0 +1,77 @@
+package com.kafka.retryconsumer.warmup;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers every request of a {@code RestTemplate} with an empty JSON array while active, instead of sending it, so
+ * the routes can be exercised without the sample service. Outermost, a stubbed request is neither timed nor counted
+ * by the concurrency limiter. Inactive, requests pass after one volatile read.
+ */
+@Component
+public class WarmUpStub implements ClientHttpRequestInterceptor {
+
+    private static final byte[] BODY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private volatile boolean active;
+
+    public void activate() {
+        active = true;
+    }
+
+    public void deactivate() {
+        active = false;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        return active ? new StubResponse() : execution.execute(request, body);
+    }
+
+    private static class StubResponse implements ClientHttpResponse {
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return HttpStatus.OK.value();
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.OK.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(BODY.length);
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(BODY);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
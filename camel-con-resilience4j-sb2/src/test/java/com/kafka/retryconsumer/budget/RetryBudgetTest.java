@@ -0,0 +1,83 @@
+package com.kafka.retryconsumer.budget;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+	private final RetryBudgetProperties properties = new RetryBudgetProperties();
+	private final AtomicLong nanos = new AtomicLong();
+
+	@Test
+	void allowsRetriesAsAPercentageOfSuccessfulFirstAttempts() {
+		properties.setMinRetriesPerSecond(0);
+		properties.setPercent(10);
+		RetryBudget budget = new RetryBudget(properties, nanos::get);
+
+		for (int i = 0; i < 50; i++) {
+			budget.deposit();
+		}
+
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.TIER)).isFalse();
+		assertThat(budget.getExhausted(RetryBudget.Stage.TIER)).isEqualTo(1);
+		assertThat(budget.getExhausted(RetryBudget.Stage.CALL)).isZero();
+	}
+
+	@Test
+	void refillsAtTheMinimumRateWithoutSuccesses() {
+		properties.setMinRetriesPerSecond(2);
+		RetryBudget budget = new RetryBudget(properties, nanos::get);
+		assertThat(budget.tryAcquire(RetryBudget.Stage.DELAYED)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.DELAYED)).isTrue();
+		assertThat(budget.isExhausted()).isTrue();
+
+		nanos.addAndGet(Duration.ofMillis(500).toNanos());
+
+		assertThat(budget.isExhausted()).isFalse();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.DELAYED)).isTrue();
+		assertThat(budget.tryAcquire(RetryBudget.Stage.DELAYED)).isFalse();
+	}
+
+	@Test
+	void savesUpNoMoreThanTheMaximumTokens() {
+		properties.setMaxTokens(3);
+		RetryBudget budget = new RetryBudget(properties, nanos::get);
+
+		nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+		for (int i = 0; i < 100; i++) {
+			budget.deposit();
+		}
+
+		assertThat(budget.getTokens()).isEqualTo(3.0);
+	}
+
+	@Test
+	void refundsATokenNotUsed() {
+		properties.setMinRetriesPerSecond(1);
+		RetryBudget budget = new RetryBudget(properties, nanos::get);
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+
+		budget.refund();
+
+		assertThat(budget.tryAcquire(RetryBudget.Stage.CALL)).isTrue();
+	}
+
+	@Test
+	void disabledAllowsEveryRetry() {
+		RetryBudget budget = RetryBudget.unlimited();
+
+		for (int i = 0; i < 1000; i++) {
+			assertThat(budget.tryAcquire(RetryBudget.Stage.JOURNAL)).isTrue();
+		}
+		assertThat(budget.isExhausted()).isFalse();
+	}
+}
@@ -0,0 +1,146 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgingTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CircuitBreaker circuitBreaker = CircuitBreaker.of("topic", CircuitBreakerConfig.custom()
+			.recordExceptions(RestClientException.class)
+			.build());
+	private final AtomicInteger attempts = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void aSlowCallIsHedgedAndTheFirstAnswerCountsOnceForTheCircuitBreaker() {
+		Hedging hedging = hedging(RetryBudget.unlimited());
+		Consumer<String> call = decorate(hedging, message -> {
+			if (attempts.incrementAndGet() == 1) {
+				await(release);
+			}
+		});
+
+		call.accept("slow");
+
+		assertThat(attempts).hasValue(2);
+		assertThat(hedging.getSent()).isEqualTo(1);
+		assertThat(hedging.getWon()).isEqualTo(1);
+		assertThat(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+	}
+
+	@Test
+	void failsOnceWhenBothAttemptsFail() {
+		Hedging hedging = hedging(RetryBudget.unlimited());
+		Consumer<String> call = decorate(hedging, message -> {
+			if (attempts.incrementAndGet() == 1) {
+				await(release);
+			} else {
+				release.countDown();
+			}
+			throw new ResourceAccessException("failed");
+		});
+
+		assertThatThrownBy(() -> call.accept("failing")).isInstanceOf(ResourceAccessException.class);
+
+		assertThat(attempts).hasValue(2);
+		assertThat(hedging.getWon()).isZero();
+		assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+	}
+
+	@Test
+	void sendsNoHedgeOverBudgetOrWhileTheCircuitBreakerIsNotClosed() {
+		RetryBudgetProperties properties = new RetryBudgetProperties();
+		properties.setPercent(0);
+		properties.setMinRetriesPerSecond(0);
+		Hedging overBudget = hedging(new RetryBudget(properties));
+		Consumer<String> call = decorate(overBudget, message -> {
+			attempts.incrementAndGet();
+			sleep(Duration.ofMillis(20));
+		});
+
+		call.accept("slow");
+		circuitBreaker.transitionToOpenState();
+		circuitBreaker.transitionToHalfOpenState();
+		Hedging halfOpen = hedging(RetryBudget.unlimited());
+		decorate(halfOpen, message -> sleep(Duration.ofMillis(20))).accept("slow");
+
+		assertThat(attempts).hasValue(1);
+		assertThat(overBudget.getSent()).isZero();
+		assertThat(overBudget.getRefused()).isEqualTo(1);
+		assertThat(halfOpen.getSent()).isZero();
+		assertThat(halfOpen.getRefused()).isEqualTo(1);
+	}
+
+	@Test
+	void sendsNoHedgeWithoutAFreeSlotOfTheBulkhead() {
+		Bulkhead bulkhead = Bulkhead.of("topic", BulkheadConfig.custom()
+				.maxConcurrentCalls(1)
+				.maxWaitDuration(Duration.ZERO)
+				.build());
+		Hedging hedging = hedging(RetryBudget.unlimited());
+		Consumer<String> call = hedging.decorate(message -> {
+			attempts.incrementAndGet();
+			sleep(Duration.ofMillis(20));
+		}, null, new BulkheadedExecutor(executor, bulkhead));
+
+		call.accept("slow");
+
+		assertThat(attempts).hasValue(1);
+		assertThat(hedging.getSent()).isZero();
+		assertThat(hedging.getRefused()).isEqualTo(1);
+	}
+
+	private Hedging hedging(RetryBudget budget) {
+		LatencyPercentile latency = new LatencyPercentile(95);
+		for (int i = 0; i < LatencyPercentile.MIN_SAMPLES; i++) {
+			latency.record(Duration.ofMillis(1).toNanos());
+		}
+		return new Hedging("topic", latency, Duration.ofMillis(1), budget, circuitBreaker);
+	}
+
+	private Consumer<String> decorate(Hedging hedging, Consumer<String> call) {
+		return CircuitBreaker.decorateConsumer(circuitBreaker, hedging.decorate(call, null, executor));
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyPercentileTest {
+
+	@Test
+	void hasNoPercentileUntilEnoughCallsAreRecorded() {
+		LatencyPercentile latency = new LatencyPercentile(95);
+
+		for (int i = 1; i < LatencyPercentile.MIN_SAMPLES; i++) {
+			latency.record(i);
+		}
+
+		assertThat(latency.getNanos()).isEqualTo(Long.MAX_VALUE);
+	}
+
+	@Test
+	void followsTheLatenciesOfTheLastCalls() {
+		LatencyPercentile latency = new LatencyPercentile(95);
+
+		for (int i = 1; i <= LatencyPercentile.SAMPLES; i++) {
+			latency.record(i);
+		}
+		assertThat(latency.getNanos()).isEqualTo(973);
+
+		for (int i = 0; i < LatencyPercentile.SAMPLES; i++) {
+			latency.record(10);
+		}
+		assertThat(latency.getNanos()).isEqualTo(10);
+	}
+
+	@Test
+	void forgetsTheLatenciesOnReset() {
+		LatencyPercentile latency = new LatencyPercentile(95);
+		for (int i = 0; i < LatencyPercentile.MIN_SAMPLES; i++) {
+			latency.record(1000);
+		}
+
+		latency.reset();
+		for (int i = 0; i < LatencyPercentile.MIN_SAMPLES - 1; i++) {
+			latency.record(10);
+		}
+		assertThat(latency.getNanos()).isEqualTo(Long.MAX_VALUE);
+
+		latency.record(10);
+		assertThat(latency.getNanos()).isEqualTo(10);
+	}
+}
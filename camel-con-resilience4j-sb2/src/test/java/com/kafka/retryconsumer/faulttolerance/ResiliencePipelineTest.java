@@ -0,0 +1,133 @@
+package com.kafka.retryconsumer.faulttolerance;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResiliencePipelineTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CircuitBreaker circuitBreaker = CircuitBreaker.of("topic", CircuitBreakerConfig.custom()
+			.recordExceptions(RestClientException.class)
+			.build());
+	private final Retry retry = Retry.of("topic", RetryConfig.custom()
+			.maxAttempts(3)
+			.waitDuration(Duration.ofMillis(1))
+			.retryExceptions(RestClientException.class)
+			.build());
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void aTimedOutCallIsRecordedByTheCircuitBreakerAndRetried() {
+		AtomicInteger calls = new AtomicInteger();
+		ResiliencePipeline pipeline = new ResiliencePipeline(null, TimeLimiter.of(Duration.ofMillis(20)), executor,
+				circuitBreaker, retry);
+		Consumer<String> call = pipeline.decorate(message -> {
+			calls.incrementAndGet();
+			sleep(Duration.ofSeconds(5));
+		});
+
+		assertThatThrownBy(() -> call.accept("slow")).isInstanceOf(ResourceAccessException.class);
+
+		assertThat(calls).hasValue(3);
+		assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(3);
+	}
+
+	@Test
+	void aFullBulkheadIsNeitherRecordedNorRetried() throws InterruptedException {
+		Bulkhead bulkhead = Bulkhead.of("topic", BulkheadConfig.custom()
+				.maxConcurrentCalls(1)
+				.maxWaitDuration(Duration.ZERO)
+				.build());
+		ResiliencePipeline pipeline = new ResiliencePipeline(bulkhead, circuitBreaker, retry);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Consumer<String> call = pipeline.decorate(message -> {
+			running.countDown();
+			await(release);
+		});
+		executor.execute(() -> call.accept("first"));
+		assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> call.accept("second")).isInstanceOf(BulkheadFullException.class);
+
+		release.countDown();
+		assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+		assertThat(retry.getMetrics().getNumberOfFailedCallsWithoutRetryAttempt()).isEqualTo(1);
+	}
+
+	@Test
+	void aTimedOutCallHoldsItsSlotSoTheBulkheadBoundsTheThreadsOfTheExecutor() throws InterruptedException {
+		Bulkhead bulkhead = Bulkhead.of("topic", BulkheadConfig.custom()
+				.maxConcurrentCalls(2)
+				.maxWaitDuration(Duration.ZERO)
+				.build());
+		ResiliencePipeline pipeline = new ResiliencePipeline(bulkhead, TimeLimiter.of(Duration.ofMillis(20)), executor,
+				null, null);
+		AtomicInteger started = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		Consumer<String> call = pipeline.decorate(message -> {
+			started.incrementAndGet();
+			// a request already sent runs on after the timeout
+			while (release.getCount() > 0) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// ignored like a blocking read would
+				}
+			}
+		});
+
+		assertThatThrownBy(() -> call.accept("first")).isInstanceOf(ResourceAccessException.class);
+		assertThatThrownBy(() -> call.accept("second")).isInstanceOf(ResourceAccessException.class);
+		assertThatThrownBy(() -> call.accept("third")).isInstanceOf(BulkheadFullException.class);
+		assertThat(started).hasValue(2);
+
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (bulkhead.getMetrics().getAvailableConcurrentCalls() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isEqualTo(2);
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.kafka.retryconsumer.idempotency;
+
+import com.kafka.retryconsumer.processing.KafkaBatchProcessor;
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProcessedRecordsTest {
+
+	private final IdempotencyProperties properties = new IdempotencyProperties();
+
+	@BeforeEach
+	void enable() {
+		properties.setEnabled(true);
+	}
+
+	@Test
+	void skipsRecordsThatSucceededBefore() throws Exception {
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, new SimpleMeterRegistry());
+		List<Long> processed = new ArrayList<>();
+		KafkaRecordProcessor processor = processedRecords.skipProcessed((record, lastInBatch) -> {
+			if (record.value().equals("fail")) {
+				throw new IllegalStateException("down");
+			}
+			processed.add(record.offset());
+		});
+
+		processor.process(record(0, "ok"), false);
+		assertThatThrownBy(() -> processor.process(record(1, "fail"), false)).isInstanceOf(IllegalStateException.class);
+		processor.process(record(0, "ok"), false);
+		processor.process(record(1, "ok"), true);
+
+		assertThat(processed).containsExactly(0L, 1L);
+	}
+
+	@Test
+	void leavesProcessedRecordsOutOfBatches() throws Exception {
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, new SimpleMeterRegistry());
+		List<List<Long>> batches = new ArrayList<>();
+		KafkaBatchProcessor processor = processedRecords.skipProcessed((KafkaBatchProcessor) records -> {
+			List<Long> offsets = new ArrayList<>();
+			records.forEach(record -> offsets.add(record.offset()));
+			batches.add(offsets);
+			return records.stream()
+					.filter(record -> record.offset() == 1 && batches.size() == 1)
+					.collect(Collectors.toMap(record -> record, record -> new IllegalStateException("rejected")));
+		});
+
+		assertThat(processor.process(List.of(record(0, "a"), record(1, "b"), record(2, "c")))).hasSize(1);
+		assertThat(processor.process(List.of(record(0, "a"), record(1, "b"), record(2, "c")))).isEmpty();
+
+		assertThat(batches).containsExactly(List.of(0L, 1L, 2L), List.of(1L));
+		assertThat(processor.process(List.of(record(1, "b")))).isEmpty();
+		assertThat(batches).hasSize(2);
+	}
+
+	@Test
+	void keysByHeaderFallingBackToTheOffset() {
+		properties.setKey(IdempotencyProperties.Key.HEADER);
+		ProcessedRecords processedRecords = new ProcessedRecords(properties, new SimpleMeterRegistry());
+		ConsumerRecord<String, String> withHeader = record(7, "a");
+		withHeader.headers().add(properties.getHeader(), "order-42".getBytes());
+
+		assertThat(processedRecords.key(withHeader)).isEqualTo("order-42");
+		assertThat(processedRecords.key(record(7, "a"))).isEqualTo("retry_topic_1-0@7");
+	}
+
+	@Test
+	void forgetsExpiredAndOldestKeys() {
+		AtomicLong now = new AtomicLong();
+		ProcessedRecordCache cache = new ProcessedRecordCache(2, Duration.ofMillis(100), null, now::get);
+
+		cache.add("a");
+		now.set(50);
+		cache.add("b");
+		now.set(70);
+		cache.add("c");
+		assertThat(cache.contains("a")).isFalse();
+		assertThat(cache.contains("b")).isTrue();
+
+		now.set(160);
+		assertThat(cache.contains("b")).isFalse();
+		assertThat(cache.contains("c")).isTrue();
+	}
+
+	@Test
+	void keepsLiveKeysAcrossRestarts(@TempDir Path dir) throws Exception {
+		AtomicLong now = new AtomicLong();
+		Path store = dir.resolve("processed.bin");
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(3, Duration.ofMillis(100), store, now::get)) {
+			for (int i = 0; i < 10; i++) {
+				now.set(i * 10);
+				cache.add("key-" + i);
+			}
+			cache.remove("key-8");
+		}
+
+		now.set(100);
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(3, Duration.ofMillis(100), store, now::get)) {
+			assertThat(cache.size()).isEqualTo(2);
+			assertThat(cache.contains("key-7")).isTrue();
+			assertThat(cache.contains("key-8")).isFalse();
+			assertThat(cache.contains("key-9")).isTrue();
+		}
+	}
+
+	@Test
+	void flushesTheStoreInBatches(@TempDir Path dir) throws Exception {
+		AtomicLong now = new AtomicLong();
+		Path store = dir.resolve("processed.bin");
+		try (ProcessedRecordCache cache = new ProcessedRecordCache(1000, Duration.ofHours(1), store, now::get)) {
+			for (int i = 0; i < 99; i++) {
+				cache.add("key-" + i);
+			}
+			assertThat(Files.size(store)).isZero();
+			cache.add("key-99");
+			long flushed = Files.size(store);
+			assertThat(flushed).isPositive();
+
+			cache.add("key-100");
+			assertThat(Files.size(store)).isEqualTo(flushed);
+			now.set(1000);
+			cache.add("key-101");
+			assertThat(Files.size(store)).isGreaterThan(flushed);
+		}
+	}
+
+	private static ConsumerRecord<String, String> record(long offset, String value) {
+		return new ConsumerRecord<>("retry_topic_1", 0, offset, null, value);
+	}
+}
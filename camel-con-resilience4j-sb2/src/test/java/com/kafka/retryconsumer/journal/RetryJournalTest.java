@@ -0,0 +1,111 @@
+package com.kafka.retryconsumer.journal;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.retrytopic.RetryHeaders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryJournalTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void keepsPendingRecordsAcrossRestarts() throws Exception {
+		Path path = dir.resolve("journal.bin");
+		ConsumerRecord<String, String> record = record(7, "value-7");
+		record.headers().add("trace-id", "abc".getBytes());
+		try (JournalFile file = new JournalFile(path, 4096, false)) {
+			file.append(record(6, "value-6"), "boom", 1, 0L);
+			JournalFile.Entry entry = file.append(record, "boom", 1, 0L);
+			file.done(file.due(0L).get(0));
+			file.retryAt(entry, 2, 50L);
+		}
+
+		try (JournalFile file = new JournalFile(path, 4096, false)) {
+			assertThat(file.due(49L)).isEmpty();
+			List<JournalFile.Entry> due = file.due(50L);
+			assertThat(due).hasSize(1);
+			assertThat(due.get(0).getAttempt()).isEqualTo(2);
+			ConsumerRecord<String, String> read = file.read(due.get(0));
+			assertThat(read.topic()).isEqualTo("retry_topic_1");
+			assertThat(read.partition()).isEqualTo(3);
+			assertThat(read.offset()).isEqualTo(7L);
+			assertThat(read.key()).isNull();
+			assertThat(read.value()).isEqualTo("value-7");
+			assertThat(read.headers().lastHeader("trace-id").value()).isEqualTo("abc".getBytes());
+		}
+	}
+
+	@Test
+	void compactsToThePendingRecordsOnceFull() throws Exception {
+		try (JournalFile file = new JournalFile(dir.resolve("journal.bin"), 1024, false)) {
+			for (int offset = 0; offset < 100; offset++) {
+				JournalFile.Entry entry = file.append(record(offset, "value-" + offset), "boom", 1, 0L);
+				if (offset != 42) {
+					file.done(entry);
+				}
+			}
+
+			assertThat(file.pending()).isEqualTo(1);
+			assertThat(file.read(file.due(0L).get(0)).value()).isEqualTo("value-42");
+		}
+	}
+
+	@Test
+	void failsWhenThePendingRecordsFillTheJournal() throws Exception {
+		try (JournalFile file = new JournalFile(dir.resolve("journal.bin"), 256, false)) {
+			assertThatThrownBy(() -> {
+				for (int offset = 0; offset < 100; offset++) {
+					file.append(record(offset, "value-" + offset), "boom", 1, 0L);
+				}
+			}).isInstanceOf(IOException.class);
+			assertThat(file.pending()).isPositive();
+		}
+	}
+
+	@Test
+	void replaysUntilTheRecordSucceedsOrIsDeadLettered() throws Exception {
+		RetryJournalProperties properties = new RetryJournalProperties();
+		properties.setEnabled(true);
+		properties.setFile(dir.resolve("journal.bin").toString());
+		properties.setCapacity(4096);
+		properties.setDelays(List.of(Duration.ZERO, Duration.ZERO));
+		properties.setReplayInterval(Duration.ofMillis(10));
+		RetryJournal journal = new RetryJournal(properties, new SimpleMeterRegistry(), RetryBudget.unlimited());
+		journal.journal(record(1, "recovers"), new IllegalStateException("down"));
+		journal.journal(record(2, "broken"), new IllegalStateException("down"));
+		List<String> attempts = new ArrayList<>();
+		List<String> deadLetters = new ArrayList<>();
+
+		journal.start((record, lastInBatch) -> {
+			attempts.add(record.value() + "#" + RetryHeaders.attempt(record));
+			if (record.value().equals("broken") || attempts.size() < 3) {
+				throw new IllegalStateException("still down");
+			}
+		}, Map.of(), (record, exception) -> deadLetters.add(record.value() + "#" + RetryHeaders.attempt(record)));
+		for (int i = 0; i < 100 && deadLetters.isEmpty(); i++) {
+			Thread.sleep(20);
+		}
+		journal.stop();
+
+		assertThat(attempts).containsExactly("recovers#1", "broken#1", "recovers#2", "broken#2");
+		assertThat(deadLetters).containsExactly("broken#2");
+	}
+
+	private static ConsumerRecord<String, String> record(long offset, String value) {
+		return new ConsumerRecord<>("retry_topic_1", 3, offset, null, value);
+	}
+}
@@ -0,0 +1,64 @@
+package com.kafka.retryconsumer.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private final LimiterProperties properties = new LimiterProperties();
+
+	@Test
+	void raisesTheLimitWhileCallsSucceedAtFullUse() throws Exception {
+		properties.setInitialLimit(2);
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", properties);
+
+		for (int i = 0; i < 50; i++) {
+			long first = limiter.acquire();
+			long second = limiter.acquire();
+			limiter.release(first, false);
+			limiter.release(second, false);
+		}
+
+		assertThat(limiter.getLimit()).isGreaterThan(2).isLessThanOrEqualTo(properties.getMaxLimit());
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void backsOffOnFailures() throws Exception {
+		properties.setInitialLimit(10);
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", properties);
+
+		limiter.release(limiter.acquire(), true);
+
+		assertThat(limiter.getLimit()).isEqualTo(9);
+	}
+
+	@Test
+	void backsOffWhenLatencyRises() throws Exception {
+		properties.setInitialLimit(10);
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", properties);
+		for (int i = 0; i < 20; i++) {
+			limiter.acquire();
+			limiter.release(System.nanoTime() - Duration.ofMillis(1).toNanos(), false);
+		}
+
+		limiter.acquire();
+		limiter.release(System.nanoTime() - Duration.ofMillis(100).toNanos(), false);
+
+		assertThat(limiter.getLimit()).isEqualTo(9);
+	}
+
+	@Test
+	void failsCallersWaitingLongerThanTheMaximumWait() throws Exception {
+		properties.setInitialLimit(1);
+		properties.setMaxWait(Duration.ofMillis(10));
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", properties);
+		limiter.acquire();
+
+		assertThatThrownBy(limiter::acquire).isInstanceOf(LimitExceededException.class);
+	}
+}
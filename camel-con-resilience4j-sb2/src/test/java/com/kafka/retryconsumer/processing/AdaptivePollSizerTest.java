@@ -0,0 +1,52 @@
+package com.kafka.retryconsumer.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptivePollSizerTest {
+
+	private final PollSizingProperties properties = new PollSizingProperties();
+
+	@Test
+	void startsAtTheMinimumUntilARecordWasTimed() {
+		AdaptivePollSizer sizer = new AdaptivePollSizer(properties, 5);
+
+		assertThat(sizer.size(Duration.ofSeconds(5), 8)).isEqualTo(5);
+	}
+
+	@Test
+	void takesWhatTheThreadsProcessWithinTheBudget() {
+		AdaptivePollSizer sizer = new AdaptivePollSizer(properties, 5);
+		sizer.processed(1, Duration.ofMillis(100).toNanos());
+
+		assertThat(sizer.size(Duration.ofSeconds(1), 4)).isEqualTo(40);
+	}
+
+	@Test
+	void shrinksWhenTheDownstreamSlowsDownAndStaysWithinTheBounds() {
+		properties.setMaxRecords(200);
+		AdaptivePollSizer sizer = new AdaptivePollSizer(properties, 5);
+		sizer.processed(50, Duration.ofMillis(50).toNanos());
+		assertThat(sizer.size(Duration.ofSeconds(5), 8)).isEqualTo(200);
+
+		for (int i = 0; i < 100; i++) {
+			sizer.processed(1, Duration.ofSeconds(2).toNanos());
+		}
+
+		assertThat(sizer.size(Duration.ofSeconds(5), 8)).isBetween(19, 21);
+		assertThat(sizer.size(Duration.ofSeconds(5), 1)).isEqualTo(5);
+	}
+
+	@Test
+	void pollSizeOfARetryTierFitsInTheShareOfThePollIntervalLeft() {
+		properties.setMaxPollInterval(Duration.ofMinutes(5));
+		properties.setHeadroom(0.8);
+		AdaptivePollSizer sizer = new AdaptivePollSizer(properties, 1);
+		sizer.processed(1, Duration.ofSeconds(1).toNanos());
+
+		assertThat(sizer.pollSize()).isEqualTo(60);
+	}
+}
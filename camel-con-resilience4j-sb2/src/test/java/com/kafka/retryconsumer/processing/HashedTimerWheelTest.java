@@ -0,0 +1,72 @@
+package com.kafka.retryconsumer.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimerWheelTest {
+
+	private static final long TICK = Duration.ofMillis(10).toNanos();
+
+	private final HashedTimerWheel<String> wheel = new HashedTimerWheel<>(Duration.ofMillis(10), 8, 0);
+	private final List<String> fired = new ArrayList<>();
+
+	@Test
+	void firesAtTheFirstTickAtOrAfterTheDeadline() {
+		wheel.schedule("a", 25 * TICK / 10);
+		wheel.schedule("b", TICK);
+
+		wheel.expire(TICK, fired::add);
+		assertThat(fired).containsExactly("b");
+
+		wheel.expire(2 * TICK, fired::add);
+		assertThat(fired).containsExactly("b");
+
+		wheel.expire(3 * TICK, fired::add);
+		assertThat(fired).containsExactly("b", "a");
+		assertThat(wheel.isEmpty()).isTrue();
+	}
+
+	@Test
+	void waitsForTheRemainingRoundsBeyondOneRotation() {
+		wheel.schedule("far", 20 * TICK);
+		wheel.schedule("near", 4 * TICK);
+
+		wheel.expire(19 * TICK, fired::add);
+		assertThat(fired).containsExactly("near");
+
+		wheel.expire(20 * TICK, fired::add);
+		assertThat(fired).containsExactly("near", "far");
+	}
+
+	@Test
+	void cancelledTimersDoNotFire() {
+		HashedTimerWheel.Timeout<String> timeout = wheel.schedule("cancelled", TICK);
+		wheel.schedule("kept", TICK);
+
+		assertThat(timeout.cancel()).isTrue();
+		assertThat(timeout.cancel()).isFalse();
+		wheel.expire(TICK, fired::add);
+
+		assertThat(fired).containsExactly("kept");
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void timersScheduledWhileExpiringFireOnALaterTick() {
+		wheel.schedule("first", 0);
+
+		wheel.expire(5 * TICK, task -> {
+			fired.add(task);
+			if (fired.size() < 3) {
+				wheel.schedule("again", 0);
+			}
+		});
+
+		assertThat(fired).containsExactly("first", "again", "again");
+	}
+}
@@ -0,0 +1,71 @@
+package com.kafka.retryconsumer.processing;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffsetTrackerTest {
+
+	private final TopicPartition partition = new TopicPartition("retry_topic_1", 0);
+	private final OffsetTracker tracker = new OffsetTracker();
+
+	@Test
+	void onlyCommitsContiguousCompletedOffsets() {
+		tracker.dispatched(partition, 10);
+		tracker.dispatched(partition, 11);
+		tracker.dispatched(partition, 12);
+
+		tracker.completed(partition, 12);
+		tracker.completed(partition, 11);
+		assertThat(tracker.committable()).isEmpty();
+
+		tracker.completed(partition, 10);
+		assertThat(tracker.committable()).containsEntry(partition, new OffsetAndMetadata(13));
+		assertThat(tracker.committable()).isEmpty();
+		assertThat(tracker.inFlight()).isZero();
+	}
+
+	@Test
+	void toleratesOffsetGaps() {
+		tracker.dispatched(partition, 5);
+		tracker.dispatched(partition, 9);
+		tracker.completed(partition, 5);
+
+		assertThat(tracker.committable()).containsEntry(partition, new OffsetAndMetadata(6));
+	}
+
+	@Test
+	void ignoresCompletionsOfRevokedPartitions() {
+		tracker.dispatched(partition, 0);
+		tracker.remove(List.of(partition));
+		tracker.completed(partition, 0);
+
+		assertThat(tracker.committable()).isEmpty();
+		assertThat(tracker.inFlight()).isZero();
+	}
+
+	@Test
+	void abandonedRecordsAreNoLongerInFlightButHoldBackTheCommit() {
+		TopicPartition other = new TopicPartition("retry_topic_1", 1);
+		tracker.dispatched(partition, 0);
+		tracker.dispatched(partition, 1);
+		tracker.dispatched(partition, 2);
+		tracker.dispatched(other, 0);
+
+		tracker.completed(partition, 0);
+		tracker.abandoned(partition, 1);
+		tracker.completed(partition, 2);
+
+		assertThat(tracker.inFlight(List.of(partition))).isZero();
+		assertThat(tracker.inFlight()).isEqualTo(1);
+		assertThat(tracker.committable()).containsOnly(Map.entry(partition, new OffsetAndMetadata(1)));
+
+		tracker.remove(List.of(other));
+		assertThat(tracker.inFlight()).isZero();
+	}
+}
@@ -0,0 +1,629 @@
+package com.kafka.retryconsumer.processing;
+
+import com.kafka.retryconsumer.commit.CommitProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the poll loop with {@link MockConsumer} standing in for the broker: 8 partitions like retry_topic_1 and a
+ * processor that simulates a slow downstream call.
+ */
+class PartitionedConsumerTest {
+
+	private static final String TOPIC = "retry_topic_1";
+	private static final int PARTITIONS = 8;
+	private static final int RECORDS_PER_PARTITION = 25;
+	private static final long DOWNSTREAM_LATENCY_MS = 4;
+
+	private final Set<TopicPartition> partitions = IntStream.range(0, PARTITIONS)
+			.mapToObj(p -> new TopicPartition(TOPIC, p))
+			.collect(Collectors.toSet());
+
+	@Test
+	void commitsEveryPartitionAndKeepsPartitionOrder() throws Exception {
+		Map<Integer, Queue<Long>> seen = new ConcurrentHashMap<>();
+		Map<TopicPartition, OffsetAndMetadata> committed = runToCompletion(8,
+				record -> seen.computeIfAbsent(record.partition(), p -> new ConcurrentLinkedQueue<>()).add(record.offset()));
+
+		assertThat(committed.values())
+				.extracting(OffsetAndMetadata::offset)
+				.containsOnly((long) RECORDS_PER_PARTITION);
+		seen.values().forEach(offsets -> assertThat(List.copyOf(offsets)).isSorted());
+	}
+
+	@Test
+	void sizedPollsHoldBackWhatTheLanesCannotTakeAndStillCommitEverything() throws Exception {
+		PollSizingProperties sizing = new PollSizingProperties();
+		sizing.setMaxRecords(PARTITIONS * RECORDS_PER_PARTITION);
+		AdaptivePollSizer sizer = new AdaptivePollSizer(sizing, 5);
+		Map<Integer, Queue<Long>> seen = new ConcurrentHashMap<>();
+		// 8 lanes get through 40 records of 4ms within the 20ms drain timeout
+		Map<TopicPartition, OffsetAndMetadata> committed = runToCompletion(8, sizer, Duration.ofMillis(20),
+				record -> seen.computeIfAbsent(record.partition(), p -> new ConcurrentLinkedQueue<>()).add(record.offset()));
+
+		assertThat(committed.values())
+				.extracting(OffsetAndMetadata::offset)
+				.containsOnly((long) RECORDS_PER_PARTITION);
+		seen.values().forEach(offsets -> assertThat(List.copyOf(offsets)).isSorted());
+		assertThat(sizer.getRecords()).isBetween(5, 60);
+	}
+
+	@Test
+	void throughputScalesWithWorkerCount() throws Exception {
+		long single = timed(1);
+		long parallel = timed(8);
+
+		assertThat(parallel * 3).isLessThan(single);
+	}
+
+	@Test
+	void failedRecordWaitsOnTheTimerWheelWithoutHoldingUpOtherPartitions() throws Exception {
+		TopicPartition failing = new TopicPartition(TOPIC, 0);
+		TopicPartition healthy = new TopicPartition(TOPIC, 1);
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(failing, 0L, healthy, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(failing, healthy));
+			for (int offset = 0; offset < 5; offset++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "message-" + offset));
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 1, offset, "key-" + offset, "message-" + offset));
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		DelayedRetryProperties retryProperties = new DelayedRetryProperties();
+		retryProperties.setEnabled(true);
+		retryProperties.setDelays(List.of(Duration.ofMillis(300)));
+		retryProperties.setTick(Duration.ofMillis(10));
+
+		long start = System.nanoTime();
+		Queue<Long> attempts = new ConcurrentLinkedQueue<>();
+		Queue<ConsumerRecord<String, String>> recovered = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					if (record.partition() == 0 && record.offset() == 2) {
+						attempts.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+						if (attempts.size() == 1) {
+							throw new IllegalStateException("downstream unavailable");
+						}
+					}
+				})
+				.recoverer((record, exception) -> recovered.add(record))
+				.retries(new DelayedRetryScheduler(retryProperties, (record, exception) -> recovered.add(record)))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		Thread.sleep(150);
+		Map<TopicPartition, OffsetAndMetadata> waiting = consumer.committed(Set.of(failing, healthy));
+		long deadline = System.currentTimeMillis() + 10_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = waiting;
+		while (!(committed.get(failing) != null && committed.get(failing).offset() == 5)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(failing, healthy));
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(waiting.get(failing).offset()).isEqualTo(2);
+		assertThat(waiting.get(healthy).offset()).isEqualTo(5);
+		assertThat(committed.get(failing).offset()).isEqualTo(5);
+		assertThat(attempts).hasSize(2);
+		assertThat(List.copyOf(attempts).get(1) - List.copyOf(attempts).get(0)).isGreaterThanOrEqualTo(300);
+		assertThat(recovered).isEmpty();
+	}
+
+	@Test
+	void recordThatCannotBeHandedOverStaysUncommittedUntilTheRecovererTakesIt() throws Exception {
+		TopicPartition partition = new TopicPartition(TOPIC, 0);
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(partition, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(partition));
+			for (int offset = 0; offset < 5; offset++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "message-" + offset));
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		DelayedRetryProperties retryProperties = new DelayedRetryProperties();
+		retryProperties.setTick(Duration.ofMillis(10));
+		retryProperties.setHandOffBackOff(Duration.ofMillis(50));
+
+		AtomicInteger handOffs = new AtomicInteger();
+		CountDownLatch retryTopicBack = new CountDownLatch(1);
+		Queue<Long> recovered = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					if (record.offset() == 2) {
+						throw new IllegalStateException("downstream unavailable");
+					}
+				})
+				.recoverer((record, exception) -> {
+					if (handOffs.incrementAndGet() < 3 || retryTopicBack.getCount() > 0) {
+						throw new IllegalStateException("retry topic unavailable");
+					}
+					recovered.add(record.offset());
+				})
+				.retries(new DelayedRetryScheduler(retryProperties, (record, exception) -> {
+					throw exception;
+				}))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (handOffs.get() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Thread.sleep(50);
+		OffsetAndMetadata whileFailing = consumer.committed(Set.of(partition)).get(partition);
+		boolean pausedWhileFailing = consumer.paused().contains(partition);
+
+		retryTopicBack.countDown();
+		OffsetAndMetadata committed = whileFailing;
+		while (!(committed != null && committed.offset() == 5) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(partition)).get(partition);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(whileFailing.offset()).isEqualTo(2);
+		assertThat(pausedWhileFailing).isTrue();
+		assertThat(committed.offset()).isEqualTo(5);
+		assertThat(recovered).containsExactly(2L);
+	}
+
+	@Test
+	void recordDeadLetteredAboveTheCapOfPendingRetriesIsCommitted() throws Exception {
+		TopicPartition partition = new TopicPartition(TOPIC, 0);
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(partition, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(partition));
+			for (int offset = 0; offset < 5; offset++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "message-" + offset));
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		DelayedRetryProperties retryProperties = new DelayedRetryProperties();
+		retryProperties.setEnabled(true);
+		retryProperties.setDelays(List.of(Duration.ofMillis(100)));
+		retryProperties.setTick(Duration.ofMillis(10));
+		retryProperties.setMaxPending(1);
+		retryProperties.setOverflow(DelayedRetryProperties.Overflow.DEAD_LETTER);
+
+		Set<Long> failed = ConcurrentHashMap.newKeySet();
+		Queue<Long> deadLettered = new ConcurrentLinkedQueue<>();
+		Queue<Long> recovered = new ConcurrentLinkedQueue<>();
+		DelayedRetryScheduler retries = new DelayedRetryScheduler(retryProperties,
+				(record, exception) -> deadLettered.add(record.offset()));
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					if (record.offset() < 3 && failed.add(record.offset())) {
+						throw new IllegalStateException("downstream unavailable");
+					}
+				})
+				.recoverer((record, exception) -> recovered.add(record.offset()))
+				.retries(retries)
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		OffsetAndMetadata committed = null;
+		while (!(committed != null && committed.offset() == 5) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(partition)).get(partition);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(committed.offset()).isEqualTo(5);
+		assertThat(deadLettered).containsExactly(1L, 2L);
+		assertThat(recovered).isEmpty();
+		assertThat(retries.pending()).isZero();
+	}
+
+	@Test
+	void revokeDrainsRunningRecordsCommitsThemAndLeavesQueuedOnesToTheNextOwner() throws Exception {
+		TopicPartition revoked = new TopicPartition(TOPIC, 0);
+		TopicPartition kept = new TopicPartition(TOPIC, 1);
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(revoked, 0L, kept, 0L));
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setPollTimeout(Duration.ofMillis(10));
+		properties.setRevokeDrainTimeout(Duration.ofSeconds(5));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch rebalanced = new CountDownLatch(1);
+		Map<TopicPartition, OffsetAndMetadata> committedOnRevoke = new ConcurrentHashMap<>();
+		Queue<Long> processed = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					if (record.partition() == 0) {
+						running.countDown();
+						Thread.sleep(200);
+						processed.add(record.offset());
+					}
+				})
+				.build();
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(revoked, kept));
+			for (int offset = 0; offset < 5; offset++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "message-" + offset));
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 1, offset, "key-" + offset, "message-" + offset));
+			}
+		});
+		// MockConsumer does not call the listener itself
+		consumer.schedulePollTask(() -> {
+			try {
+				running.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			partitionedConsumer.onPartitionsRevoked(Set.of(revoked));
+			committedOnRevoke.putAll(consumer.committed(Set.of(revoked)));
+			consumer.rebalance(Set.of(kept));
+			rebalanced.countDown();
+		});
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		assertThat(rebalanced.await(10, TimeUnit.SECONDS)).isTrue();
+		long deadline = System.currentTimeMillis() + 10_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(Set.of(kept));
+		while (!(committed.get(kept) != null && committed.get(kept).offset() == 5)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(kept));
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(processed).containsExactly(0L);
+		assertThat(committedOnRevoke.get(revoked).offset()).isEqualTo(1);
+		assertThat(committed.get(kept).offset()).isEqualTo(5);
+	}
+
+	@Test
+	void openCircuitBreakerPausesTheAssignmentAndHalfOpenLetsOnePartitionTrickle() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> 0L)));
+		consumer.schedulePollTask(() -> consumer.rebalance(partitions));
+		consumer.schedulePollTask(() -> {
+			for (int partition = 0; partition < PARTITIONS; partition++) {
+				for (int offset = 0; offset < 5; offset++) {
+					consumer.addRecord(new ConsumerRecord<>(TOPIC, partition, offset, "key-" + offset, "message-" + offset));
+				}
+			}
+		});
+		CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults(TOPIC);
+		circuitBreaker.transitionToOpenState();
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		Queue<Integer> processed = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> processed.add(record.partition()))
+				.flow(FlowControl.of(circuitBreaker))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		Thread.sleep(150);
+		Set<TopicPartition> pausedWhileOpen = consumer.paused();
+		List<Integer> processedWhileOpen = List.copyOf(processed);
+
+		circuitBreaker.transitionToHalfOpenState();
+		Thread.sleep(150);
+		Set<TopicPartition> pausedWhileHalfOpen = consumer.paused();
+		Set<Integer> processedWhileHalfOpen = Set.copyOf(processed);
+
+		circuitBreaker.transitionToClosedState();
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (processed.size() < PARTITIONS * 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(processedWhileOpen).isEmpty();
+		assertThat(pausedWhileOpen).isEqualTo(partitions);
+		assertThat(pausedWhileHalfOpen).hasSize(PARTITIONS - 1).doesNotContain(new TopicPartition(TOPIC, 0));
+		assertThat(processedWhileHalfOpen).containsOnly(0);
+		assertThat(processed).hasSize(PARTITIONS * 5);
+		assertThat(consumer.paused()).isEmpty();
+	}
+
+	@Test
+	void bulkDispatchSendsBatchesAndRetriesOnlyTheFailedRecords() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> 0L)));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(partitions);
+			for (int offset = 0; offset < RECORDS_PER_PARTITION; offset++) {
+				for (int partition = 0; partition < PARTITIONS; partition++) {
+					consumer.addRecord(new ConsumerRecord<>(TOPIC, partition, offset, "key-" + offset, "message-" + offset));
+				}
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setMaxInFlight(PARTITIONS * RECORDS_PER_PARTITION);
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		BulkProperties bulkProperties = new BulkProperties();
+		bulkProperties.setEnabled(true);
+		bulkProperties.setMaxSize(20);
+
+		Queue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+		Queue<ConsumerRecord<String, String>> singles = new ConcurrentLinkedQueue<>();
+		Queue<ConsumerRecord<String, String>> recovered = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> singles.add(record))
+				.recoverer((record, exception) -> recovered.add(record))
+				.bulk(new BulkDispatcher(bulkProperties, records -> {
+					batchSizes.add(records.size());
+					Map<ConsumerRecord<String, String>, Exception> failures = new IdentityHashMap<>();
+					records.stream()
+							.filter(record -> record.partition() == 0 && record.offset() == 3)
+							.forEach(record -> failures.put(record, new IllegalStateException("rejected")));
+					return failures;
+				}))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(partitions);
+		while (!fullyCommitted(committed) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(partitions);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(fullyCommitted(committed)).isTrue();
+		assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(PARTITIONS * RECORDS_PER_PARTITION);
+		assertThat(batchSizes.size()).isLessThan(PARTITIONS * RECORDS_PER_PARTITION / 10);
+		assertThat(singles).isEmpty();
+		assertThat(recovered).extracting(ConsumerRecord::offset).containsExactly(3L);
+	}
+
+	@Test
+	void asyncDispatchKeepsAtMostTheConfiguredRequestsInFlightPerPartition() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> 0L)));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(partitions);
+			for (int offset = 0; offset < RECORDS_PER_PARTITION; offset++) {
+				for (int partition = 0; partition < PARTITIONS; partition++) {
+					consumer.addRecord(new ConsumerRecord<>(TOPIC, partition, offset, "key-" + offset, "message-" + offset));
+				}
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setWorkers(1);
+		properties.setMaxInFlight(PARTITIONS * RECORDS_PER_PARTITION);
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		AsyncProperties asyncProperties = new AsyncProperties();
+		asyncProperties.setEnabled(true);
+		asyncProperties.setMaxInFlightPerPartition(4);
+
+		ScheduledExecutorService downstream = Executors.newScheduledThreadPool(4);
+		Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+		AtomicInteger peak = new AtomicInteger();
+		long start = System.nanoTime();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					throw new AssertionError("records must not go through the worker lanes");
+				})
+				.async(new AsyncDispatcher(asyncProperties, record -> {
+					AtomicInteger partitionInFlight = inFlight.computeIfAbsent(record.partition(), p -> new AtomicInteger());
+					peak.accumulateAndGet(partitionInFlight.incrementAndGet(), Math::max);
+					CompletableFuture<String> response = new CompletableFuture<>();
+					downstream.schedule(() -> {
+						partitionInFlight.decrementAndGet();
+						response.complete("ok");
+					}, DOWNSTREAM_LATENCY_MS, TimeUnit.MILLISECONDS);
+					return response;
+				}))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(partitions);
+		while (!fullyCommitted(committed) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(partitions);
+		}
+		long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+		partitionedConsumer.stop();
+		pollThread.join();
+		downstream.shutdown();
+
+		assertThat(fullyCommitted(committed)).isTrue();
+		assertThat(peak.get()).isEqualTo(4);
+		// a single blocking worker needs PARTITIONS * RECORDS_PER_PARTITION * DOWNSTREAM_LATENCY_MS
+		assertThat(elapsed * 4).isLessThan(PARTITIONS * RECORDS_PER_PARTITION * DOWNSTREAM_LATENCY_MS);
+	}
+
+	@Test
+	void asyncBacklogCompletingAtOnceIsDrainedInALoopAndFailuresAreRecoveredOnTheWorkerLanes() throws Exception {
+		int records = 20_000;
+		TopicPartition partition = new TopicPartition(TOPIC, 0);
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(partition, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(partition));
+			for (int offset = 0; offset < records; offset++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key-" + offset, "message-" + offset));
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setMaxInFlight(records);
+		properties.setPollTimeout(Duration.ofMillis(10));
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		AsyncProperties asyncProperties = new AsyncProperties();
+		asyncProperties.setEnabled(true);
+		asyncProperties.setMaxInFlightPerPartition(1);
+
+		// the first call holds the whole backlog, every call after it completes right away
+		CompletableFuture<String> first = new CompletableFuture<>();
+		Set<String> recoveringThreads = ConcurrentHashMap.newKeySet();
+		Queue<Long> recovered = new ConcurrentLinkedQueue<>();
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					throw new AssertionError("records must not go through the worker lanes");
+				})
+				.recoverer((record, exception) -> {
+					recoveringThreads.add(Thread.currentThread().getName());
+					recovered.add(record.offset());
+				})
+				.async(new AsyncDispatcher(asyncProperties, record -> {
+					if (record.offset() == 0) {
+						return first;
+					}
+					return record.offset() % 1_000 == 0
+							? CompletableFuture.failedFuture(new IllegalStateException("downstream unavailable"))
+							: CompletableFuture.completedFuture("ok");
+				}))
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		Thread.sleep(200);
+		first.complete("ok");
+		long deadline = System.currentTimeMillis() + 10_000;
+		OffsetAndMetadata committed = null;
+		while (!(committed != null && committed.offset() == records) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(partition)).get(partition);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+
+		assertThat(committed.offset()).isEqualTo(records);
+		assertThat(recovered).hasSize(records / 1_000 - 1);
+		assertThat(recoveringThreads).allMatch(name -> name.startsWith(TOPIC + "-worker-"));
+	}
+
+	private long timed(int workers) throws Exception {
+		long start = System.nanoTime();
+		runToCompletion(workers, record -> {
+		});
+		return Duration.ofNanos(System.nanoTime() - start).toMillis();
+	}
+
+	private Map<TopicPartition, OffsetAndMetadata> runToCompletion(int workers,
+			Consumer<ConsumerRecord<String, String>> onRecord) throws Exception {
+		return runToCompletion(workers, AdaptivePollSizer.disabled(), Duration.ofSeconds(5), onRecord);
+	}
+
+	private Map<TopicPartition, OffsetAndMetadata> runToCompletion(int workers, AdaptivePollSizer sizer,
+			Duration revokeDrainTimeout, Consumer<ConsumerRecord<String, String>> onRecord) throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> 0L)));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(partitions);
+			for (int offset = 0; offset < RECORDS_PER_PARTITION; offset++) {
+				for (int partition = 0; partition < PARTITIONS; partition++) {
+					consumer.addRecord(new ConsumerRecord<>(TOPIC, partition, offset, "key-" + offset, "message-" + offset));
+				}
+			}
+		});
+
+		ProcessingProperties properties = new ProcessingProperties();
+		properties.setWorkers(workers);
+		properties.setMaxInFlight(PARTITIONS * RECORDS_PER_PARTITION);
+		properties.setPollTimeout(Duration.ofMillis(10));
+		properties.setRevokeDrainTimeout(revokeDrainTimeout);
+
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+
+		PartitionedConsumer partitionedConsumer = builder(consumer, properties, commitProperties)
+				.processor((record, last) -> {
+					onRecord.accept(record);
+					Thread.sleep(DOWNSTREAM_LATENCY_MS);
+				})
+				.sizer(sizer)
+				.build();
+		Thread pollThread = new Thread(partitionedConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 30_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(partitions);
+		while (!fullyCommitted(committed) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(partitions);
+		}
+		partitionedConsumer.stop();
+		pollThread.join();
+		return committed;
+	}
+
+	private static PartitionedConsumer.PartitionedConsumerBuilder builder(MockConsumer<String, String> consumer,
+			ProcessingProperties properties, CommitProperties commitProperties) {
+		return PartitionedConsumer.builder()
+				.topic(TOPIC)
+				.consumer(consumer)
+				.properties(properties)
+				.commitProperties(commitProperties);
+	}
+
+	private boolean fullyCommitted(Map<TopicPartition, OffsetAndMetadata> committed) {
+		return committed.size() == PARTITIONS && committed.values().stream()
+				.allMatch(offset -> offset != null && offset.offset() == RECORDS_PER_PARTITION);
+	}
+}
@@ -0,0 +1,200 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import com.kafka.retryconsumer.budget.RetryBudget;
+import com.kafka.retryconsumer.budget.RetryBudgetProperties;
+import com.kafka.retryconsumer.commit.CommitProperties;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryTierConsumerTest {
+
+	private static final String TOPIC = "retry_topic_1-retry-5s";
+	private static final long DELAY_MS = 300;
+
+	private final TopicPartition slow = new TopicPartition(TOPIC, 0);
+	private final TopicPartition due = new TopicPartition(TOPIC, 1);
+
+	@Test
+	void holdsRecordsBackUntilDueWithoutBlockingOtherPartitions() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(slow, 0L, due, 0L));
+		long start = System.currentTimeMillis();
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(slow, due));
+			for (int offset = 0; offset < 3; offset++) {
+				consumer.addRecord(record(slow, offset, start + DELAY_MS));
+				consumer.addRecord(record(due, offset, start));
+			}
+		});
+
+		Queue<String> processed = new ConcurrentLinkedQueue<>();
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		RetryTierConsumer tierConsumer = RetryTierConsumer.builder()
+				.topics(List.of(TOPIC))
+				.consumer(consumer)
+				.pollTimeout(Duration.ofMillis(50))
+				.commitProperties(commitProperties)
+				.processor((record, last) -> processed.add(record.partition() + "@" + record.offset() + "+"
+						+ (System.currentTimeMillis() - start)))
+				.build();
+		Thread pollThread = new Thread(tierConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(Set.of(slow, due));
+		while (!(committed.get(slow) != null && committed.get(slow).offset() == 3)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(slow, due));
+		}
+		tierConsumer.stop();
+		pollThread.join();
+
+		assertThat(committed.get(slow).offset()).isEqualTo(3);
+		assertThat(committed.get(due).offset()).isEqualTo(3);
+		assertThat(processed).hasSize(6);
+		processed.forEach(entry -> {
+			long elapsed = Long.parseLong(entry.substring(entry.indexOf('+') + 1));
+			if (entry.startsWith(slow.partition() + "@")) {
+				assertThat(elapsed).isGreaterThanOrEqualTo(DELAY_MS);
+			} else {
+				assertThat(elapsed).isLessThan(DELAY_MS);
+			}
+		});
+		assertThat(consumer.paused()).isEmpty();
+	}
+
+	@Test
+	void recordThatCannotBeHandedOverIsNotCommittedAndNotProcessedAgain() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(due, 0L));
+		long start = System.currentTimeMillis();
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(due));
+			for (int offset = 0; offset < 3; offset++) {
+				consumer.addRecord(record(due, offset, start));
+			}
+		});
+
+		AtomicInteger processed = new AtomicInteger();
+		AtomicInteger handOffs = new AtomicInteger();
+		CountDownLatch dlqBack = new CountDownLatch(1);
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		RetryTierConsumer tierConsumer = RetryTierConsumer.builder()
+				.topics(List.of(TOPIC))
+				.consumer(consumer)
+				.pollTimeout(Duration.ofMillis(50))
+				.commitProperties(commitProperties)
+				.processor((record, last) -> {
+					processed.incrementAndGet();
+					if (record.offset() == 1) {
+						throw new IllegalStateException("downstream unavailable");
+					}
+				})
+				.recoverer((record, exception) -> {
+					if (handOffs.incrementAndGet() < 3 || dlqBack.getCount() > 0) {
+						throw new IllegalStateException("dead-letter topic unavailable");
+					}
+				})
+				.handOffBackOff(Duration.ofMillis(20))
+				.build();
+		Thread pollThread = new Thread(tierConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (handOffs.get() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Thread.sleep(30);
+		OffsetAndMetadata whileFailing = consumer.committed(Set.of(due)).get(due);
+
+		dlqBack.countDown();
+		OffsetAndMetadata committed = whileFailing;
+		while (!(committed != null && committed.offset() == 3) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(due)).get(due);
+		}
+		tierConsumer.stop();
+		pollThread.join();
+
+		assertThat(whileFailing.offset()).isEqualTo(1);
+		assertThat(committed.offset()).isEqualTo(3);
+		assertThat(processed).hasValue(3);
+	}
+
+	@Test
+	void holdsADueRecordBackWhileTheBudgetIsExhaustedAndCountsItOnce() throws Exception {
+		MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(Map.of(due, 0L));
+		long start = System.currentTimeMillis();
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Set.of(due));
+			consumer.addRecord(record(due, 0, start));
+		});
+
+		RetryBudgetProperties budgetProperties = new RetryBudgetProperties();
+		budgetProperties.setMinRetriesPerSecond(0);
+		budgetProperties.setPercent(100);
+		RetryBudget budget = new RetryBudget(budgetProperties);
+		AtomicInteger processed = new AtomicInteger();
+		CommitProperties commitProperties = new CommitProperties();
+		commitProperties.setInterval(Duration.ofMillis(10));
+		RetryTierConsumer tierConsumer = RetryTierConsumer.builder()
+				.topics(List.of(TOPIC))
+				.consumer(consumer)
+				.pollTimeout(Duration.ofMillis(20))
+				.commitProperties(commitProperties)
+				.processor((record, last) -> processed.incrementAndGet())
+				.retryBudget(budget)
+				.build();
+		Thread pollThread = new Thread(tierConsumer);
+		pollThread.start();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!consumer.paused().contains(due) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Thread.sleep(200);
+		int processedWhileExhausted = processed.get();
+		long exhausted = budget.getExhausted(RetryBudget.Stage.TIER);
+
+		budget.deposit();
+		OffsetAndMetadata committed = null;
+		while (!(committed != null && committed.offset() == 1) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+			committed = consumer.committed(Set.of(due)).get(due);
+		}
+		tierConsumer.stop();
+		pollThread.join();
+
+		assertThat(processedWhileExhausted).isZero();
+		assertThat(exhausted).isEqualTo(1);
+		assertThat(committed.offset()).isEqualTo(1);
+		assertThat(processed).hasValue(1);
+	}
+
+	private ConsumerRecord<String, String> record(TopicPartition partition, long offset, long dueAt) {
+		ConsumerRecord<String, String> record = new ConsumerRecord<>(TOPIC, partition.partition(), offset,
+				"key-" + offset, "message-" + offset);
+		record.headers().add(RetryHeaders.DUE_AT, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+		return record;
+	}
+}
@@ -0,0 +1,51 @@
+package com.kafka.retryconsumer.retrytopic;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryTopicPublisherTest {
+
+	private final MockProducer<String, String> producer =
+			new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+	private final RetryTopicPublisher publisher = new RetryTopicPublisher(new RetryTopicProperties(), producer);
+
+	@Test
+	void walksThroughTheTiersToTheDeadLetterTopic() throws Exception {
+		ConsumerRecord<String, String> record = new ConsumerRecord<>("retry_topic_1", 3, 42, "key", "message");
+
+		for (int i = 0; i < 4; i++) {
+			publisher.publish(record, new ResourceAccessException("I/O error"));
+			ProducerRecord<String, String> sent = producer.history().get(i);
+			record = new ConsumerRecord<>(sent.topic(), 0, i, sent.key(), sent.value());
+			sent.headers().forEach(record.headers()::add);
+		}
+
+		assertThat(producer.history()).extracting(ProducerRecord::topic).containsExactly(
+				"retry_topic_1-retry-5s", "retry_topic_1-retry-30s", "retry_topic_1-retry-5m", "retry_topic_1-dlt");
+		assertThat(producer.history()).extracting(ProducerRecord::key).containsOnly("key");
+		assertThat(RetryHeaders.attempt(record)).isEqualTo(4);
+		assertThat(RetryHeaders.originalTopic(record)).isEqualTo("retry_topic_1");
+		assertThat(record.headers().headers(RetryHeaders.ATTEMPT)).hasSize(1);
+		assertThat(new String(record.headers().lastHeader(RetryHeaders.EXCEPTION).value(), StandardCharsets.UTF_8))
+				.contains("ResourceAccessException");
+	}
+
+	@Test
+	void dueTimeFollowsTheTierDelay() throws Exception {
+		long before = System.currentTimeMillis();
+		publisher.publish(new ConsumerRecord<>("retry_topic_1", 0, 0, "key", "message"), new IllegalStateException());
+
+		ProducerRecord<String, String> sent = producer.history().get(0);
+		ConsumerRecord<String, String> tierRecord = new ConsumerRecord<>(sent.topic(), 0, 0, sent.key(), sent.value());
+		sent.headers().forEach(tierRecord.headers()::add);
+		assertThat(RetryHeaders.dueAt(tierRecord)).isBetween(before + 5_000, System.currentTimeMillis() + 5_000);
+	}
+}
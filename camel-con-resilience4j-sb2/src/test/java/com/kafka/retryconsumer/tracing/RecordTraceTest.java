@@ -0,0 +1,111 @@
+package com.kafka.retryconsumer.tracing;
+
+import com.kafka.retryconsumer.processing.KafkaRecordProcessor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecordTraceTest {
+
+	private final TracingProperties properties = new TracingProperties();
+
+	@Test
+	void keepsOnlyTheNewestEventsNewestFirst() throws Exception {
+		properties.setSampleRate(1.0);
+		properties.setCapacity(3); // rounded up to 4
+		RecordTrace trace = new RecordTrace(properties);
+		KafkaRecordProcessor processor = trace.traced((record, lastInBatch) -> {
+		});
+
+		for (long offset = 0; offset < 6; offset++) {
+			processor.process(record(offset, "value-" + offset), false);
+		}
+
+		List<TraceEvent> events = trace.events();
+		assertThat(events).extracting(TraceEvent::getOffset).containsExactly(5L, 4L, 3L, 2L);
+		assertThat(events).allSatisfy(event -> {
+			assertThat(event.getOutcome()).isEqualTo(TraceEvent.Outcome.SUCCESS);
+			assertThat(event.getAttempt()).isEqualTo(1);
+			assertThat(event.getValue()).isNull();
+		});
+	}
+
+	@Test
+	void tracesEveryFailureWithDetailWhateverTheSampleRate() throws Exception {
+		properties.setSampleRate(0.0);
+		properties.setValueLimit(5);
+		RecordTrace trace = new RecordTrace(properties);
+		KafkaRecordProcessor processor = trace.traced((record, lastInBatch) -> {
+			if (record.offset() == 1) {
+				throw new IllegalStateException("down");
+			}
+		});
+
+		assertThatThrownBy(() -> processor.process(record(1, "value-1"), false))
+				.isInstanceOf(IllegalStateException.class);
+		processor.process(record(2, "value-2"), false);
+
+		assertThat(trace.events()).singleElement().satisfies(event -> {
+			assertThat(event.getOffset()).isEqualTo(1);
+			assertThat(event.getOutcome()).isEqualTo(TraceEvent.Outcome.FAILURE);
+			assertThat(event.getException()).isEqualTo("java.lang.IllegalStateException: down");
+			assertThat(event.getValue()).isEqualTo("value");
+		});
+	}
+
+	@Test
+	void leavesProcessorsAloneWhenDisabled() {
+		properties.setEnabled(false);
+		KafkaRecordProcessor processor = (record, lastInBatch) -> {
+		};
+
+		assertThat(new RecordTrace(properties).traced(processor)).isSameAs(processor);
+	}
+
+	@Test
+	void neverReturnsAnEventMixedFromTwoRecords() throws Exception {
+		properties.setCapacity(4);
+		RecordTrace trace = new RecordTrace(properties);
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<>();
+		for (int partition = 0; partition < 4; partition++) {
+			int writer = partition;
+			writers.add(new Thread(() -> {
+				Exception failure = new IllegalStateException("down");
+				for (long offset = 0; running.get(); offset++) {
+					trace.record(new ConsumerRecord<>("retry_topic_" + writer, writer, offset, "key",
+							"value-" + writer + "-" + offset), System.nanoTime(), failure);
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+
+		int read = 0;
+		long deadline = System.currentTimeMillis() + 200;
+		try {
+			while (System.currentTimeMillis() < deadline) {
+				for (TraceEvent event : trace.events()) {
+					assertThat(event.getTopic()).isEqualTo("retry_topic_" + event.getPartition());
+					assertThat(event.getValue()).isEqualTo("value-" + event.getPartition() + "-" + event.getOffset());
+					read++;
+				}
+			}
+		} finally {
+			running.set(false);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		}
+		assertThat(read).isPositive();
+	}
+
+	private static ConsumerRecord<String, String> record(long offset, String value) {
+		return new ConsumerRecord<>("retry_topic_1", 0, offset, "key", value);
+	}
+}
@@ -0,0 +1,45 @@
+package com.kafka.retryconsumer.warmup;
+
+import com.kafka.retryconsumer.client.BatchItemResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class WarmUpStubTest {
+
+	private final RestTemplate restTemplate = new RestTemplate();
+	private final WarmUpStub stub = new WarmUpStub();
+	private final MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+
+	WarmUpStubTest() {
+		restTemplate.getInterceptors().add(stub);
+	}
+
+	@Test
+	void answersRequestsWhileActive() {
+		stub.activate();
+
+		assertThat(restTemplate.getForObject("/sample/hello?message={message}", String.class, "warm-up"))
+				.isEqualTo("[]");
+		assertThat(restTemplate.postForObject("/sample/hello/batch", "[]", BatchItemResult[].class)).isEmpty();
+
+		server.verify();
+	}
+
+	@Test
+	void passesRequestsOnOnceDeactivated() {
+		server.expect(method(HttpMethod.GET)).andRespond(withSuccess("hello", null));
+		stub.activate();
+		stub.deactivate();
+
+		assertThat(restTemplate.getForObject("/sample/hello?message={message}", String.class, "record"))
+				.isEqualTo("hello");
+
+		server.verify();
+	}
+}
@@ -0,0 +1,155 @@
+package com.kafka.loadharness;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.QueryParameter;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.RequestMethod;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder.like;
+
+/**
+ * Plays the sample service: answers {@code GET /sample/hello?message=} and {@code POST /sample/hello/batch} after a
+ * sampled latency, fails calls (or batch items) at the configured rate and every call inside an outage window. Each
+ * successful answer is entered into the {@link RecordLedger} as a delivery, at the time the response is sent.
+ * <p>
+ * The stubs it transforms are loaded from {@code mappings/} and {@code __files/}. Latency and failures are drawn from
+ * a random seeded with the run's seed, the record and how often it was called before, so a seeded run makes the same
+ * draws for the same calls whichever of the server threads answers them.
+ */
+public class FaultInjector extends ResponseDefinitionTransformer {
+
+    public static final String NAME = "fault-injector";
+    static final String BATCH_PATH = "/sample/hello/batch";
+
+    private final HarnessProperties.Downstream properties;
+    private final RecordLedger ledger;
+    private final long seed;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile long startNanos = Long.MAX_VALUE;
+
+    public FaultInjector(HarnessProperties.Downstream properties, RecordLedger ledger, long seed) {
+        this.properties = properties;
+        this.ledger = ledger;
+        this.seed = seed;
+    }
+
+    /**
+     * Starts the clock of the outage windows.
+     */
+    public void start(long nanos) {
+        startNanos = nanos;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition, FileSource files,
+                                        Parameters parameters) {
+        long now = System.nanoTime();
+        if (RequestMethod.POST.equals(request.getMethod()) && request.getUrl().startsWith(BATCH_PATH)) {
+            return batch(request, responseDefinition, now);
+        }
+        QueryParameter message = request.queryParameter("message");
+        String text = message.isPresent() ? message.firstValue() : "";
+        SplittableRandom random = random(text);
+        long latencyMillis = sampleLatencyMillis(random);
+        if (inOutage(now)) {
+            return respond(responseDefinition, 503, "outage", latencyMillis);
+        }
+        if (random.nextDouble() < properties.getErrorRate()) {
+            return respond(responseDefinition, 500, "injected failure", latencyMillis);
+        }
+        ledger.delivered(text, now + Duration.ofMillis(latencyMillis).toNanos());
+        return respond(responseDefinition, 200, "Hello " + text, latencyMillis);
+    }
+
+    /**
+     * A batch takes the latency drawn for its first item, every item fails on its own outside of outages.
+     */
+    private ResponseDefinition batch(Request request, ResponseDefinition responseDefinition, long now) {
+        try {
+            JsonNode items = objectMapper.readTree(request.getBodyAsString());
+            List<Boolean> successes = new ArrayList<>();
+            long latencyMillis = 0;
+            for (JsonNode item : items) {
+                SplittableRandom random = random(item.path("message").asText());
+                long itemLatencyMillis = sampleLatencyMillis(random);
+                if (successes.isEmpty()) {
+                    latencyMillis = itemLatencyMillis;
+                }
+                successes.add(random.nextDouble() >= properties.getErrorRate());
+            }
+            if (inOutage(now)) {
+                return respond(responseDefinition, 503, "outage", latencyMillis);
+            }
+            long respondedAt = now + Duration.ofMillis(latencyMillis).toNanos();
+            ArrayNode results = objectMapper.createArrayNode();
+            int index = 0;
+            for (JsonNode item : items) {
+                boolean success = successes.get(index++);
+                String message = item.path("message").asText();
+                if (success) {
+                    ledger.delivered(message, respondedAt);
+                }
+                results.addObject()
+                        .put("id", item.path("id").asText())
+                        .put("success", success)
+                        .put("message", success ? "Hello " + message : "injected failure");
+            }
+            return like(responseDefinition).but()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json")
+                    .withBody(objectMapper.writeValueAsString(results))
+                    .withFixedDelay((int) latencyMillis)
+                    .build();
+        } catch (JsonProcessingException e) {
+            return respond(responseDefinition, 400, e.getOriginalMessage(), 0);
+        }
+    }
+
+    /**
+     * The random of a call for {@code message}: the same for the same call of the same record in every seeded run.
+     */
+    private SplittableRandom random(String message) {
+        long call = ledger.called(message);
+        return new SplittableRandom(seed ^ ((long) message.hashCode() << 32 | call));
+    }
+
+    private long sampleLatencyMillis(SplittableRandom random) {
+        return properties.getLatency().sampleMillis(properties.getLatencyMedian().toMillis(),
+                properties.getLatencySpread(), random);
+    }
+
+    private boolean inOutage(long nanos) {
+        if (nanos < startNanos) {
+            return false;
+        }
+        Duration elapsed = Duration.ofNanos(nanos - startNanos);
+        return properties.getOutages().stream().anyMatch(outage -> outage.covers(elapsed));
+    }
+
+    private static ResponseDefinition respond(ResponseDefinition responseDefinition, int status, String body,
+                                              long latencyMillis) {
+        return like(responseDefinition).but()
+                .withStatus(status)
+                .withHeader("Content-Type", "text/plain")
+                .withBody(body)
+                .withFixedDelay((int) latencyMillis)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.kafka.loadharness;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "harness")
+public class HarnessProperties {
+
+    /**
+     * Names of the {@link #targets} to drive, one after the other, each against a fresh broker and the same traffic.
+     */
+    private List<String> run = List.of("sb2", "camel");
+    private Map<String, Target> targets = new LinkedHashMap<>();
+
+    /**
+     * Arguments passed to every target, e.g. shorter retry tier delays so that a run settles in minutes.
+     */
+    private List<String> targetArgs = new ArrayList<>();
+
+    /**
+     * The consumers connect to localhost:9092, camel-con-camel-resilience4j has it hard-coded.
+     */
+    private int brokerPort = 9092;
+    private String topic = "retry_topic_1";
+    private int partitions = 8;
+    private String groupId = "kafkaConsumerGroup";
+    private String dltTopic = "retry_topic_1-dlt";
+
+    private int records = 20_000;
+
+    /**
+     * Records produced per second.
+     */
+    private int rate = 500;
+    private int keys = 64;
+    private long seed = 42;
+
+    private Downstream downstream = new Downstream();
+
+    private Duration startupTimeout = Duration.ofSeconds(90);
+
+    /**
+     * How long to wait after the last record was produced for every record to be delivered or dead-lettered.
+     */
+    private Duration drainTimeout = Duration.ofMinutes(3);
+    private Duration lagInterval = Duration.ofSeconds(1);
+    private String reportDir = "target/load-harness";
+
+    @Data
+    public static class Target {
+
+        /**
+         * Executable jar of the consumer application, relative to the working directory.
+         */
+        private String jar;
+        private List<String> args = new ArrayList<>();
+    }
+
+    @Data
+    public static class Downstream {
+
+        /**
+         * Port of the sample-service stand-in; the consumers call localhost:9080.
+         */
+        private int port = 9080;
+
+        /**
+         * Directory holding the WireMock {@code mappings/} and {@code __files/} of the stand-in, the repository root.
+         */
+        private String root = ".";
+        private LatencyDistribution latency = LatencyDistribution.LOG_NORMAL;
+        private Duration latencyMedian = Duration.ofMillis(20);
+
+        /**
+         * Sigma of the log-normal distribution, relative half-width of the uniform one.
+         */
+        private double latencySpread = 0.5;
+
+        /**
+         * Share of calls, or of batch items, that fail outside of outages.
+         */
+        private double errorRate = 0.01;
+
+        /**
+         * Windows, counted from the first produced record, in which every call fails with 503.
+         */
+        private List<Outage> outages = new ArrayList<>();
+    }
+
+    @Data
+    public static class Outage {
+
+        private Duration start;
+        private Duration duration;
+
+        public boolean covers(Duration elapsed) {
+            return elapsed.compareTo(start) >= 0 && elapsed.compareTo(start.plus(duration)) < 0;
+        }
+    }
+}
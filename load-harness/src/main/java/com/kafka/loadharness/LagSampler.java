@@ -0,0 +1,78 @@
+package com.kafka.loadharness;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Committed lag of the consumer group on the main topic, sampled on an interval from the start of the traffic.
+ */
+@Slf4j
+public class LagSampler {
+
+    private final Admin admin;
+    private final String groupId;
+    private final String topic;
+    private final int partitions;
+    private final List<long[]> samples = new ArrayList<>();
+
+    public LagSampler(Admin admin, String groupId, String topic, int partitions) {
+        this.admin = admin;
+        this.groupId = groupId;
+        this.topic = topic;
+        this.partitions = partitions;
+    }
+
+    public void sample(long elapsedMillis) {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata().get();
+            Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                latest.put(new TopicPartition(topic, partition), OffsetSpec.latest());
+            }
+            long lag = 0;
+            for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> end
+                    : admin.listOffsets(latest).all().get().entrySet()) {
+                OffsetAndMetadata offset = committed.get(end.getKey());
+                lag += end.getValue().offset() - (offset == null ? 0 : offset.offset());
+            }
+            synchronized (samples) {
+                samples.add(new long[]{elapsedMillis, lag});
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Could not sample the lag of {}: {}", groupId, e.getCause().toString());
+        }
+    }
+
+    public long maxLag() {
+        synchronized (samples) {
+            return samples.stream().mapToLong(sample -> sample[1]).max().orElse(0);
+        }
+    }
+
+    public void write(Path csv) throws IOException {
+        Files.createDirectories(csv.getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv))) {
+            writer.println("elapsed_ms,lag");
+            synchronized (samples) {
+                samples.forEach(sample -> writer.println(sample[0] + "," + sample[1]));
+            }
+        }
+    }
+}
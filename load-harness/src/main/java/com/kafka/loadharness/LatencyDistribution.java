@@ -0,0 +1,39 @@
+package com.kafka.loadharness;
+
+import java.util.SplittableRandom;
+
+/**
+ * Downstream latency around a median; {@code spread} is the sigma of {@link #LOG_NORMAL}, whose long tail is what
+ * real services show, and the relative half-width of {@link #UNIFORM}.
+ */
+public enum LatencyDistribution {
+
+    FIXED {
+        @Override
+        public long sampleMillis(long medianMillis, double spread, SplittableRandom random) {
+            return medianMillis;
+        }
+    },
+    UNIFORM {
+        @Override
+        public long sampleMillis(long medianMillis, double spread, SplittableRandom random) {
+            return Math.round(medianMillis * (1 - spread + 2 * spread * random.nextDouble()));
+        }
+    },
+    LOG_NORMAL {
+        @Override
+        public long sampleMillis(long medianMillis, double spread, SplittableRandom random) {
+            return Math.round(medianMillis * Math.exp(spread * gaussian(random)));
+        }
+    };
+
+    public abstract long sampleMillis(long medianMillis, double spread, SplittableRandom random);
+
+    /**
+     * A standard normal sample by the Box-Muller transform, {@link SplittableRandom} has no {@code nextGaussian}.
+     */
+    private static double gaussian(SplittableRandom random) {
+        double uniform = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(uniform)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
@@ -0,0 +1,171 @@
+package com.kafka.loadharness;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives every configured consumer application with the same traffic: a fresh embedded broker and downstream
+ * stand-in per target, records produced at a fixed rate, then waits until every record is delivered or dead-lettered.
+ * The stand-in serves the stubs of {@code mappings/} and {@code __files/} through the {@link FaultInjector}.
+ * Writes {@code <target>-lag.csv} and {@code report.txt} to the report directory.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadHarness implements ApplicationRunner {
+
+    private final HarnessProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path reportDir = Paths.get(properties.getReportDir());
+        List<LoadReport> reports = new ArrayList<>();
+        for (String name : properties.getRun()) {
+            HarnessProperties.Target target = properties.getTargets().get(name);
+            if (target == null) {
+                throw new IllegalArgumentException("Unknown target " + name + ", known: "
+                        + properties.getTargets().keySet());
+            }
+            reports.add(run(name, target, reportDir));
+        }
+        String table = LoadReport.table(reports);
+        log.info("Load harness results{}{}", System.lineSeparator(), table);
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve("report.txt"), table + System.lineSeparator());
+    }
+
+    private LoadReport run(String name, HarnessProperties.Target target, Path reportDir) throws Exception {
+        RecordLedger ledger = new RecordLedger(properties.getRecords());
+        FaultInjector faultInjector = new FaultInjector(properties.getDownstream(), ledger, properties.getSeed());
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, false, properties.getPartitions(),
+                properties.getTopic(), properties.getDltTopic())
+                .kafkaPorts(properties.getBrokerPort());
+        broker.afterPropertiesSet();
+        WireMockServer wireMock = new WireMockServer(WireMockConfiguration.options()
+                .port(properties.getDownstream().getPort())
+                .containerThreads(64)
+                .disableRequestJournal()
+                .usingFilesUnderDirectory(properties.getDownstream().getRoot())
+                .extensions(faultInjector));
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                broker.getBrokersAsString()))) {
+            wireMock.start();
+            if (wireMock.listAllStubMappings().getMappings().isEmpty()) {
+                throw new IllegalStateException("No WireMock stubs under "
+                        + Paths.get(properties.getDownstream().getRoot(), "mappings").toAbsolutePath()
+                        + ", run the harness from the repository root");
+            }
+            scheduler.execute(() -> followDeadLetters(broker.getBrokersAsString(), ledger));
+
+            try (TargetProcess process = TargetProcess.start(name, target, properties.getTargetArgs(), reportDir)) {
+                process.awaitConsuming(admin, properties.getGroupId(), properties.getStartupTimeout());
+
+                LagSampler lag = new LagSampler(admin, properties.getGroupId(), properties.getTopic(),
+                        properties.getPartitions());
+                long start = System.nanoTime();
+                faultInjector.start(start);
+                long intervalMillis = properties.getLagInterval().toMillis();
+                scheduler.scheduleAtFixedRate(
+                        () -> lag.sample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)),
+                        0, intervalMillis, TimeUnit.MILLISECONDS);
+
+                int produced = produce(broker.getBrokersAsString(), ledger, start);
+                log.info("{}: produced {} records in {}", name, produced, Duration.ofNanos(System.nanoTime() - start));
+                awaitSettled(name, ledger, produced);
+
+                lag.write(reportDir.resolve(name + "-lag.csv"));
+                LoadReport report = ledger.report(name, produced);
+                log.info("{}: max lag {}{}{}{}{}", name, lag.maxLag(), System.lineSeparator(), LoadReport.header(),
+                        System.lineSeparator(), report.line());
+                return report;
+            }
+        } finally {
+            scheduler.shutdownNow();
+            wireMock.stop();
+            broker.destroy();
+        }
+    }
+
+    private int produce(String brokers, RecordLedger ledger, long start) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, properties.getRate());
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.LINGER_MS_CONFIG, 1,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class))) {
+            for (int seq = 0; seq < properties.getRecords(); seq++) {
+                long due = start + seq * intervalNanos;
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                ledger.sent(seq, System.nanoTime());
+                producer.send(new ProducerRecord<>(properties.getTopic(), "key-" + seq % properties.getKeys(),
+                        RecordLedger.message(seq)));
+            }
+            producer.flush();
+        }
+        return properties.getRecords();
+    }
+
+    private void awaitSettled(String name, RecordLedger ledger, int produced) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.getDrainTimeout().toNanos();
+        int unsettled;
+        while ((unsettled = ledger.unsettled(produced)) > 0 && System.nanoTime() < deadline) {
+            TimeUnit.SECONDS.sleep(1);
+        }
+        if (unsettled > 0) {
+            log.warn("{}: {} records neither delivered nor dead-lettered after {}", name, unsettled,
+                    properties.getDrainTimeout());
+        }
+    }
+
+    private void followDeadLetters(String brokers, RecordLedger ledger) {
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ConsumerConfig.GROUP_ID_CONFIG, "load-harness",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class))) {
+            consumer.subscribe(List.of(properties.getDltTopic()));
+            while (!Thread.currentThread().isInterrupted()) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(500))) {
+                    ledger.deadLettered(record.value());
+                }
+            }
+        } catch (InterruptException e) {
+            // harness shutting down
+        }
+    }
+}
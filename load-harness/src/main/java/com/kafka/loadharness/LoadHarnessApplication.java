@@ -0,0 +1,14 @@
+package com.kafka.loadharness;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+@SpringBootApplication
+@EnableConfigurationProperties(HarnessProperties.class)
+public class LoadHarnessApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(LoadHarnessApplication.class, args);
+    }
+}
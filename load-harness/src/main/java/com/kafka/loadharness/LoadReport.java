@@ -0,0 +1,42 @@
+package com.kafka.loadharness;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class LoadReport {
+
+    String target;
+    int produced;
+    int delivered;
+    long duplicates;
+    int deadLettered;
+    int lost;
+
+    /**
+     * Delivered records per second, from the first produced record to the last delivery.
+     */
+    double throughput;
+    double p50Millis;
+    double p99Millis;
+    double p999Millis;
+
+    public static String header() {
+        return String.format("%-8s %9s %9s %10s %9s %6s %10s %9s %9s %9s", "target", "produced", "delivered",
+                "duplicates", "dlt", "lost", "records/s", "p50 ms", "p99 ms", "p999 ms");
+    }
+
+    public String line() {
+        return String.format("%-8s %9d %9d %10d %9d %6d %10.1f %9.1f %9.1f %9.1f", target, produced, delivered,
+                duplicates, deadLettered, lost, throughput, p50Millis, p99Millis, p999Millis);
+    }
+
+    public static String table(List<LoadReport> reports) {
+        StringBuilder sb = new StringBuilder(header());
+        reports.forEach(report -> sb.append(System.lineSeparator()).append(report.line()));
+        return sb.toString();
+    }
+}
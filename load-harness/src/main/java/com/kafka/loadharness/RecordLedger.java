@@ -0,0 +1,127 @@
+package com.kafka.loadharness;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * What happened to every produced record of a run, indexed by its sequence number. A record is delivered when the
+ * downstream answered it with success, a second success is a duplicate delivery. Records neither delivered nor on the
+ * dead-letter topic once the run has drained are lost.
+ */
+public class RecordLedger {
+
+    private static final String PREFIX = "lt-";
+
+    private final long[] sentAt;
+    private final AtomicLongArray firstDeliveredAt;
+    private final AtomicIntegerArray calls;
+    private final AtomicIntegerArray deliveries;
+    private final AtomicIntegerArray deadLettered;
+
+    public RecordLedger(int records) {
+        sentAt = new long[records];
+        firstDeliveredAt = new AtomicLongArray(records);
+        calls = new AtomicIntegerArray(records);
+        deliveries = new AtomicIntegerArray(records);
+        deadLettered = new AtomicIntegerArray(records);
+    }
+
+    public static String message(int seq) {
+        return PREFIX + seq;
+    }
+
+    public void sent(int seq, long nanos) {
+        sentAt[seq] = nanos;
+    }
+
+    /**
+     * Counts a downstream call for the record of {@code message}; the number of calls made for it before, {@code 0} for
+     * a message that is not a record of the run.
+     */
+    public int called(String message) {
+        int seq = seq(message);
+        return seq < 0 ? 0 : calls.getAndIncrement(seq);
+    }
+
+    public void delivered(String message, long nanos) {
+        int seq = seq(message);
+        if (seq >= 0 && deliveries.getAndIncrement(seq) == 0) {
+            firstDeliveredAt.set(seq, nanos);
+        }
+    }
+
+    public void deadLettered(String message) {
+        int seq = seq(message);
+        if (seq >= 0) {
+            deadLettered.incrementAndGet(seq);
+        }
+    }
+
+    /**
+     * Records of the first {@code produced} that are neither delivered nor dead-lettered yet.
+     */
+    public int unsettled(int produced) {
+        int unsettled = 0;
+        for (int seq = 0; seq < produced; seq++) {
+            if (deliveries.get(seq) == 0 && deadLettered.get(seq) == 0) {
+                unsettled++;
+            }
+        }
+        return unsettled;
+    }
+
+    public LoadReport report(String target, int produced) {
+        long[] latencies = new long[produced];
+        int delivered = 0;
+        long duplicates = 0;
+        int deadLetteredOnly = 0;
+        long lastDelivery = 0;
+        for (int seq = 0; seq < produced; seq++) {
+            int count = deliveries.get(seq);
+            if (count > 0) {
+                long deliveredAt = firstDeliveredAt.get(seq);
+                latencies[delivered++] = deliveredAt - sentAt[seq];
+                duplicates += count - 1;
+                lastDelivery = Math.max(lastDelivery, deliveredAt);
+            } else if (deadLettered.get(seq) > 0) {
+                deadLetteredOnly++;
+            }
+        }
+        latencies = Arrays.copyOf(latencies, delivered);
+        Arrays.sort(latencies);
+        double seconds = delivered == 0 ? 0 : (lastDelivery - sentAt[0]) / 1e9;
+        return LoadReport.builder()
+                .target(target)
+                .produced(produced)
+                .delivered(delivered)
+                .duplicates(duplicates)
+                .deadLettered(deadLetteredOnly)
+                .lost(produced - delivered - deadLetteredOnly)
+                .throughput(seconds == 0 ? 0 : delivered / seconds)
+                .p50Millis(percentileMillis(latencies, 0.50))
+                .p99Millis(percentileMillis(latencies, 0.99))
+                .p999Millis(percentileMillis(latencies, 0.999))
+                .build();
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private int seq(String message) {
+        if (message == null || !message.startsWith(PREFIX)) {
+            return -1;
+        }
+        try {
+            int seq = Integer.parseInt(message.substring(PREFIX.length()));
+            return seq < sentAt.length ? seq : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
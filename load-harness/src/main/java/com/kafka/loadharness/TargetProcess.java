@@ -0,0 +1,92 @@
+package com.kafka.loadharness;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.common.ConsumerGroupState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A consumer application run as a child JVM from its executable jar: the two applications share package and class
+ * names and cannot run in one class loader. Its output goes to {@code <name>.log} next to the report.
+ */
+@Slf4j
+public class TargetProcess implements AutoCloseable {
+
+    private final String name;
+    private final Process process;
+
+    private TargetProcess(String name, Process process) {
+        this.name = name;
+        this.process = process;
+    }
+
+    public static TargetProcess start(String name, HarnessProperties.Target target, List<String> commonArgs,
+                                      Path reportDir) throws IOException {
+        Path jar = Paths.get(target.getJar());
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("No jar for target " + name + " at " + jar.toAbsolutePath()
+                    + ", package the module first");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(commonArgs);
+        command.addAll(target.getArgs());
+        Files.createDirectories(reportDir);
+        Path output = reportDir.resolve(name + ".log");
+        log.info("Starting {}: {}", name, String.join(" ", command));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile())
+                .start();
+        return new TargetProcess(name, process);
+    }
+
+    /**
+     * Waits until the consumer group has members and is stable, so that traffic does not start with a rebalance.
+     */
+    public void awaitConsuming(Admin admin, String groupId, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(name + " exited with " + process.exitValue() + ", see " + name
+                        + ".log");
+            }
+            try {
+                ConsumerGroupDescription group = admin.describeConsumerGroups(List.of(groupId))
+                        .describedGroups().get(groupId).get();
+                if (group.state() == ConsumerGroupState.STABLE && !group.members().isEmpty()) {
+                    log.info("{} consuming with {} members", name, group.members().size());
+                    return;
+                }
+            } catch (ExecutionException e) {
+                log.debug("Consumer group {} not described yet: {}", groupId, e.getCause().toString());
+            }
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        throw new IllegalStateException(name + " did not join consumer group " + groupId + " within " + timeout);
+    }
+
+    /**
+     * Shuts the application down gracefully so that it commits what it processed, forcibly after 30 seconds.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            log.warn("{} did not stop within 30s, killing it", name);
+            process.destroyForcibly().waitFor();
+        }
+    }
+}
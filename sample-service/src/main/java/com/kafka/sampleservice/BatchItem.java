@@ -0,0 +1,23 @@
+package com.kafka.sampleservice;
+
+public class BatchItem {
+
+  private String id;
+  private String message;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+}
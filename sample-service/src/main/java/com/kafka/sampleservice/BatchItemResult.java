@@ -0,0 +1,44 @@
+package com.kafka.sampleservice;
+
+/**
+ * Outcome of one {@link BatchItem}; {@code message} holds the response on success and the error otherwise.
+ */
+public class BatchItemResult {
+
+  private String id;
+  private boolean success;
+  private String message;
+
+  public BatchItemResult() {
+  }
+
+  public BatchItemResult(String id, boolean success, String message) {
+    this.id = id;
+    this.success = success;
+    this.message = message;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public void setSuccess(boolean success) {
+    this.success = success;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+}
@@ -3,9 +3,14 @@ package com.kafka.sampleservice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 public class HelloWorldController {
 
@@ -18,4 +23,23 @@ public class HelloWorldController {
     return "Message received is " + message;
   }
 
+  /**
+   * Handles many messages in one request. Items fail on their own, the response holds one result per item in request
+   * order.
+   */
+  @PostMapping("/hello/batch")
+  public List<BatchItemResult> printAll(@RequestBody List<BatchItem> items) {
+
+    log.info(items.size() + " messages received in one batch");
+    List<BatchItemResult> results = new ArrayList<>(items.size());
+    for (BatchItem item : items) {
+      if (item.getMessage() == null) {
+        results.add(new BatchItemResult(item.getId(), false, "message is required"));
+      } else {
+        results.add(new BatchItemResult(item.getId(), true, printSomething(item.getMessage())));
+      }
+    }
+    return results;
+  }
+
 }
@@ -0,0 +1,86 @@
+package com.kafka.retryconsumer.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The startup of a consumer application timed by phase, from the boot of the JVM on. Each phase is kept as the
+ * {@code startup.phase} gauge, tagged with its name, and the phases are reported together with the class data sharing
+ * archive in use. Not thread safe, the startup runs on one thread.
+ */
+public class StartupPhases {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Duration> phases = new LinkedHashMap<>();
+    private long phaseStart;
+
+    public StartupPhases(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records the {@code boot} phase, from the start of the JVM until now, and starts the next phase.
+     */
+    public void booted() {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        phase("boot", Duration.ofMillis(Math.max(0, System.currentTimeMillis() - jvmStart)));
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase started by the previous call, or by {@link #booted}, and starts the next.
+     */
+    public void end(String name) {
+        long now = System.nanoTime();
+        phase(name, Duration.ofNanos(now - phaseStart));
+        phaseStart = now;
+    }
+
+    public Map<String, Duration> getPhases() {
+        return phases;
+    }
+
+    /**
+     * The phases in order, their total and the class data sharing archive in use, for the log.
+     */
+    public String report() {
+        StringJoiner report = new StringJoiner(", ");
+        Duration total = Duration.ZERO;
+        for (Map.Entry<String, Duration> phase : phases.entrySet()) {
+            report.add(phase.getKey() + " " + phase.getValue().toMillis() + "ms");
+            total = total.plus(phase.getValue());
+        }
+        return report + ", " + total.toMillis() + "ms in all; class data sharing: " + classDataSharing();
+    }
+
+    private void phase(String name, Duration duration) {
+        if (phases.put(name, duration) == null) {
+            TimeGauge.builder("startup.phase", phases, TimeUnit.NANOSECONDS, byName -> byName.get(name).toNanos())
+                    .tag("phase", name)
+                    .description("Time taken by a phase of the startup")
+                    .register(meterRegistry);
+        }
+    }
+
+    private static String classDataSharing() {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                return "archive " + argument.substring(argument.indexOf('=') + 1);
+            }
+            if (argument.startsWith("-XX:ArchiveClassesAtExit=")) {
+                return "writing archive " + argument.substring(argument.indexOf('=') + 1) + " at exit";
+            }
+            if (argument.equals("-Xshare:off")) {
+                return "off";
+            }
+        }
+        return "default JDK archive";
+    }
+}
@@ -0,0 +1,30 @@
+package com.kafka.retryconsumer.startup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupPhasesTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final StartupPhases phases = new StartupPhases(meterRegistry);
+
+	@Test
+	void timesEachPhaseFromTheEndOfThePreviousOne() throws InterruptedException {
+		phases.booted();
+		Thread.sleep(20);
+		phases.end("connections");
+		phases.end("routes");
+
+		assertThat(phases.getPhases()).containsOnlyKeys("boot", "connections", "routes");
+		assertThat(phases.getPhases().get("connections")).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+		assertThat(phases.getPhases().get("routes")).isLessThan(phases.getPhases().get("connections"));
+		assertThat(meterRegistry.get("startup.phase").tag("phase", "connections").timeGauge()
+				.value(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+		assertThat(phases.report()).startsWith("boot ").contains(", connections ", "ms in all; class data sharing: ");
+	}
+}